@@ -0,0 +1,417 @@
+package com.alibaba.otter.canal.benchmark.binlog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogEvent;
+
+/**
+ * 按mysql 5.7 row格式生成binlog，不依赖真实的mysql，用于解析链路的压测
+ *
+ * <pre>
+ * 1. 每个事务为 query(BEGIN) + table_map + write_rows + xid，binlog_checksum默认为NONE，可指定为CRC32
+ * 2. 字段值由行号确定，同样的参数每次生成的内容一致
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class BinlogGenerator {
+
+    public static final String   SCHEMA            = "benchmark";
+    public static final String   SERVER_VERSION    = "5.7.26-log";
+    public static final int      BLOB_SIZE         = 4096;
+    public static final int      EVENT_TYPES       = 38;                                  // mysql 5.7的事件类型数量
+    private static final Charset UTF_8             = Charset.forName("UTF-8");
+    private static final long    DATETIMEF_INT_OFS = 0x8000000000L;
+    private static final long    SERVER_ID         = 1L;
+
+    private final TableShape     shape;
+    private final long           tableId;
+    private final boolean        checksum;
+    private final long           when              = System.currentTimeMillis() / 1000;
+    private long                 position          = FileLogFetcher.BINLOG_MAGIC.length;
+
+    public BinlogGenerator(TableShape shape){
+        this(shape, 100L, false);
+    }
+
+    public BinlogGenerator(TableShape shape, long tableId, boolean checksum){
+        this.shape = shape;
+        this.tableId = tableId;
+        this.checksum = checksum;
+    }
+
+    /**
+     * 生成完整的binlog文件内容，包含magic头和format description
+     */
+    public static byte[] generate(TableShape shape, int transactions, int rowsPerTransaction) {
+        return generate(shape, transactions, rowsPerTransaction, false);
+    }
+
+    /**
+     * @param checksum 是否按binlog_checksum=CRC32生成
+     */
+    public static byte[] generate(TableShape shape, int transactions, int rowsPerTransaction, boolean checksum) {
+        return generate(shape, 0, transactions, rowsPerTransaction, checksum);
+    }
+
+    /**
+     * 生成多个binlog文件时，通过firstTransaction保证xid和主键在文件之间连续
+     */
+    public static byte[] generate(TableShape shape, long firstTransaction, int transactions, int rowsPerTransaction,
+                                  boolean checksum) {
+        BinlogGenerator generator = new BinlogGenerator(shape, 100L, checksum);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(FileLogFetcher.BINLOG_MAGIC, 0, FileLogFetcher.BINLOG_MAGIC.length);
+        write(output, generator.formatDescriptionEvent());
+        for (int i = 0; i < transactions; i++) {
+            long transaction = firstTransaction + i;
+            write(output, generator.transaction(transaction * rowsPerTransaction, rowsPerTransaction, transaction + 1));
+        }
+        return output.toByteArray();
+    }
+
+    public static void generate(File file, TableShape shape, int transactions, int rowsPerTransaction,
+                                boolean checksum) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(generate(shape, transactions, rowsPerTransaction, checksum));
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * 只生成rows event中的行数据部分，用于直接构造RowsLogBuffer
+     */
+    public static byte[] rowsImage(ColumnType[] columns, long firstRow, int rows) {
+        Output output = new Output();
+        for (int i = 0; i < rows; i++) {
+            writeRow(output, columns, firstRow + i);
+        }
+        return output.toByteArray();
+    }
+
+    public byte[] transaction(long firstRow, int rows, long xid) {
+        Output output = new Output();
+        output.write(beginEvent());
+        output.write(tableMapEvent());
+        output.write(writeRowsEvent(firstRow, rows));
+        output.write(xidEvent(xid));
+        return output.toByteArray();
+    }
+
+    public byte[] formatDescriptionEvent() {
+        Output body = new Output();
+        body.writeInt16(4); // binlog version
+        byte[] version = SERVER_VERSION.getBytes(UTF_8);
+        body.write(version);
+        body.writeZero(50 - version.length);
+        body.writeInt32(when);
+        body.writeInt8(FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN);
+        short[] postHeaderLen = FormatDescriptionLogEvent.FORMAT_DESCRIPTION_EVENT_5_x.getPostHeaderLen();
+        for (int i = 0; i < EVENT_TYPES; i++) {
+            body.writeInt8(postHeaderLen[i]);
+        }
+        if (checksum) {
+            body.writeInt8(LogEvent.BINLOG_CHECKSUM_ALG_CRC32);
+        } else {
+            // format description总是带有checksum字段，关闭时内容无意义
+            body.writeInt8(LogEvent.BINLOG_CHECKSUM_ALG_OFF);
+            body.writeZero(LogEvent.BINLOG_CHECKSUM_LEN);
+        }
+        return event(LogEvent.FORMAT_DESCRIPTION_EVENT, body);
+    }
+
+    public byte[] beginEvent() {
+        Output body = new Output();
+        body.writeInt32(1); // thread id
+        body.writeInt32(0); // exec time
+        body.writeInt8(0); // db len
+        body.writeInt16(0); // error code
+        body.writeInt16(0); // status vars len
+        body.writeInt8(0); // db
+        body.write("BEGIN".getBytes(UTF_8));
+        return event(LogEvent.QUERY_EVENT, body);
+    }
+
+    public byte[] tableMapEvent() {
+        ColumnType[] columns = shape.getColumns();
+        Output body = new Output();
+        body.writeInt48(tableId);
+        body.writeInt16(1); // flags
+        writeName(body, SCHEMA);
+        writeName(body, shape.getTableName());
+        body.writePackedInt(columns.length);
+        for (ColumnType column : columns) {
+            body.writeInt8(column.getType());
+        }
+
+        Output meta = new Output();
+        for (ColumnType column : columns) {
+            switch (column) {
+                case VARCHAR:
+                    meta.writeInt16(column.getMeta());
+                    break;
+                case DATETIME:
+                case JSON:
+                case BLOB:
+                    meta.writeInt8(column.getMeta());
+                    break;
+                default:
+                    break;
+            }
+        }
+        body.writePackedInt(meta.size());
+        body.write(meta.toByteArray());
+        // 除主键外都允许为null
+        byte[] nullBits = new byte[(columns.length + 7) / 8];
+        for (int i = 1; i < columns.length; i++) {
+            nullBits[i / 8] |= 1 << (i % 8);
+        }
+        body.write(nullBits);
+        return event(LogEvent.TABLE_MAP_EVENT, body);
+    }
+
+    public byte[] writeRowsEvent(long firstRow, int rows) {
+        ColumnType[] columns = shape.getColumns();
+        Output body = new Output();
+        body.writeInt48(tableId);
+        body.writeInt16(RowsLogEvent.STMT_END_F);
+        body.writeInt16(2); // extra data length, 只包含自身
+        body.writePackedInt(columns.length);
+        body.write(fullBitmap(columns.length));
+        for (int i = 0; i < rows; i++) {
+            writeRow(body, columns, firstRow + i);
+        }
+        return event(LogEvent.WRITE_ROWS_EVENT, body);
+    }
+
+    public byte[] xidEvent(long xid) {
+        Output body = new Output();
+        body.writeInt64(xid);
+        return event(LogEvent.XID_EVENT, body);
+    }
+
+    private byte[] event(int type, Output body) {
+        int eventLen = FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN + body.size();
+        if (checksum) {
+            eventLen += LogEvent.BINLOG_CHECKSUM_LEN;
+        }
+        position += eventLen;
+        Output output = new Output();
+        output.writeInt32(when);
+        output.writeInt8(type);
+        output.writeInt32(SERVER_ID);
+        output.writeInt32(eventLen);
+        output.writeInt32(position); // 事件的结束位置
+        output.writeInt16(0);
+        output.write(body.toByteArray());
+        if (checksum) {
+            appendChecksum(output);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 在事件末尾追加对整个事件计算的crc32
+     */
+    public static void appendChecksum(ByteArrayOutputStream output) {
+        CRC32 crc32 = new CRC32();
+        byte[] data = output.toByteArray();
+        crc32.update(data, 0, data.length);
+        long value = crc32.getValue();
+        for (int i = 0; i < LogEvent.BINLOG_CHECKSUM_LEN; i++) {
+            output.write((int) (value >>> (i * 8)) & 0xff);
+        }
+    }
+
+    private static void writeRow(Output output, ColumnType[] columns, long row) {
+        // 不生成null值
+        output.writeZero((columns.length + 7) / 8);
+        for (ColumnType column : columns) {
+            writeValue(output, column, row);
+        }
+    }
+
+    private static void writeValue(Output output, ColumnType column, long row) {
+        switch (column) {
+            case INT:
+                output.writeInt32(row & 0x7fffffffL);
+                break;
+            case BIGINT:
+                output.writeInt64(row);
+                break;
+            case VARCHAR: {
+                byte[] value = ("canal-benchmark-value-" + row).getBytes(UTF_8);
+                // meta大于255时长度占2个字节
+                output.writeInt16(value.length);
+                output.write(value);
+                break;
+            }
+            case DATETIME: {
+                long seconds = row % (28 * 86400L);
+                long ymd = ((2020 * 13 + 1) << 5) | (1 + seconds / 86400);
+                long hms = (((seconds / 3600) % 24) << 12) | (((seconds / 60) % 60) << 6) | (seconds % 60);
+                output.writeBeInt40(((ymd << 17) | hms) + DATETIMEF_INT_OFS);
+                break;
+            }
+            case JSON: {
+                byte[] value = jsonValue(row);
+                output.writeInt32(value.length);
+                output.write(value);
+                break;
+            }
+            case BLOB: {
+                output.writeInt16(BLOB_SIZE);
+                for (int i = 0; i < BLOB_SIZE; i++) {
+                    output.writeInt8((int) (row + i));
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unsupported column type : " + column);
+        }
+    }
+
+    /**
+     * 按mysql的json二进制格式生成一个small object : {"id":"..","tag":"canal","name":".."}
+     */
+    private static byte[] jsonValue(long row) {
+        // key需要按长度排序
+        String[] keys = { "id", "tag", "name" };
+        String[] values = { String.valueOf(row), "canal", "name-" + row };
+        int count = keys.length;
+        int headerSize = 2 + 2 + count * 4 + count * 3;
+
+        Output data = new Output();
+        int[] keyOffsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            keyOffsets[i] = headerSize + data.size();
+            data.write(keys[i].getBytes(UTF_8));
+        }
+        int[] valueOffsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            valueOffsets[i] = headerSize + data.size();
+            byte[] value = values[i].getBytes(UTF_8);
+            data.writeVariableLength(value.length);
+            data.write(value);
+        }
+
+        Output output = new Output();
+        output.writeInt8(0x0); // JSONB_TYPE_SMALL_OBJECT
+        output.writeInt16(count);
+        output.writeInt16(headerSize + data.size());
+        for (int i = 0; i < count; i++) {
+            output.writeInt16(keyOffsets[i]);
+            output.writeInt16(keys[i].length());
+        }
+        for (int i = 0; i < count; i++) {
+            output.writeInt8(0xc); // JSONB_TYPE_STRING
+            output.writeInt16(valueOffsets[i]);
+        }
+        output.write(data.toByteArray());
+        return output.toByteArray();
+    }
+
+    private static void writeName(Output output, String name) {
+        byte[] bytes = name.getBytes(UTF_8);
+        output.writeInt8(bytes.length);
+        output.write(bytes);
+        output.writeInt8(0);
+    }
+
+    private static byte[] fullBitmap(int columns) {
+        byte[] bitmap = new byte[(columns + 7) / 8];
+        for (int i = 0; i < columns; i++) {
+            bitmap[i / 8] |= 1 << (i % 8);
+        }
+        return bitmap;
+    }
+
+    private static void write(ByteArrayOutputStream output, byte[] data) {
+        output.write(data, 0, data.length);
+    }
+
+    /**
+     * binlog中除datetime等少数类型外都是little-endian
+     */
+    private static class Output extends ByteArrayOutputStream {
+
+        public void write(byte[] data) {
+            write(data, 0, data.length);
+        }
+
+        public void writeZero(int len) {
+            for (int i = 0; i < len; i++) {
+                write(0);
+            }
+        }
+
+        public void writeInt8(int value) {
+            write(value & 0xff);
+        }
+
+        public void writeInt16(int value) {
+            writeLittleEndian(value, 2);
+        }
+
+        public void writeInt32(long value) {
+            writeLittleEndian(value, 4);
+        }
+
+        public void writeInt48(long value) {
+            writeLittleEndian(value, 6);
+        }
+
+        public void writeInt64(long value) {
+            writeLittleEndian(value, 8);
+        }
+
+        public void writeBeInt40(long value) {
+            for (int i = 4; i >= 0; i--) {
+                write((int) (value >>> (i * 8)) & 0xff);
+            }
+        }
+
+        public void writePackedInt(long value) {
+            if (value < 251) {
+                writeInt8((int) value);
+            } else if (value < 0x10000L) {
+                writeInt8(252);
+                writeInt16((int) value);
+            } else if (value < 0x1000000L) {
+                writeInt8(253);
+                writeLittleEndian(value, 3);
+            } else {
+                writeInt8(254);
+                writeInt64(value);
+            }
+        }
+
+        /**
+         * json中字符串长度的编码，每个字节的低7位存储数据，最高位代表是否还有后续字节
+         */
+        public void writeVariableLength(int value) {
+            do {
+                int b = value & 0x7f;
+                value >>>= 7;
+                writeInt8(value != 0 ? (b | 0x80) : b);
+            } while (value != 0);
+        }
+
+        private void writeLittleEndian(long value, int bytes) {
+            for (int i = 0; i < bytes; i++) {
+                write((int) (value >>> (i * 8)) & 0xff);
+            }
+        }
+    }
+}
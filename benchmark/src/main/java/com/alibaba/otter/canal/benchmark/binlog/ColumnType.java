@@ -0,0 +1,42 @@
+package com.alibaba.otter.canal.benchmark.binlog;
+
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+/**
+ * 压测用到的字段类型，对应binlog中的type/meta以及建表语句中的类型
+ *
+ * @version 1.0.0
+ */
+public enum ColumnType {
+
+    INT(LogEvent.MYSQL_TYPE_LONG, 0, "int(11)"),
+    BIGINT(LogEvent.MYSQL_TYPE_LONGLONG, 0, "bigint(20)"),
+    // utf8mb4下varchar(255)的meta为最大字节数255*4
+    VARCHAR(LogEvent.MYSQL_TYPE_VARCHAR, 1020, "varchar(255)"),
+    DATETIME(LogEvent.MYSQL_TYPE_DATETIME2, 0, "datetime"),
+    // json/blob的meta为长度字段的字节数
+    JSON(LogEvent.MYSQL_TYPE_JSON, 4, "json"),
+    BLOB(LogEvent.MYSQL_TYPE_BLOB, 2, "blob");
+
+    private final int    type;
+    private final int    meta;
+    private final String sqlType;
+
+    ColumnType(int type, int meta, String sqlType){
+        this.type = type;
+        this.meta = meta;
+        this.sqlType = sqlType;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getMeta() {
+        return meta;
+    }
+
+    public String getSqlType() {
+        return sqlType;
+    }
+}
@@ -0,0 +1,94 @@
+package com.alibaba.otter.canal.benchmark.binlog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.MemoryTableMeta;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.store.model.Event;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogEvent;
+
+/**
+ * 将{@linkplain BinlogGenerator}生成的binlog走一遍解析，得到store/mq/client链路使用的Entry
+ *
+ * @version 1.0.0
+ */
+public class EntryGenerator {
+
+    public static final String BINLOG_FILE = "mysql-bin.000001";
+
+    /**
+     * 根据建表语句构造表结构，不依赖数据库
+     */
+    public static TableMeta buildTableMeta(TableShape shape) {
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null, BinlogGenerator.SCHEMA, shape.getCreateDdl(), null);
+        TableMeta tableMeta = memoryTableMeta.find(BinlogGenerator.SCHEMA, shape.getTableName());
+        if (tableMeta == null) {
+            throw new CanalParseException("parse ddl failed : " + shape.getCreateDdl());
+        }
+        return tableMeta;
+    }
+
+    public static LogEventConvert buildConvert() {
+        LogEventConvert convert = new LogEventConvert();
+        convert.setCharset(Charset.forName("UTF-8"));
+        return convert;
+    }
+
+    /**
+     * 生成TRANSACTIONBEGIN/ROWDATA/TRANSACTIONEND类型的entry，每个事务一个ROWDATA
+     */
+    public static List<Entry> generate(TableShape shape, int transactions, int rowsPerTransaction) {
+        TableMeta tableMeta = buildTableMeta(shape);
+        LogEventConvert convert = buildConvert();
+        byte[] data = BinlogGenerator.generate(shape, transactions, rowsPerTransaction);
+
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition(BINLOG_FILE));
+        int offset = FileLogFetcher.BINLOG_MAGIC.length;
+        LogBuffer buffer = new LogBuffer(data, offset, data.length - offset);
+        List<Entry> entries = new ArrayList<Entry>();
+        try {
+            LogEvent event;
+            while ((event = decoder.decode(buffer, context)) != null) {
+                Entry entry;
+                if (event instanceof RowsLogEvent) {
+                    entry = convert.parseRowsEvent((RowsLogEvent) event, tableMeta);
+                } else {
+                    entry = convert.parse(event, false);
+                }
+
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            throw new CanalParseException(e);
+        }
+        return entries;
+    }
+
+    public static List<Event> toEvents(List<Entry> entries) {
+        LogIdentity logIdentity = new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1L);
+        List<Event> events = new ArrayList<Event>(entries.size());
+        for (Entry entry : entries) {
+            events.add(new Event(logIdentity, entry));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,60 @@
+package com.alibaba.otter.canal.benchmark.binlog;
+
+/**
+ * 压测用的几种典型表结构，第一列固定为bigint类型的主键id
+ *
+ * <pre>
+ * NARROW : 3列的窄表
+ * WIDE   : 64列的宽表，int/varchar/datetime/bigint交替
+ * JSON   : 带一个json字段
+ * BLOB   : 带一个4KB的blob字段
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public enum TableShape {
+
+    NARROW(ColumnType.BIGINT, ColumnType.VARCHAR, ColumnType.INT),
+    WIDE(wide(64)),
+    JSON(ColumnType.BIGINT, ColumnType.JSON),
+    BLOB(ColumnType.BIGINT, ColumnType.BLOB);
+
+    private final ColumnType[] columns;
+
+    TableShape(ColumnType... columns){
+        this.columns = columns;
+    }
+
+    private static ColumnType[] wide(int size) {
+        ColumnType[] cycle = { ColumnType.INT, ColumnType.VARCHAR, ColumnType.DATETIME, ColumnType.BIGINT };
+        ColumnType[] columns = new ColumnType[size];
+        columns[0] = ColumnType.BIGINT;
+        for (int i = 1; i < size; i++) {
+            columns[i] = cycle[(i - 1) % cycle.length];
+        }
+        return columns;
+    }
+
+    public ColumnType[] getColumns() {
+        return columns;
+    }
+
+    public String getTableName() {
+        return "t_" + name().toLowerCase();
+    }
+
+    public static String getColumnName(int index) {
+        return index == 0 ? "id" : "c" + index;
+    }
+
+    public String getCreateDdl() {
+        StringBuilder ddl = new StringBuilder();
+        ddl.append("CREATE TABLE `").append(getTableName()).append("` (");
+        for (int i = 0; i < columns.length; i++) {
+            ddl.append('`').append(getColumnName(i)).append("` ").append(columns[i].getSqlType());
+            ddl.append(i == 0 ? " NOT NULL" : " DEFAULT NULL").append(", ");
+        }
+        ddl.append("PRIMARY KEY (`id`)) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        return ddl.toString();
+    }
+}
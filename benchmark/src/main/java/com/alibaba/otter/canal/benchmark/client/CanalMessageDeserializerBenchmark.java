@@ -0,0 +1,56 @@
+package com.alibaba.otter.canal.benchmark.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.otter.canal.benchmark.binlog.EntryGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.TableShape;
+import com.alibaba.otter.canal.client.CanalMessageDeserializer;
+import com.alibaba.otter.canal.common.CanalMessageSerializer;
+import com.alibaba.otter.canal.protocol.Message;
+
+/**
+ * 客户端反序列化server返回的Messages包的压测，lazy模式下只保留entry的原始字节
+ *
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CanalMessageDeserializerBenchmark {
+
+    @Param({ "NARROW", "WIDE", "JSON", "BLOB" })
+    private String shape;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        Message message = new Message(1L, EntryGenerator.generate(TableShape.valueOf(shape), 100, 10));
+        data = CanalMessageSerializer.serializer(message, false);
+    }
+
+    @Benchmark
+    public Message deserializer() {
+        return CanalMessageDeserializer.deserializer(data);
+    }
+
+    @Benchmark
+    public Message deserializerLazy() {
+        return CanalMessageDeserializer.deserializer(data, true);
+    }
+}
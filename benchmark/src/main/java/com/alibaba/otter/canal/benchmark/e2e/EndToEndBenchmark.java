@@ -0,0 +1,354 @@
+package com.alibaba.otter.canal.benchmark.e2e;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.alibaba.otter.canal.benchmark.binlog.BinlogGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.TableShape;
+import com.alibaba.otter.canal.benchmark.mysql.BinlogFile;
+import com.alibaba.otter.canal.benchmark.mysql.FakeBinlogServer;
+import com.alibaba.otter.canal.client.CanalConnector;
+import com.alibaba.otter.canal.client.CanalConnectors;
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
+import com.alibaba.otter.canal.instance.manager.CanalInstanceWithManager;
+import com.alibaba.otter.canal.instance.manager.model.Canal;
+import com.alibaba.otter.canal.instance.manager.model.CanalParameter;
+import com.alibaba.otter.canal.instance.manager.model.CanalParameter.HAMode;
+import com.alibaba.otter.canal.instance.manager.model.CanalParameter.IndexMode;
+import com.alibaba.otter.canal.instance.manager.model.CanalParameter.MetaMode;
+import com.alibaba.otter.canal.instance.manager.model.CanalParameter.SourcingType;
+import com.alibaba.otter.canal.instance.manager.model.CanalParameter.StorageMode;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.TransactionEnd;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.server.netty.CanalServerWithNetty;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * 单机端到端压测: FakeBinlogServer -> MysqlEventParser -> MemoryEventStore -> client
+ *
+ * <pre>
+ * 参数均通过-Dbenchmark.xxx指定:
+ * shape/transactions/rows/files/checksum : 生成binlog的表结构、事务数、每个事务的行数、文件数以及是否开启CRC32
+ * binlogDir/ddl    : 使用录制的binlog文件代替生成，ddl为带库名的建表语句文件，用于应答show create table
+ * rate             : fake server每秒推送的事件数，0代表不限速
+ * client           : embedded直接调用CanalServerWithEmbedded，tcp经过CanalServerWithNetty和SimpleCanalConnector
+ * batchSize/bufferSize : 客户端每次get的数量以及store的buffer大小
+ * idleSeconds/timeoutSeconds : 无数据多久后结束，以及整体超时时间
+ *
+ * 延迟为fake server推送xid事件到客户端收到对应TRANSACTIONEND的时间，吞吐按收到第一条到最后一条数据的时间计算
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class EndToEndBenchmark {
+
+    private static final String   DESTINATION          = "benchmark";
+    private static final String   FILTER               = ".*\\..*";
+    private static final String   LOCALHOST            = "127.0.0.1";
+    private static final Charset  UTF_8                = Charset.forName("UTF-8");
+    private static final Pattern  DDL_PATTERN          = Pattern.compile("create\\s+table\\s+(?:if\\s+not\\s+exists\\s+)?`?([^`.\\s]+)`?\\.`?([^`\\s(]+)`?",
+                                                           Pattern.CASE_INSENSITIVE);
+
+    private final TableShape      shape                = TableShape.valueOf(property("shape", "NARROW").toUpperCase());
+    private final int             transactions         = Integer.parseInt(property("transactions", "100000"));
+    private final int             rows                 = Integer.parseInt(property("rows", "10"));
+    private final int             files                = Integer.parseInt(property("files", "1"));
+    private final boolean         checksum             = Boolean.parseBoolean(property("checksum", "false"));
+    private final String          binlogDir            = property("binlogDir", "");
+    private final String          ddl                  = property("ddl", "");
+    private final long            rate                 = Long.parseLong(property("rate", "0"));
+    private final String          client               = property("client", "embedded");
+    private final int             batchSize            = Integer.parseInt(property("batchSize", "1000"));
+    private final int             bufferSize           = Integer.parseInt(property("bufferSize", "16384"));
+    private final long            idleNanos            = TimeUnit.SECONDS.toNanos(Long.parseLong(property("idleSeconds",
+                                                           "10")));
+    private final long            timeoutNanos         = TimeUnit.SECONDS.toNanos(Long.parseLong(property("timeoutSeconds",
+                                                           "600")));
+
+    private FakeBinlogServer      binlogServer;
+    private long                  expectedTransactions;
+    private long                  entries;
+    private long                  rowCount;
+    private long                  transactionCount;
+    private long                  firstReceived;
+    private long                  lastReceived;
+    private final LatencyRecorder latency              = new LatencyRecorder();
+
+    public static void main(String[] args) throws Exception {
+        new EndToEndBenchmark().run(System.out);
+        System.exit(0);
+    }
+
+    public void run(PrintStream out) throws Exception {
+        binlogServer = buildBinlogServer();
+        binlogServer.start();
+        final Canal canal = buildCanal(binlogServer.getAddress(), binlogServer.getBinlogs().get(0).getName());
+
+        CanalServerWithEmbedded embeddedServer = CanalServerWithEmbedded.instance();
+        embeddedServer.setCanalInstanceGenerator(new CanalInstanceGenerator() {
+
+            public CanalInstance generate(String destination) {
+                return new CanalInstanceWithManager(canal, FILTER);
+            }
+        });
+        CanalServerWithNetty nettyServer = null;
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long[] gcCounts = new long[collectors.size()];
+        long[] gcTimes = new long[collectors.size()];
+        try {
+            embeddedServer.start();
+            embeddedServer.start(DESTINATION);
+            for (int i = 0; i < collectors.size(); i++) {
+                gcCounts[i] = collectors.get(i).getCollectionCount();
+                gcTimes[i] = collectors.get(i).getCollectionTime();
+            }
+
+            if ("tcp".equalsIgnoreCase(client)) {
+                int port = freePort();
+                nettyServer = CanalServerWithNetty.instance();
+                nettyServer.setEmbeddedServer(embeddedServer);
+                nettyServer.setIp(LOCALHOST);
+                nettyServer.setPort(port);
+                nettyServer.start();
+                consumeWithConnector(new InetSocketAddress(LOCALHOST, port));
+            } else {
+                consumeWithEmbedded(embeddedServer);
+            }
+        } finally {
+            if (nettyServer != null) {
+                nettyServer.stop();
+            } else {
+                embeddedServer.stop();
+            }
+            binlogServer.stop();
+        }
+
+        report(out, collectors, gcCounts, gcTimes);
+    }
+
+    private FakeBinlogServer buildBinlogServer() throws IOException {
+        FakeBinlogServer server = new FakeBinlogServer();
+        server.setEventsPerSecond(rate);
+        server.setRecordXidSendTime(true);
+        if (StringUtils.isNotEmpty(binlogDir)) {
+            File[] binlogFiles = new File(binlogDir).listFiles();
+            if (binlogFiles == null || binlogFiles.length == 0) {
+                throw new IllegalArgumentException("no binlog file in " + binlogDir);
+            }
+            Arrays.sort(binlogFiles);
+            for (File file : binlogFiles) {
+                server.addBinlog(BinlogFile.load(file));
+            }
+            if (StringUtils.isNotEmpty(ddl)) {
+                loadDdl(server, new String(Files.readAllBytes(new File(ddl).toPath()), UTF_8));
+            }
+            // 录制的binlog无法预知事务数，依赖idleSeconds结束
+            expectedTransactions = -1;
+        } else {
+            int transactionsPerFile = (transactions + files - 1) / files;
+            for (int i = 0; i < files; i++) {
+                long first = (long) i * transactionsPerFile;
+                int count = (int) Math.min(transactionsPerFile, transactions - first);
+                byte[] data = BinlogGenerator.generate(shape, first, count, rows, checksum);
+                server.addBinlog(new BinlogFile(String.format("mysql-bin.%06d", i + 1), data));
+            }
+            server.addTable(BinlogGenerator.SCHEMA, shape.getTableName(), shape.getCreateDdl());
+            expectedTransactions = transactions;
+        }
+        return server;
+    }
+
+    private void loadDdl(FakeBinlogServer server, String content) {
+        for (String statement : StringUtils.split(content, ';')) {
+            Matcher matcher = DDL_PATTERN.matcher(statement);
+            if (matcher.find()) {
+                server.addTable(matcher.group(1), matcher.group(2), statement.trim());
+            }
+        }
+    }
+
+    private Canal buildCanal(InetSocketAddress address, String journalName) {
+        Canal canal = new Canal();
+        canal.setId(1L);
+        canal.setName(DESTINATION);
+        canal.setDesc("end to end benchmark");
+
+        CanalParameter parameter = new CanalParameter();
+        parameter.setMetaMode(MetaMode.MEMORY);
+        parameter.setHaMode(HAMode.HEARTBEAT);
+        parameter.setIndexMode(IndexMode.MEMORY);
+        parameter.setStorageMode(StorageMode.MEMORY);
+        parameter.setMemoryStorageBufferSize(bufferSize);
+
+        parameter.setSourcingType(SourcingType.MYSQL);
+        parameter.setDbAddresses(Arrays.asList(address));
+        parameter.setDbUsername("canal");
+        parameter.setDbPassword("canal");
+        parameter.setPositions(Arrays.asList("{\"journalName\":\"" + journalName + "\",\"position\":4}"));
+        parameter.setSlaveId(1234L);
+        parameter.setDefaultConnectionTimeoutInSeconds(30);
+        parameter.setConnectionCharset("UTF-8");
+        parameter.setConnectionCharsetNumber((byte) 33);
+        parameter.setDetectingEnable(false);
+        parameter.setTsdbEnable(false);
+        parameter.setGtidEnable(false);
+
+        canal.setCanalParameter(parameter);
+        return canal;
+    }
+
+    private void consumeWithEmbedded(CanalServerWithEmbedded embeddedServer) throws InvalidProtocolBufferException {
+        ClientIdentity clientIdentity = new ClientIdentity(DESTINATION, (short) 1001);
+        embeddedServer.subscribe(clientIdentity);
+        long start = System.nanoTime();
+        while (!isFinished(start)) {
+            Message message = embeddedServer.getWithoutAck(clientIdentity, batchSize, 100L, TimeUnit.MILLISECONDS);
+            if (message.getId() != -1) {
+                onMessage(message);
+                embeddedServer.ack(clientIdentity, message.getId());
+            }
+        }
+        embeddedServer.unsubscribe(clientIdentity);
+    }
+
+    private void consumeWithConnector(InetSocketAddress address) throws InvalidProtocolBufferException {
+        CanalConnector connector = CanalConnectors.newSingleConnector(address, DESTINATION, "", "");
+        connector.connect();
+        try {
+            connector.subscribe();
+            long start = System.nanoTime();
+            while (!isFinished(start)) {
+                Message message = connector.getWithoutAck(batchSize, 100L, TimeUnit.MILLISECONDS);
+                if (message.getId() != -1) {
+                    onMessage(message);
+                    connector.ack(message.getId());
+                }
+            }
+        } finally {
+            connector.disconnect();
+        }
+    }
+
+    private boolean isFinished(long start) {
+        long now = System.nanoTime();
+        if (expectedTransactions > 0 && transactionCount >= expectedTransactions) {
+            return true;
+        }
+        if (firstReceived > 0 && now - lastReceived > idleNanos) {
+            return true;
+        }
+        return now - start > timeoutNanos;
+    }
+
+    private void onMessage(Message message) throws InvalidProtocolBufferException {
+        List<Entry> messageEntries = message.getEntries();
+        if (message.isRaw()) {
+            messageEntries = new ArrayList<Entry>(message.getRawEntries().size());
+            for (ByteString rawEntry : message.getRawEntries()) {
+                messageEntries.add(Entry.parseFrom(rawEntry));
+            }
+        }
+        if (messageEntries.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (firstReceived == 0) {
+            firstReceived = now;
+        }
+        lastReceived = now;
+        for (Entry entry : messageEntries) {
+            entries++;
+            if (entry.getEntryType() == EntryType.ROWDATA) {
+                rowCount += RowChange.parseFrom(entry.getStoreValue()).getRowDatasCount();
+            } else if (entry.getEntryType() == EntryType.TRANSACTIONEND) {
+                transactionCount++;
+                String xid = TransactionEnd.parseFrom(entry.getStoreValue()).getTransactionId();
+                Long sendTime = binlogServer.removeXidSendTime(Long.parseLong(xid));
+                if (sendTime != null) {
+                    latency.record(now - sendTime);
+                }
+            }
+        }
+    }
+
+    private void report(PrintStream out, List<GarbageCollectorMXBean> collectors, long[] gcCounts, long[] gcTimes) {
+        out.println("============ canal end to end benchmark ============");
+        if (firstReceived == 0) {
+            out.println("no data received");
+            return;
+        }
+
+        double seconds = Math.max(lastReceived - firstReceived, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        out.println(String.format("client=%s batchSize=%d bufferSize=%d rate=%d checksum=%s",
+            client,
+            batchSize,
+            bufferSize,
+            rate,
+            binlogServer.getBinlogs().get(0).isChecksum()));
+        if (StringUtils.isEmpty(binlogDir)) {
+            out.println(String.format("shape=%s transactions=%d rows=%d files=%d", shape, transactions, rows, files));
+        } else {
+            out.println("binlogDir=" + binlogDir);
+        }
+        out.println(String.format("duration     : %.3f s", seconds));
+        out.println(String.format("transactions : %d (%.0f/s)", transactionCount, transactionCount / seconds));
+        out.println(String.format("entries      : %d (%.0f/s)", entries, entries / seconds));
+        out.println(String.format("rows         : %d (%.0f/s)", rowCount, rowCount / seconds));
+        out.println(String.format("binlog       : %d events, %.2f MB/s",
+            binlogServer.getSentEvents(),
+            binlogServer.getSentBytes() / seconds / 1024 / 1024));
+        out.println(String.format("latency(ms)  : p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f (%d samples)",
+            latency.getPercentile(50),
+            latency.getPercentile(90),
+            latency.getPercentile(99),
+            latency.getPercentile(99.9),
+            latency.getMax(),
+            latency.getCount()));
+        for (int i = 0; i < collectors.size(); i++) {
+            GarbageCollectorMXBean collector = collectors.get(i);
+            out.println(String.format("gc %-9s: count=%d time=%d ms",
+                collector.getName(),
+                collector.getCollectionCount() - gcCounts[i],
+                collector.getCollectionTime() - gcTimes[i]));
+        }
+        out.println(String.format("heap used    : %d MB", ManagementFactory.getMemoryMXBean()
+            .getHeapMemoryUsage()
+            .getUsed() / 1024 / 1024));
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("benchmark." + name, defaultValue);
+    }
+}
@@ -0,0 +1,49 @@
+package com.alibaba.otter.canal.benchmark.e2e;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录全部延迟样本，结束时排序计算分位数，只在单个消费线程中使用
+ *
+ * @version 1.0.0
+ */
+public class LatencyRecorder {
+
+    private long[]  values = new long[1024];
+    private int     size   = 0;
+    private boolean sorted = true;
+
+    public void record(long nanos) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = nanos;
+        sorted = false;
+    }
+
+    public int getCount() {
+        return size;
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 对应分位的延迟，单位为毫秒
+     */
+    public double getPercentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(values, 0, size);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        index = Math.min(Math.max(index, 0), size - 1);
+        return values[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMax() {
+        return getPercentile(100);
+    }
+}
@@ -0,0 +1,119 @@
+package com.alibaba.otter.canal.benchmark.mysql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+
+/**
+ * 由{@linkplain FakeBinlogServer}对外提供的一个binlog文件，整个文件加载在内存中
+ *
+ * @version 1.0.0
+ */
+public class BinlogFile {
+
+    public static final int  EVENT_LEN_OFFSET = 9;
+    public static final int  LOG_POS_OFFSET   = 13;
+
+    private final String     name;
+    private final byte[]     data;
+    private final int        checksumAlg;
+    private final String     serverVersion;
+    private final int        formatDescriptionEnd;
+
+    public BinlogFile(String name, byte[] data){
+        if (data.length <= FileLogFetcher.BINLOG_MAGIC.length
+            || !Arrays.equals(FileLogFetcher.BINLOG_MAGIC, Arrays.copyOf(data, FileLogFetcher.BINLOG_MAGIC.length))) {
+            throw new CanalParseException("not a binlog file : " + name);
+        }
+
+        this.name = name;
+        this.data = data;
+        // 用format description确定checksum算法和server版本
+        int offset = FileLogFetcher.BINLOG_MAGIC.length;
+        LogDecoder decoder = new LogDecoder();
+        decoder.handle(LogEvent.FORMAT_DESCRIPTION_EVENT);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition(name));
+        try {
+            LogEvent event = decoder.decode(new LogBuffer(data, offset, data.length - offset), context);
+            if (!(event instanceof FormatDescriptionLogEvent)) {
+                throw new CanalParseException("first event is not format description : " + name);
+            }
+            FormatDescriptionLogEvent formatDescription = (FormatDescriptionLogEvent) event;
+            this.checksumAlg = formatDescription.getHeader().getChecksumAlg();
+            this.serverVersion = formatDescription.getServerVersion();
+            this.formatDescriptionEnd = offset + formatDescription.getHeader().getEventLen();
+        } catch (IOException e) {
+            throw new CanalParseException(e);
+        }
+    }
+
+    public static BinlogFile load(File file) throws IOException {
+        return new BinlogFile(file.getName(), Files.readAllBytes(file.toPath()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLength() {
+        return data.length;
+    }
+
+    public boolean isChecksum() {
+        return checksumAlg == LogEvent.BINLOG_CHECKSUM_ALG_CRC32;
+    }
+
+    public String getServerVersion() {
+        return serverVersion;
+    }
+
+    /**
+     * format description之后第一个事件的位置
+     */
+    public int getFormatDescriptionEnd() {
+        return formatDescriptionEnd;
+    }
+
+    /**
+     * 判断位点是否为某个事件的起始位置或者文件末尾
+     */
+    public boolean isEventStart(int position) {
+        int offset = FileLogFetcher.BINLOG_MAGIC.length;
+        while (offset < position && offset < data.length) {
+            offset += getEventLen(offset);
+        }
+        return offset == position;
+    }
+
+    public int getEventLen(int offset) {
+        return (int) readUint32(offset + EVENT_LEN_OFFSET);
+    }
+
+    public int getEventType(int offset) {
+        return data[offset + LogEvent.EVENT_TYPE_OFFSET] & 0xff;
+    }
+
+    public long readUint32(int offset) {
+        return (data[offset] & 0xffL) | ((data[offset + 1] & 0xffL) << 8) | ((data[offset + 2] & 0xffL) << 16)
+               | ((data[offset + 3] & 0xffL) << 24);
+    }
+
+    public long readUint64(int offset) {
+        return readUint32(offset) | (readUint32(offset + 4) << 32);
+    }
+}
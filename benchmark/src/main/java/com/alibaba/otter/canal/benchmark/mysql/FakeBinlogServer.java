@@ -0,0 +1,679 @@
+package com.alibaba.otter.canal.benchmark.mysql;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.benchmark.binlog.BinlogGenerator;
+import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
+import com.alibaba.otter.canal.parse.driver.mysql.packets.Capability;
+import com.alibaba.otter.canal.parse.driver.mysql.utils.MSC;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+
+/**
+ * 模拟mysql主库的binlog server，将内存中的binlog文件按复制协议推送给canal，用于不依赖真实mysql的端到端压测
+ *
+ * <pre>
+ * 支持的协议范围:
+ * 1. 握手和认证，不校验用户名密码
+ * 2. canal建立链接和查询表结构时用到的查询，比如show master status / show create table / select @@global.binlog_checksum，其余语句直接返回ok
+ * 3. COM_REGISTER_SLAVE / COM_BINLOG_DUMP / COM_BINLOG_DUMP_GTID，gtid模式下不按executed gtid set过滤，总是从第一个文件开头推送
+ * 4. 文件之间通过rotate事件切换，推送完所有数据后按master_heartbeat_period发送心跳
+ * 5. 按eventsPerSecond控制推送速率，0代表不限速
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class FakeBinlogServer extends AbstractCanalLifeCycle {
+
+    private static final Logger        logger               = LoggerFactory.getLogger(FakeBinlogServer.class);
+    private static final Charset       UTF_8                = Charset.forName("UTF-8");
+    private static final Pattern       VARIABLE_PATTERN     = Pattern.compile("like\\s+'([^']+)'");
+    private static final int           COM_QUIT             = 0x01;
+    private static final int           COM_QUERY            = 0x03;
+    private static final int           COM_PING             = 0x0e;
+    private static final int           COM_BINLOG_DUMP      = 0x12;
+    private static final int           COM_REGISTER_SLAVE   = 0x15;
+    private static final int           COM_BINLOG_DUMP_GTID = 0x1e;
+    private static final int           SERVER_CAPABILITIES  = Capability.CLIENT_LONG_PASSWORD
+                                                              | Capability.CLIENT_FOUND_ROWS
+                                                              | Capability.CLIENT_LONG_FLAG
+                                                              | Capability.CLIENT_CONNECT_WITH_DB
+                                                              | Capability.CLIENT_PROTOCOL_41
+                                                              | Capability.CLIENT_TRANSACTIONS
+                                                              | Capability.CLIENT_SECURE_CONNECTION;
+    private static final int           FIELD_TYPE_VARSTRING = 0xfd;
+    private static final int           ARTIFICIAL_FLAG      = 0x20;   // LOG_EVENT_ARTIFICIAL_F
+    private static final int           MAX_PACKET_LENGTH    = 0xffffff;
+
+    private String                     host                 = "127.0.0.1";
+    private int                        port                 = 0;      // 0代表随机端口
+    private long                       serverId             = 1L;
+    private long                       eventsPerSecond      = 0;
+    private boolean                    recordXidSendTime    = false;
+    private final List<BinlogFile>     binlogs              = new ArrayList<BinlogFile>();
+    private final Map<String, String>  tables               = new ConcurrentHashMap<String, String>();
+
+    private ServerSocket               serverSocket;
+    private ExecutorService            executor;
+    private final AtomicLong           connectionIds        = new AtomicLong(0);
+    private final Map<Long, Session>   sessions             = new ConcurrentHashMap<Long, Session>();
+    private final Map<Long, Long>      xidSendTimes         = new ConcurrentHashMap<Long, Long>();
+    private final AtomicLong           sentEvents           = new AtomicLong(0);
+    private final AtomicLong           sentBytes            = new AtomicLong(0);
+
+    public void start() {
+        if (binlogs.isEmpty()) {
+            throw new IllegalStateException("no binlog file");
+        }
+
+        super.start();
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            throw new IllegalStateException("bind " + host + ":" + port + " failed", e);
+        }
+
+        executor = Executors.newCachedThreadPool(new NamedThreadFactory("fake-binlog-server"));
+        executor.submit(new Runnable() {
+
+            public void run() {
+                accept();
+            }
+        });
+        logger.info("fake binlog server started at {}", getAddress());
+    }
+
+    public void stop() {
+        super.stop();
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+
+        for (Session session : sessions.values()) {
+            session.close();
+        }
+        executor.shutdownNow();
+        logger.info("fake binlog server stopped");
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(host, serverSocket.getLocalPort());
+    }
+
+    public void addBinlog(BinlogFile binlog) {
+        if (!binlogs.isEmpty() && binlogs.get(0).isChecksum() != binlog.isChecksum()) {
+            throw new IllegalArgumentException("binlog checksum is not consistent : " + binlog.getName());
+        }
+        binlogs.add(binlog);
+    }
+
+    public void addTable(String schema, String table, String createDdl) {
+        tables.put(tableKey(schema, table), createDdl);
+    }
+
+    /**
+     * 返回并清除xid事件的推送时间(System.nanoTime)，需要开启recordXidSendTime
+     */
+    public Long removeXidSendTime(long xid) {
+        return xidSendTimes.remove(xid);
+    }
+
+    public long getSentEvents() {
+        return sentEvents.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public List<BinlogFile> getBinlogs() {
+        return Collections.unmodifiableList(binlogs);
+    }
+
+    private void accept() {
+        while (isStart()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                final Session session = new Session(connectionIds.incrementAndGet(), socket);
+                sessions.put(session.connectionId, session);
+                executor.submit(new Runnable() {
+
+                    public void run() {
+                        session.run();
+                    }
+                });
+            } catch (IOException e) {
+                if (isStart()) {
+                    logger.error("accept failed", e);
+                }
+            }
+        }
+    }
+
+    private BinlogFile findBinlog(String name) {
+        for (BinlogFile binlog : binlogs) {
+            if (binlog.getName().equals(name)) {
+                return binlog;
+            }
+        }
+        return null;
+    }
+
+    private BinlogFile nextBinlog(BinlogFile binlog) {
+        int index = binlogs.indexOf(binlog);
+        return index + 1 < binlogs.size() ? binlogs.get(index + 1) : null;
+    }
+
+    private static String tableKey(String schema, String table) {
+        return (schema + "." + table).toLowerCase();
+    }
+
+    /**
+     * 一个客户端链接，命令处理和binlog推送都在同一个线程内完成
+     */
+    private class Session {
+
+        private final long             connectionId;
+        private final Socket           socket;
+        private DataInputStream        input;
+        private OutputStream           output;
+        private int                    sequence;
+        private long                   heartbeatPeriodNanos;
+
+        Session(long connectionId, Socket socket){
+            this.connectionId = connectionId;
+            this.socket = socket;
+        }
+
+        void run() {
+            try {
+                input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 16 * 1024));
+                output = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+                handshake();
+                while (isStart()) {
+                    byte[] command = readPacket();
+                    if (!dispatch(command)) {
+                        break;
+                    }
+                }
+            } catch (EOFException e) {
+                // 客户端关闭链接
+            } catch (SocketException e) {
+                logger.debug("connection {} closed : {}", connectionId, e.getMessage());
+            } catch (Throwable e) {
+                logger.error("connection " + connectionId + " failed", e);
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            sessions.remove(connectionId);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        private void handshake() throws IOException {
+            byte[] seed = "abcdefgh".getBytes(UTF_8);
+            byte[] restOfSeed = "ijklmnopqrst".getBytes(UTF_8);
+            PacketOutput packet = new PacketOutput();
+            packet.writeInt8(MSC.DEFAULT_PROTOCOL_VERSION);
+            packet.writeNullTerminated(binlogs.get(0).getServerVersion());
+            packet.writeInt32(connectionId);
+            packet.writeRaw(seed);
+            packet.writeInt8(0);
+            packet.writeInt16(SERVER_CAPABILITIES & 0xffff);
+            packet.writeInt8(33); // utf8_general_ci
+            packet.writeInt16(0x0002); // SERVER_STATUS_AUTOCOMMIT
+            packet.writeInt16(SERVER_CAPABILITIES >>> 16);
+            packet.writeInt8(seed.length + restOfSeed.length + 1);
+            packet.writeZero(10);
+            packet.writeRaw(restOfSeed);
+            packet.writeInt8(0);
+            sequence = 0;
+            writePacket(packet.toByteArray());
+            output.flush();
+
+            // 不校验认证信息，直接返回ok
+            readPacket();
+            writeOk();
+        }
+
+        private boolean dispatch(byte[] command) throws IOException {
+            int type = command[0] & 0xff;
+            switch (type) {
+                case COM_QUIT:
+                    return false;
+                case COM_PING:
+                case COM_REGISTER_SLAVE:
+                    writeOk();
+                    return true;
+                case COM_QUERY:
+                    query(new String(command, 1, command.length - 1, UTF_8).trim());
+                    return true;
+                case COM_BINLOG_DUMP: {
+                    long position = readUint32(command, 1);
+                    String fileName = new String(command, 11, command.length - 11, UTF_8);
+                    dump(fileName, position);
+                    return false;
+                }
+                case COM_BINLOG_DUMP_GTID:
+                    // 不按gtid过滤，总是从第一个文件开始推送
+                    dump(binlogs.get(0).getName(), FileLogFetcher.BINLOG_MAGIC.length);
+                    return false;
+                default:
+                    writeError(1047, "08S01", "Unknown command " + type);
+                    return true;
+            }
+        }
+
+        private void query(String sql) throws IOException {
+            String lower = sql.toLowerCase();
+            if (lower.startsWith("set ")) {
+                Matcher matcher = Pattern.compile("@master_heartbeat_period\\s*=\\s*(\\d+)").matcher(lower);
+                if (matcher.find()) {
+                    heartbeatPeriodNanos = Long.parseLong(matcher.group(1));
+                }
+                writeOk();
+            } else if (lower.startsWith("select @@global.binlog_checksum")) {
+                writeResultSet(new String[] { "@@global.binlog_checksum" }, new String[] { checksumName() });
+            } else if (lower.startsWith("select 1")) {
+                writeResultSet(new String[] { "1" }, new String[] { "1" });
+            } else if (lower.startsWith("show variables") || lower.startsWith("show global variables")) {
+                showVariables(lower);
+            } else if (lower.startsWith("show master status")) {
+                BinlogFile last = binlogs.get(binlogs.size() - 1);
+                writeResultSet(new String[] { "File", "Position", "Binlog_Do_DB", "Binlog_Ignore_DB",
+                        "Executed_Gtid_Set" }, new String[] { last.getName(), String.valueOf(last.getLength()), "",
+                        "", "" });
+            } else if (lower.startsWith("show binary logs")) {
+                List<String> rows = new ArrayList<String>();
+                for (BinlogFile binlog : binlogs) {
+                    rows.add(binlog.getName());
+                    rows.add(String.valueOf(binlog.getLength()));
+                }
+                writeResultSet(new String[] { "Log_name", "File_size" }, rows.toArray(new String[rows.size()]));
+            } else if (lower.startsWith("show binlog events")) {
+                BinlogFile first = binlogs.get(0);
+                writeResultSet(new String[] { "Log_name", "Pos", "Event_type", "Server_id", "End_log_pos", "Info" },
+                    new String[] { first.getName(), String.valueOf(FileLogFetcher.BINLOG_MAGIC.length),
+                            "Format_desc", String.valueOf(serverId),
+                            String.valueOf(first.getFormatDescriptionEnd()), "" });
+            } else if (lower.startsWith("show slave status")) {
+                writeResultSet(new String[] { "Slave_IO_State" }, new String[0]);
+            } else if (lower.startsWith("show create table")) {
+                String fullName = StringUtils.remove(sql.substring("show create table".length()).trim(), '`');
+                String ddl = tables.get(fullName.toLowerCase());
+                if (ddl == null) {
+                    writeError(1146, "42S02", "Table '" + fullName + "' doesn't exist");
+                } else {
+                    writeResultSet(new String[] { "Table", "Create Table" },
+                        new String[] { StringUtils.substringAfter(fullName, "."), ddl });
+                }
+            } else if (lower.startsWith("kill")) {
+                long id = Long.parseLong(StringUtils.substringAfterLast(lower, " ").trim());
+                Session session = sessions.get(id);
+                if (session != null) {
+                    session.close();
+                }
+                writeOk();
+            } else if (lower.startsWith("select") || lower.startsWith("show") || lower.startsWith("desc")) {
+                writeError(1064, "42000", "unsupported query : " + sql);
+            } else {
+                // 心跳等更新语句
+                writeOk();
+            }
+        }
+
+        private void showVariables(String sql) throws IOException {
+            Matcher matcher = VARIABLE_PATTERN.matcher(sql);
+            String name = matcher.find() ? matcher.group(1) : "";
+            String value = null;
+            if ("server_id".equals(name)) {
+                value = String.valueOf(serverId);
+            } else if ("binlog_format".equals(name)) {
+                value = "ROW";
+            } else if ("binlog_row_image".equals(name)) {
+                value = "FULL";
+            } else if ("binlog_checksum".equals(name)) {
+                value = checksumName();
+            } else if ("version".equals(name)) {
+                value = binlogs.get(0).getServerVersion();
+            } else if ("gtid_mode".equals(name)) {
+                value = "OFF";
+            }
+
+            String[] row = value == null ? new String[0] : new String[] { name, value };
+            writeResultSet(new String[] { "Variable_name", "Value" }, row);
+        }
+
+        private String checksumName() {
+            return binlogs.get(0).isChecksum() ? "CRC32" : "NONE";
+        }
+
+        private void dump(String fileName, long position) throws IOException {
+            BinlogFile binlog = findBinlog(fileName);
+            if (binlog == null) {
+                writeError(1236, "HY000", "Could not find first log file name in binary log index file");
+                return;
+            }
+            if (!binlog.isEventStart((int) position)) {
+                writeError(1236, "HY000", "Client requested master to start replication from impossible position");
+                return;
+            }
+
+            logger.info("connection {} start dump from {}:{}", new Object[] { connectionId, fileName, position });
+            Pacer pacer = new Pacer(eventsPerSecond);
+            writeEvent(rotateEvent(binlog, (int) position, 0, true), pacer);
+            int offset = (int) position;
+            if (offset > FileLogFetcher.BINLOG_MAGIC.length) {
+                // 从文件中间开始时同样需要先发送format description，log_pos置为0避免客户端更新位点
+                byte[] data = binlog.getData();
+                int start = FileLogFetcher.BINLOG_MAGIC.length;
+                byte[] formatDescription = Arrays.copyOfRange(data, start, binlog.getFormatDescriptionEnd());
+                writeEvent(withLogPos(formatDescription, 0, binlog.isChecksum()), pacer);
+            }
+
+            while (isStart()) {
+                byte[] data = binlog.getData();
+                while (offset < binlog.getLength()) {
+                    int eventLen = binlog.getEventLen(offset);
+                    if (binlog.getEventType(offset) == LogEvent.XID_EVENT && recordXidSendTime) {
+                        long xid = binlog.readUint64(offset + FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN);
+                        xidSendTimes.put(xid, System.nanoTime());
+                        writeEvent(data, offset, eventLen, pacer);
+                        // 按事务刷新，保证延迟统计的准确
+                        output.flush();
+                    } else {
+                        writeEvent(data, offset, eventLen, pacer);
+                    }
+                    offset += eventLen;
+                }
+
+                BinlogFile next = nextBinlog(binlog);
+                if (next == null) {
+                    break;
+                }
+                writeEvent(rotateEvent(next, FileLogFetcher.BINLOG_MAGIC.length, binlog.getLength(), false), pacer);
+                binlog = next;
+                offset = FileLogFetcher.BINLOG_MAGIC.length;
+            }
+            output.flush();
+            logger.info("connection {} reach the end of {}", connectionId, binlog.getName());
+
+            // 数据推送完毕，保持链接并发送心跳
+            long period = heartbeatPeriodNanos > 0 ? heartbeatPeriodNanos : TimeUnit.SECONDS.toNanos(1);
+            while (isStart() && !socket.isClosed()) {
+                LockSupport.parkNanos(period);
+                if (heartbeatPeriodNanos > 0) {
+                    writeEvent(heartbeatEvent(binlog), null);
+                    output.flush();
+                }
+            }
+        }
+
+        /**
+         * 文件切换时的rotate事件，artificial代表dump开始时的假rotate
+         */
+        private byte[] rotateEvent(BinlogFile binlog, int position, long logPos, boolean artificial) {
+            PacketOutput body = new PacketOutput();
+            body.writeInt64(position);
+            body.writeString(binlog.getName());
+            return event(LogEvent.ROTATE_EVENT, artificial ? 0 : System.currentTimeMillis() / 1000, logPos,
+                artificial ? ARTIFICIAL_FLAG : 0, body, binlog.isChecksum());
+        }
+
+        private byte[] heartbeatEvent(BinlogFile binlog) {
+            PacketOutput body = new PacketOutput();
+            body.writeString(binlog.getName());
+            return event(LogEvent.HEARTBEAT_LOG_EVENT, 0, binlog.getLength(), ARTIFICIAL_FLAG, body,
+                binlog.isChecksum());
+        }
+
+        private byte[] event(int type, long when, long logPos, int flags, PacketOutput body, boolean checksum) {
+            int eventLen = FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN + body.size();
+            if (checksum) {
+                eventLen += LogEvent.BINLOG_CHECKSUM_LEN;
+            }
+            PacketOutput event = new PacketOutput();
+            event.writeInt32(when);
+            event.writeInt8(type);
+            event.writeInt32(serverId);
+            event.writeInt32(eventLen);
+            event.writeInt32(logPos);
+            event.writeInt16(flags);
+            event.writeRaw(body.toByteArray());
+            if (checksum) {
+                BinlogGenerator.appendChecksum(event);
+            }
+            return event.toByteArray();
+        }
+
+        private byte[] withLogPos(byte[] event, long logPos, boolean checksum) {
+            PacketOutput output = new PacketOutput();
+            output.write(event, 0, BinlogFile.LOG_POS_OFFSET);
+            output.writeInt32(logPos);
+            int bodyStart = BinlogFile.LOG_POS_OFFSET + 4;
+            int bodyEnd = checksum ? event.length - LogEvent.BINLOG_CHECKSUM_LEN : event.length;
+            output.write(event, bodyStart, bodyEnd - bodyStart);
+            if (checksum) {
+                BinlogGenerator.appendChecksum(output);
+            }
+            return output.toByteArray();
+        }
+
+        private void writeEvent(byte[] event, Pacer pacer) throws IOException {
+            writeEvent(event, 0, event.length, pacer);
+        }
+
+        /**
+         * 每个事件一个包，包体以0x00开头
+         */
+        private void writeEvent(byte[] data, int offset, int len, Pacer pacer) throws IOException {
+            if (pacer != null && pacer.acquire()) {
+                output.flush();
+                pacer.await();
+            }
+
+            int remaining = len + 1;
+            boolean first = true;
+            // 超过16M的事件需要拆成多个包
+            do {
+                int packetLen = Math.min(remaining, MAX_PACKET_LENGTH);
+                writeHeader(packetLen);
+                int dataLen = packetLen;
+                if (first) {
+                    output.write(0);
+                    dataLen--;
+                    first = false;
+                }
+                output.write(data, offset, dataLen);
+                offset += dataLen;
+                remaining -= packetLen;
+                if (remaining == 0 && packetLen == MAX_PACKET_LENGTH) {
+                    writeHeader(0);
+                }
+            } while (remaining > 0);
+
+            sentEvents.incrementAndGet();
+            sentBytes.addAndGet(len);
+        }
+
+        private void writeOk() throws IOException {
+            PacketOutput packet = new PacketOutput();
+            packet.writeInt8(0x00);
+            packet.writeLength(0); // affected rows
+            packet.writeLength(0); // insert id
+            packet.writeInt16(0x0002);
+            packet.writeInt16(0);
+            writePacket(packet.toByteArray());
+            output.flush();
+        }
+
+        private void writeError(int errorNumber, String sqlState, String message) throws IOException {
+            PacketOutput packet = new PacketOutput();
+            packet.writeInt8(0xff);
+            packet.writeInt16(errorNumber);
+            packet.writeString("#");
+            packet.writeString(sqlState);
+            packet.writeString(message);
+            writePacket(packet.toByteArray());
+            output.flush();
+        }
+
+        /**
+         * 所有字段都按varchar返回，rows为按行展开后的字段值
+         */
+        private void writeResultSet(String[] columns, String[] rows) throws IOException {
+            writePacket(new PacketOutput().writeLength(columns.length).toByteArray());
+            for (String column : columns) {
+                PacketOutput field = new PacketOutput();
+                field.writeLengthCodedString("def");
+                field.writeLengthCodedString("");
+                field.writeLengthCodedString("");
+                field.writeLengthCodedString("");
+                field.writeLengthCodedString(column);
+                field.writeLengthCodedString(column);
+                field.writeInt8(0x0c);
+                field.writeInt16(33);
+                field.writeInt32(1024);
+                field.writeInt8(FIELD_TYPE_VARSTRING);
+                field.writeInt16(0);
+                field.writeInt8(0);
+                field.writeInt16(0);
+                writePacket(field.toByteArray());
+            }
+            writeEof();
+            for (int i = 0; i < rows.length; i += columns.length) {
+                PacketOutput row = new PacketOutput();
+                for (int j = 0; j < columns.length; j++) {
+                    row.writeLengthCodedString(rows[i + j]);
+                }
+                writePacket(row.toByteArray());
+            }
+            writeEof();
+            output.flush();
+        }
+
+        private void writeEof() throws IOException {
+            writePacket(new PacketOutput().writeInt8(0xfe).writeInt16(0).writeInt16(0x0002).toByteArray());
+        }
+
+        private void writePacket(byte[] body) throws IOException {
+            writeHeader(body.length);
+            output.write(body);
+        }
+
+        private void writeHeader(int len) throws IOException {
+            output.write(len & 0xff);
+            output.write((len >>> 8) & 0xff);
+            output.write((len >>> 16) & 0xff);
+            output.write(sequence++ & 0xff);
+        }
+
+        /**
+         * 读取客户端的一个命令包，之后的响应序号从包序号+1开始
+         */
+        private byte[] readPacket() throws IOException {
+            int len = input.readUnsignedByte() | (input.readUnsignedByte() << 8) | (input.readUnsignedByte() << 16);
+            sequence = input.readUnsignedByte() + 1;
+            byte[] body = new byte[len];
+            input.readFully(body);
+            return body;
+        }
+    }
+
+    /**
+     * 按固定间隔推送事件，落后于计划时不等待直接追赶
+     */
+    private static class Pacer {
+
+        private final long intervalNanos;
+        private long       next;
+
+        Pacer(long eventsPerSecond){
+            this.intervalNanos = eventsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / eventsPerSecond : 0;
+            this.next = System.nanoTime();
+        }
+
+        /**
+         * @return 是否需要等待
+         */
+        boolean acquire() {
+            if (intervalNanos <= 0) {
+                return false;
+            }
+            next += intervalNanos;
+            return next > System.nanoTime();
+        }
+
+        void await() {
+            long wait;
+            while ((wait = next - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    private static long readUint32(byte[] data, int offset) {
+        return (data[offset] & 0xffL) | ((data[offset + 1] & 0xffL) << 8) | ((data[offset + 2] & 0xffL) << 16)
+               | ((data[offset + 3] & 0xffL) << 24);
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public void setServerId(long serverId) {
+        this.serverId = serverId;
+    }
+
+    public void setEventsPerSecond(long eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+    }
+
+    public void setRecordXidSendTime(boolean recordXidSendTime) {
+        this.recordXidSendTime = recordXidSendTime;
+    }
+}
@@ -0,0 +1,92 @@
+package com.alibaba.otter.canal.benchmark.mysql;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * 服务端构造mysql协议包体的工具，整数均为little-endian
+ *
+ * @version 1.0.0
+ */
+class PacketOutput extends ByteArrayOutputStream {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public PacketOutput(){
+        super(64);
+    }
+
+    public PacketOutput writeRaw(byte[] data) {
+        write(data, 0, data.length);
+        return this;
+    }
+
+    public PacketOutput writeZero(int len) {
+        for (int i = 0; i < len; i++) {
+            write(0);
+        }
+        return this;
+    }
+
+    public PacketOutput writeInt8(int value) {
+        write(value & 0xff);
+        return this;
+    }
+
+    public PacketOutput writeInt16(int value) {
+        return writeLittleEndian(value, 2);
+    }
+
+    public PacketOutput writeInt24(int value) {
+        return writeLittleEndian(value, 3);
+    }
+
+    public PacketOutput writeInt32(long value) {
+        return writeLittleEndian(value, 4);
+    }
+
+    public PacketOutput writeInt64(long value) {
+        return writeLittleEndian(value, 8);
+    }
+
+    public PacketOutput writeNullTerminated(String value) {
+        writeRaw(value.getBytes(UTF_8));
+        return writeInt8(0);
+    }
+
+    public PacketOutput writeString(String value) {
+        return writeRaw(value.getBytes(UTF_8));
+    }
+
+    /**
+     * length coded binary
+     */
+    public PacketOutput writeLength(long value) {
+        if (value < 251) {
+            writeInt8((int) value);
+        } else if (value < 0x10000L) {
+            writeInt8(252);
+            writeInt16((int) value);
+        } else if (value < 0x1000000L) {
+            writeInt8(253);
+            writeInt24((int) value);
+        } else {
+            writeInt8(254);
+            writeInt64(value);
+        }
+        return this;
+    }
+
+    public PacketOutput writeLengthCodedString(String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeLength(bytes.length);
+        return writeRaw(bytes);
+    }
+
+    private PacketOutput writeLittleEndian(long value, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            write((int) (value >>> (i * 8)) & 0xff);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,82 @@
+package com.alibaba.otter.canal.benchmark.parse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.alibaba.otter.canal.benchmark.binlog.BinlogGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.EntryGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.TableShape;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+
+/**
+ * LogDecoder.decode的压测，一次调用解码整个binlog文件
+ *
+ * <pre>
+ * 默认使用生成的binlog，指定-p binlogFile=/path/to/mysql-bin.000001时使用录制的binlog文件(此时忽略shape)
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LogDecoderBenchmark {
+
+    @Param({ "NARROW", "WIDE", "JSON", "BLOB" })
+    private String shape;
+
+    @Param({ "" })
+    private String binlogFile;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+        if (StringUtils.isNotEmpty(binlogFile)) {
+            data = Files.readAllBytes(new File(binlogFile).toPath());
+        } else {
+            data = BinlogGenerator.generate(TableShape.valueOf(shape), 1000, 10);
+        }
+    }
+
+    @Benchmark
+    public int decode(Blackhole blackhole) throws IOException {
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition(EntryGenerator.BINLOG_FILE));
+        int offset = FileLogFetcher.BINLOG_MAGIC.length;
+        LogBuffer buffer = new LogBuffer(data, offset, data.length - offset);
+
+        int count = 0;
+        LogEvent event;
+        while ((event = decoder.decode(buffer, context)) != null) {
+            blackhole.consume(event);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,84 @@
+package com.alibaba.otter.canal.benchmark.parse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.otter.canal.benchmark.binlog.BinlogGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.EntryGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.TableShape;
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogEvent;
+
+/**
+ * LogEventConvert.parseRowsEvent的压测，结果为每秒解析的行数
+ *
+ * <pre>
+ * rows event的行数据在解析时会被消费，每次调用需要重新decode一次table_map和rows event，这部分开销也会计入
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LogEventConvertBenchmark {
+
+    private static final int ROWS = 100;
+
+    @Param({ "NARROW", "WIDE", "JSON", "BLOB" })
+    private String           shape;
+
+    private byte[]           data;
+    private TableMeta        tableMeta;
+    private LogEventConvert  convert;
+    private LogDecoder       decoder;
+
+    @Setup
+    public void setup() {
+        TableShape tableShape = TableShape.valueOf(shape);
+        BinlogGenerator generator = new BinlogGenerator(tableShape);
+        byte[] tableMap = generator.tableMapEvent();
+        byte[] rows = generator.writeRowsEvent(0, ROWS);
+        data = new byte[tableMap.length + rows.length];
+        System.arraycopy(tableMap, 0, data, 0, tableMap.length);
+        System.arraycopy(rows, 0, data, tableMap.length, rows.length);
+
+        tableMeta = EntryGenerator.buildTableMeta(tableShape);
+        convert = EntryGenerator.buildConvert();
+        decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Entry parseRowsEvent() throws IOException {
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition(EntryGenerator.BINLOG_FILE));
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        decoder.decode(buffer, context); // table map
+        RowsLogEvent event = (RowsLogEvent) decoder.decode(buffer, context);
+        return convert.parseRowsEvent(event, tableMeta);
+    }
+}
@@ -0,0 +1,70 @@
+package com.alibaba.otter.canal.benchmark.parse;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.alibaba.otter.canal.benchmark.binlog.BinlogGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.ColumnType;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer;
+
+/**
+ * 按字段类型压测RowsLogBuffer的取值，结果为每秒解析的字段数
+ *
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RowsLogBufferBenchmark {
+
+    private static final int ROWS    = 1000;
+    private static final String CHARSET = "UTF-8";
+
+    @Param({ "INT", "BIGINT", "VARCHAR", "DATETIME", "JSON", "BLOB" })
+    private String columnType;
+
+    private ColumnType type;
+    private byte[]     image;
+    private BitSet     columns;
+
+    @Setup
+    public void setup() {
+        type = ColumnType.valueOf(columnType);
+        image = BinlogGenerator.rowsImage(new ColumnType[] { type }, 0, ROWS);
+        columns = new BitSet(1);
+        columns.set(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void nextValue(Blackhole blackhole) {
+        int jsonColumnCount = (type == ColumnType.JSON) ? 1 : 0;
+        RowsLogBuffer buffer = new RowsLogBuffer(new LogBuffer(image, 0, image.length),
+            1,
+            CHARSET,
+            jsonColumnCount,
+            false);
+        while (buffer.nextOneRow(columns)) {
+            buffer.nextValue("c0", 0, type.getType(), type.getMeta());
+            blackhole.consume(buffer.getValue());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.alibaba.otter.canal.benchmark.server;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.otter.canal.benchmark.binlog.EntryGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.TableShape;
+import com.alibaba.otter.canal.common.MQMessageUtils;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+import com.alibaba.otter.canal.protocol.Message;
+
+/**
+ * MQ投递前的按pk hash分区以及flat message转换的压测
+ *
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MQMessageUtilsBenchmark {
+
+    private static final String PK_HASH_CONFIGS = ".*\\..*:id";
+
+    @Param({ "NARROW", "WIDE", "JSON" })
+    private String              shape;
+
+    @Param({ "1", "16" })
+    private int                 partitions;
+
+    private Message             message;
+
+    @Setup
+    public void setup() {
+        message = new Message(1L, EntryGenerator.generate(TableShape.valueOf(shape), 100, 10));
+    }
+
+    @Benchmark
+    public Message[] messagePartition() {
+        return MQMessageUtils.messagePartition(message, partitions, PK_HASH_CONFIGS);
+    }
+
+    @Benchmark
+    public List<FlatMessage> messageConverter() {
+        return MQMessageUtils.messageConverter(message);
+    }
+}
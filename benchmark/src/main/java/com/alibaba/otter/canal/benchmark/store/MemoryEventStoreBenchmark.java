@@ -0,0 +1,78 @@
+package com.alibaba.otter.canal.benchmark.store;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.otter.canal.benchmark.binlog.EntryGenerator;
+import com.alibaba.otter.canal.benchmark.binlog.TableShape;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * MemoryEventStoreWithBuffer的put/get/ack一轮的压测，结果为每秒流转的event数
+ *
+ * <pre>
+ * 每轮put同一批event，ack只比较当前get窗口内的位点，重复使用不影响结果
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MemoryEventStoreBenchmark {
+
+    @Param({ "NARROW", "WIDE" })
+    private String                     shape;
+
+    @Param({ "100", "1000" })
+    private int                        batchSize;
+
+    private MemoryEventStoreWithBuffer eventStore;
+    private List<Event>                events;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // 每个事务1行，对应TRANSACTIONBEGIN/ROWDATA/TRANSACTIONEND三个entry
+        events = EntryGenerator.toEvents(EntryGenerator.generate(TableShape.valueOf(shape), batchSize / 3, 1));
+        eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16 * 1024);
+        eventStore.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventStore.stop();
+    }
+
+    @Benchmark
+    public Events<Event> putGetAck() throws CanalStoreException, InterruptedException {
+        if (!eventStore.tryPut(events)) {
+            throw new CanalStoreException("put failed, buffer is full");
+        }
+        Events<Event> result = eventStore.tryGet(null, events.size());
+        Position end = result.getPositionRange().getEnd();
+        eventStore.ack(end);
+        return result;
+    }
+}
@@ -1,6 +1,7 @@
 package com.alibaba.otter.canal.admin.controller;
 
 import java.security.NoSuchAlgorithmException;
+import java.util.function.LongConsumer;
 
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +12,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import com.alibaba.otter.canal.admin.model.BaseModel;
 import com.alibaba.otter.canal.admin.model.CanalConfig;
@@ -28,7 +30,9 @@ import com.alibaba.otter.canal.protocol.SecurityUtil;
 @RequestMapping("/api/{env}/config")
 public class PollingConfigController {
 
-    private static final byte[] seeds = "canal is best!".getBytes();
+    private static final byte[] seeds            = "canal is best!".getBytes();
+    // watch请求最长挂起时间，避免异步请求长期不返回
+    private static final long   MAX_WATCH_TIMEOUT = 30 * 1000L;
 
     @Value(value = "${canal.adminUser}")
     String                      user;
@@ -90,6 +94,33 @@ public class PollingConfigController {
         return BaseModel.getInstance(canalInstanceConfig);
     }
 
+    /**
+     * 长轮询等待instance配置变化，版本号与当前不一致或超时后返回当前版本号，挂起期间不占用web容器线程
+     */
+    @GetMapping(value = "/instances_watch")
+    public DeferredResult<BaseModel<Long>> instancesWatch(@RequestHeader String user, @RequestHeader String passwd,
+                                                          @RequestParam Long version, @RequestParam Long timeout,
+                                                          @PathVariable String env) {
+        if (!auth(user, passwd)) {
+            throw new RuntimeException("auth :" + user + " is failed");
+        }
+
+        long wait = Math.max(0, Math.min(timeout, MAX_WATCH_TIMEOUT));
+        if (wait == 0) {
+            // 异步请求的超时时间为0表示不超时，这里直接返回
+            DeferredResult<BaseModel<Long>> result = new DeferredResult<>();
+            result.setResult(BaseModel.getInstance(pollingConfigService.getInstanceVersion()));
+            return result;
+        }
+
+        DeferredResult<BaseModel<Long>> result = new DeferredResult<>(wait);
+        LongConsumer watcher = current -> result.setResult(BaseModel.getInstance(current));
+        result.onTimeout(() -> watcher.accept(pollingConfigService.getInstanceVersion()));
+        result.onCompletion(() -> pollingConfigService.unwatchInstanceChanged(watcher));
+        pollingConfigService.watchInstanceChanged(version, watcher);
+        return result;
+    }
+
     private boolean auth(String user, String passwd) {
         // 如果user/passwd密码为空,则任何用户账户都能登录
         if ((StringUtils.isEmpty(this.user) || StringUtils.equals(this.user, user))) {
@@ -1,5 +1,7 @@
 package com.alibaba.otter.canal.admin.service;
 
+import java.util.function.LongConsumer;
+
 import com.alibaba.otter.canal.admin.model.CanalConfig;
 import com.alibaba.otter.canal.admin.model.CanalInstanceConfig;
 
@@ -12,4 +14,24 @@ public interface PollingConfigService {
     CanalInstanceConfig getInstancesConfig(String ip, Integer port, String md5);
 
     CanalInstanceConfig getInstanceConfig(String destination, String md5);
+
+    /**
+     * instance配置发生变化，唤醒等待中的watch请求
+     */
+    void notifyInstanceChanged();
+
+    /**
+     * 注册instance配置变化的监听，版本号与当前不一致时立即回调，否则在配置变化时回调新的版本号
+     */
+    void watchInstanceChanged(long version, LongConsumer watcher);
+
+    /**
+     * 取消instance配置变化的监听
+     */
+    void unwatchInstanceChanged(LongConsumer watcher);
+
+    /**
+     * @return instance配置当前的版本号
+     */
+    long getInstanceVersion();
 }
@@ -15,6 +15,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.alibaba.otter.canal.admin.common.Threads;
@@ -25,6 +26,7 @@ import com.alibaba.otter.canal.admin.model.CanalInstanceConfig;
 import com.alibaba.otter.canal.admin.model.NodeServer;
 import com.alibaba.otter.canal.admin.model.Pager;
 import com.alibaba.otter.canal.admin.service.CanalInstanceService;
+import com.alibaba.otter.canal.admin.service.PollingConfigService;
 import com.alibaba.otter.canal.protocol.SecurityUtil;
 import com.google.common.collect.Lists;
 
@@ -37,6 +39,9 @@ import com.google.common.collect.Lists;
 @Service
 public class CanalInstanceServiceImpl implements CanalInstanceService {
 
+    @Autowired
+    PollingConfigService pollingConfigService;
+
     public Pager<CanalInstanceConfig> findList(CanalInstanceConfig canalInstanceConfig, Pager<CanalInstanceConfig> pager) {
         Query<CanalInstanceConfig> query = CanalInstanceConfig.find.query()
             .setDisableLazyLoading(true)
@@ -190,6 +195,7 @@ public class CanalInstanceServiceImpl implements CanalInstanceService {
         }
 
         canalInstanceConfig.insert();
+        pollingConfigService.notifyInstanceChanged();
     }
 
     public CanalInstanceConfig detail(Long id) {
@@ -226,12 +232,14 @@ public class CanalInstanceServiceImpl implements CanalInstanceService {
         }
 
         canalInstanceConfig.update("content", "contentMd5", "clusterId", "serverId");
+        pollingConfigService.notifyInstanceChanged();
     }
 
     public void delete(Long id) {
         CanalInstanceConfig canalInstanceConfig = CanalInstanceConfig.find.byId(id);
         if (canalInstanceConfig != null) {
             canalInstanceConfig.delete();
+            pollingConfigService.notifyInstanceChanged();
         }
     }
 
@@ -317,6 +325,7 @@ public class CanalInstanceServiceImpl implements CanalInstanceService {
         } else {
             return false;
         }
+        pollingConfigService.notifyInstanceChanged();
         return true;
     }
 }
@@ -2,6 +2,10 @@ package com.alibaba.otter.canal.admin.service.impl;
 
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang.StringUtils;
@@ -28,6 +32,11 @@ public class PollingConfigServiceImpl implements PollingConfigService {
     @Autowired
     CanalClusterService canalClusterService;
 
+    // instance配置的版本号，以启动时间作为初始值，admin重启后canal端的watch会立即返回并触发一次全量scan
+    private final AtomicLong        instanceVersion  = new AtomicLong(System.currentTimeMillis());
+    // 挂起中的watch请求，配置变化时统一回调，不占用web容器线程
+    private final Set<LongConsumer> instanceWatchers = ConcurrentHashMap.newKeySet();
+
     public boolean autoRegister(String ip, Integer adminPort, String cluster) {
         NodeServer server = NodeServer.find.query().where().eq("ip", ip).eq("adminPort", adminPort).findOne();
         if (server == null) {
@@ -131,4 +140,28 @@ public class PollingConfigServiceImpl implements PollingConfigService {
             return instanceConfig;
         }
     }
+
+    public void notifyInstanceChanged() {
+        long version = instanceVersion.incrementAndGet();
+        for (LongConsumer watcher : instanceWatchers) {
+            watcher.accept(version);
+        }
+    }
+
+    public void watchInstanceChanged(long version, LongConsumer watcher) {
+        instanceWatchers.add(watcher);
+        // 注册之后再检查一次版本号，避免丢失注册之前发生的变化
+        long current = instanceVersion.get();
+        if (current != version) {
+            watcher.accept(current);
+        }
+    }
+
+    public void unwatchInstanceChanged(LongConsumer watcher) {
+        instanceWatchers.remove(watcher);
+    }
+
+    public long getInstanceVersion() {
+        return instanceVersion.get();
+    }
 }
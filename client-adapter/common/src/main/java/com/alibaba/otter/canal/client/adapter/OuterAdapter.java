@@ -33,6 +33,26 @@ public interface OuterAdapter {
      */
     void sync(List<Dml> dmls);
 
+    /**
+     * 是否支持按key分区并行同步, 返回true时sync方法会被多个线程并发调用, 需要保证线程安全
+     *
+     * @return 默认不支持
+     */
+    default boolean supportsParallelSync() {
+        return false;
+    }
+
+    /**
+     * 是否使用列式dml({@link com.alibaba.otter.canal.client.adapter.support.ColumnarDml}),
+     * 返回true时行数据不再预先构建为Map, 适配器应通过getValue等按列下标访问的方法读取行数据,
+     * getData/getOld仍可用但会按需创建Map视图
+     *
+     * @return 默认不使用
+     */
+    default boolean supportsColumnarDml() {
+        return false;
+    }
+
     /**
      * 外部适配器销毁接口
      */
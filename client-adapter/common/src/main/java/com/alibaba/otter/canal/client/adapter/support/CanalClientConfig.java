@@ -24,6 +24,10 @@ public class CanalClientConfig {
     private Integer            batchSize;
     // 同步分批提交大小
     private Integer            syncBatchSize = 1000;
+    // 适配器按key分区并行同步的线程数, 1为串行
+    private Integer            syncLanes     = 1;
+    // 并行同步的分区key: database.table -> 逗号分隔的列名, 未配置的表按主键分区
+    private Map<String, String> syncPartitionKeys;
     // 重试次数
     private Integer            retries;
     // 消费超时时间
@@ -103,6 +107,22 @@ public class CanalClientConfig {
         this.syncBatchSize = syncBatchSize;
     }
 
+    public Integer getSyncLanes() {
+        return syncLanes;
+    }
+
+    public void setSyncLanes(Integer syncLanes) {
+        this.syncLanes = syncLanes;
+    }
+
+    public Map<String, String> getSyncPartitionKeys() {
+        return syncPartitionKeys;
+    }
+
+    public void setSyncPartitionKeys(Map<String, String> syncPartitionKeys) {
+        this.syncPartitionKeys = syncPartitionKeys;
+    }
+
     public void setRetries(Integer retries) {
         this.retries = retries;
     }
@@ -0,0 +1,320 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.alibaba.fastjson.annotation.JSONField;
+
+/**
+ * 列式存储的DML对象
+ *
+ * <pre>
+ * 1. 行数据以按列下标排列的值数组保存, 列名及类型由同一张表共享的{@link DmlSchema}描述
+ * 2. 适配器可以通过列下标直接取值, 避免为每行构建Map
+ * 3. getData/getOld返回基于值数组的Map视图, 首次调用时才创建, 兼容按列名访问的适配器, 视图的修改会写回值数组
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class ColumnarDml extends Dml {
+
+    private static final long serialVersionUID = -6096150101356154049L;
+
+    /**
+     * 旧值数组中未修改的列
+     */
+    private enum Absent {
+        INSTANCE
+    }
+
+    private DmlSchema         schema;                                    // 表结构
+    private List<Object[]>    rows             = new ArrayList<>();      // 行数据
+    private List<Object[]>    oldRows          = new ArrayList<>();      // 修改前的值, 与rows一一对应, 没有旧值为null
+    private boolean           hasOld;
+
+    public ColumnarDml(){
+    }
+
+    public ColumnarDml(DmlSchema schema){
+        this.schema = schema;
+    }
+
+    @JSONField(serialize = false)
+    public DmlSchema getSchema() {
+        return schema;
+    }
+
+    public void setSchema(DmlSchema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * 添加一行
+     *
+     * @param values 按schema列下标排列的值
+     * @param oldValues 修改前的值, 未修改的列需要通过{@link #newOldValues()}创建的数组保持为未修改状态, 可以为null
+     */
+    public void addRow(Object[] values, Object[] oldValues) {
+        rows.add(values);
+        oldRows.add(oldValues);
+        if (oldValues != null) {
+            hasOld = true;
+        }
+        // 行数据发生变化, 已经创建的视图失效
+        super.setData(null);
+        super.setOld(null);
+    }
+
+    /**
+     * 复制另一个列式dml的第i行, 值数组会被复制, 避免不同线程处理的dml通过视图互相修改
+     */
+    public void addRow(ColumnarDml src, int i) {
+        Object[] oldValues = src.oldRows.get(i);
+        addRow(src.rows.get(i).clone(), oldValues == null ? null : oldValues.clone());
+    }
+
+    /**
+     * 创建所有列均为未修改状态的旧值数组
+     */
+    public Object[] newOldValues() {
+        Object[] oldValues = new Object[schema.size()];
+        Arrays.fill(oldValues, Absent.INSTANCE);
+        return oldValues;
+    }
+
+    @JSONField(serialize = false)
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    public Object getValue(int row, int column) {
+        Object value = rows.get(row)[column];
+        return value == Absent.INSTANCE ? null : value;
+    }
+
+    public Object getValue(int row, String column) {
+        int i = schema.indexOf(column);
+        return i < 0 ? null : getValue(row, i);
+    }
+
+    /**
+     * 第row行的column列是否被修改(存在旧值)
+     */
+    public boolean isUpdated(int row, int column) {
+        Object[] oldValues = oldRows.get(row);
+        return oldValues != null && oldValues[column] != Absent.INSTANCE;
+    }
+
+    public Object getOldValue(int row, int column) {
+        Object[] oldValues = oldRows.get(row);
+        if (oldValues == null) {
+            return null;
+        }
+        Object value = oldValues[column];
+        return value == Absent.INSTANCE ? null : value;
+    }
+
+    @Override
+    public List<Map<String, Object>> getData() {
+        List<Map<String, Object>> data = super.getData();
+        if (data == null && !rows.isEmpty()) {
+            data = new ArrayList<>(rows.size());
+            for (Object[] values : rows) {
+                data.add(new RowMap(schema, values));
+            }
+            super.setData(data);
+        }
+        return data;
+    }
+
+    @Override
+    public List<Map<String, Object>> getOld() {
+        List<Map<String, Object>> old = super.getOld();
+        if (old == null && hasOld) {
+            old = new ArrayList<>(oldRows.size());
+            for (Object[] oldValues : oldRows) {
+                if (oldValues != null) {
+                    old.add(new RowMap(schema, oldValues));
+                }
+            }
+            super.setOld(old);
+        }
+        return old;
+    }
+
+    @Override
+    public void setData(List<Map<String, Object>> data) {
+        // 直接设置数据后不再使用列式数据
+        rows.clear();
+        oldRows.clear();
+        hasOld = false;
+        super.setData(data);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        rows.clear();
+        oldRows.clear();
+        hasOld = false;
+    }
+
+    /**
+     * 基于值数组的行视图
+     */
+    private static class RowMap extends AbstractMap<String, Object> implements Serializable {
+
+        private static final long   serialVersionUID = 3520312812233539126L;
+
+        private final DmlSchema     schema;
+        private final Object[]      values;
+        private Map<String, Object> extra;                                   // 不在schema中的列
+
+        RowMap(DmlSchema schema, Object[] values){
+            this.schema = schema;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int i = key instanceof String ? schema.indexOf((String) key) : -1;
+            if (i < 0) {
+                return extra == null ? null : extra.get(key);
+            }
+            Object value = values[i];
+            return value == Absent.INSTANCE ? null : value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int i = key instanceof String ? schema.indexOf((String) key) : -1;
+            if (i < 0) {
+                return extra != null && extra.containsKey(key);
+            }
+            return values[i] != Absent.INSTANCE;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            int i = schema.indexOf(key);
+            if (i < 0) {
+                if (extra == null) {
+                    extra = new LinkedHashMap<>();
+                }
+                return extra.put(key, value);
+            }
+            Object prev = values[i];
+            values[i] = value;
+            return prev == Absent.INSTANCE ? null : prev;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            int i = key instanceof String ? schema.indexOf((String) key) : -1;
+            if (i < 0) {
+                return extra == null ? null : extra.remove(key);
+            }
+            Object prev = values[i];
+            values[i] = Absent.INSTANCE;
+            return prev == Absent.INSTANCE ? null : prev;
+        }
+
+        @Override
+        public int size() {
+            int size = extra == null ? 0 : extra.size();
+            for (Object value : values) {
+                if (value != Absent.INSTANCE) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return RowMap.this.size();
+                }
+            };
+        }
+
+        private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+            private int                                 next = advance(0);
+            private int                                 last = -1;
+            private Iterator<Entry<String, Object>>     extraIterator;
+
+            private int advance(int from) {
+                int i = from;
+                while (i < values.length && values[i] == Absent.INSTANCE) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next < values.length) {
+                    return true;
+                }
+                if (extraIterator == null && extra != null) {
+                    extraIterator = extra.entrySet().iterator();
+                }
+                return extraIterator != null && extraIterator.hasNext();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (next < values.length) {
+                    final int i = next;
+                    last = i;
+                    next = advance(i + 1);
+                    return new SimpleEntry<String, Object>(schema.getName(i), values[i]) {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        public Object setValue(Object value) {
+                            values[i] = value;
+                            return super.setValue(value);
+                        }
+                    };
+                }
+                last = -1;
+                return extraIterator.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last >= 0) {
+                    values[last] = Absent.INSTANCE;
+                    last = -1;
+                } else if (extraIterator != null) {
+                    extraIterator.remove();
+                } else {
+                    throw new IllegalStateException();
+                }
+            }
+        }
+    }
+}
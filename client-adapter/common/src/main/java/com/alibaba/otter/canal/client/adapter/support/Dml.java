@@ -140,6 +140,6 @@ public class Dml implements Serializable {
     public String toString() {
         return "Dml{" + "destination='" + destination + '\'' + ", database='" + database + '\'' + ", table='" + table
                + '\'' + ", type='" + type + '\'' + ", es=" + es + ", ts=" + ts + ", sql='" + sql + '\'' + ", data="
-               + data + ", old=" + old + '}';
+               + getData() + ", old=" + getOld() + '}';
     }
 }
@@ -0,0 +1,146 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+
+/**
+ * 表的列结构, 同一张表的多个{@link ColumnarDml}共享同一个实例
+ *
+ * @version 1.0.0
+ */
+public class DmlSchema implements Serializable {
+
+    private static final long          serialVersionUID = -2735036479529911337L;
+
+    private final String[]             names;                                   // 列名, 按binlog中的列顺序
+    private final int[]                sqlTypes;                                // jdbc类型
+    private final String[]             mysqlTypes;                              // mysql类型
+    private final List<String>         pkNames;                                 // 主键列名
+    private final Map<String, Integer> index;                                   // 列名 -> 下标
+    private final long                 version;                                 // 列结构的指纹
+
+    public DmlSchema(String[] names, int[] sqlTypes, String[] mysqlTypes, List<String> pkNames){
+        this.names = names;
+        this.sqlTypes = sqlTypes;
+        this.mysqlTypes = mysqlTypes;
+        this.pkNames = Collections.unmodifiableList(pkNames);
+        this.index = new HashMap<>(names.length * 4 / 3 + 1);
+        long version = 17;
+        for (int i = 0; i < names.length; i++) {
+            index.put(names[i], i);
+            version = version(version, names[i], sqlTypes[i], mysqlTypes[i], pkNames.contains(names[i]));
+        }
+        this.version = version;
+    }
+
+    /**
+     * 计算binlog列信息对应的列结构指纹, 与{@link #getVersion()}一致, 不创建DmlSchema
+     */
+    public static long version(List<CanalEntry.Column> columns) {
+        long version = 17;
+        for (CanalEntry.Column column : columns) {
+            version = version(version,
+                column.getName(),
+                column.getSqlType(),
+                column.getMysqlType(),
+                column.getIsKey());
+        }
+        return version;
+    }
+
+    private static long version(long version, String name, int sqlType, String mysqlType, boolean key) {
+        version = 31 * version + name.hashCode();
+        version = 31 * version + sqlType;
+        version = 31 * version + mysqlType.hashCode();
+        return 31 * version + (key ? 1 : 0);
+    }
+
+    /**
+     * 根据binlog的列信息创建
+     */
+    public static DmlSchema of(List<CanalEntry.Column> columns) {
+        int size = columns.size();
+        String[] names = new String[size];
+        int[] sqlTypes = new int[size];
+        String[] mysqlTypes = new String[size];
+        List<String> pkNames = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            CanalEntry.Column column = columns.get(i);
+            names[i] = column.getName();
+            sqlTypes[i] = column.getSqlType();
+            mysqlTypes[i] = column.getMysqlType();
+            if (column.getIsKey()) {
+                pkNames.add(column.getName());
+            }
+        }
+        return new DmlSchema(names, sqlTypes, mysqlTypes, pkNames);
+    }
+
+    /**
+     * 判断列结构是否与binlog中的列一致, 不一致说明表结构发生了变化
+     */
+    public boolean matches(List<CanalEntry.Column> columns) {
+        if (columns.size() != names.length) {
+            return false;
+        }
+        int pkCount = 0;
+        for (int i = 0; i < names.length; i++) {
+            CanalEntry.Column column = columns.get(i);
+            if (!names[i].equals(column.getName()) || sqlTypes[i] != column.getSqlType()
+                || !mysqlTypes[i].equals(column.getMysqlType())) {
+                return false;
+            }
+            if (column.getIsKey()) {
+                if (pkCount >= pkNames.size() || !pkNames.get(pkCount).equals(names[i])) {
+                    return false;
+                }
+                pkCount++;
+            }
+        }
+        return pkCount == pkNames.size();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return 列下标, 不存在返回-1
+     */
+    public int indexOf(String name) {
+        Integer i = index.get(name);
+        return i == null ? -1 : i;
+    }
+
+    public String getName(int i) {
+        return names[i];
+    }
+
+    public int getSqlType(int i) {
+        return sqlTypes[i];
+    }
+
+    public String getMysqlType(int i) {
+        return mysqlTypes[i];
+    }
+
+    public List<String> getPkNames() {
+        return pkNames;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "DmlSchema{" + "names=" + Arrays.toString(names) + ", pkNames=" + pkNames + '}';
+    }
+}
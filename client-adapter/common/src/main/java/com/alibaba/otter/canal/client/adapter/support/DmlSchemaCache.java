@@ -0,0 +1,81 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * 列式dml的列结构缓存
+ *
+ * <pre>
+ * 1. 按 database.table + 列结构指纹(version) 缓存, 表结构变更后新旧列结构可以同时存在, 不会互相替换
+ * 2. 按条目数限制容量, 每个使用列式dml的适配器持有一个实例
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class DmlSchemaCache {
+
+    public static final int                DEFAULT_MAX_SIZE = 1024;
+
+    private final Cache<Key, DmlSchema>    cache;
+
+    public DmlSchemaCache(){
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public DmlSchemaCache(long maxSize){
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * 获取binlog列信息对应的列结构, 不存在时创建
+     */
+    public DmlSchema get(String database, String table, List<CanalEntry.Column> columns) {
+        Key key = new Key(database, table, DmlSchema.version(columns));
+        DmlSchema schema = cache.getIfPresent(key);
+        if (schema == null || !schema.matches(columns)) {
+            schema = DmlSchema.of(columns);
+            cache.put(key, schema);
+        }
+        return schema;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static class Key {
+
+        private final String database;
+        private final String table;
+        private final long   version;
+
+        Key(String database, String table, long version){
+            this.database = database;
+            this.table = table;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key other = (Key) o;
+            return version == other.version && Objects.equals(database, other.database)
+                   && Objects.equals(table, other.table);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(database, table, version);
+        }
+    }
+}
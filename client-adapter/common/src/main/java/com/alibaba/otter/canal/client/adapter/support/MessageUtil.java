@@ -15,6 +15,16 @@ import com.alibaba.otter.canal.protocol.Message;
 public class MessageUtil {
 
     public static List<Dml> parse4Dml(String destination, String groupId, Message message) {
+        return parse4Dml(destination, groupId, message, null);
+    }
+
+    /**
+     * 解析Message为dml列表
+     *
+     * @param schemaCache 不为null时转换为{@link ColumnarDml}, 行数据保存为值数组而不是Map, 列结构从该缓存获取
+     */
+    public static List<Dml> parse4Dml(String destination, String groupId, Message message,
+                                      DmlSchemaCache schemaCache) {
         if (message == null) {
             return null;
         }
@@ -36,6 +46,15 @@ public class MessageUtil {
 
             CanalEntry.EventType eventType = rowChange.getEventType();
 
+            if (schemaCache != null && !rowChange.getIsDdl() && isRowEvent(eventType)
+                && rowChange.getRowDatasCount() > 0) {
+                ColumnarDml columnarDml = toColumnarDml(destination, groupId, entry, rowChange, schemaCache);
+                if (columnarDml != null) {
+                    dmls.add(columnarDml);
+                    continue;
+                }
+            }
+
             final Dml dml = new Dml();
             dml.setIsDdl(rowChange.getIsDdl());
             dml.setDestination(destination);
@@ -131,6 +150,87 @@ public class MessageUtil {
         return dmls;
     }
 
+    private static boolean isRowEvent(CanalEntry.EventType eventType) {
+        return eventType == CanalEntry.EventType.INSERT || eventType == CanalEntry.EventType.UPDATE
+               || eventType == CanalEntry.EventType.DELETE;
+    }
+
+    /**
+     * 转换为列式dml, 无法转换时返回null
+     */
+    private static ColumnarDml toColumnarDml(String destination, String groupId, CanalEntry.Entry entry,
+                                             CanalEntry.RowChange rowChange, DmlSchemaCache schemaCache) {
+        CanalEntry.EventType eventType = rowChange.getEventType();
+        boolean delete = eventType == CanalEntry.EventType.DELETE;
+        CanalEntry.RowData first = rowChange.getRowDatas(0);
+        DmlSchema schema = schemaCache.get(entry.getHeader().getSchemaName(),
+            entry.getHeader().getTableName(),
+            delete ? first.getBeforeColumnsList() : first.getAfterColumnsList());
+
+        ColumnarDml dml = new ColumnarDml(schema);
+        dml.setDestination(destination);
+        dml.setGroupId(groupId);
+        dml.setDatabase(entry.getHeader().getSchemaName());
+        dml.setTable(entry.getHeader().getTableName());
+        dml.setType(eventType.toString());
+        dml.setEs(entry.getHeader().getExecuteTime());
+        dml.setIsDdl(false);
+        dml.setTs(System.currentTimeMillis());
+        dml.setSql(rowChange.getSql());
+        dml.setPkNames(new ArrayList<>(schema.getPkNames()));
+
+        // 与Map方式保持一致: 旧值包含此前所有行中被修改过的列
+        boolean[] updated = new boolean[schema.size()];
+        for (CanalEntry.RowData rowData : rowChange.getRowDatasList()) {
+            List<CanalEntry.Column> columns = delete ? rowData.getBeforeColumnsList() : rowData.getAfterColumnsList();
+            if (columns.isEmpty()) {
+                continue;
+            }
+            if (columns.size() != schema.size()) {
+                // 非full格式的binlog(binlog_row_image=minimal), 每行的列不同, 使用Map方式
+                return null;
+            }
+            Object[] values = new Object[schema.size()];
+            for (CanalEntry.Column column : columns) {
+                int i = schema.indexOf(column.getName());
+                if (i < 0) {
+                    continue;
+                }
+                values[i] = convertValue(dml.getTable(), column);
+                if (column.getUpdated()) {
+                    updated[i] = true;
+                }
+            }
+
+            Object[] oldValues = null;
+            if (eventType == CanalEntry.EventType.UPDATE) {
+                for (CanalEntry.Column column : rowData.getBeforeColumnsList()) {
+                    int i = schema.indexOf(column.getName());
+                    if (i < 0 || !updated[i]) {
+                        continue;
+                    }
+                    if (oldValues == null) {
+                        oldValues = dml.newOldValues();
+                    }
+                    oldValues[i] = convertValue(dml.getTable(), column);
+                }
+            }
+            dml.addRow(values, oldValues);
+        }
+        return dml;
+    }
+
+    private static Object convertValue(String table, CanalEntry.Column column) {
+        if (column.getIsNull()) {
+            return null;
+        }
+        return JdbcTypeUtil.typeConvert(table,
+            column.getName(),
+            column.getValue(),
+            column.getSqlType(),
+            column.getMysqlType());
+    }
+
     public static List<Dml> flatMessage2Dml(String destination, String groupId, List<FlatMessage> flatMessages) {
         List<Dml> dmls = new ArrayList<Dml>(flatMessages.size());
         for (FlatMessage flatMessage : flatMessages) {
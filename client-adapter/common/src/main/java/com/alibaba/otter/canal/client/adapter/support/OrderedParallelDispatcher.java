@@ -0,0 +1,243 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 按key分区的有序并行分发器
+ *
+ * <pre>
+ * 1. 将一批dml的行按分区key(默认为主键)拆分到多个lane, 同一个key的行只会进入同一个lane, lane内保持原有顺序
+ * 2. ddl、无行数据的dml(如truncate)、无法计算key或修改了key的行作为屏障, 先等待之前的lane全部完成再单独执行
+ * 3. dispatch方法在所有lane执行完成后才返回, 调用方可以据此ack整个批次
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class OrderedParallelDispatcher {
+
+    /**
+     * 分区key计算
+     */
+    public interface PartitionKey {
+
+        /**
+         * @param dml 所属dml
+         * @param row 行数据
+         * @return 分区key, 返回null表示无法分区
+         */
+        Object key(Dml dml, Map<String, Object> row);
+    }
+
+    /**
+     * 默认按主键分区
+     */
+    public static final PartitionKey PK = (dml, row) -> {
+        List<String> pkNames = dml.getPkNames();
+        if (pkNames == null || pkNames.isEmpty()) {
+            return null;
+        }
+        if (pkNames.size() == 1) {
+            return row.get(pkNames.get(0));
+        }
+        List<Object> values = new ArrayList<>(pkNames.size());
+        for (String pkName : pkNames) {
+            values.add(row.get(pkName));
+        }
+        return values;
+    };
+
+    private final int             lanes;
+    private final PartitionKey    partitionKey;
+    private final ExecutorService executor;
+
+    public OrderedParallelDispatcher(int lanes){
+        this(lanes, PK);
+    }
+
+    public OrderedParallelDispatcher(int lanes, PartitionKey partitionKey){
+        if (lanes < 1) {
+            throw new IllegalArgumentException("lanes must be positive");
+        }
+        this.lanes = lanes;
+        this.partitionKey = partitionKey;
+        this.executor = Util.newFixedThreadPool(lanes, 5000L);
+    }
+
+    /**
+     * 按列名配置分区key, 未配置的表使用主键
+     *
+     * @param lanes 并行度
+     * @param tableKeys database.table -> 逗号分隔的列名
+     */
+    public static OrderedParallelDispatcher withTableKeys(int lanes, Map<String, String> tableKeys) {
+        if (tableKeys == null || tableKeys.isEmpty()) {
+            return new OrderedParallelDispatcher(lanes);
+        }
+        Map<String, String[]> columns = new HashMap<>();
+        tableKeys.forEach((table, keys) -> columns.put(table.toLowerCase(), keys.trim().split("\\s*,\\s*")));
+        return new OrderedParallelDispatcher(lanes, (dml, row) -> {
+            String[] keyColumns = columns.get((dml.getDatabase() + "." + dml.getTable()).toLowerCase());
+            if (keyColumns == null) {
+                return PK.key(dml, row);
+            }
+            if (keyColumns.length == 1) {
+                return row.get(keyColumns[0]);
+            }
+            List<Object> values = new ArrayList<>(keyColumns.length);
+            for (String column : keyColumns) {
+                values.add(row.get(column));
+            }
+            return values;
+        });
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * 分发一批dml并等待全部完成
+     *
+     * @param dmls 批量dml
+     * @param handler 每个lane上的同步逻辑, 会被并发调用
+     */
+    @SuppressWarnings("unchecked")
+    public void dispatch(List<Dml> dmls, Consumer<List<Dml>> handler) {
+        if (dmls == null || dmls.isEmpty()) {
+            return;
+        }
+        if (lanes == 1) {
+            handler.accept(dmls);
+            return;
+        }
+        List<Dml>[] laneDmls = new List[lanes];
+        for (int i = 0; i < lanes; i++) {
+            laneDmls[i] = new ArrayList<>();
+        }
+        for (Dml dml : dmls) {
+            Dml[] parts = split(dml);
+            if (parts == null) {
+                // 屏障: 之前的数据全部完成后单独执行
+                flush(laneDmls, handler);
+                handler.accept(Collections.singletonList(dml));
+                continue;
+            }
+            for (int i = 0; i < lanes; i++) {
+                if (parts[i] != null) {
+                    laneDmls[i].add(parts[i]);
+                }
+            }
+        }
+        flush(laneDmls, handler);
+    }
+
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * 将dml的行拆分到各个lane, 返回null表示该dml需要作为屏障执行
+     */
+    private Dml[] split(Dml dml) {
+        List<Map<String, Object>> data = dml.getData();
+        if ((dml.getIsDdl() != null && dml.getIsDdl()) || data == null || data.isEmpty()) {
+            return null;
+        }
+        List<Map<String, Object>> old = dml.getOld();
+        Dml[] parts = new Dml[lanes];
+        for (int i = 0; i < data.size(); i++) {
+            Map<String, Object> row = data.get(i);
+            Map<String, Object> oldRow = old != null && i < old.size() ? old.get(i) : null;
+            Object key = row == null ? null : partitionKey.key(dml, row);
+            if (key == null) {
+                return null;
+            }
+            if (oldRow != null && !oldRow.isEmpty()) {
+                Map<String, Object> before = new HashMap<>(row);
+                before.putAll(oldRow);
+                if (!Objects.equals(key, partitionKey.key(dml, before))) {
+                    // 修改了分区key, 新旧key可能落在不同lane上
+                    return null;
+                }
+            }
+            int lane = (key.hashCode() & Integer.MAX_VALUE) % lanes;
+            Dml part = parts[lane];
+            if (part == null) {
+                part = copyHeader(dml, old != null);
+                parts[lane] = part;
+            }
+            if (part instanceof ColumnarDml) {
+                ((ColumnarDml) part).addRow((ColumnarDml) dml, i);
+                continue;
+            }
+            part.getData().add(row);
+            if (old != null) {
+                part.getOld().add(oldRow);
+            }
+        }
+        return parts;
+    }
+
+    private void flush(List<Dml>[] laneDmls, Consumer<List<Dml>> handler) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Dml> dmls : laneDmls) {
+            if (dmls.isEmpty()) {
+                continue;
+            }
+            List<Dml> batch = new ArrayList<>(dmls);
+            dmls.clear();
+            futures.add(executor.submit(() -> handler.accept(batch)));
+        }
+        RuntimeException exception = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (exception == null) {
+                    exception = e.getCause() instanceof RuntimeException ? (RuntimeException) e
+                        .getCause() : new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (exception == null) {
+                    exception = new RuntimeException(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static Dml copyHeader(Dml dml, boolean withOld) {
+        boolean columnar = dml instanceof ColumnarDml;
+        Dml part = columnar ? new ColumnarDml(((ColumnarDml) dml).getSchema()) : new Dml();
+        part.setDestination(dml.getDestination());
+        part.setGroupId(dml.getGroupId());
+        part.setDatabase(dml.getDatabase());
+        part.setTable(dml.getTable());
+        part.setPkNames(dml.getPkNames());
+        part.setIsDdl(dml.getIsDdl());
+        part.setType(dml.getType());
+        part.setEs(dml.getEs());
+        part.setTs(dml.getTs());
+        part.setSql(dml.getSql());
+        if (columnar) {
+            return part;
+        }
+        part.setData(new ArrayList<>());
+        if (withOld) {
+            part.setOld(new ArrayList<>());
+        }
+        return part;
+    }
+}
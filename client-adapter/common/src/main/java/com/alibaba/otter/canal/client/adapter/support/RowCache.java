@@ -0,0 +1,261 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * 源库反查结果的本地缓存(read-through)
+ *
+ * <pre>
+ * 1. 按 mapping + table + key(一般为主键条件) 缓存反查出来的行, 按估算字节数限制容量
+ * 2. 每条缓存记录加载时间, 收到的dml如果执行时间(es)早于加载时间, 说明该变更已经反映在缓存结果中, 无需失效
+ * 3. 支持行级失效, 以及 mapping / mapping.table 级别的时间水位失效
+ * 4. 加载期间先放入占位记录, 加载期间被失效的结果不会写入缓存
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class RowCache {
+
+    private final Cache<Key, Rows>            cache;
+    private final long                        clockSkewMillis;                         // 源库与binlog时间的容忍误差
+
+    private final ConcurrentMap<String, Long> watermarks = new ConcurrentHashMap<>(); // mapping[.table] -> 失效水位
+
+    public RowCache(long maxBytes, long expireSeconds, long clockSkewMillis){
+        this.clockSkewMillis = clockSkewMillis;
+        CacheBuilder<Key, Rows> builder = CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key key, Rows rows) -> rows.weight)
+            .recordStats();
+        if (expireSeconds > 0) {
+            builder.expireAfterWrite(expireSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * 获取缓存行, 不存在或已过期则通过loader加载
+     *
+     * @param mapping 映射配置标识
+     * @param table 表名
+     * @param key 行标识
+     * @param loader 反查源库
+     * @return 行数据, key为小写的列标签
+     */
+    public List<Map<String, Object>> get(String mapping, String table, String key,
+                                         Supplier<List<Map<String, Object>>> loader) {
+        Key cacheKey = new Key(mapping, table, key);
+        Rows rows = cache.getIfPresent(cacheKey);
+        if (rows != null && !rows.isLoading()) {
+            if (rows.loadTime > watermark(mapping, table)) {
+                return rows.data;
+            }
+            cache.asMap().remove(cacheKey, rows);
+        }
+
+        long loadTime = System.currentTimeMillis();
+        Rows loading = new Rows(null, loadTime);
+        // 同一个key正在被其他线程加载时, 只加载不缓存
+        boolean owner = cache.asMap().putIfAbsent(cacheKey, loading) == null;
+        try {
+            rows = new Rows(loader.get(), loadTime);
+        } catch (RuntimeException e) {
+            if (owner) {
+                cache.asMap().remove(cacheKey, loading);
+            }
+            throw e;
+        }
+        if (owner) {
+            // 加载期间占位记录被失效或者水位被抬高, 说明结果可能已经过期, 不写入缓存
+            if (loadTime > watermark(mapping, table)) {
+                cache.asMap().replace(cacheKey, loading, rows);
+            } else {
+                cache.asMap().remove(cacheKey, loading);
+            }
+        }
+        return rows.data;
+    }
+
+    /**
+     * 行级失效, 仅失效加载时间早于该事件的缓存(包括正在加载的占位记录)
+     */
+    public void invalidate(String mapping, String table, String key, Long eventTime) {
+        Key cacheKey = new Key(mapping, table, key);
+        Rows rows = cache.getIfPresent(cacheKey);
+        if (rows != null && isStale(rows.loadTime, eventTime)) {
+            cache.asMap().remove(cacheKey, rows);
+        }
+    }
+
+    /**
+     * 表级失效
+     */
+    public void invalidate(String mapping, String table, Long eventTime) {
+        raiseWatermark(mapping + "." + table, eventTime);
+    }
+
+    /**
+     * mapping级失效, 作用于该mapping下的所有表
+     */
+    public void invalidate(String mapping, Long eventTime) {
+        raiseWatermark(mapping, eventTime);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        watermarks.clear();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * 命中率等指标
+     */
+    public Map<String, Object> metrics() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("size", cache.size());
+        res.put("hitCount", stats.hitCount());
+        res.put("missCount", stats.missCount());
+        res.put("hitRate", stats.hitRate());
+        res.put("evictionCount", stats.evictionCount());
+        return res;
+    }
+
+    private boolean isStale(long loadTime, Long eventTime) {
+        // 没有执行时间的事件无法判断先后, 直接失效
+        return eventTime == null || loadTime <= eventTime + clockSkewMillis;
+    }
+
+    private void raiseWatermark(String scope, Long eventTime) {
+        long mark = eventTime == null ? System.currentTimeMillis() : eventTime + clockSkewMillis;
+        watermarks.merge(scope, mark, Math::max);
+    }
+
+    private long watermark(String mapping, String table) {
+        Long m1 = watermarks.get(mapping);
+        Long m2 = watermarks.get(mapping + "." + table);
+        return Math.max(m1 == null ? Long.MIN_VALUE : m1, m2 == null ? Long.MIN_VALUE : m2);
+    }
+
+    /**
+     * 将结果集读取为行列表, 列名统一为小写的列标签, 同名的列和ResultSet.getObject(label)一样取第一列
+     */
+    public static List<Map<String, Object>> readRows(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        Set<String> distinct = new HashSet<>();
+        for (int i = 0; i < columnCount; i++) {
+            String label = metaData.getColumnLabel(i + 1).toLowerCase();
+            if (distinct.add(label)) {
+                labels[i] = label;
+            }
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            Map<String, Object> row = new LinkedHashMap<>(distinct.size() * 4 / 3 + 1);
+            for (int i = 0; i < columnCount; i++) {
+                if (labels[i] != null) {
+                    row.put(labels[i], rs.getObject(i + 1));
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static int estimateWeight(List<Map<String, Object>> data) {
+        long weight = 64;
+        for (Map<String, Object> row : data) {
+            weight += 48;
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                weight += 32 + estimateWeight(entry.getValue());
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static long estimateWeight(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else {
+            return 24;
+        }
+    }
+
+    private static class Key {
+
+        private final String mapping;
+        private final String table;
+        private final String key;
+
+        Key(String mapping, String table, String key){
+            this.mapping = mapping;
+            this.table = table;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key other = (Key) o;
+            return Objects.equals(mapping, other.mapping) && Objects.equals(table, other.table)
+                   && Objects.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mapping, table, key);
+        }
+    }
+
+    private static class Rows {
+
+        private final List<Map<String, Object>> data;
+        private final long                      loadTime;
+        private final int                       weight;
+
+        /**
+         * @param data 为null时表示正在加载的占位记录
+         */
+        Rows(List<Map<String, Object>> data, long loadTime){
+            this.data = data == null ? null : Collections.unmodifiableList(data);
+            this.loadTime = loadTime;
+            this.weight = data == null ? 64 : estimateWeight(data);
+        }
+
+        boolean isLoading() {
+            return data == null;
+        }
+    }
+}
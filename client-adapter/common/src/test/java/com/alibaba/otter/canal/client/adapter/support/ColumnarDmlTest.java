@@ -0,0 +1,151 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+
+public class ColumnarDmlTest {
+
+    private DmlSchema schema = new DmlSchema(new String[] { "id", "name", "age" },
+        new int[] { Types.BIGINT, Types.VARCHAR, Types.INTEGER },
+        new String[] { "bigint(20)", "varchar(32)", "int(11)" },
+        Collections.singletonList("id"));
+
+    @Test
+    public void testRowMap() {
+        ColumnarDml dml = new ColumnarDml(schema);
+        Object[] oldValues = dml.newOldValues();
+        oldValues[1] = "a";
+        dml.addRow(new Object[] { 1L, "b", null }, oldValues);
+        dml.addRow(new Object[] { 2L, "c", 20 }, null);
+
+        Assert.assertEquals(2, dml.getRowCount());
+        List<Map<String, Object>> data = dml.getData();
+        Assert.assertEquals(2, data.size());
+        Map<String, Object> row = data.get(0);
+        Assert.assertEquals(3, row.size());
+        Assert.assertEquals(Arrays.asList("id", "name", "age"), new ArrayList<>(row.keySet()));
+        Assert.assertEquals("b", row.get("name"));
+        Assert.assertTrue(row.containsKey("age"));
+        Assert.assertNull(row.get("age"));
+        Assert.assertFalse(row.containsKey("unknown"));
+
+        // 只有被修改的列存在旧值, 没有旧值的行不出现在old中
+        List<Map<String, Object>> old = dml.getOld();
+        Assert.assertEquals(1, old.size());
+        Assert.assertEquals(Collections.singletonMap("name", "a"), old.get(0));
+        Assert.assertTrue(dml.isUpdated(0, 1));
+        Assert.assertFalse(dml.isUpdated(0, 2));
+        Assert.assertFalse(dml.isUpdated(1, 1));
+        Assert.assertEquals("a", dml.getOldValue(0, 1));
+        Assert.assertNull(dml.getOldValue(0, 0));
+    }
+
+    @Test
+    public void testRowMapWrite() {
+        ColumnarDml dml = new ColumnarDml(schema);
+        dml.addRow(new Object[] { 1L, "a", 10 }, null);
+        Map<String, Object> row = dml.getData().get(0);
+
+        // 视图的修改写回值数组
+        Assert.assertEquals("a", row.put("name", "b"));
+        Assert.assertEquals("b", dml.getValue(0, 1));
+        Assert.assertEquals("b", dml.getValue(0, "name"));
+
+        Assert.assertEquals(10, row.remove("age"));
+        Assert.assertEquals(2, row.size());
+        Assert.assertFalse(row.containsKey("age"));
+        Assert.assertNull(dml.getValue(0, 2));
+
+        // 不在schema中的列
+        row.put("extra", "x");
+        Assert.assertEquals(3, row.size());
+        Assert.assertEquals("x", row.get("extra"));
+        Assert.assertNull(dml.getValue(0, "extra"));
+
+        Iterator<Map.Entry<String, Object>> iterator = row.entrySet().iterator();
+        Map.Entry<String, Object> entry = iterator.next();
+        Assert.assertEquals("id", entry.getKey());
+        entry.setValue(2L);
+        Assert.assertEquals(2L, dml.getValue(0, 0));
+        iterator.next();
+        iterator.remove();
+        Assert.assertNull(dml.getValue(0, 1));
+        Assert.assertEquals("extra", iterator.next().getKey());
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertEquals(2, row.size());
+    }
+
+    @Test
+    public void testAddRowCopy() {
+        ColumnarDml src = new ColumnarDml(schema);
+        Object[] oldValues = src.newOldValues();
+        oldValues[2] = 10;
+        src.addRow(new Object[] { 1L, "a", 11 }, oldValues);
+
+        ColumnarDml part = new ColumnarDml(schema);
+        part.addRow(src, 0);
+        Assert.assertEquals(src.getData(), part.getData());
+        Assert.assertEquals(src.getOld(), part.getOld());
+
+        // 分发到不同lane的dml不共享值数组
+        part.getData().get(0).put("name", "b");
+        part.getOld().get(0).put("age", 12);
+        Assert.assertEquals("a", src.getValue(0, 1));
+        Assert.assertEquals(10, src.getOldValue(0, 2));
+    }
+
+    @Test
+    public void testSetData() {
+        ColumnarDml dml = new ColumnarDml(schema);
+        dml.addRow(new Object[] { 1L, "a", 10 }, null);
+        Assert.assertEquals(1, dml.getData().size());
+
+        // 直接设置数据后不再使用列式数据
+        dml.setData(Collections.singletonList(Collections.singletonMap("id", 2L)));
+        Assert.assertEquals(0, dml.getRowCount());
+        Assert.assertEquals(2L, dml.getData().get(0).get("id"));
+    }
+
+    @Test
+    public void testSchemaCache() {
+        DmlSchemaCache schemaCache = new DmlSchemaCache(2);
+        List<CanalEntry.Column> columns = Arrays.asList(column("id", Types.BIGINT, "bigint(20)", true),
+            column("name", Types.VARCHAR, "varchar(32)", false));
+        DmlSchema first = schemaCache.get("test", "user", columns);
+        Assert.assertEquals(first.getVersion(), DmlSchema.version(columns));
+        Assert.assertSame(first, schemaCache.get("test", "user", columns));
+        Assert.assertEquals(Collections.singletonList("id"), first.getPkNames());
+
+        // 表结构变更后新旧列结构同时缓存
+        List<CanalEntry.Column> altered = Arrays.asList(column("id", Types.BIGINT, "bigint(20)", true),
+            column("name", Types.VARCHAR, "varchar(64)", false));
+        DmlSchema second = schemaCache.get("test", "user", altered);
+        Assert.assertNotSame(first, second);
+        Assert.assertNotEquals(first.getVersion(), second.getVersion());
+        Assert.assertSame(first, schemaCache.get("test", "user", columns));
+        Assert.assertSame(second, schemaCache.get("test", "user", altered));
+
+        // 容量有限
+        schemaCache.get("test", "order", columns);
+        Assert.assertTrue(schemaCache.size() <= 2);
+    }
+
+    private static CanalEntry.Column column(String name, int sqlType, String mysqlType, boolean key) {
+        return CanalEntry.Column.newBuilder()
+            .setName(name)
+            .setSqlType(sqlType)
+            .setMysqlType(mysqlType)
+            .setIsKey(key)
+            .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OrderedParallelDispatcherTest {
+
+    private OrderedParallelDispatcher dispatcher = new OrderedParallelDispatcher(4);
+
+    @After
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    @Test
+    public void testOrderPerKey() {
+        List<Dml> dmls = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            dmls.add(buildDml("UPDATE", Collections.singletonList(row(i % 10, i))));
+        }
+
+        Map<Object, List<Integer>> received = new ConcurrentHashMap<>();
+        dispatcher.dispatch(dmls, batch -> {
+            for (Dml dml : batch) {
+                for (Map<String, Object> row : dml.getData()) {
+                    received.computeIfAbsent(row.get("id"), k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add((Integer) row.get("seq"));
+                }
+            }
+        });
+
+        Assert.assertEquals(10, received.size());
+        for (Map.Entry<Object, List<Integer>> entry : received.entrySet()) {
+            List<Integer> seqs = entry.getValue();
+            Assert.assertEquals(20, seqs.size());
+            for (int i = 1; i < seqs.size(); i++) {
+                Assert.assertTrue("out of order for key " + entry.getKey(), seqs.get(i - 1) < seqs.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSplitRows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            rows.add(row(i, i));
+        }
+        Dml dml = buildDml("INSERT", rows);
+
+        List<Dml> parts = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.dispatch(Collections.singletonList(dml), parts::addAll);
+
+        Assert.assertTrue(parts.size() > 1);
+        int count = 0;
+        for (Dml part : parts) {
+            Assert.assertEquals("INSERT", part.getType());
+            Assert.assertEquals("test", part.getDatabase());
+            Assert.assertEquals("user", part.getTable());
+            count += part.getData().size();
+        }
+        Assert.assertEquals(16, count);
+    }
+
+    @Test
+    public void testBarrier() {
+        List<Dml> dmls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            dmls.add(buildDml("INSERT", Collections.singletonList(row(i, 0))));
+        }
+        Dml ddl = buildDml("ALTER", null);
+        ddl.setIsDdl(true);
+        dmls.add(ddl);
+        // 修改了主键的update也是屏障
+        Dml pkUpdate = buildDml("UPDATE", Collections.singletonList(row(100, 1)));
+        Map<String, Object> old = new HashMap<>();
+        old.put("id", 0);
+        pkUpdate.setOld(Collections.singletonList(old));
+        dmls.add(pkUpdate);
+        for (int i = 0; i < 8; i++) {
+            dmls.add(buildDml("UPDATE", Collections.singletonList(row(i, 2))));
+        }
+
+        List<Object> events = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.dispatch(dmls, batch -> {
+            for (Dml dml : batch) {
+                if (dml == ddl || dml == pkUpdate) {
+                    // 屏障单独执行, 不会被拆分
+                    Assert.assertEquals(1, batch.size());
+                    events.add(dml);
+                    continue;
+                }
+                for (Map<String, Object> row : dml.getData()) {
+                    events.add(row.get("seq"));
+                }
+            }
+        });
+
+        Assert.assertEquals(18, events.size());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertEquals(0, events.get(i));
+        }
+        Assert.assertSame(ddl, events.get(8));
+        Assert.assertSame(pkUpdate, events.get(9));
+        for (int i = 10; i < 18; i++) {
+            Assert.assertEquals(2, events.get(i));
+        }
+    }
+
+    private static Map<String, Object> row(int id, int seq) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("seq", seq);
+        return row;
+    }
+
+    private static Dml buildDml(String type, List<Map<String, Object>> rows) {
+        Dml dml = new Dml();
+        dml.setDatabase("test");
+        dml.setTable("user");
+        dml.setType(type);
+        dml.setIsDdl(false);
+        dml.setPkNames(Collections.singletonList("id"));
+        dml.setData(rows);
+        return dml;
+    }
+}
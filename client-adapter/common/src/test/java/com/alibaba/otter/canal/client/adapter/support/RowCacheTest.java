@@ -0,0 +1,121 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowCacheTest {
+
+    private RowCache      rowCache = new RowCache(1024 * 1024, 0, 0);
+    private AtomicInteger loads    = new AtomicInteger(0);
+
+    @Test
+    public void testInvalidate() {
+        Assert.assertEquals(1, get("1").get(0).get("seq"));
+        Assert.assertEquals(1, get("1").get(0).get("seq"));
+
+        // 执行时间早于加载时间的事件已经反映在缓存中, 不失效
+        rowCache.invalidate("m", "t", "1", System.currentTimeMillis() - 60000L);
+        Assert.assertEquals(1, get("1").get(0).get("seq"));
+
+        rowCache.invalidate("m", "t", "1", System.currentTimeMillis() + 1000L);
+        Assert.assertEquals(2, get("1").get(0).get("seq"));
+
+        // 没有执行时间的事件直接失效
+        rowCache.invalidate("m", "t", "1", null);
+        Assert.assertEquals(3, get("1").get(0).get("seq"));
+
+        // 表级和mapping级的水位失效
+        rowCache.invalidate("m", "t", System.currentTimeMillis() + 1000L);
+        Assert.assertEquals(4, get("1").get(0).get("seq"));
+        rowCache.invalidate("m", System.currentTimeMillis() + 2000L);
+        Assert.assertEquals(5, get("1").get(0).get("seq"));
+        Assert.assertEquals(5, loads.get());
+    }
+
+    @Test
+    public void testInvalidateDuringLoad() {
+        List<Map<String, Object>> rows = rowCache.get("m", "t", "1", () -> {
+            // 加载期间收到了该行的变更
+            rowCache.invalidate("m", "t", "1", System.currentTimeMillis());
+            return Collections.singletonList(row(loads.incrementAndGet()));
+        });
+        Assert.assertEquals(1, rows.get(0).get("seq"));
+        Assert.assertEquals(0, rowCache.size());
+        Assert.assertEquals(2, get("1").get(0).get("seq"));
+        Assert.assertEquals(2, get("1").get(0).get("seq"));
+
+        rows = rowCache.get("m", "t", "2", () -> {
+            rowCache.invalidate("m", System.currentTimeMillis());
+            return Collections.singletonList(row(loads.incrementAndGet()));
+        });
+        Assert.assertEquals(3, rows.get(0).get("seq"));
+        Assert.assertEquals(4, get("2").get(0).get("seq"));
+    }
+
+    @Test
+    public void testReadRowsWithDuplicateLabels() throws SQLException {
+        String[] labels = { "ID", "name", "id" };
+        List<Object[]> values = new ArrayList<>();
+        values.add(new Object[] { 1, "a", 100 });
+        values.add(new Object[] { 2, "b", 200 });
+
+        List<Map<String, Object>> rows = RowCache.readRows(resultSet(labels, values));
+        Assert.assertEquals(2, rows.size());
+        // 和ResultSet.getObject(label)一样取第一列
+        Assert.assertEquals(2, rows.get(0).size());
+        Assert.assertEquals(1, rows.get(0).get("id"));
+        Assert.assertEquals("a", rows.get(0).get("name"));
+        Assert.assertEquals(2, rows.get(1).get("id"));
+    }
+
+    private List<Map<String, Object>> get(String key) {
+        return rowCache.get("m", "t", key, () -> Collections.singletonList(row(loads.incrementAndGet())));
+    }
+
+    private static Map<String, Object> row(int seq) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("seq", seq);
+        return row;
+    }
+
+    private static ResultSet resultSet(String[] labels, List<Object[]> values) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(RowCacheTest.class.getClassLoader(),
+            new Class[] { ResultSetMetaData.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getColumnCount":
+                        return labels.length;
+                    case "getColumnLabel":
+                        return labels[(Integer) args[0] - 1];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        int[] cursor = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(RowCacheTest.class.getClassLoader(),
+            new Class[] { ResultSet.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getMetaData":
+                        return metaData;
+                    case "next":
+                        return ++cursor[0] < values.size();
+                    case "getObject":
+                        return values.get(cursor[0])[(Integer) args[0] - 1];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
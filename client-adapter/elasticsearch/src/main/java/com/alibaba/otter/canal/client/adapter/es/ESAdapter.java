@@ -11,6 +11,7 @@ import java.util.regex.Pattern;
 import javax.sql.DataSource;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.elasticsearch.action.search.SearchResponse;
 
 import com.alibaba.druid.pool.DruidDataSource;
@@ -47,6 +48,8 @@ public class ESAdapter implements OuterAdapter {
 
     private Properties                             envProperties;
 
+    private RowCache                               rowCache;
+
     public ESSyncService getEsSyncService() {
         return esSyncService;
     }
@@ -98,6 +101,14 @@ public class ESAdapter implements OuterAdapter {
             }
 
             ESTemplate esTemplate = new ESTemplate(esConnection);
+            // 反查源库结果的本地缓存, 默认关闭
+            long rowCacheMaxBytes = NumberUtils.toLong(properties.get("rowCache.maxBytes"), 0L);
+            if (rowCacheMaxBytes > 0) {
+                rowCache = new RowCache(rowCacheMaxBytes,
+                    NumberUtils.toLong(properties.get("rowCache.expireSeconds"), 600L),
+                    NumberUtils.toLong(properties.get("rowCache.clockSkewMillis"), 60000L));
+                esTemplate.setRowCache(rowCache);
+            }
             esSyncService = new ESSyncService(esTemplate);
 
             esConfigMonitor = new ESConfigMonitor();
@@ -176,6 +187,19 @@ public class ESAdapter implements OuterAdapter {
         }
     }
 
+    @Override
+    public boolean supportsParallelSync() {
+        // lane按源表主键分区, 关联表的变更更新的是主表_id对应的文档, 和主表的变更可能落在不同lane上乱序
+        for (ESSyncConfig config : esSyncConfig.values()) {
+            SchemaItem schemaItem = config.getEsMapping().getSchemaItem();
+            if (schemaItem == null || schemaItem.getAliasTableItems().size() != 1
+                || schemaItem.getMainTable().isSubQuery()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public EtlResult etl(String task, List<String> params) {
         EtlResult etlResult = new EtlResult();
@@ -232,6 +256,9 @@ public class ESAdapter implements OuterAdapter {
         Map<String, Object> res = new LinkedHashMap<>();
         res.put("esIndex", mapping.get_index());
         res.put("count", rowCount);
+        if (rowCache != null) {
+            res.put("rowCache", rowCache.metrics());
+        }
         return res;
     }
 
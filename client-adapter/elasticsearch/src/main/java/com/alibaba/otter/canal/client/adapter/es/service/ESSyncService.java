@@ -21,6 +21,7 @@ import com.alibaba.otter.canal.client.adapter.es.support.ESSyncUtil;
 import com.alibaba.otter.canal.client.adapter.es.support.ESTemplate;
 import com.alibaba.otter.canal.client.adapter.support.DatasourceConfig;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.RowCache;
 import com.alibaba.otter.canal.client.adapter.support.Util;
 
 /**
@@ -92,11 +93,15 @@ public class ESSyncService {
 
             String type = dml.getType();
             if (type != null && type.equalsIgnoreCase("INSERT")) {
+                invalidateRowCache(config, dml);
                 insert(config, dml);
             } else if (type != null && type.equalsIgnoreCase("UPDATE")) {
+                invalidateRowCache(config, dml);
                 update(config, dml);
             } else if (type != null && type.equalsIgnoreCase("DELETE")) {
+                // 删除时反查的是删除后的数据, 先用缓存中删除前的结果获取id再失效
                 delete(config, dml);
+                invalidateRowCache(config, dml);
             } else {
                 return;
             }
@@ -466,27 +471,20 @@ public class ESSyncService {
                 mapping.get_index(),
                 sql.replace("\n", " "));
         }
-        Util.sqlRS(ds, sql, rs -> {
-            try {
-                while (rs.next()) {
-                    Map<String, Object> esFieldData = new LinkedHashMap<>();
-                    Object idVal = esTemplate.getESDataFromRS(mapping, rs, esFieldData);
+        List<Map<String, Object>> rows = queryMainTableRows(config, ds, sql, condition);
+        for (Map<String, Object> row : rows) {
+            Map<String, Object> esFieldData = new LinkedHashMap<>();
+            Object idVal = esTemplate.getESDataFromRow(mapping, row, esFieldData);
 
-                    if (logger.isTraceEnabled()) {
-                        logger.trace(
-                            "Main table insert to es index by query sql, destination:{}, table: {}, index: {}, id: {}",
-                            config.getDestination(),
-                            dml.getTable(),
-                            mapping.get_index(),
-                            idVal);
-                    }
-                    esTemplate.insert(mapping, idVal, esFieldData);
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            if (logger.isTraceEnabled()) {
+                logger.trace("Main table insert to es index by query sql, destination:{}, table: {}, index: {}, id: {}",
+                    config.getDestination(),
+                    dml.getTable(),
+                    mapping.get_index(),
+                    idVal);
             }
-            return 0;
-        });
+            esTemplate.insert(mapping, idVal, esFieldData);
+        }
     }
 
     private void mainTableDelete(ESSyncConfig config, Dml dml, Map<String, Object> data) {
@@ -502,35 +500,28 @@ public class ESSyncService {
                 mapping.get_index(),
                 sql.replace("\n", " "));
         }
-        Util.sqlRS(ds, sql, rs -> {
-            try {
-                Map<String, Object> esFieldData = null;
-                if (mapping.getPk() != null) {
-                    esFieldData = new LinkedHashMap<>();
-                    esTemplate.getESDataFromDmlData(mapping, data, esFieldData);
-                    esFieldData.remove(mapping.getPk());
-                    for (String key : esFieldData.keySet()) {
-                        esFieldData.put(Util.cleanColumn(key), null);
-                    }
-                }
-                while (rs.next()) {
-                    Object idVal = esTemplate.getIdValFromRS(mapping, rs);
+        Map<String, Object> esFieldData = null;
+        if (mapping.getPk() != null) {
+            esFieldData = new LinkedHashMap<>();
+            esTemplate.getESDataFromDmlData(mapping, data, esFieldData);
+            esFieldData.remove(mapping.getPk());
+            for (String key : esFieldData.keySet()) {
+                esFieldData.put(Util.cleanColumn(key), null);
+            }
+        }
+        List<Map<String, Object>> rows = queryMainTableRows(config, ds, sql, condition);
+        for (Map<String, Object> row : rows) {
+            Object idVal = esTemplate.getIdValFromRow(mapping, row);
 
-                    if (logger.isTraceEnabled()) {
-                        logger.trace(
-                            "Main table delete to es index by query sql, destination:{}, table: {}, index: {}, id: {}",
-                            config.getDestination(),
-                            dml.getTable(),
-                            mapping.get_index(),
-                            idVal);
-                    }
-                    esTemplate.delete(mapping, idVal, esFieldData);
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            if (logger.isTraceEnabled()) {
+                logger.trace("Main table delete to es index by query sql, destination:{}, table: {}, index: {}, id: {}",
+                    config.getDestination(),
+                    dml.getTable(),
+                    mapping.get_index(),
+                    idVal);
             }
-            return 0;
-        });
+            esTemplate.delete(mapping, idVal, esFieldData);
+        }
     }
 
     /**
@@ -845,27 +836,79 @@ public class ESSyncService {
                 mapping.get_index(),
                 sql.replace("\n", " "));
         }
-        Util.sqlRS(ds, sql, rs -> {
-            try {
-                while (rs.next()) {
-                    Map<String, Object> esFieldData = new LinkedHashMap<>();
-                    Object idVal = esTemplate.getESDataFromRS(mapping, rs, old, esFieldData);
+        List<Map<String, Object>> rows = queryMainTableRows(config, ds, sql, condition);
+        for (Map<String, Object> row : rows) {
+            Map<String, Object> esFieldData = new LinkedHashMap<>();
+            Object idVal = esTemplate.getESDataFromRow(mapping, row, old, esFieldData);
 
-                    if (logger.isTraceEnabled()) {
-                        logger.trace(
-                            "Main table update to es index by query sql, destination:{}, table: {}, index: {}, id: {}",
-                            config.getDestination(),
-                            dml.getTable(),
-                            mapping.get_index(),
-                            idVal);
-                    }
-                    esTemplate.update(mapping, idVal, esFieldData);
+            if (logger.isTraceEnabled()) {
+                logger.trace("Main table update to es index by query sql, destination:{}, table: {}, index: {}, id: {}",
+                    config.getDestination(),
+                    dml.getTable(),
+                    mapping.get_index(),
+                    idVal);
+            }
+            esTemplate.update(mapping, idVal, esFieldData);
+        }
+    }
+
+    /**
+     * 按主键条件反查主表sql, 开启缓存时走本地缓存
+     */
+    private List<Map<String, Object>> queryMainTableRows(ESSyncConfig config, DataSource ds, String sql,
+                                                         String condition) {
+        return esTemplate.queryRows(ds,
+            sql,
+            null,
+            ESSyncUtil.rowCacheMapping(config),
+            config.getEsMapping().getSchemaItem().getMainTable().getTableName(),
+            condition);
+    }
+
+    /**
+     * 根据dml失效反查缓存, 只有执行时间晚于缓存加载时间的变更才会真正失效
+     *
+     * @param config es配置
+     * @param dml dml数据
+     */
+    private void invalidateRowCache(ESSyncConfig config, Dml dml) {
+        RowCache rowCache = esTemplate.getRowCache();
+        List<Map<String, Object>> dataList = dml.getData();
+        if (rowCache == null || dataList == null || dataList.isEmpty()) {
+            return;
+        }
+        ESMapping mapping = config.getEsMapping();
+        SchemaItem schemaItem = mapping.getSchemaItem();
+        if (schemaItem.getAliasTableItems().size() == 1 && schemaItem.isAllFieldsSimple()) {
+            // 单表简单字段不反查
+            return;
+        }
+        String cacheMapping = ESSyncUtil.rowCacheMapping(config);
+        String mainTable = schemaItem.getMainTable().getTableName();
+        if (mainTable.equalsIgnoreCase(dml.getTable())) {
+            List<Map<String, Object>> oldList = dml.getOld();
+            for (int i = 0; i < dataList.size(); i++) {
+                Map<String, Object> data = dataList.get(i);
+                if (data == null || data.isEmpty()) {
+                    continue;
+                }
+                rowCache.invalidate(cacheMapping, mainTable, ESSyncUtil.pkConditionSql(mapping, data), dml.getEs());
+                Map<String, Object> old = oldList != null && i < oldList.size() ? oldList.get(i) : null;
+                if (old != null && !old.isEmpty()) {
+                    Map<String, Object> before = new HashMap<>(data);
+                    before.putAll(old);
+                    rowCache.invalidate(cacheMapping,
+                        mainTable,
+                        ESSyncUtil.pkConditionSql(mapping, before),
+                        dml.getEs());
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
             }
-            return 0;
-        });
+            // 主表变更会影响关联表 update by query 的结果
+            rowCache.invalidate(cacheMapping, ESSyncUtil.QUERY_CACHE_SCOPE, dml.getEs());
+        } else {
+            // 从表变更无法确定影响的主表行, 整个mapping失效
+            rowCache.invalidate(cacheMapping, dml.getEs());
+        }
     }
 
     /**
@@ -19,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.otter.canal.client.adapter.es.config.ESSyncConfig;
 import com.alibaba.otter.canal.client.adapter.es.config.ESSyncConfig.ESMapping;
 import com.alibaba.otter.canal.client.adapter.es.config.SchemaItem;
 import com.alibaba.otter.canal.client.adapter.es.config.SchemaItem.ColumnItem;
@@ -33,7 +34,21 @@ import com.alibaba.otter.canal.client.adapter.support.Util;
  */
 public class ESSyncUtil {
 
-    private static Logger logger = LoggerFactory.getLogger(ESSyncUtil.class);
+    private static Logger      logger            = LoggerFactory.getLogger(ESSyncUtil.class);
+
+    /**
+     * 反查缓存中 update by query 结果的所属范围
+     */
+    public static final String QUERY_CACHE_SCOPE = "$query";
+
+    /**
+     * 反查缓存中的mapping标识
+     */
+    public static String rowCacheMapping(ESSyncConfig config) {
+        ESMapping mapping = config.getEsMapping();
+        return config.getDestination() + "_" + mapping.get_index() + "-" + mapping.get_type() + "-"
+               + mapping.getSql().hashCode();
+    }
 
     public static Object convertToEsObj(Object val, String fieldInfo) {
         if (val == null) {
@@ -5,6 +5,7 @@ import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 import javax.sql.DataSource;
 
@@ -27,6 +28,7 @@ import com.alibaba.otter.canal.client.adapter.es.config.SchemaItem.ColumnItem;
 import com.alibaba.otter.canal.client.adapter.es.config.SchemaItem.FieldItem;
 import com.alibaba.otter.canal.client.adapter.es.support.ESConnection.*;
 import com.alibaba.otter.canal.client.adapter.support.DatasourceConfig;
+import com.alibaba.otter.canal.client.adapter.support.RowCache;
 import com.alibaba.otter.canal.client.adapter.support.Util;
 
 /**
@@ -37,25 +39,36 @@ import com.alibaba.otter.canal.client.adapter.support.Util;
  */
 public class ESTemplate {
 
-    private static final Logger logger         = LoggerFactory.getLogger(ESTemplate.class);
+    private static final Logger        logger         = LoggerFactory.getLogger(ESTemplate.class);
 
-    private static final int    MAX_BATCH_SIZE = 1000;
+    private static final int           MAX_BATCH_SIZE = 1000;
 
-    private ESConnection        esConnection;
+    private ESConnection               esConnection;
 
-    private ESBulkRequest       esBulkRequest;
+    // 每个同步线程独立的批量请求, 支持适配器并行同步
+    private ThreadLocal<ESBulkRequest> esBulkRequest;
+
+    private RowCache                   rowCache;
 
     public ESTemplate(ESConnection esConnection){
         this.esConnection = esConnection;
-        this.esBulkRequest = this.esConnection.new ESBulkRequest();
+        this.esBulkRequest = ThreadLocal.withInitial(() -> this.esConnection.new ESBulkRequest());
     }
 
     public ESBulkRequest getBulk() {
-        return esBulkRequest;
+        return esBulkRequest.get();
     }
 
     public void resetBulkRequestBuilder() {
-        this.esBulkRequest.resetBulk();
+        this.esBulkRequest.get().resetBulk();
+    }
+
+    public RowCache getRowCache() {
+        return rowCache;
+    }
+
+    public void setRowCache(RowCache rowCache) {
+        this.rowCache = rowCache;
     }
 
     /**
@@ -142,20 +155,15 @@ public class ESTemplate {
         // TODO 直接外部包裹sql会导致全表扫描性能低, 待优化拼接内部where条件
         int len = sql.length();
         sql.delete(len - 4, len);
-        Integer syncCount = (Integer) Util.sqlRS(ds, sql.toString(), values, rs -> {
-            int count = 0;
-            try {
-                while (rs.next()) {
-                    Object idVal = getIdValFromRS(mapping, rs);
-                    append4Update(mapping, idVal, esFieldData);
-                    commitBulk();
-                    count++;
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            return count;
-        });
+        List<Map<String, Object>> rows = queryRows(ds, sql.toString(), values, ESSyncUtil.rowCacheMapping(config),
+            ESSyncUtil.QUERY_CACHE_SCOPE, paramsTmp.toString());
+        int syncCount = 0;
+        for (Map<String, Object> row : rows) {
+            Object idVal = getIdValFromRow(mapping, row);
+            append4Update(mapping, idVal, esFieldData);
+            commitBulk();
+            syncCount++;
+        }
         if (logger.isTraceEnabled()) {
             logger.trace("Update ES by query affected {} records", syncCount);
         }
@@ -276,13 +284,61 @@ public class ESTemplate {
         }
     }
 
-    public Object getESDataFromRS(ESMapping mapping, ResultSet resultSet,
-                                  Map<String, Object> esFieldData) throws SQLException {
+    /**
+     * 反查源库, 开启缓存时优先从缓存中获取
+     *
+     * @param ds 数据源
+     * @param sql 查询sql
+     * @param values sql参数
+     * @param cacheMapping 缓存所属mapping
+     * @param cacheTable 缓存所属表
+     * @param cacheKey 缓存key
+     * @return 行数据
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> queryRows(DataSource ds, String sql, List<Object> values, String cacheMapping,
+                                               String cacheTable, String cacheKey) {
+        Supplier<List<Map<String, Object>>> loader = () -> (List<Map<String, Object>>) Util
+            .sqlRS(ds, sql, values, rs -> {
+                try {
+                    return RowCache.readRows(rs);
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        if (rowCache == null) {
+            return loader.get();
+        }
+        return rowCache.get(cacheMapping, cacheTable, cacheKey, loader);
+    }
+
+    public Object getValFromRow(ESMapping mapping, Map<String, Object> row, String fieldName, String columnName) {
+        fieldName = Util.cleanColumn(fieldName);
+        columnName = Util.cleanColumn(columnName);
+        String esType = getEsType(mapping, fieldName);
+
+        Object value = row.get(columnName.toLowerCase());
+        if (value instanceof Boolean) {
+            if (!"boolean".equals(esType)) {
+                // 与 resultSet.getByte 保持一致
+                value = (byte) ((Boolean) value ? 1 : 0);
+            }
+        }
+
+        // 如果是对象类型
+        if (mapping.getObjFields().containsKey(fieldName)) {
+            return ESSyncUtil.convertToEsObj(value, mapping.getObjFields().get(fieldName));
+        } else {
+            return ESSyncUtil.typeConvert(value, esType);
+        }
+    }
+
+    public Object getESDataFromRow(ESMapping mapping, Map<String, Object> row, Map<String, Object> esFieldData) {
         SchemaItem schemaItem = mapping.getSchemaItem();
         String idFieldName = mapping.get_id() == null ? mapping.getPk() : mapping.get_id();
         Object resultIdVal = null;
         for (FieldItem fieldItem : schemaItem.getSelectFields().values()) {
-            Object value = getValFromRS(mapping, resultSet, fieldItem.getFieldName(), fieldItem.getFieldName());
+            Object value = getValFromRow(mapping, row, fieldItem.getFieldName(), fieldItem.getFieldName());
 
             if (fieldItem.getFieldName().equals(idFieldName)) {
                 resultIdVal = value;
@@ -295,48 +351,46 @@ public class ESTemplate {
         }
 
         // 添加父子文档关联信息
-        putRelationDataFromRS(mapping, schemaItem, resultSet, esFieldData);
+        putRelationDataFromRow(mapping, schemaItem, row, esFieldData);
 
         return resultIdVal;
     }
 
-    public Object getIdValFromRS(ESMapping mapping, ResultSet resultSet) throws SQLException {
+    public Object getIdValFromRow(ESMapping mapping, Map<String, Object> row) {
         SchemaItem schemaItem = mapping.getSchemaItem();
         String idFieldName = mapping.get_id() == null ? mapping.getPk() : mapping.get_id();
         Object resultIdVal = null;
         for (FieldItem fieldItem : schemaItem.getSelectFields().values()) {
-            Object value = getValFromRS(mapping, resultSet, fieldItem.getFieldName(), fieldItem.getFieldName());
-
             if (fieldItem.getFieldName().equals(idFieldName)) {
-                resultIdVal = value;
+                resultIdVal = getValFromRow(mapping, row, fieldItem.getFieldName(), fieldItem.getFieldName());
                 break;
             }
         }
         return resultIdVal;
     }
 
-    public Object getESDataFromRS(ESMapping mapping, ResultSet resultSet, Map<String, Object> dmlOld,
-                                  Map<String, Object> esFieldData) throws SQLException {
+    public Object getESDataFromRow(ESMapping mapping, Map<String, Object> row, Map<String, Object> dmlOld,
+                                   Map<String, Object> esFieldData) {
         SchemaItem schemaItem = mapping.getSchemaItem();
         String idFieldName = mapping.get_id() == null ? mapping.getPk() : mapping.get_id();
         Object resultIdVal = null;
         for (FieldItem fieldItem : schemaItem.getSelectFields().values()) {
             if (fieldItem.getFieldName().equals(idFieldName)) {
-                resultIdVal = getValFromRS(mapping, resultSet, fieldItem.getFieldName(), fieldItem.getFieldName());
+                resultIdVal = getValFromRow(mapping, row, fieldItem.getFieldName(), fieldItem.getFieldName());
             }
 
             for (ColumnItem columnItem : fieldItem.getColumnItems()) {
                 if (dmlOld.containsKey(columnItem.getColumnName())
                     && !mapping.getSkips().contains(fieldItem.getFieldName())) {
                     esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()),
-                        getValFromRS(mapping, resultSet, fieldItem.getFieldName(), fieldItem.getFieldName()));
+                        getValFromRow(mapping, row, fieldItem.getFieldName(), fieldItem.getFieldName()));
                     break;
                 }
             }
         }
 
         // 添加父子文档关联信息
-        putRelationDataFromRS(mapping, schemaItem, resultSet, esFieldData);
+        putRelationDataFromRow(mapping, schemaItem, row, esFieldData);
 
         return resultIdVal;
     }
@@ -426,8 +480,8 @@ public class ESTemplate {
         return resultIdVal;
     }
 
-    private void putRelationDataFromRS(ESMapping mapping, SchemaItem schemaItem, ResultSet resultSet,
-                                       Map<String, Object> esFieldData) {
+    private void putRelationDataFromRow(ESMapping mapping, SchemaItem schemaItem, Map<String, Object> row,
+                                        Map<String, Object> esFieldData) {
         // 添加父子文档关联信息
         if (!mapping.getRelations().isEmpty()) {
             mapping.getRelations().forEach((relationField, relationMapping) -> {
@@ -435,15 +489,10 @@ public class ESTemplate {
                 relations.put("name", relationMapping.getName());
                 if (StringUtils.isNotEmpty(relationMapping.getParent())) {
                     FieldItem parentFieldItem = schemaItem.getSelectFields().get(relationMapping.getParent());
-                    Object parentVal;
-                    try {
-                        parentVal = getValFromRS(mapping,
-                            resultSet,
-                            parentFieldItem.getFieldName(),
-                            parentFieldItem.getFieldName());
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e);
-                    }
+                    Object parentVal = getValFromRow(mapping,
+                        row,
+                        parentFieldItem.getFieldName(),
+                        parentFieldItem.getFieldName());
                     if (parentVal != null) {
                         relations.put("parent", parentVal.toString());
                         esFieldData.put("$parent_routing", parentVal.toString());
@@ -5,6 +5,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.TableName;
@@ -94,7 +95,11 @@ public class HbaseAdapter implements OuterAdapter {
             Configuration hbaseConfig = HBaseConfiguration.create();
             properties.forEach(hbaseConfig::set);
             hbaseTemplate = new HbaseTemplate(hbaseConfig);
-            hbaseSyncService = new HbaseSyncService(hbaseTemplate);
+            // mutator.async: 使用BufferedMutator异步写入, 在每个同步批次结束时flush, 默认关闭
+            boolean buffered = "true".equalsIgnoreCase(properties.get("mutator.async"));
+            int convertThreads = NumberUtils.toInt(properties.get("convert.threads"),
+                Runtime.getRuntime().availableProcessors());
+            hbaseSyncService = new HbaseSyncService(hbaseTemplate, buffered, convertThreads);
 
             configMonitor = new HbaseConfigMonitor();
             configMonitor.init(this, envProperties);
@@ -111,6 +116,7 @@ public class HbaseAdapter implements OuterAdapter {
         for (Dml dml : dmls) {
             sync(dml);
         }
+        hbaseSyncService.flush();
     }
 
     private void sync(Dml dml) {
@@ -144,6 +150,16 @@ public class HbaseAdapter implements OuterAdapter {
         }
     }
 
+    @Override
+    public boolean supportsParallelSync() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsColumnarDml() {
+        return true;
+    }
+
     @Override
     public EtlResult etl(String task, List<String> params) {
         EtlResult etlResult = new EtlResult();
@@ -208,6 +224,9 @@ public class HbaseAdapter implements OuterAdapter {
         if (configMonitor != null) {
             configMonitor.destroy();
         }
+        if (hbaseSyncService != null) {
+            hbaseSyncService.close();
+        }
         try {
             hbaseTemplate.close();
         } catch (IOException e) {
@@ -1,6 +1,17 @@
 package com.alibaba.otter.canal.client.adapter.hbase.service;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
@@ -10,7 +21,9 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.otter.canal.client.adapter.hbase.config.MappingConfig;
 import com.alibaba.otter.canal.client.adapter.hbase.support.*;
+import com.alibaba.otter.canal.client.adapter.support.ColumnarDml;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.DmlSchema;
 
 /**
  * HBase同步操作业务
@@ -20,12 +33,54 @@ import com.alibaba.otter.canal.client.adapter.support.Dml;
  */
 public class HbaseSyncService {
 
-    private static Logger logger = LoggerFactory.getLogger(HbaseSyncService.class);
+    private static Logger    logger             = LoggerFactory.getLogger(HbaseSyncService.class);
 
-    private HbaseTemplate hbaseTemplate;                                           // HBase操作模板
+    // 超过该行数的dml并行做rowKey及类型转换
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private HbaseTemplate    hbaseTemplate;                                                      // HBase操作模板
+
+    private boolean          buffered;                                                           // 是否使用BufferedMutator异步写入
+
+    private ForkJoinPool     convertPool;                                                        // 行转换线程池
+
+    // 异步写入模式下缓冲区中还未提交的delete rowKey, 同一批次内delete和put的时间戳相同, put会被delete覆盖
+    private final ConcurrentMap<String, Set<ByteBuffer>> pendingDeletes = new ConcurrentHashMap<>();
+
+    // 多个lane共用同一个缓冲区, 写入缓冲区(读锁)和清理pendingDeletes+flush(写锁)互斥, 保证清理掉的delete都已经提交
+    private final ReadWriteLock                          bufferLock     = new ReentrantReadWriteLock();
 
     public HbaseSyncService(HbaseTemplate hbaseTemplate){
+        this(hbaseTemplate, false, 1);
+    }
+
+    public HbaseSyncService(HbaseTemplate hbaseTemplate, boolean buffered, int convertThreads){
         this.hbaseTemplate = hbaseTemplate;
+        this.buffered = buffered;
+        if (convertThreads > 1) {
+            this.convertPool = new ForkJoinPool(convertThreads);
+        }
+    }
+
+    /**
+     * 批次结束时调用, 异步写入模式下提交缓冲区中的数据
+     */
+    public void flush() {
+        if (buffered) {
+            bufferLock.writeLock().lock();
+            try {
+                pendingDeletes.clear();
+                hbaseTemplate.flush();
+            } finally {
+                bufferLock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void close() {
+        if (convertPool != null) {
+            convertPool.shutdown();
+        }
     }
 
     public void sync(MappingConfig config, Dml dml) {
@@ -51,11 +106,6 @@ public class HbaseSyncService {
      * @param dml DML数据
      */
     private void insert(MappingConfig config, Dml dml) {
-        List<Map<String, Object>> data = dml.getData();
-        if (data == null || data.isEmpty()) {
-            return;
-        }
-
         MappingConfig.HbaseMapping hbaseMapping = config.getHbaseMapping();
 
         // if (!validHTable(config)) {
@@ -63,39 +113,73 @@ public class HbaseSyncService {
         // hbaseMapping.getHbaseTable());
         // return;
         // }
+        List<HRow> hRows;
+        if (dml instanceof ColumnarDml) {
+            // 列式dml按列下标取值, 不创建行Map视图
+            ColumnarDml columnarDml = (ColumnarDml) dml;
+            hRows = convert(columnarDml.getRowCount(), i -> {
+                HRow hRow = newHRow(hbaseMapping, column -> columnarDml.getValue(i, column));
+                convertData2Row(hbaseMapping, hRow, columnarDml, i);
+                return checkRowKey(hRow);
+            });
+        } else {
+            List<Map<String, Object>> data = dml.getData();
+            if (data == null) {
+                return;
+            }
+            hRows = convert(data, r -> {
+                HRow hRow = newHRow(hbaseMapping, r::get);
+                convertData2Row(hbaseMapping, hRow, r);
+                return checkRowKey(hRow);
+            });
+        }
+        if (hRows.isEmpty()) {
+            return;
+        }
+
         int i = 1;
         boolean complete = false;
         List<HRow> rows = new ArrayList<>();
-        for (Map<String, Object> r : data) {
-            HRow hRow = new HRow();
-
-            // 拼接复合rowKey
-            if (hbaseMapping.getRowKey() != null) {
-                String[] rowKeyColumns = hbaseMapping.getRowKey().trim().split(",");
-                String rowKeyVale = getRowKeys(rowKeyColumns, r);
-                // params.put("rowKey", Bytes.toBytes(rowKeyVale));
-                hRow.setRowKey(Bytes.toBytes(rowKeyVale));
-            }
-
-            convertData2Row(hbaseMapping, hRow, r);
-            if (hRow.getRowKey() == null) {
-                throw new RuntimeException("empty rowKey");
-            }
+        for (HRow hRow : hRows) {
             rows.add(hRow);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rows.isEmpty()) {
-                hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+                puts(hbaseMapping.getHbaseTable(), rows);
                 rows.clear();
                 complete = true;
             }
             i++;
         }
         if (!complete && !rows.isEmpty()) {
-            hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+            puts(hbaseMapping.getHbaseTable(), rows);
         }
 
     }
 
+    /**
+     * 创建HRow, 配置了复合rowKey时拼接rowKey
+     *
+     * @param hbaseMapping hbase映射配置
+     * @param row 按列名取值
+     */
+    private static HRow newHRow(MappingConfig.HbaseMapping hbaseMapping, Function<String, Object> row) {
+        HRow hRow = new HRow();
+        // 拼接复合rowKey
+        if (hbaseMapping.getRowKey() != null) {
+            String[] rowKeyColumns = hbaseMapping.getRowKey().trim().split(",");
+            String rowKeyVale = getRowKeys(rowKeyColumns, row);
+            hRow.setRowKey(Bytes.toBytes(rowKeyVale));
+        }
+        return hRow;
+    }
+
+    private static HRow checkRowKey(HRow hRow) {
+        if (hRow.getRowKey() == null) {
+            throw new RuntimeException("empty rowKey");
+        }
+        return hRow;
+    }
+
     /**
      * 将Map数据转换为HRow行数据
      *
@@ -104,53 +188,84 @@ public class HbaseSyncService {
      * @param data Map数据
      */
     private static void convertData2Row(MappingConfig.HbaseMapping hbaseMapping, HRow hRow, Map<String, Object> data) {
-        Map<String, MappingConfig.ColumnItem> columnItems = hbaseMapping.getColumnItems();
         int i = 0;
         for (Map.Entry<String, Object> entry : data.entrySet()) {
             if (hbaseMapping.getExcludeColumns() != null && hbaseMapping.getExcludeColumns().contains(entry.getKey())) {
                 continue;
             }
-            if (entry.getValue() != null) {
-                MappingConfig.ColumnItem columnItem = columnItems.get(entry.getKey());
+            convertColumn2Row(hbaseMapping, hRow, entry.getKey(), entry.getValue(), i == 0);
+            i++;
+        }
+    }
+
+    /**
+     * 将列式dml的第row行转换为HRow行数据
+     *
+     * @param hbaseMapping hbase映射配置
+     * @param hRow 行对象
+     * @param dml 列式dml
+     * @param row 行下标
+     */
+    private static void convertData2Row(MappingConfig.HbaseMapping hbaseMapping, HRow hRow, ColumnarDml dml,
+                                        int row) {
+        DmlSchema schema = dml.getSchema();
+        int i = 0;
+        for (int column = 0; column < schema.size(); column++) {
+            String name = schema.getName(column);
+            if (hbaseMapping.getExcludeColumns() != null && hbaseMapping.getExcludeColumns().contains(name)) {
+                continue;
+            }
+            convertColumn2Row(hbaseMapping, hRow, name, dml.getValue(row, column), i == 0);
+            i++;
+        }
+    }
 
-                byte[] bytes = typeConvert(columnItem, hbaseMapping, entry.getValue());
+    /**
+     * 将单列的值写入HRow
+     *
+     * @param first 是否为第一列, 没有配置rowKey时第一列作为rowKey
+     */
+    private static void convertColumn2Row(MappingConfig.HbaseMapping hbaseMapping, HRow hRow, String name,
+                                          Object value, boolean first) {
+        if (value == null) {
+            return;
+        }
+        MappingConfig.ColumnItem columnItem = hbaseMapping.getColumnItems().get(name);
 
-                if (columnItem == null) {
-                    String familyName = hbaseMapping.getFamily();
-                    String qualifier = entry.getKey();
-                    if (hbaseMapping.isUppercaseQualifier()) {
-                        qualifier = qualifier.toUpperCase();
-                    }
+        byte[] bytes = typeConvert(columnItem, hbaseMapping, value);
 
-                    if (hbaseMapping.getRowKey() == null && i == 0) {
-                        hRow.setRowKey(bytes);
+        if (columnItem == null) {
+            String familyName = hbaseMapping.getFamily();
+            String qualifier = name;
+            if (hbaseMapping.isUppercaseQualifier()) {
+                qualifier = qualifier.toUpperCase();
+            }
+
+            if (hbaseMapping.getRowKey() == null && first) {
+                hRow.setRowKey(bytes);
+            } else {
+                hRow.addCell(familyName, qualifier, bytes);
+            }
+        } else {
+            if (columnItem.isRowKey()) {
+                if (columnItem.getRowKeyLen() != null) {
+                    if (value instanceof Number) {
+                        String v = String.format("%0" + columnItem.getRowKeyLen() + "d", ((Number) value).longValue());
+                        bytes = Bytes.toBytes(v);
                     } else {
-                        hRow.addCell(familyName, qualifier, bytes);
-                    }
-                } else {
-                    if (columnItem.isRowKey()) {
-                        if (columnItem.getRowKeyLen() != null && entry.getValue() != null) {
-                            if (entry.getValue() instanceof Number) {
-                                String v = String.format("%0" + columnItem.getRowKeyLen() + "d",
-                                    ((Number) entry.getValue()).longValue());
-                                bytes = Bytes.toBytes(v);
-                            } else {
-                                try {
-                                    String v = String.format("%0" + columnItem.getRowKeyLen() + "d",
-                                        Integer.parseInt((String) entry.getValue()));
-                                    bytes = Bytes.toBytes(v);
-                                } catch (Exception e) {
-                                    logger.error(e.getMessage(), e);
-                                }
-                            }
+                        try {
+                            String v = String.format("%0" + columnItem.getRowKeyLen() + "d",
+                                Integer.parseInt((String) value));
+                            bytes = Bytes.toBytes(v);
+                        } catch (Exception e) {
+                            logger.error(e.getMessage(), e);
                         }
-                        hRow.setRowKey(bytes);
-                    } else {
-                        hRow.addCell(columnItem.getFamily(), columnItem.getQualifier(), bytes);
                     }
                 }
+                hRow.setRowKey(bytes);
+            } else {
+                hRow.addCell(columnItem.getFamily(), columnItem.getQualifier(), bytes);
             }
-            i++;
         }
     }
 
@@ -197,12 +312,12 @@ public class HbaseSyncService {
                     }
                 }
 
-                String rowKeyVale = getRowKeys(rowKeyColumns, r);
+                String rowKeyVale = getRowKeys(rowKeyColumns, r::get);
                 rowKeyBytes = Bytes.toBytes(rowKeyVale);
             } else if (rowKeyColumn == null) {
                 rowKeyBytes = typeConvert(null, hbaseMapping, r.values().iterator().next());
             } else {
-                rowKeyBytes = getRowKeyBytes(hbaseMapping, rowKeyColumn, r);
+                rowKeyBytes = getRowKeyBytes(hbaseMapping, rowKeyColumn, r::get);
             }
             if (rowKeyBytes == null) throw new RuntimeException("rowKey值为空");
 
@@ -245,7 +360,7 @@ public class HbaseSyncService {
             rows.add(hRow);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rows.isEmpty()) {
-                hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+                puts(hbaseMapping.getHbaseTable(), rows);
                 rows.clear();
                 complete = true;
             }
@@ -253,16 +368,11 @@ public class HbaseSyncService {
             index++;
         }
         if (!complete && !rows.isEmpty()) {
-            hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+            puts(hbaseMapping.getHbaseTable(), rows);
         }
     }
 
     private void delete(MappingConfig config, Dml dml) {
-        List<Map<String, Object>> data = dml.getData();
-        if (data == null || data.isEmpty()) {
-            return;
-        }
-
         MappingConfig.HbaseMapping hbaseMapping = config.getHbaseMapping();
 
         // if (!validHTable(config)) {
@@ -271,36 +381,66 @@ public class HbaseSyncService {
         // return;
         // }
 
-        MappingConfig.ColumnItem rowKeyColumn = hbaseMapping.getRowKeyColumn();
+        List<byte[]> rowKeyList;
+        if (dml instanceof ColumnarDml) {
+            // 列式dml按列下标取值, 不创建行Map视图
+            ColumnarDml columnarDml = (ColumnarDml) dml;
+            rowKeyList = convert(columnarDml.getRowCount(),
+                i -> getDeleteRowKey(hbaseMapping,
+                    column -> columnarDml.getValue(i, column),
+                    columnarDml.getValue(i, 0)));
+        } else {
+            List<Map<String, Object>> data = dml.getData();
+            if (data == null) {
+                return;
+            }
+            rowKeyList = convert(data,
+                r -> getDeleteRowKey(hbaseMapping, r::get, r.isEmpty() ? null : r.values().iterator().next()));
+        }
+        if (rowKeyList.isEmpty()) {
+            return;
+        }
+
         boolean complete = false;
         int i = 1;
         Set<byte[]> rowKeys = new HashSet<>();
-        for (Map<String, Object> r : data) {
-            byte[] rowKeyBytes;
-
-            if (hbaseMapping.getRowKey() != null) {
-                String[] rowKeyColumns = hbaseMapping.getRowKey().trim().split(",");
-                String rowKeyVale = getRowKeys(rowKeyColumns, r);
-                rowKeyBytes = Bytes.toBytes(rowKeyVale);
-            } else if (rowKeyColumn == null) {
-                // 如果不需要类型转换
-                rowKeyBytes = typeConvert(null, hbaseMapping, r.values().iterator().next());
-            } else {
-                rowKeyBytes = getRowKeyBytes(hbaseMapping, rowKeyColumn, r);
-            }
-            if (rowKeyBytes == null) throw new RuntimeException("rowKey值为空");
+        for (byte[] rowKeyBytes : rowKeyList) {
             rowKeys.add(rowKeyBytes);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rowKeys.isEmpty()) {
-                hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
+                deletes(hbaseMapping.getHbaseTable(), rowKeys);
                 rowKeys.clear();
                 complete = true;
             }
             i++;
         }
         if (!complete && !rowKeys.isEmpty()) {
-            hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
+            deletes(hbaseMapping.getHbaseTable(), rowKeys);
+        }
+    }
+
+    /**
+     * 获取删除行的rowKey
+     *
+     * @param row 按列名取值
+     * @param firstValue 第一列的值, 没有配置rowKey时作为rowKey
+     */
+    private static byte[] getDeleteRowKey(MappingConfig.HbaseMapping hbaseMapping, Function<String, Object> row,
+                                          Object firstValue) {
+        MappingConfig.ColumnItem rowKeyColumn = hbaseMapping.getRowKeyColumn();
+        byte[] rowKeyBytes;
+        if (hbaseMapping.getRowKey() != null) {
+            String[] rowKeyColumns = hbaseMapping.getRowKey().trim().split(",");
+            String rowKeyVale = getRowKeys(rowKeyColumns, row);
+            rowKeyBytes = Bytes.toBytes(rowKeyVale);
+        } else if (rowKeyColumn == null) {
+            // 如果不需要类型转换
+            rowKeyBytes = typeConvert(null, hbaseMapping, firstValue);
+        } else {
+            rowKeyBytes = getRowKeyBytes(hbaseMapping, rowKeyColumn, row);
         }
+        if (rowKeyBytes == null) throw new RuntimeException("rowKey值为空");
+        return rowKeyBytes;
     }
 
     private void deleteAndInsert(MappingConfig config, Dml dml) {
@@ -356,9 +496,8 @@ public class HbaseSyncService {
             rows.add(row);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rows.isEmpty()) {
-                hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
-
-                hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+                deletes(hbaseMapping.getHbaseTable(), rowKeys);
+                puts(hbaseMapping.getHbaseTable(), rows);
                 rowKeys.clear();
                 rows.clear();
                 complete = true;
@@ -367,9 +506,89 @@ public class HbaseSyncService {
             index++;
         }
         if (!complete && !rows.isEmpty()) {
-            hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
-            hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+            deletes(hbaseMapping.getHbaseTable(), rowKeys);
+            puts(hbaseMapping.getHbaseTable(), rows);
+        }
+    }
+
+    /**
+     * 行数据转换, 行数较多时并行执行, 结果保持原有顺序
+     */
+    private <T> List<T> convert(List<Map<String, Object>> data, Function<Map<String, Object>, T> converter) {
+        return convert(data.size(), i -> converter.apply(data.get(i)));
+    }
+
+    private <T> List<T> convert(int size, IntFunction<T> converter) {
+        if (convertPool == null || size < PARALLEL_THRESHOLD) {
+            List<T> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(converter.apply(i));
+            }
+            return result;
+        }
+        try {
+            return convertPool.submit(() -> IntStream.range(0, size)
+                .parallel()
+                .mapToObj(converter)
+                .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(
+                e.getCause());
+        }
+    }
+
+    private void puts(String hbaseTable, List<HRow> rows) {
+        if (buffered) {
+            // 同一行的delete和put不能进入同一个缓冲批次, flush之后其它lane可能又写入了delete, 需要重新检查
+            while (true) {
+                bufferLock.readLock().lock();
+                try {
+                    if (!hasPendingDelete(hbaseTable, rows)) {
+                        hbaseTemplate.bufferedPuts(hbaseTable, rows);
+                        return;
+                    }
+                } finally {
+                    bufferLock.readLock().unlock();
+                }
+                flush();
+            }
+        } else {
+            hbaseTemplate.puts(hbaseTable, rows);
+        }
+    }
+
+    private void deletes(String hbaseTable, Set<byte[]> rowKeys) {
+        if (buffered) {
+            bufferLock.readLock().lock();
+            try {
+                Set<ByteBuffer> deleted = pendingDeletes.computeIfAbsent(hbaseTable,
+                    k -> Collections.newSetFromMap(new ConcurrentHashMap<>()));
+                for (byte[] rowKey : rowKeys) {
+                    deleted.add(ByteBuffer.wrap(rowKey));
+                }
+                hbaseTemplate.bufferedDeletes(hbaseTable, rowKeys);
+            } finally {
+                bufferLock.readLock().unlock();
+            }
+        } else {
+            hbaseTemplate.deletes(hbaseTable, rowKeys);
+        }
+    }
+
+    private boolean hasPendingDelete(String hbaseTable, List<HRow> rows) {
+        Set<ByteBuffer> deleted = pendingDeletes.get(hbaseTable);
+        if (deleted == null) {
+            return false;
+        }
+        for (HRow row : rows) {
+            if (deleted.contains(ByteBuffer.wrap(row.getRowKey()))) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
@@ -416,10 +635,10 @@ public class HbaseSyncService {
      * @param data 数据
      * @return
      */
-    private static String getRowKeys(String[] rowKeyColumns, Map<String, Object> data) {
+    private static String getRowKeys(String[] rowKeyColumns, Function<String, Object> data) {
         StringBuilder rowKeyValue = new StringBuilder();
         for (String rowKeyColumnName : rowKeyColumns) {
-            Object obj = data.get(rowKeyColumnName);
+            Object obj = data.apply(rowKeyColumnName);
             if (obj != null) {
                 rowKeyValue.append(obj.toString());
             }
@@ -433,8 +652,8 @@ public class HbaseSyncService {
     }
 
     private static byte[] getRowKeyBytes(MappingConfig.HbaseMapping hbaseMapping, MappingConfig.ColumnItem rowKeyColumn,
-                                         Map<String, Object> rowData) {
-        Object val = rowData.get(rowKeyColumn.getColumn());
+                                         Function<String, Object> rowData) {
+        Object val = rowData.apply(rowKeyColumn.getColumn());
         String v = null;
         if (rowKeyColumn.getRowKeyLen() != null) {
             if (val instanceof Number) {
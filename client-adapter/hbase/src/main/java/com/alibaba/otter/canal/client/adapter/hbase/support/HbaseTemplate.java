@@ -3,17 +3,23 @@ package com.alibaba.otter.canal.client.adapter.hbase.support;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
@@ -27,16 +33,23 @@ import org.slf4j.LoggerFactory;
  */
 public class HbaseTemplate {
 
-    private Logger        logger = LoggerFactory.getLogger(this.getClass());
+    private Logger                                 logger   = LoggerFactory.getLogger(this.getClass());
 
-    private Configuration hbaseConfig;                                      // hbase配置对象
-    private Connection    conn;                                             // hbase连接
+    private Configuration                          hbaseConfig;                             // hbase配置对象
+    private Connection                             conn;                                    // hbase连接
+    private ConcurrentMap<String, BufferedMutator> mutators = new ConcurrentHashMap<>();    // 表名对应的异步写入器
 
     public HbaseTemplate(Configuration hbaseConfig){
         this.hbaseConfig = hbaseConfig;
         initConn();
     }
 
+    /**
+     * 不创建连接, 供测试替换写入操作使用
+     */
+    protected HbaseTemplate(){
+    }
+
     private void initConn() {
         try {
             this.conn = ConnectionFactory.createConnection(hbaseConfig);
@@ -135,16 +148,7 @@ public class HbaseTemplate {
         boolean flag = false;
         try {
             HTable table = (HTable) getConnection().getTable(TableName.valueOf(tableName));
-            List<Put> puts = new ArrayList<>();
-            for (HRow hRow : rows) {
-                Put put = new Put(hRow.getRowKey());
-                for (HRow.HCell hCell : hRow.getCells()) {
-                    put.addColumn(Bytes.toBytes(hCell.getFamily()),
-                        Bytes.toBytes(hCell.getQualifier()),
-                        hCell.getValue());
-                }
-                puts.add(put);
-            }
+            List<Put> puts = toPuts(rows);
             if (!puts.isEmpty()) {
                 table.put(puts);
             }
@@ -183,7 +187,88 @@ public class HbaseTemplate {
         return flag;
     }
 
+    /**
+     * 异步批量插入, 数据先进入BufferedMutator缓冲区, 由后台按region并发提交, 需要调用{@link #flush()}确保写入
+     *
+     * @param tableName 表名
+     * @param rows 行数据对象集合
+     */
+    public void bufferedPuts(String tableName, List<HRow> rows) {
+        mutate(tableName, toPuts(rows));
+    }
+
+    /**
+     * 异步批量删除, 需要调用{@link #flush()}确保写入
+     *
+     * @param tableName 表名
+     * @param rowKeys rowKey集合
+     */
+    public void bufferedDeletes(String tableName, Set<byte[]> rowKeys) {
+        List<Delete> deletes = new ArrayList<>(rowKeys.size());
+        for (byte[] rowKey : rowKeys) {
+            deletes.add(new Delete(rowKey));
+        }
+        mutate(tableName, deletes);
+    }
+
+    /**
+     * 提交所有缓冲区中的数据, 在canal批次边界调用, 保证ack前数据已写入
+     */
+    public void flush() {
+        for (Map.Entry<String, BufferedMutator> entry : mutators.entrySet()) {
+            try {
+                entry.getValue().flush();
+            } catch (IOException e) {
+                logger.error("flush hbase table {} error", entry.getKey(), e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void mutate(String tableName, List<? extends Mutation> mutations) {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        try {
+            getMutator(tableName).mutate(mutations);
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private BufferedMutator getMutator(String tableName) {
+        return mutators.computeIfAbsent(tableName, k -> {
+            try {
+                // 缓冲区大小等参数取自hbase配置, 如 hbase.client.write.buffer
+                return getConnection().getBufferedMutator(new BufferedMutatorParams(TableName.valueOf(k)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static List<Put> toPuts(List<HRow> rows) {
+        List<Put> puts = new ArrayList<>(rows.size());
+        for (HRow hRow : rows) {
+            Put put = new Put(hRow.getRowKey());
+            for (HRow.HCell hCell : hRow.getCells()) {
+                put.addColumn(Bytes.toBytes(hCell.getFamily()), Bytes.toBytes(hCell.getQualifier()), hCell.getValue());
+            }
+            puts.add(put);
+        }
+        return puts;
+    }
+
     public void close() throws IOException {
+        for (BufferedMutator mutator : mutators.values()) {
+            try {
+                mutator.close();
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        mutators.clear();
         if (conn != null) {
             conn.close();
         }
@@ -0,0 +1,171 @@
+package com.alibaba.otter.canal.client.adapter.hbase.test;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.hbase.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.hbase.service.HbaseSyncService;
+import com.alibaba.otter.canal.client.adapter.hbase.support.HRow;
+import com.alibaba.otter.canal.client.adapter.hbase.support.HbaseTemplate;
+import com.alibaba.otter.canal.client.adapter.support.ColumnarDml;
+import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.DmlSchema;
+
+public class HbaseSyncServiceTest {
+
+    @Test
+    public void testDeleteThenInsertInOneBatch() {
+        RecordHbaseTemplate hbaseTemplate = new RecordHbaseTemplate();
+        HbaseSyncService syncService = new HbaseSyncService(hbaseTemplate, true, 1);
+        MappingConfig config = buildConfig();
+
+        syncService.sync(config, buildDml("INSERT", "1", "a"));
+        syncService.sync(config, buildDml("DELETE", "1", "a"));
+        syncService.sync(config, buildDml("INSERT", "1", "b"));
+        // 其它rowKey的写入不需要额外flush
+        syncService.sync(config, buildDml("INSERT", "2", "c"));
+        syncService.flush();
+
+        Assert.assertEquals(Arrays.asList("put:1", "delete:1", "flush", "put:1", "put:2", "flush"),
+            hbaseTemplate.ops);
+    }
+
+    @Test
+    public void testDeleteThenUpdateInOneBatch() {
+        RecordHbaseTemplate hbaseTemplate = new RecordHbaseTemplate();
+        HbaseSyncService syncService = new HbaseSyncService(hbaseTemplate, true, 1);
+        MappingConfig config = buildConfig();
+
+        syncService.sync(config, buildDml("DELETE", "1", "a"));
+        Dml update = buildDml("UPDATE", "1", "b");
+        Map<String, Object> old = new LinkedHashMap<>();
+        old.put("name", "a");
+        update.setOld(Collections.singletonList(old));
+        syncService.sync(config, update);
+        syncService.flush();
+        // flush之后同一行不再需要额外flush
+        syncService.sync(config, buildDml("INSERT", "1", "c"));
+
+        Assert.assertEquals(Arrays.asList("delete:1", "flush", "put:1", "flush", "put:1"),
+            hbaseTemplate.ops);
+    }
+
+    @Test
+    public void testDeleteAndFlushInTwoLanes() throws Exception {
+        RecordHbaseTemplate hbaseTemplate = new RecordHbaseTemplate();
+        HbaseSyncService syncService = new HbaseSyncService(hbaseTemplate, true, 1);
+        MappingConfig config = buildConfig();
+        hbaseTemplate.deleting = new CountDownLatch(1);
+        hbaseTemplate.release = new CountDownLatch(1);
+
+        // lane B写入delete的过程中, lane A发起flush
+        Thread laneB = new Thread(() -> syncService.sync(config, buildDml("DELETE", "1", "a")));
+        laneB.start();
+        hbaseTemplate.deleting.await();
+        Thread laneA = new Thread(syncService::flush);
+        laneA.start();
+        Thread.sleep(100);
+        // flush需要等待delete写入缓冲区之后再执行, 否则会清理掉还未提交的delete
+        Assert.assertEquals(Collections.singletonList("delete:1"), hbaseTemplate.ops);
+        hbaseTemplate.release.countDown();
+        laneB.join();
+        laneA.join();
+
+        // delete已经随lane A的flush提交, lane B之后的put不需要额外flush
+        syncService.sync(config, buildDml("INSERT", "1", "b"));
+        syncService.flush();
+        Assert.assertEquals(Arrays.asList("delete:1", "flush", "put:1", "flush"), hbaseTemplate.ops);
+    }
+
+    @Test
+    public void testColumnarDml() {
+        RecordHbaseTemplate hbaseTemplate = new RecordHbaseTemplate();
+        HbaseSyncService syncService = new HbaseSyncService(hbaseTemplate, true, 1);
+        MappingConfig config = buildConfig();
+        DmlSchema schema = new DmlSchema(new String[] { "id", "name" },
+            new int[] { Types.VARCHAR, Types.VARCHAR },
+            new String[] { "varchar(32)", "varchar(32)" },
+            Collections.singletonList("id"));
+
+        ColumnarDml insert = new ColumnarDml(schema);
+        insert.setType("INSERT");
+        insert.addRow(new Object[] { "1", "a" }, null);
+        insert.addRow(new Object[] { "2", "b" }, null);
+        syncService.sync(config, insert);
+
+        ColumnarDml delete = new ColumnarDml(schema);
+        delete.setType("DELETE");
+        delete.addRow(new Object[] { "1", "a" }, null);
+        syncService.sync(config, delete);
+
+        Assert.assertEquals(Arrays.asList("put:1", "put:2", "delete:1"), hbaseTemplate.ops);
+    }
+
+    private MappingConfig buildConfig() {
+        MappingConfig.HbaseMapping hbaseMapping = new MappingConfig.HbaseMapping();
+        hbaseMapping.setHbaseTable("test");
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("id", "ROWKEY");
+        columns.put("name", null);
+        hbaseMapping.setColumns(columns);
+
+        MappingConfig config = new MappingConfig();
+        config.setHbaseMapping(hbaseMapping);
+        return config;
+    }
+
+    private Dml buildDml(String type, String id, String name) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        Dml dml = new Dml();
+        dml.setType(type);
+        dml.setData(Collections.singletonList(row));
+        return dml;
+    }
+
+    private static class RecordHbaseTemplate extends HbaseTemplate {
+
+        private List<String>   ops = Collections.synchronizedList(new ArrayList<>());
+        private CountDownLatch deleting;
+        private CountDownLatch release;
+
+        @Override
+        public void bufferedPuts(String tableName, List<HRow> rows) {
+            for (HRow row : rows) {
+                ops.add("put:" + Bytes.toString(row.getRowKey()));
+            }
+        }
+
+        @Override
+        public void bufferedDeletes(String tableName, Set<byte[]> rowKeys) {
+            for (byte[] rowKey : rowKeys) {
+                ops.add("delete:" + Bytes.toString(rowKey));
+            }
+            if (deleting != null) {
+                deleting.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            ops.add("flush");
+        }
+    }
+}
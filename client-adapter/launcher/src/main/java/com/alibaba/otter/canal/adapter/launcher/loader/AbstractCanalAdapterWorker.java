@@ -2,9 +2,12 @@ package com.alibaba.otter.canal.adapter.launcher.loader;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +18,9 @@ import com.alibaba.otter.canal.client.CanalMQConnector;
 import com.alibaba.otter.canal.client.adapter.OuterAdapter;
 import com.alibaba.otter.canal.client.adapter.support.CanalClientConfig;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.DmlSchemaCache;
 import com.alibaba.otter.canal.client.adapter.support.MessageUtil;
+import com.alibaba.otter.canal.client.adapter.support.OrderedParallelDispatcher;
 import com.alibaba.otter.canal.client.adapter.support.Util;
 import com.alibaba.otter.canal.protocol.FlatMessage;
 import com.alibaba.otter.canal.protocol.Message;
@@ -41,6 +46,11 @@ public abstract class AbstractCanalAdapterWorker {
 
     protected SyncSwitch                      syncSwitch;
 
+    protected OrderedParallelDispatcher       dispatcher;                                                      // 组内按key并行分发
+
+    // 使用列式dml的适配器 -> 列结构缓存
+    protected Map<OuterAdapter, DmlSchemaCache> schemaCaches = new ConcurrentHashMap<>();
+
     public AbstractCanalAdapterWorker(List<List<OuterAdapter>> canalOuterAdapters){
         this.canalOuterAdapters = canalOuterAdapters;
         this.groupInnerExecutorService = Util.newFixedThreadPool(canalOuterAdapters.size(), 5000L);
@@ -57,7 +67,9 @@ public abstract class AbstractCanalAdapterWorker {
                     // 组内适配器穿行运行，尽量不要配置组内适配器
                     adapters.forEach(adapter -> {
                         long begin = System.currentTimeMillis();
-                        List<Dml> dmls = MessageUtil.parse4Dml(canalDestination, groupId, message);
+                        DmlSchemaCache schemaCache = adapter.supportsColumnarDml() ? schemaCaches
+                            .computeIfAbsent(adapter, k -> new DmlSchemaCache()) : null;
+                        List<Dml> dmls = MessageUtil.parse4Dml(canalDestination, groupId, message, schemaCache);
                         if (dmls != null) {
                             batchSync(dmls, adapter);
 
@@ -196,9 +208,16 @@ public abstract class AbstractCanalAdapterWorker {
      * @param adapter
      */
     private void batchSync(List<Dml> dmls, OuterAdapter adapter) {
+        // 支持并行的适配器按key分区到多个线程同步, 全部完成后才返回
+        Consumer<List<Dml>> syncer;
+        if (dispatcher != null && adapter.supportsParallelSync()) {
+            syncer = batch -> dispatcher.dispatch(batch, adapter::sync);
+        } else {
+            syncer = adapter::sync;
+        }
         // 分批同步
         if (dmls.size() <= canalClientConfig.getSyncBatchSize()) {
-            adapter.sync(dmls);
+            syncer.accept(dmls);
         } else {
             int len = 0;
             List<Dml> dmlsBatch = new ArrayList<>();
@@ -210,19 +229,24 @@ public abstract class AbstractCanalAdapterWorker {
                     len += dml.getData().size();
                 }
                 if (len >= canalClientConfig.getSyncBatchSize()) {
-                    adapter.sync(dmlsBatch);
+                    syncer.accept(dmlsBatch);
                     dmlsBatch.clear();
                     len = 0;
                 }
             }
             if (!dmlsBatch.isEmpty()) {
-                adapter.sync(dmlsBatch);
+                syncer.accept(dmlsBatch);
             }
         }
     }
 
     public void start() {
         if (!running) {
+            Integer syncLanes = canalClientConfig.getSyncLanes();
+            if (dispatcher == null && syncLanes != null && syncLanes > 1) {
+                dispatcher = OrderedParallelDispatcher.withTableKeys(syncLanes,
+                    canalClientConfig.getSyncPartitionKeys());
+            }
             thread = new Thread(this::process);
             thread.setUncaughtExceptionHandler(handler);
             thread.start();
@@ -251,6 +275,9 @@ public abstract class AbstractCanalAdapterWorker {
                 }
             }
             groupInnerExecutorService.shutdown();
+            if (dispatcher != null) {
+                dispatcher.close();
+            }
             logger.info("destination {} adapters worker thread dead!", canalDestination);
             canalOuterAdapters.forEach(outerAdapters -> outerAdapters.forEach(OuterAdapter::destroy));
             logger.info("destination {} all adapters destroyed!", canalDestination);
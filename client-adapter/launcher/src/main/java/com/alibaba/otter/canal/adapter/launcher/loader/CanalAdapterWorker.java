@@ -183,6 +183,9 @@ public class CanalAdapterWorker extends AbstractCanalAdapterWorker {
                 }
             }
             groupInnerExecutorService.shutdown();
+            if (dispatcher != null) {
+                dispatcher.close();
+            }
             logger.info("destination {} adapters worker thread dead!", canalDestination);
             canalOuterAdapters.forEach(outerAdapters -> outerAdapters.forEach(OuterAdapter::destroy));
             logger.info("destination {} all adapters destroyed!", canalDestination);
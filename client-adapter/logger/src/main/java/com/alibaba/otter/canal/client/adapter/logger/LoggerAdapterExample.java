@@ -39,6 +39,11 @@ public class LoggerAdapterExample implements OuterAdapter {
         logger.info("DML: {}", JSON.toJSONString(dml, SerializerFeature.WriteMapNullValue));
     }
 
+    @Override
+    public boolean supportsParallelSync() {
+        return true;
+    }
+
     @Override
     public void destroy() {
     }
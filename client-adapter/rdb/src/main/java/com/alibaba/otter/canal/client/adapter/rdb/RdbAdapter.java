@@ -1,5 +1,6 @@
 package com.alibaba.otter.canal.client.adapter.rdb;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.LinkedHashMap;
@@ -7,6 +8,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
@@ -23,6 +27,7 @@ import com.alibaba.otter.canal.client.adapter.rdb.service.RdbEtlService;
 import com.alibaba.otter.canal.client.adapter.rdb.service.RdbMirrorDbSyncService;
 import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SyncUtil;
+import com.alibaba.otter.canal.client.adapter.rdb.support.TargetMetaCache;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
 import com.alibaba.otter.canal.client.adapter.support.OuterAdapterConfig;
@@ -49,6 +54,10 @@ public class RdbAdapter implements OuterAdapter {
     private RdbSyncService                          rdbSyncService;
     private RdbMirrorDbSyncService                  rdbMirrorDbSyncService;
 
+    private TargetMetaCache                         targetMetaCache     = new TargetMetaCache();                   // 目标表元数据缓存
+    private File                                    metaSnapshotFile;                                              // 元数据缓存快照文件
+    private ScheduledExecutorService                metaSnapshotExecutor;                                          // 定时保存快照, 异常退出时不至于使用过旧的快照
+
     private RdbConfigMonitor                        rdbConfigMonitor;
 
     private Properties                              envProperties;
@@ -140,14 +149,43 @@ public class RdbAdapter implements OuterAdapter {
 
         boolean skipDupException = BooleanUtils.toBoolean(configuration.getProperties()
             .getOrDefault("skipDupException", "true"));
+        // 加载目标表元数据快照, 并登记源表与目标表的对应关系
+        String metaSnapshot = properties.get("metaCache.snapshot");
+        if (StringUtils.isNotEmpty(metaSnapshot)) {
+            metaSnapshotFile = new File(metaSnapshot);
+            if (!metaSnapshotFile.isAbsolute()) {
+                metaSnapshotFile = new File(Util.getConfDirPath(), metaSnapshot);
+            }
+            long ttl = Long.parseLong(properties.getOrDefault("metaCache.snapshotTtl", "86400"));
+            targetMetaCache.loadSnapshot(metaSnapshotFile, TimeUnit.SECONDS.toMillis(ttl));
+
+            long interval = Long.parseLong(properties.getOrDefault("metaCache.snapshotInterval", "60"));
+            if (interval > 0) {
+                metaSnapshotExecutor = Executors.newSingleThreadScheduledExecutor();
+                metaSnapshotExecutor.scheduleWithFixedDelay(() -> targetMetaCache.saveSnapshot(metaSnapshotFile),
+                    interval,
+                    interval,
+                    TimeUnit.SECONDS);
+            }
+        }
+        for (MappingConfig mappingConfig : rdbMapping.values()) {
+            if (!mappingConfig.getDbMapping().getMirrorDb()) {
+                targetMetaCache.register(mappingConfig.getDestination() + "."
+                                         + mappingConfig.getDbMapping().getDatabase() + "."
+                                         + mappingConfig.getDbMapping().getTable(),
+                    mappingConfig.getDbMapping());
+            }
+        }
+
         rdbSyncService = new RdbSyncService(dataSource,
             threads != null ? Integer.valueOf(threads) : null,
+            targetMetaCache,
             skipDupException);
 
         rdbMirrorDbSyncService = new RdbMirrorDbSyncService(mirrorDbConfigCache,
             dataSource,
             threads != null ? Integer.valueOf(threads) : null,
-            rdbSyncService.getColumnsTypeCache(),
+            targetMetaCache,
             skipDupException);
 
         rdbConfigMonitor = new RdbConfigMonitor();
@@ -183,7 +221,7 @@ public class RdbAdapter implements OuterAdapter {
     public EtlResult etl(String task, List<String> params) {
         EtlResult etlResult = new EtlResult();
         MappingConfig config = rdbMapping.get(task);
-        RdbEtlService rdbEtlService = new RdbEtlService(dataSource, config);
+        RdbEtlService rdbEtlService = new RdbEtlService(dataSource, config, targetMetaCache);
         if (config != null) {
             return rdbEtlService.importData(params);
         } else {
@@ -285,6 +323,14 @@ public class RdbAdapter implements OuterAdapter {
             rdbSyncService.close();
         }
 
+        if (metaSnapshotExecutor != null) {
+            metaSnapshotExecutor.shutdownNow();
+        }
+
+        if (metaSnapshotFile != null) {
+            targetMetaCache.saveSnapshot(metaSnapshotFile);
+        }
+
         if (dataSource != null) {
             dataSource.close();
         }
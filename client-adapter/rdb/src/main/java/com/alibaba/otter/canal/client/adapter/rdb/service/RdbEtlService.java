@@ -12,6 +12,7 @@ import javax.sql.DataSource;
 import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
 import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig.DbMapping;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SyncUtil;
+import com.alibaba.otter.canal.client.adapter.rdb.support.TargetMetaCache;
 import com.alibaba.otter.canal.client.adapter.support.AbstractEtlService;
 import com.alibaba.otter.canal.client.adapter.support.AdapterConfig;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
@@ -25,13 +26,19 @@ import com.alibaba.otter.canal.client.adapter.support.Util;
  */
 public class RdbEtlService extends AbstractEtlService {
 
-    private DataSource    targetDS;
-    private MappingConfig config;
+    private DataSource      targetDS;
+    private MappingConfig   config;
+    private TargetMetaCache targetMetaCache;
 
     public RdbEtlService(DataSource targetDS, MappingConfig config){
+        this(targetDS, config, null);
+    }
+
+    public RdbEtlService(DataSource targetDS, MappingConfig config, TargetMetaCache targetMetaCache){
         super("RDB", config);
         this.targetDS = targetDS;
         this.config = config;
+        this.targetMetaCache = targetMetaCache;
     }
 
     /**
@@ -53,24 +60,33 @@ public class RdbEtlService extends AbstractEtlService {
             Map<String, String> columnsMap = new LinkedHashMap<>();
             Map<String, Integer> columnType = new LinkedHashMap<>();
 
-            Util.sqlRS(targetDS, "SELECT * FROM " + SyncUtil.getDbTableName(dbMapping) + " LIMIT 1 ", rs -> {
-                try {
+            if (targetMetaCache != null) {
+                String sourceKey = config.getDestination() + "." + dbMapping.getDatabase() + "." + dbMapping.getTable();
+                TargetMetaCache.TableMeta meta = targetMetaCache.get(targetDS, sourceKey, dbMapping);
+                if (meta != null) {
+                    columnType.putAll(meta.getColumnTypes());
+                    columnsMap.putAll(SyncUtil.getColumnsMap(dbMapping, meta.getColumnNames()));
+                }
+            } else {
+                Util.sqlRS(targetDS, "SELECT * FROM " + SyncUtil.getDbTableName(dbMapping) + " LIMIT 1 ", rs -> {
+                    try {
+
+                        ResultSetMetaData rsd = rs.getMetaData();
+                        int columnCount = rsd.getColumnCount();
+                        List<String> columns = new ArrayList<>();
+                        for (int i = 1; i <= columnCount; i++) {
+                            columnType.put(rsd.getColumnName(i).toLowerCase(), rsd.getColumnType(i));
+                            columns.add(rsd.getColumnName(i));
+                        }
 
-                    ResultSetMetaData rsd = rs.getMetaData();
-                    int columnCount = rsd.getColumnCount();
-                    List<String> columns = new ArrayList<>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        columnType.put(rsd.getColumnName(i).toLowerCase(), rsd.getColumnType(i));
-                        columns.add(rsd.getColumnName(i));
+                        columnsMap.putAll(SyncUtil.getColumnsMap(dbMapping, columns));
+                        return true;
+                    } catch (Exception e) {
+                        logger.error(e.getMessage(), e);
+                        return false;
                     }
-
-                    columnsMap.putAll(SyncUtil.getColumnsMap(dbMapping, columns));
-                    return true;
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                    return false;
-                }
-            });
+                });
+            }
 
             Util.sqlRS(srcDS, sql, values, rs -> {
                 int idx = 1;
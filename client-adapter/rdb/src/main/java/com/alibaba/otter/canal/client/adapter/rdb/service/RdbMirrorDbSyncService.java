@@ -18,6 +18,7 @@ import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
 import com.alibaba.otter.canal.client.adapter.rdb.config.MirrorDbConfig;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
+import com.alibaba.otter.canal.client.adapter.rdb.support.TargetMetaCache;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
 
 /**
@@ -35,11 +36,10 @@ public class RdbMirrorDbSyncService {
     private RdbSyncService              rdbSyncService;                                                // rdbSyncService代理
 
     public RdbMirrorDbSyncService(Map<String, MirrorDbConfig> mirrorDbConfigCache, DataSource dataSource,
-                                  Integer threads, Map<String, Map<String, Integer>> columnsTypeCache,
-                                  boolean skipDupException){
+                                  Integer threads, TargetMetaCache targetMetaCache, boolean skipDupException){
         this.mirrorDbConfigCache = mirrorDbConfigCache;
         this.dataSource = dataSource;
-        this.rdbSyncService = new RdbSyncService(dataSource, threads, columnsTypeCache, skipDupException);
+        this.rdbSyncService = new RdbSyncService(dataSource, threads, targetMetaCache, skipDupException);
     }
 
     /**
@@ -71,7 +71,8 @@ public class RdbMirrorDbSyncService {
                     logger.debug("DDL: {}", JSON.toJSONString(dml, SerializerFeature.WriteMapNullValue));
                 }
                 executeDdl(mirrorDbConfig, dml);
-                rdbSyncService.getColumnsTypeCache().remove(destination + "." + database + "." + dml.getTable());
+                rdbSyncService.getTargetMetaCache()
+                    .invalidateSource(destination + "." + database + "." + dml.getTable(), dml.getType());
                 mirrorDbConfig.getTableConfig().remove(dml.getTable()); // 删除对应库表配置
             } else {
                 // DML
@@ -141,6 +142,8 @@ public class RdbMirrorDbSyncService {
             pkNames.forEach(pkName -> pkMapping.put(pkName, pkName));
             dbMapping.setTargetPk(pkMapping);
 
+            rdbSyncService.getTargetMetaCache()
+                .register(mappingConfig.getDestination() + "." + dml.getDatabase() + "." + dml.getTable(), dbMapping);
             mirrorDbConfig.getTableConfig().put(key, mappingConfig);
         }
     }
@@ -1,14 +1,12 @@
 package com.alibaba.otter.canal.client.adapter.rdb.service;
 
 import java.sql.Connection;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -28,6 +26,7 @@ import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig.DbMapping
 import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SyncUtil;
+import com.alibaba.otter.canal.client.adapter.rdb.support.TargetMetaCache;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
 import com.alibaba.otter.canal.client.adapter.support.Util;
 
@@ -41,8 +40,8 @@ public class RdbSyncService {
 
     private static final Logger               logger  = LoggerFactory.getLogger(RdbSyncService.class);
 
-    // 源库表字段类型缓存: instance.schema.table -> <columnName, jdbcType>
-    private Map<String, Map<String, Integer>> columnsTypeCache;
+    // 目标表字段类型缓存
+    private TargetMetaCache                   targetMetaCache;
 
     private int                               threads = 3;
     private boolean                           skipDupException;
@@ -55,18 +54,18 @@ public class RdbSyncService {
         return dmlsPartition;
     }
 
-    public Map<String, Map<String, Integer>> getColumnsTypeCache() {
-        return columnsTypeCache;
+    public TargetMetaCache getTargetMetaCache() {
+        return targetMetaCache;
     }
 
     public RdbSyncService(DataSource dataSource, Integer threads, boolean skipDupException){
-        this(dataSource, threads, new ConcurrentHashMap<>(), skipDupException);
+        this(dataSource, threads, new TargetMetaCache(), skipDupException);
     }
 
     @SuppressWarnings("unchecked")
-    public RdbSyncService(DataSource dataSource, Integer threads, Map<String, Map<String, Integer>> columnsTypeCache,
+    public RdbSyncService(DataSource dataSource, Integer threads, TargetMetaCache targetMetaCache,
                           boolean skipDupException){
-        this.columnsTypeCache = columnsTypeCache;
+        this.targetMetaCache = targetMetaCache;
         this.skipDupException = skipDupException;
         try {
             if (threads != null) {
@@ -152,7 +151,8 @@ public class RdbSyncService {
         sync(dmls, dml -> {
             if (dml.getIsDdl() != null && dml.getIsDdl() && StringUtils.isNotEmpty(dml.getSql())) {
                 // DDL
-            columnsTypeCache.remove(dml.getDestination() + "." + dml.getDatabase() + "." + dml.getTable());
+            targetMetaCache.invalidateSource(dml.getDestination() + "." + dml.getDatabase() + "." + dml.getTable(),
+                dml.getType());
             return false;
         } else {
             // DML
@@ -221,7 +221,12 @@ public class RdbSyncService {
                     logger.debug("DML: {}", JSON.toJSONString(dml, SerializerFeature.WriteMapNullValue));
                 }
             } catch (SQLException e) {
+                // 目标表结构可能已经变化, 下次重新查询元数据
+                targetMetaCache.invalidate(SyncUtil.getDbTableName(config.getDbMapping()));
                 throw new RuntimeException(e);
+            } catch (RuntimeException e) {
+                targetMetaCache.invalidate(SyncUtil.getDbTableName(config.getDbMapping()));
+                throw e;
             }
         }
     }
@@ -403,31 +408,9 @@ public class RdbSyncService {
      */
     private Map<String, Integer> getTargetColumnType(Connection conn, MappingConfig config) {
         DbMapping dbMapping = config.getDbMapping();
-        String cacheKey = config.getDestination() + "." + dbMapping.getDatabase() + "." + dbMapping.getTable();
-        Map<String, Integer> columnType = columnsTypeCache.get(cacheKey);
-        if (columnType == null) {
-            synchronized (RdbSyncService.class) {
-                columnType = columnsTypeCache.get(cacheKey);
-                if (columnType == null) {
-                    columnType = new LinkedHashMap<>();
-                    final Map<String, Integer> columnTypeTmp = columnType;
-                    String sql = "SELECT * FROM " + SyncUtil.getDbTableName(dbMapping) + " WHERE 1=2";
-                    Util.sqlRS(conn, sql, rs -> {
-                        try {
-                            ResultSetMetaData rsd = rs.getMetaData();
-                            int columnCount = rsd.getColumnCount();
-                            for (int i = 1; i <= columnCount; i++) {
-                                columnTypeTmp.put(rsd.getColumnName(i).toLowerCase(), rsd.getColumnType(i));
-                            }
-                            columnsTypeCache.put(cacheKey, columnTypeTmp);
-                        } catch (SQLException e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                    });
-                }
-            }
-        }
-        return columnType;
+        String sourceKey = config.getDestination() + "." + dbMapping.getDatabase() + "." + dbMapping.getTable();
+        TargetMetaCache.TableMeta meta = targetMetaCache.get(conn, sourceKey, dbMapping);
+        return meta == null ? new LinkedHashMap<>() : meta.getColumnTypes();
     }
 
     /**
@@ -0,0 +1,261 @@
+package com.alibaba.otter.canal.client.adapter.rdb.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.fastjson.parser.Feature;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig.DbMapping;
+import com.alibaba.otter.canal.client.adapter.support.Util;
+
+/**
+ * 目标表字段元数据缓存
+ *
+ * <pre>
+ * 1. 按目标表缓存字段名及jdbc类型, 同一个adapter下的RdbSyncService、RdbMirrorDbSyncService、RdbEtlService共享
+ * 2. 记录源表到目标表的对应关系, 收到源表的DDL时只失效受影响的目标表
+ * 3. 支持将缓存保存为快照文件, 启动时加载快照预热, 避免大量表同时查询元数据
+ * 4. 快照中的元数据可能已经过期(如adapter停止期间目标表被修改), 超过有效期的快照不加载, 写入目标表出错时失效对应的元数据
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class TargetMetaCache {
+
+    private static final Logger                       logger         = LoggerFactory.getLogger(TargetMetaCache.class);
+
+    private final ConcurrentMap<String, TableMeta>    metas          = new ConcurrentHashMap<>(); // 目标表 -> 元数据
+    private final ConcurrentMap<String, Set<String>>  sourceTargets  = new ConcurrentHashMap<>(); // destination.database.table -> 目标表
+    private final AtomicLong                          version        = new AtomicLong();          // 每次失效递增, 避免失效前查询的元数据被放回缓存
+
+    /**
+     * 获取目标表元数据, 不存在时查询目标库
+     *
+     * @param conn 目标库连接
+     * @param sourceKey 源表 destination.database.table
+     * @param dbMapping 映射配置
+     * @return 元数据, 查询失败返回null
+     */
+    public TableMeta get(Connection conn, String sourceKey, DbMapping dbMapping) {
+        String targetTable = register(sourceKey, dbMapping);
+        TableMeta meta = metas.get(targetTable);
+        if (meta == null) {
+            // 查询不放在computeIfAbsent中, 避免jdbc调用阻塞ConcurrentHashMap的其他写入, 并发查询同一张表的结果相同
+            long current = version.get();
+            meta = load(conn, targetTable);
+            if (meta != null && version.get() == current) {
+                TableMeta exists = metas.putIfAbsent(targetTable, meta);
+                if (exists != null) {
+                    meta = exists;
+                }
+            }
+        }
+        return meta;
+    }
+
+    /**
+     * 登记源表到目标表的对应关系, 使快照预热的元数据在首次访问前也能被源表的DDL失效
+     *
+     * @return 目标表名
+     */
+    public String register(String sourceKey, DbMapping dbMapping) {
+        String targetTable = SyncUtil.getDbTableName(dbMapping);
+        sourceTargets.computeIfAbsent(sourceKey, k -> ConcurrentHashMap.newKeySet()).add(targetTable);
+        return targetTable;
+    }
+
+    /**
+     * 获取目标表元数据, 不存在时从数据源获取连接查询
+     */
+    public TableMeta get(DataSource dataSource, String sourceKey, DbMapping dbMapping) {
+        String targetTable = SyncUtil.getDbTableName(dbMapping);
+        TableMeta meta = metas.get(targetTable);
+        if (meta != null) {
+            register(sourceKey, dbMapping);
+            return meta;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            return get(conn, sourceKey, dbMapping);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 源表发生DDL, 失效其对应的所有目标表
+     *
+     * @param sourceKey 源表 destination.database.table
+     * @param ddlType ddl类型, 如ALTER、TRUNCATE
+     */
+    public void invalidateSource(String sourceKey, String ddlType) {
+        if (!affectsColumns(ddlType)) {
+            return;
+        }
+        Set<String> targets = sourceTargets.get(sourceKey);
+        if (targets == null) {
+            return;
+        }
+        version.incrementAndGet();
+        for (String target : targets) {
+            if (metas.remove(target) != null && logger.isDebugEnabled()) {
+                logger.debug("Invalidate target meta: {} caused by {} of {}", target, ddlType, sourceKey);
+            }
+        }
+    }
+
+    /**
+     * 失效目标表
+     */
+    public void invalidate(String targetTable) {
+        version.incrementAndGet();
+        metas.remove(targetTable);
+    }
+
+    public void invalidateAll() {
+        version.incrementAndGet();
+        metas.clear();
+    }
+
+    public int size() {
+        return metas.size();
+    }
+
+    /**
+     * 从快照文件预热, 文件不存在时忽略
+     */
+    public void loadSnapshot(File file) {
+        loadSnapshot(file, 0);
+    }
+
+    /**
+     * 从快照文件预热, 文件不存在或者超过有效期时忽略
+     *
+     * @param ttl 快照的有效期(ms), 按文件的最后修改时间计算, 小于等于0代表不过期
+     */
+    public void loadSnapshot(File file, long ttl) {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        long age = System.currentTimeMillis() - file.lastModified();
+        if (ttl > 0 && age > ttl) {
+            logger.warn("## Skip expired target meta snapshot: {} , saved {} ms ago", file.getAbsolutePath(), age);
+            return;
+        }
+        try {
+            String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            Map<String, LinkedHashMap<String, Integer>> snapshot = JSON.parseObject(json,
+                new TypeReference<LinkedHashMap<String, LinkedHashMap<String, Integer>>>() {
+                },
+                Feature.OrderedField);
+            if (snapshot == null) {
+                return;
+            }
+            snapshot.forEach((target, columns) -> metas.putIfAbsent(target, new TableMeta(columns)));
+            logger.info("## Load {} target table metas from snapshot: {}", snapshot.size(), file.getAbsolutePath());
+        } catch (Exception e) {
+            // 快照损坏不影响启动, 退化为按需查询
+            logger.warn("Load target meta snapshot error: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 将当前缓存保存为快照文件
+     */
+    public void saveSnapshot(File file) {
+        if (file == null) {
+            return;
+        }
+        Map<String, Map<String, Integer>> snapshot = new LinkedHashMap<>();
+        metas.forEach((target, meta) -> snapshot.put(target, meta.columns));
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            File tmp = new File(file.getAbsolutePath() + ".tmp");
+            Files.write(tmp.toPath(),
+                JSON.toJSONString(snapshot, SerializerFeature.PrettyFormat).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Save target meta snapshot error: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static boolean affectsColumns(String ddlType) {
+        // 清空数据及索引变更不影响字段
+        return !"TRUNCATE".equalsIgnoreCase(ddlType) && !"CINDEX".equalsIgnoreCase(ddlType)
+               && !"DINDEX".equalsIgnoreCase(ddlType);
+    }
+
+    private static TableMeta load(Connection conn, String targetTable) {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        String sql = "SELECT * FROM " + targetTable + " WHERE 1=2";
+        Util.sqlRS(conn, sql, rs -> {
+            try {
+                ResultSetMetaData rsd = rs.getMetaData();
+                int columnCount = rsd.getColumnCount();
+                for (int i = 1; i <= columnCount; i++) {
+                    columns.put(rsd.getColumnName(i), rsd.getColumnType(i));
+                }
+            } catch (SQLException e) {
+                logger.error(e.getMessage(), e);
+            }
+        });
+        // 查询失败不缓存, 下次重新查询
+        return columns.isEmpty() ? null : new TableMeta(columns);
+    }
+
+    /**
+     * 目标表元数据
+     */
+    public static class TableMeta {
+
+        private final Map<String, Integer> columns;     // 字段名(原始大小写) -> jdbcType
+        private final Map<String, Integer> columnTypes; // 小写字段名 -> jdbcType
+        private final List<String>         columnNames;
+
+        TableMeta(Map<String, Integer> columns){
+            this.columns = Collections.unmodifiableMap(new LinkedHashMap<>(columns));
+            Map<String, Integer> columnTypes = new LinkedHashMap<>();
+            columns.forEach((name, type) -> columnTypes.put(name.toLowerCase(), type));
+            this.columnTypes = Collections.unmodifiableMap(columnTypes);
+            this.columnNames = Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+        }
+
+        /**
+         * @return 小写字段名 -> jdbcType
+         */
+        public Map<String, Integer> getColumnTypes() {
+            return columnTypes;
+        }
+
+        /**
+         * @return 原始大小写的字段名
+         */
+        public List<String> getColumnNames() {
+            return columnNames;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.rdb.support.TargetMetaCache;
+
+public class TargetMetaCacheTest {
+
+    @Test
+    public void testSnapshotAndInvalidate() throws Exception {
+        File file = File.createTempFile("rdb_meta", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(),
+            "{\"mytest2.user\":{\"ID\":4,\"Name\":12},\"mytest2.role\":{\"id\":4}}".getBytes(StandardCharsets.UTF_8));
+
+        TargetMetaCache cache = new TargetMetaCache();
+        cache.loadSnapshot(file);
+        Assert.assertEquals(2, cache.size());
+
+        MappingConfig.DbMapping dbMapping = new MappingConfig.DbMapping();
+        dbMapping.setDatabase("mytest");
+        dbMapping.setTable("user");
+        dbMapping.setTargetDb("mytest2");
+        dbMapping.setTargetTable("user");
+        cache.register("example.mytest.user", dbMapping);
+
+        // 清空数据不影响字段
+        cache.invalidateSource("example.mytest.user", "TRUNCATE");
+        Assert.assertEquals(2, cache.size());
+
+        File saved = File.createTempFile("rdb_meta", ".json");
+        saved.deleteOnExit();
+        cache.saveSnapshot(saved);
+        TargetMetaCache reloaded = new TargetMetaCache();
+        reloaded.loadSnapshot(saved);
+        Assert.assertEquals(2, reloaded.size());
+
+        // 只失效对应的目标表
+        cache.invalidateSource("example.mytest.user", "ALTER");
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpiredSnapshot() throws Exception {
+        File file = File.createTempFile("rdb_meta", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "{\"mytest2.user\":{\"id\":4}}".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(System.currentTimeMillis() - 2 * 3600 * 1000L);
+
+        TargetMetaCache cache = new TargetMetaCache();
+        cache.loadSnapshot(file, 3600 * 1000L);
+        Assert.assertEquals(0, cache.size());
+
+        cache.loadSnapshot(file, 3 * 3600 * 1000L);
+        Assert.assertEquals(1, cache.size());
+
+        cache.invalidate("mytest2.user");
+        Assert.assertEquals(0, cache.size());
+    }
+}
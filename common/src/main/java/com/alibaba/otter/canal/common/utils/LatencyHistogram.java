@@ -0,0 +1,89 @@
+package com.alibaba.otter.canal.common.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的耗时分布统计，按固定的毫秒区间计数，由监控模块定期读取并导出为histogram
+ *
+ * @version 1.0.0
+ */
+public class LatencyHistogram {
+
+    private static final double   NANO_PER_MILLI  = 1000 * 1000d;
+    // 默认的区间上界，单位毫秒，覆盖解析阶段的亚毫秒级到mysql延迟的分钟级
+    public static final double[]  DEFAULT_BUCKETS = { 0.1, 0.5, 1, 5, 10, 50, 100, 500, 1000, 5000, 10000, 60000 };
+
+    private final double[]        buckets;
+    private final long[]          bounds;                              // 区间上界，单位纳秒
+    private final AtomicLongArray counts;                              // 最后一个区间为+Inf
+    private final AtomicLong      sum             = new AtomicLong(0); // 单位纳秒
+
+    public LatencyHistogram(){
+        this(DEFAULT_BUCKETS);
+    }
+
+    public LatencyHistogram(double... buckets){
+        if (buckets == null || buckets.length == 0) {
+            throw new IllegalArgumentException("buckets is empty");
+        }
+        this.buckets = buckets.clone();
+        this.bounds = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            if (i > 0 && buckets[i] <= buckets[i - 1]) {
+                throw new IllegalArgumentException("buckets must be in increasing order");
+            }
+            this.bounds[i] = (long) (buckets[i] * NANO_PER_MILLI);
+        }
+        this.counts = new AtomicLongArray(buckets.length + 1);
+    }
+
+    /**
+     * 记录一次耗时，单位纳秒
+     */
+    public void observe(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int index = 0;
+        while (index < bounds.length && nanos > bounds[index]) {
+            index++;
+        }
+        counts.incrementAndGet(index);
+        sum.addAndGet(nanos);
+    }
+
+    /**
+     * 记录一次耗时，单位毫秒
+     */
+    public void observeMillis(long millis) {
+        observe(millis * 1000 * 1000L);
+    }
+
+    /**
+     * 区间上界，单位毫秒
+     */
+    public double[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * 每个区间的累计计数，和getBuckets()一一对应，最后一个为+Inf，即总次数
+     */
+    public long[] getCumulativeCounts() {
+        long[] result = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < result.length; i++) {
+            total += counts.get(i);
+            result[i] = total;
+        }
+        return result;
+    }
+
+    /**
+     * 耗时总和，单位毫秒
+     */
+    public double getSumInMillis() {
+        return sum.get() / NANO_PER_MILLI;
+    }
+}
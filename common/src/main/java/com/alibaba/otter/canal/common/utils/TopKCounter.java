@@ -0,0 +1,180 @@
+package com.alibaba.otter.canal.common.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于space-saving算法的top-k统计，最多保留capacity个key，用于表数量很多时控制监控项的基数
+ *
+ * <pre>
+ * 1. 按bytes排序，key不存在且已满时，淘汰bytes最小的key，新key继承其bytes作为计数起点，同时记录为error(bytes的最大高估值)
+ * 2. rows和time只统计进入top-k之后的部分，不做继承
+ * 3. 按bytes维护最小堆，add只需要O(log k)，不再遍历所有key查找最小值
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class TopKCounter {
+
+    private static final Comparator<Item> BYTES_DESC = new Comparator<Item>() {
+
+                                                         @Override
+                                                         public int compare(Item o1, Item o2) {
+                                                             return Long.compare(o2.bytes, o1.bytes);
+                                                         }
+                                                     };
+
+    private final int                     capacity;
+    private final Map<String, Item>       items;
+    private final Item[]                  heap;                                                // 按bytes的最小堆
+    private int                           size;
+
+    public TopKCounter(int capacity){
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.items = new HashMap<String, Item>(capacity * 2);
+        this.heap = new Item[capacity];
+    }
+
+    /**
+     * @param bytes 不能为负数，bytes只增不减才能保证堆顶为最小值
+     */
+    public synchronized void add(String key, long rows, long bytes, long nanos) {
+        Item item = items.get(key);
+        boolean appended = false;
+        if (item == null) {
+            item = new Item(key);
+            if (size >= capacity) {
+                // 淘汰堆顶bytes最小的key
+                Item min = heap[0];
+                items.remove(min.key);
+                item.bytes = min.bytes;
+                item.error = min.bytes;
+                item.index = 0;
+                heap[0] = item;
+            } else {
+                item.index = size;
+                heap[size++] = item;
+                appended = true;
+            }
+            items.put(key, item);
+        }
+
+        item.rows += rows;
+        item.bytes += bytes;
+        item.nanos += nanos;
+        if (appended) {
+            siftUp(item.index);
+        } else {
+            siftDown(item.index);
+        }
+    }
+
+    /**
+     * 返回当前统计结果的快照，按bytes从大到小排序
+     */
+    public synchronized List<Item> snapshot() {
+        List<Item> result = new ArrayList<Item>(items.size());
+        for (Item item : items.values()) {
+            result.add(item.copy());
+        }
+        Collections.sort(result, BYTES_DESC);
+        return result;
+    }
+
+    public synchronized void clear() {
+        items.clear();
+        Arrays.fill(heap, null);
+        size = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void siftUp(int i) {
+        Item item = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].bytes <= item.bytes) {
+                break;
+            }
+            move(heap[parent], i);
+            i = parent;
+        }
+        move(item, i);
+    }
+
+    private void siftDown(int i) {
+        Item item = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && heap[right].bytes < heap[child].bytes) {
+                child = right;
+            }
+            if (item.bytes <= heap[child].bytes) {
+                break;
+            }
+            move(heap[child], i);
+            i = child;
+        }
+        move(item, i);
+    }
+
+    private void move(Item item, int i) {
+        heap[i] = item;
+        item.index = i;
+    }
+
+    public static class Item {
+
+        private final String key;
+        private long         rows;
+        private long         bytes;
+        private long         nanos;
+        private long         error;
+        private int          index;  // 在堆中的下标
+
+        private Item(String key){
+            this.key = key;
+        }
+
+        private Item copy() {
+            Item item = new Item(key);
+            item.rows = rows;
+            item.bytes = bytes;
+            item.nanos = nanos;
+            item.error = error;
+            return item;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
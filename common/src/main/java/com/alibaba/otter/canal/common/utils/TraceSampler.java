@@ -0,0 +1,32 @@
+package com.alibaba.otter.canal.common.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按事务位点采样输出链路各阶段耗时，parser和store基于同样的位点做判断，保证采样到的是同一批事务
+ *
+ * @version 1.0.0
+ */
+public class TraceSampler {
+
+    public static final Logger logger = LoggerFactory.getLogger("canal-trace");
+
+    /**
+     * @param sampleRate 每sampleRate个事务采样一个，小于等于0代表关闭
+     */
+    public static boolean isSampled(String journalName, long position, int sampleRate) {
+        if (sampleRate <= 0) {
+            return false;
+        }
+        if (sampleRate == 1) {
+            return true;
+        }
+        long hash = position * 0x9E3779B97F4A7C15L;
+        if (journalName != null) {
+            hash += journalName.hashCode();
+        }
+        hash ^= (hash >>> 32);
+        return Math.abs(hash % sampleRate) == 0;
+    }
+}
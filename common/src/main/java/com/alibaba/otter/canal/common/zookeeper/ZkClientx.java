@@ -22,18 +22,32 @@ import com.google.common.collect.MigrateMap;
  */
 public class ZkClientx extends ZkClient {
 
+    // 缓存的zkclient使用的session超时时间，小于等于0时使用默认值
+    private static volatile int           sessionTimeout = 0;
     // 对于zkclient进行一次缓存，避免一个jvm内部使用多个zk connection
-    private static Map<String, ZkClientx> clients = MigrateMap.makeComputingMap(new Function<String, ZkClientx>() {
-
-                                                      public ZkClientx apply(String servers) {
-                                                          return new ZkClientx(servers);
-                                                      }
-                                                  });
+    private static Map<String, ZkClientx> clients        = MigrateMap.makeComputingMap(new Function<String, ZkClientx>() {
+
+                                                             public ZkClientx apply(String servers) {
+                                                                 if (sessionTimeout > 0) {
+                                                                     return new ZkClientx(servers,
+                                                                         sessionTimeout,
+                                                                         Integer.MAX_VALUE);
+                                                                 }
+                                                                 return new ZkClientx(servers);
+                                                             }
+                                                         });
 
     public static ZkClientx getZkClient(String servers) {
         return clients.get(servers);
     }
 
+    /**
+     * 设置之后新建的zkclient的session超时时间，session超时决定了节点宕机后running节点的释放时间
+     */
+    public static void setSessionTimeout(int timeout) {
+        sessionTimeout = timeout;
+    }
+
     public static void clearClients() {
         clients.clear();
     }
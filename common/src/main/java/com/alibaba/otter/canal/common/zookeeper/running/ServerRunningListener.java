@@ -28,4 +28,16 @@ public interface ServerRunningListener {
      */
     public void processActiveExit();
 
+    /**
+     * 热备模式下，其他节点为active时触发，可以预先准备好上下文，缩短切换时间
+     */
+    public default void processStandbyEnter() {
+    }
+
+    /**
+     * 热备模式下，退出standby状态时触发(切换为active时不触发)
+     */
+    public default void processStandbyExit() {
+    }
+
 }
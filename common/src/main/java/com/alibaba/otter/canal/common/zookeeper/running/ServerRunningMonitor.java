@@ -28,19 +28,23 @@ import com.alibaba.otter.canal.common.zookeeper.ZookeeperPathUtils;
  */
 public class ServerRunningMonitor extends AbstractCanalLifeCycle {
 
-    private static final Logger        logger       = LoggerFactory.getLogger(ServerRunningMonitor.class);
+    private static final Logger        logger         = LoggerFactory.getLogger(ServerRunningMonitor.class);
     private ZkClientx                  zkClient;
     private String                     destination;
     private IZkDataListener            dataListener;
-    private BooleanMutex               mutex        = new BooleanMutex(false);
-    private volatile boolean           release      = false;
+    private BooleanMutex               mutex          = new BooleanMutex(false);
+    private volatile boolean           release        = false;
     // 当前服务节点状态信息
     private ServerRunningData          serverData;
     // 当前实际运行的节点状态信息
     private volatile ServerRunningData activeData;
-    private ScheduledExecutorService   delayExector = Executors.newScheduledThreadPool(1);
-    private int                        delayTime    = 5;
+    private ScheduledExecutorService   delayExector   = Executors.newScheduledThreadPool(1);
+    private int                        delayTime      = 5;
     private ServerRunningListener      listener;
+    // 热备模式，非active时预先准备好上下文，running节点释放后等待standbyDelay抢占
+    private boolean                    standby        = false;
+    private long                       standbyDelay   = 1000;                  // 单位ms
+    private volatile boolean           standbyRunning = false;
 
     public ServerRunningMonitor(ServerRunningData serverData){
         this();
@@ -63,6 +67,9 @@ public class ServerRunningMonitor extends AbstractCanalLifeCycle {
                 }
 
                 activeData = (ServerRunningData) runningData;
+                if (runningData.isActive() && !isMine(runningData.getAddress())) {
+                    processStandbyEnter();
+                }
             }
 
             public void handleDataDeleted(String dataPath) throws Exception {
@@ -73,12 +80,14 @@ public class ServerRunningMonitor extends AbstractCanalLifeCycle {
                     initRunning();
                 } else {
                     // 否则就是等待delayTime，避免因网络瞬端或者zk异常，导致出现频繁的切换操作
+                    // 热备节点已经准备好上下文，可以配置更短的standbyDelay
+                    long delay = standby ? standbyDelay : TimeUnit.SECONDS.toMillis(delayTime);
                     delayExector.schedule(new Runnable() {
 
                         public void run() {
                             initRunning();
                         }
-                    }, delayTime, TimeUnit.SECONDS);
+                    }, delay, TimeUnit.MILLISECONDS);
                 }
             }
 
@@ -132,6 +141,7 @@ public class ServerRunningMonitor extends AbstractCanalLifeCycle {
         } else {
             processActiveExit(); // 没有zk，直接启动
         }
+        processStandbyExit();
         processStop();
     }
 
@@ -147,6 +157,7 @@ public class ServerRunningMonitor extends AbstractCanalLifeCycle {
             mutex.set(false);
             zkClient.create(path, bytes, CreateMode.EPHEMERAL);
             activeData = serverData;
+            standbyRunning = false; // 从standby直接切换为active，保留预热的上下文
             processActiveEnter();// 触发一下事件
             mutex.set(true);
             release = false;
@@ -156,6 +167,9 @@ public class ServerRunningMonitor extends AbstractCanalLifeCycle {
                 initRunning();
             } else {
                 activeData = JsonUtils.unmarshalFromByte(bytes, ServerRunningData.class);
+                if (!isMine(activeData.getAddress())) {
+                    processStandbyEnter();
+                }
             }
         } catch (ZkNoNodeException e) {
             zkClient.createPersistent(ZookeeperPathUtils.getDestinationPath(destination), true); // 尝试创建父节点
@@ -248,6 +262,36 @@ public class ServerRunningMonitor extends AbstractCanalLifeCycle {
         }
     }
 
+    private synchronized void processStandbyEnter() {
+        if (!standby || standbyRunning || !isStart()) {
+            return;
+        }
+
+        standbyRunning = true;
+        if (listener != null) {
+            try {
+                listener.processStandbyEnter();
+            } catch (Exception e) {
+                logger.error("processStandbyEnter failed", e);
+            }
+        }
+    }
+
+    private synchronized void processStandbyExit() {
+        if (!standbyRunning) {
+            return;
+        }
+
+        standbyRunning = false;
+        if (listener != null) {
+            try {
+                listener.processStandbyExit();
+            } catch (Exception e) {
+                logger.error("processStandbyExit failed", e);
+            }
+        }
+    }
+
     private void processActiveExit() {
         if (listener != null) {
             try {
@@ -268,6 +312,14 @@ public class ServerRunningMonitor extends AbstractCanalLifeCycle {
         this.delayTime = delayTime;
     }
 
+    public void setStandby(boolean standby) {
+        this.standby = standby;
+    }
+
+    public void setStandbyDelay(long standbyDelay) {
+        this.standbyDelay = standbyDelay;
+    }
+
     public void setServerData(ServerRunningData serverData) {
         this.serverData = serverData;
     }
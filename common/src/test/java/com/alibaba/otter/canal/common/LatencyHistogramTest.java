@@ -0,0 +1,27 @@
+package com.alibaba.otter.canal.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testObserve() {
+        LatencyHistogram histogram = new LatencyHistogram(1, 10, 100);
+        histogram.observe(500 * 1000L); // 0.5ms
+        histogram.observeMillis(1); // 边界值落在当前区间
+        histogram.observeMillis(50);
+        histogram.observeMillis(1000);
+        histogram.observe(-1);
+
+        Assert.assertArrayEquals(new long[] { 3, 3, 4, 5 }, histogram.getCumulativeCounts());
+        Assert.assertEquals(1051.5, histogram.getSumInMillis(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnorderedBuckets() {
+        new LatencyHistogram(10, 1);
+    }
+}
@@ -111,6 +111,34 @@ public class ServerRunningTest extends AbstractZkTest {
         sleep(30000L);
     }
 
+    @Test
+    public void testStandby() {
+        final CountDownLatch countLatch = new CountDownLatch(4);
+        ServerRunningMonitor runningMonitor1 = buildServerRunning(countLatch, "127.0.0.1", 2088);
+        ServerRunningMonitor runningMonitor2 = buildServerRunning(countLatch, "127.0.0.1", 2089);
+        runningMonitor1.setStandby(true);
+        runningMonitor2.setStandby(true);
+        runningMonitor2.setStandbyDelay(500);
+        runningMonitor1.start();
+        runningMonitor2.start();
+        sleep(1000L);
+        Assert.assertTrue(runningMonitor1.check());
+        Assert.assertFalse(runningMonitor2.check());
+
+        // running节点释放后，热备节点在standbyDelay之后接管
+        runningMonitor1.stop();
+        sleep(200L);
+        Assert.assertFalse(runningMonitor2.check());
+        sleep(1000L);
+        Assert.assertTrue(runningMonitor2.check());
+        runningMonitor2.stop();
+        sleep(1000L);
+
+        if (countLatch.getCount() != 0) {
+            Assert.fail();
+        }
+    }
+
     private ServerRunningMonitor buildServerRunning(final CountDownLatch countLatch, final String ip, final int port) {
         ServerRunningData serverData = new ServerRunningData(ip + ":" + port);
         ServerRunningMonitor runningMonitor = new ServerRunningMonitor(serverData);
@@ -118,21 +146,21 @@ public class ServerRunningTest extends AbstractZkTest {
         runningMonitor.setListener(new ServerRunningListener() {
 
             public void processActiveEnter() {
-                System.out.println(String.format("cid:%s ip:%s:%s has start", ip, port));
+                System.out.println(String.format("destination:%s ip:%s:%s has start", destination, ip, port));
                 countLatch.countDown();
             }
 
             public void processActiveExit() {
-                System.out.println(String.format("cid:%s ip:%s:%s has stop", ip, port));
+                System.out.println(String.format("destination:%s ip:%s:%s has stop", destination, ip, port));
                 countLatch.countDown();
             }
 
             public void processStart() {
-                System.out.println(String.format("cid:%s ip:%s:%s processStart", ip, port));
+                System.out.println(String.format("destination:%s ip:%s:%s processStart", destination, ip, port));
             }
 
             public void processStop() {
-                System.out.println(String.format("cid:%s ip:%s:%s processStop", ip, port));
+                System.out.println(String.format("destination:%s ip:%s:%s processStop", destination, ip, port));
             }
 
         });
@@ -0,0 +1,80 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.utils.TopKCounter;
+import com.alibaba.otter.canal.common.utils.TopKCounter.Item;
+
+public class TopKCounterTest {
+
+    @Test
+    public void testAdd() {
+        TopKCounter counter = new TopKCounter(2);
+        counter.add("test.a", 1, 100, 10);
+        counter.add("test.a", 2, 100, 10);
+        counter.add("test.b", 1, 50, 5);
+
+        List<Item> items = counter.snapshot();
+        Assert.assertEquals(2, items.size());
+        Assert.assertEquals("test.a", items.get(0).getKey());
+        Assert.assertEquals(3, items.get(0).getRows());
+        Assert.assertEquals(200, items.get(0).getBytes());
+        Assert.assertEquals(20, items.get(0).getNanos());
+        Assert.assertEquals(0, items.get(0).getError());
+    }
+
+    @Test
+    public void testEvict() {
+        TopKCounter counter = new TopKCounter(2);
+        counter.add("test.a", 1, 100, 10);
+        counter.add("test.b", 1, 50, 5);
+        // 淘汰bytes最小的test.b，test.c继承其计数
+        counter.add("test.c", 1, 10, 1);
+
+        List<Item> items = counter.snapshot();
+        Assert.assertEquals(2, items.size());
+        Assert.assertEquals("test.a", items.get(0).getKey());
+        Item item = items.get(1);
+        Assert.assertEquals("test.c", item.getKey());
+        Assert.assertEquals(60, item.getBytes());
+        Assert.assertEquals(50, item.getError());
+        Assert.assertEquals(1, item.getRows());
+        Assert.assertEquals(1, item.getNanos());
+    }
+
+    @Test
+    public void testEvictMin() {
+        TopKCounter counter = new TopKCounter(3);
+        counter.add("test.a", 1, 100, 1);
+        counter.add("test.b", 1, 50, 1);
+        counter.add("test.c", 1, 70, 1);
+        // 每次都淘汰bytes最小的key
+        counter.add("test.d", 1, 10, 1);
+        counter.add("test.e", 1, 5, 1);
+        counter.add("test.f", 1, 1, 1);
+        assertKeys(counter, "test.a", "test.c", "test.f");
+        Assert.assertEquals(66, counter.snapshot().get(2).getBytes());
+        Assert.assertEquals(65, counter.snapshot().get(2).getError());
+
+        // 已有key的bytes增加后重新调整位置
+        counter.add("test.c", 1, 100, 1);
+        counter.add("test.g", 1, 1, 1);
+        assertKeys(counter, "test.c", "test.a", "test.g");
+
+        counter.clear();
+        Assert.assertTrue(counter.snapshot().isEmpty());
+        counter.add("test.h", 1, 1, 1);
+        assertKeys(counter, "test.h");
+    }
+
+    private void assertKeys(TopKCounter counter, String... keys) {
+        List<Item> items = counter.snapshot();
+        Assert.assertEquals(keys.length, items.size());
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertEquals(keys[i], items.get(i).getKey());
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+
+/**
+ * 基于mmap的本地binlog文件读取, 与{@link FileLogFetcher}的使用方式一致
+ *
+ * <pre>
+ * 1. 按照窗口大小映射binlog文件, 从映射区直接拷贝event, 不再经过FileInputStream的系统调用
+ * 2. 读到映射区末尾时, 按照文件当前大小重新映射, 支持mysql仍在追加写的文件
+ * 3. 可以提前映射并预读下一个binlog文件
+ * 4. remap及close时显式释放旧的映射区, 不依赖GC回收, 避免频繁切换文件时堆积大量映射
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public final class MmapFileLogFetcher extends LogFetcher {
+
+    protected static final Log                logger              = LogFactory.getLog(MmapFileLogFetcher.class);
+
+    public static final int                   DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final ExecutorService      prefetchExecutor    = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                                                                      public Thread newThread(Runnable r) {
+                                                                          Thread t = new Thread(r, "MmapBinlogPrefetch");
+                                                                          t.setDaemon(true);
+                                                                          return t;
+                                                                      }
+                                                                  });
+
+    private final int                         windowSize;
+    private RandomAccessFile                  file;
+    private FileChannel                       channel;
+    private MappedByteBuffer                  mapped;
+    private long                              mappedStart;                                              // 映射区在文件中的起始位置
+    private long                              filePosition;                                             // 下一次读取的文件位置
+
+    private volatile String                   prefetchPath;
+    private volatile Future<MappedByteBuffer> prefetchFuture;
+
+    // 释放映射区的方法, java9+使用Unsafe.invokeCleaner, java8使用DirectBuffer.cleaner().clean()
+    private static final Object               UNSAFE;
+    private static final Method               INVOKE_CLEANER;
+    private static final Method               CLEANER;
+    private static final Method               CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (Throwable e) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (Throwable e1) {
+                logger.warn("unmap is not supported, mapped buffer will be released by gc", e1);
+                cleaner = null;
+                clean = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    public MmapFileLogFetcher(){
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MmapFileLogFetcher(final int initialCapacity){
+        this(initialCapacity, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MmapFileLogFetcher(final int initialCapacity, final int windowSize){
+        super(initialCapacity, DEFAULT_GROWTH_FACTOR);
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Open binlog file in local disk to fetch.
+     */
+    public void open(File file) throws FileNotFoundException, IOException {
+        open(file, 0L);
+    }
+
+    /**
+     * Open binlog file in local disk to fetch.
+     */
+    public void open(File file, final long filePosition) throws FileNotFoundException, IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.mapped = takePrefetched(file);
+        this.mappedStart = 0;
+        if (mapped == null && !remap(0)) {
+            throw new IOException("No binlog file header");
+        }
+
+        this.filePosition = 0;
+        ensureCapacity(BIN_LOG_HEADER_SIZE);
+        if (BIN_LOG_HEADER_SIZE != read(buffer, 0, BIN_LOG_HEADER_SIZE)) {
+            throw new IOException("No binlog file header");
+        }
+
+        if (buffer[0] != FileLogFetcher.BINLOG_MAGIC[0] || buffer[1] != FileLogFetcher.BINLOG_MAGIC[1]
+            || buffer[2] != FileLogFetcher.BINLOG_MAGIC[2] || buffer[3] != FileLogFetcher.BINLOG_MAGIC[3]) {
+            throw new IOException("Error binlog file header: "
+                                  + Arrays.toString(Arrays.copyOf(buffer, BIN_LOG_HEADER_SIZE)));
+        }
+
+        limit = 0;
+        origin = 0;
+        position = 0;
+
+        if (filePosition > BIN_LOG_HEADER_SIZE) {
+            final int maxFormatDescriptionEventLen = FormatDescriptionLogEvent.LOG_EVENT_MINIMAL_HEADER_LEN
+                                                     + FormatDescriptionLogEvent.ST_COMMON_HEADER_LEN_OFFSET
+                                                     + LogEvent.ENUM_END_EVENT + LogEvent.BINLOG_CHECKSUM_ALG_DESC_LEN
+                                                     + LogEvent.CHECKSUM_CRC32_SIGNATURE_LEN;
+
+            ensureCapacity(maxFormatDescriptionEventLen);
+            limit = read(buffer, 0, maxFormatDescriptionEventLen);
+            limit = (int) getUint32(LogEvent.EVENT_LEN_OFFSET);
+            this.filePosition = filePosition;
+        }
+    }
+
+    /**
+     * 异步映射并预读下一个binlog文件的头部窗口
+     */
+    public void prefetch(final File next) {
+        if (next == null || next.getPath().equals(prefetchPath)) {
+            return;
+        }
+
+        // 之前预读的文件没有被使用
+        releasePrefetched();
+        prefetchPath = next.getPath();
+        prefetchFuture = prefetchExecutor.submit(new Callable<MappedByteBuffer>() {
+
+            public MappedByteBuffer call() throws Exception {
+                RandomAccessFile raf = new RandomAccessFile(next, "r");
+                try {
+                    FileChannel fc = raf.getChannel();
+                    // 映射在channel关闭后依然有效
+                    MappedByteBuffer buffer = fc.map(MapMode.READ_ONLY, 0, Math.min(fc.size(), windowSize));
+                    buffer.load();
+                    return buffer;
+                } finally {
+                    raf.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.taobao.tddl.dbsync.binlog.LogFetcher#fetch()
+     */
+    public boolean fetch() throws IOException {
+        if (limit == 0) {
+            final int len = read(buffer, 0, buffer.length);
+            if (len >= 0) {
+                limit += len;
+                position = 0;
+                origin = 0;
+
+                /* More binlog to fetch */
+                return true;
+            }
+        } else if (origin == 0) {
+            if (limit > buffer.length / 2) {
+                ensureCapacity(buffer.length + limit);
+            }
+            final int len = read(buffer, limit, buffer.length - limit);
+            if (len >= 0) {
+                limit += len;
+
+                /* More binlog to fetch */
+                return true;
+            }
+        } else if (limit > 0) {
+            if (limit >= FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN) {
+                final long eventLen = getUint32(LogEvent.EVENT_LEN_OFFSET);
+                if (limit >= eventLen) {
+                    return true;
+                } else {
+                    ensureCapacity((int) eventLen);
+                }
+            }
+
+            System.arraycopy(buffer, origin, buffer, 0, limit);
+            position -= origin;
+            origin = 0;
+            final int len = read(buffer, limit, buffer.length - limit);
+            if (len >= 0) {
+                limit += len;
+
+                /* More binlog to fetch */
+                return true;
+            }
+        } else {
+            /* Should not happen. */
+            throw new IllegalArgumentException("Unexcepted limit: " + limit);
+        }
+
+        /* Reach binlog file end */
+        return false;
+    }
+
+    /**
+     * 从映射区拷贝数据, 映射区读完时按照文件当前大小重新映射
+     *
+     * @return 读取的字节数, -1代表已到文件末尾
+     */
+    private int read(byte[] dst, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (filePosition >= mappedStart + mapped.limit() && !remap(filePosition)) {
+            return -1;
+        }
+
+        final int n = (int) Math.min(len, mappedStart + mapped.limit() - filePosition);
+        mapped.position((int) (filePosition - mappedStart));
+        mapped.get(dst, off, n);
+        filePosition += n;
+        return n;
+    }
+
+    private boolean remap(long start) throws IOException {
+        final long size = channel.size();
+        if (start >= size) {
+            return false;
+        }
+
+        MappedByteBuffer old = mapped;
+        mapped = channel.map(MapMode.READ_ONLY, start, Math.min(size - start, windowSize));
+        mappedStart = start;
+        unmap(old);
+        return true;
+    }
+
+    private MappedByteBuffer takePrefetched(File file) {
+        Future<MappedByteBuffer> future = prefetchFuture;
+        if (future == null) {
+            return null;
+        }
+        if (!file.getPath().equals(prefetchPath)) {
+            // 打开的不是预读的文件, 预读已经没有用处
+            releasePrefetched();
+            return null;
+        }
+
+        prefetchPath = null;
+        prefetchFuture = null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("prefetch binlog file failed: " + file.getPath(), e.getCause());
+        }
+        return null;
+    }
+
+    private void releasePrefetched() {
+        final Future<MappedByteBuffer> future = prefetchFuture;
+        prefetchPath = null;
+        prefetchFuture = null;
+        if (future == null) {
+            return;
+        }
+
+        // 预读线程是单线程, 等预读完成后再释放
+        prefetchExecutor.submit(new Runnable() {
+
+            public void run() {
+                try {
+                    unmap(future.get());
+                } catch (Throwable e) {
+                    // ignore
+                }
+            }
+        });
+    }
+
+    /**
+     * 显式释放映射区, 释放后不能再访问该buffer
+     *
+     * @return false代表当前jvm不支持, 映射区在GC时释放
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return false;
+        }
+
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            } else if (CLEANER != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                    return true;
+                }
+            }
+        } catch (Throwable e) {
+            logger.warn("unmap failed, mapped buffer will be released by gc", e);
+        }
+        return false;
+    }
+
+    MappedByteBuffer getMapped() {
+        return mapped;
+    }
+
+    Future<MappedByteBuffer> getPrefetchFuture() {
+        return prefetchFuture;
+    }
+
+    /**
+     * 关闭当前文件, 预读的下一个文件会保留到下一次open
+     *
+     * @see com.taobao.tddl.dbsync.binlog.LogFetcher#close()
+     */
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+
+        file = null;
+        channel = null;
+        unmap(mapped);
+        mapped = null;
+    }
+
+    /**
+     * 关闭当前文件并释放未使用的预读映射, 不再使用fetcher时调用
+     */
+    public void release() throws IOException {
+        close();
+        releasePrefetched();
+    }
+}
@@ -126,6 +126,81 @@ public final class RowsLogBuffer {
         }
     }
 
+    /**
+     * Skipping next field value from packed buffer, variable-length values
+     * (blob/text/varchar/json/geometry) are skipped by length without being
+     * materialized.
+     */
+    public final void skipValue(int type, final int meta) {
+        fNull = nullBits.get(nullBitIndex++);
+        value = null;
+        length = 0;
+        if (fNull) {
+            javaType = mysqlToJavaType(type, meta, true);
+            return;
+        }
+
+        int len = 0;
+        if (type == LogEvent.MYSQL_TYPE_STRING && meta >= 256) {
+            int byte0 = meta >> 8;
+            int byte1 = meta & 0xff;
+            if ((byte0 & 0x30) != 0x30) {
+                /* a long CHAR() field: see #37426 */
+                len = byte1 | (((byte0 & 0x30) ^ 0x30) << 4);
+            } else if (byte0 == LogEvent.MYSQL_TYPE_STRING) {
+                len = byte1;
+            } else {
+                // set/enum按原有逻辑解析, 定长且很短
+                fetchValue(null, -1, type, meta, true);
+                value = null;
+                return;
+            }
+        } else if (type == LogEvent.MYSQL_TYPE_STRING) {
+            len = meta;
+        }
+
+        switch (type) {
+            case LogEvent.MYSQL_TYPE_VARCHAR:
+            case LogEvent.MYSQL_TYPE_VAR_STRING:
+                len = meta;
+            case LogEvent.MYSQL_TYPE_STRING:
+                len = (len < 256) ? buffer.getUint8() : buffer.getUint16();
+                break;
+            case LogEvent.MYSQL_TYPE_TINY_BLOB:
+            case LogEvent.MYSQL_TYPE_MEDIUM_BLOB:
+            case LogEvent.MYSQL_TYPE_LONG_BLOB:
+            case LogEvent.MYSQL_TYPE_BLOB:
+            case LogEvent.MYSQL_TYPE_JSON:
+            case LogEvent.MYSQL_TYPE_GEOMETRY:
+                switch (meta) {
+                    case 1:
+                        len = buffer.getUint8();
+                        break;
+                    case 2:
+                        len = buffer.getUint16();
+                        break;
+                    case 3:
+                        len = buffer.getUint24();
+                        break;
+                    case 4:
+                        len = (int) buffer.getUint32();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("!! Unknown packlen = " + meta + " for type = " + type);
+                }
+                break;
+            default:
+                // 定长类型直接解析
+                fetchValue(null, -1, type, meta, true);
+                value = null;
+                return;
+        }
+
+        buffer.forward(len);
+        javaType = mysqlToJavaType(type, meta, true);
+        length = len;
+    }
+
     /**
      * Maps the given MySQL type to the correct JDBC type.
      */
@@ -0,0 +1,179 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MmapFileLogFetcherTest {
+
+    private File binlog;
+
+    @Before
+    public void setUp() {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("dummy.txt");
+        File dummyFile = new File(url.getFile());
+        binlog = new File(dummyFile.getParent() + "/binlog", "mysql-bin.000001");
+    }
+
+    @Test
+    public void testSameAsFileLogFetcher() throws IOException {
+        FileLogFetcher fetcher = new FileLogFetcher(1024);
+        List<Long> expected = fetchAll(fetcher, binlog);
+
+        // 小窗口, 覆盖多次remap的场景
+        MmapFileLogFetcher mmapFetcher = new MmapFileLogFetcher(1024, 4096);
+        mmapFetcher.prefetch(binlog);
+        Assert.assertEquals(expected, fetchAll(mmapFetcher, binlog));
+    }
+
+    @Test
+    public void testGrowingFile() throws IOException {
+        FileLogFetcher fetcher = new FileLogFetcher(1024);
+        List<Long> expected = fetchAll(fetcher, binlog);
+
+        byte[] data = Files.readAllBytes(binlog.toPath());
+        File growing = File.createTempFile("mysql-bin", ".000001");
+        growing.deleteOnExit();
+        int half = data.length / 2;
+        Files.write(growing.toPath(), Arrays.copyOf(data, half));
+
+        MmapFileLogFetcher mmapFetcher = new MmapFileLogFetcher(1024, 4096);
+        List<Long> actual = new ArrayList<Long>();
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition(growing.getName()));
+        try {
+            mmapFetcher.open(growing);
+            fetch(mmapFetcher, decoder, context, actual);
+
+            // 模拟mysql继续追加写
+            FileOutputStream out = new FileOutputStream(growing, true);
+            try {
+                out.write(data, half, data.length - half);
+            } finally {
+                out.close();
+            }
+            fetch(mmapFetcher, decoder, context, actual);
+        } finally {
+            mmapFetcher.close();
+        }
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testUnmap() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(binlog, "r");
+        MappedByteBuffer buffer;
+        try {
+            buffer = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        Assert.assertTrue(MmapFileLogFetcher.unmap(buffer));
+        Assert.assertFalse(MmapFileLogFetcher.unmap(null));
+    }
+
+    @Test
+    public void testPrefetchAcrossClose() throws Exception {
+        FileLogFetcher fetcher = new FileLogFetcher(1024);
+        List<Long> expected = fetchAll(fetcher, binlog);
+
+        File dir = Files.createTempDirectory("mmap").toFile();
+        File current = new File(dir, "mysql-bin.000001");
+        File next = new File(dir, "mysql-bin.000002");
+        Files.copy(binlog.toPath(), current.toPath());
+        Files.copy(binlog.toPath(), next.toPath());
+        try {
+            MmapFileLogFetcher mmapFetcher = new MmapFileLogFetcher(1024, 4096);
+            mmapFetcher.open(current);
+            mmapFetcher.prefetch(next);
+            MappedByteBuffer prefetched = mmapFetcher.getPrefetchFuture().get();
+            mmapFetcher.close();
+            // close之后预读依然保留
+            Assert.assertNotNull(mmapFetcher.getPrefetchFuture());
+
+            List<Long> positions = new ArrayList<Long>();
+            LogContext context = new LogContext();
+            context.setLogPosition(new LogPosition(next.getName()));
+            mmapFetcher.open(next);
+            Assert.assertSame(prefetched, mmapFetcher.getMapped());
+            Assert.assertNull(mmapFetcher.getPrefetchFuture());
+            fetch(mmapFetcher, new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT), context, positions);
+            mmapFetcher.release();
+            Assert.assertEquals(expected, positions);
+        } finally {
+            current.delete();
+            next.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testReleaseUnusedPrefetch() throws IOException {
+        FileLogFetcher fetcher = new FileLogFetcher(1024);
+        List<Long> expected = fetchAll(fetcher, binlog);
+
+        File other = File.createTempFile("mysql-bin", ".000002");
+        Files.copy(binlog.toPath(), other.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try {
+            // 打开的不是预读的文件, 释放预读
+            MmapFileLogFetcher mmapFetcher = new MmapFileLogFetcher(1024, 4096);
+            mmapFetcher.prefetch(other);
+            Assert.assertEquals(expected, fetchAll(mmapFetcher, binlog));
+            Assert.assertNull(mmapFetcher.getPrefetchFuture());
+
+            // 不再使用fetcher时释放预读
+            mmapFetcher.prefetch(other);
+            mmapFetcher.release();
+            Assert.assertNull(mmapFetcher.getPrefetchFuture());
+
+            mmapFetcher = new MmapFileLogFetcher(1024, 4096);
+            mmapFetcher.prefetch(binlog);
+            Assert.assertEquals(expected, fetchAll(mmapFetcher, binlog));
+        } finally {
+            other.delete();
+        }
+    }
+
+    private List<Long> fetchAll(LogFetcher fetcher, File file) throws IOException {
+        List<Long> positions = new ArrayList<Long>();
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition(file.getName()));
+        try {
+            if (fetcher instanceof MmapFileLogFetcher) {
+                ((MmapFileLogFetcher) fetcher).open(file);
+            } else {
+                ((FileLogFetcher) fetcher).open(file);
+            }
+            fetch(fetcher, decoder, context, positions);
+        } finally {
+            fetcher.close();
+        }
+        return positions;
+    }
+
+    private void fetch(LogFetcher fetcher, LogDecoder decoder, LogContext context, List<Long> positions)
+                                                                                                        throws IOException {
+        while (fetcher.fetch()) {
+            LogEvent event = decoder.decode(fetcher, context);
+            if (event != null) {
+                positions.add(event.getLogPos());
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.taobao.tddl.dbsync.binlog.event;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+
+public class RowsLogBufferTest {
+
+    @Test
+    public void testSkipValue() {
+        byte[] data = { 0x00, // null bitmap
+                0x01, 0x00, 0x00, 0x00, // int : 1
+                0x05, 0x00, 'h', 'e', 'l', 'l', 'o', // blob : hello
+                0x02, 'a', 'b', // varchar(100) : ab
+                0x07, 0x00, 0x00, 0x00 // int : 7
+        };
+        BitSet columns = new BitSet(4);
+        columns.set(0, 4);
+
+        RowsLogBuffer buffer = new RowsLogBuffer(new LogBuffer(data, 0, data.length), 4, "UTF-8", 0, false);
+        Assert.assertTrue(buffer.nextOneRow(columns));
+        buffer.nextValue("id", 0, LogEvent.MYSQL_TYPE_LONG, 0);
+        Assert.assertEquals(1, buffer.getValue());
+
+        buffer.skipValue(LogEvent.MYSQL_TYPE_BLOB, 2);
+        Assert.assertNull(buffer.getValue());
+        Assert.assertEquals(5, buffer.getLength());
+        buffer.skipValue(LogEvent.MYSQL_TYPE_VARCHAR, 100);
+        Assert.assertEquals(2, buffer.getLength());
+
+        buffer.nextValue("age", 3, LogEvent.MYSQL_TYPE_LONG, 0);
+        Assert.assertEquals(7, buffer.getValue());
+        Assert.assertFalse(buffer.nextOneRow(columns));
+    }
+}
@@ -26,7 +26,13 @@ public class CanalConstants {
     public static final String CANAL_ADMIN_AUTO_REGISTER            = ROOT + "." + "admin.register.auto";
     public static final String CANAL_ADMIN_AUTO_CLUSTER             = ROOT + "." + "admin.register.cluster";
     public static final String CANAL_ZKSERVERS                      = ROOT + "." + "zkServers";
+    public static final String CANAL_ZK_SESSION_TIMEOUT             = ROOT + "." + "zookeeper.session.timeout";
+    public static final String CANAL_ZK_STANDBY                     = ROOT + "." + "zookeeper.standby";
+    public static final String CANAL_ZK_STANDBY_INTERVAL            = ROOT + "." + "zookeeper.standby.interval";
+    public static final String CANAL_ZK_STANDBY_DELAY               = ROOT + "." + "zookeeper.standby.delay";
     public static final String CANAL_WITHOUT_NETTY                  = ROOT + "." + "withoutNetty";
+    public static final String CANAL_GET_ADAPTIVE_LATENCY           = ROOT + "." + "get.adaptive.latency";
+    public static final String CANAL_GET_ADAPTIVE_MAXBYTES          = ROOT + "." + "get.adaptive.maxBytes";
 
     public static final String CANAL_DESTINATIONS                   = ROOT + "." + "destinations";
     public static final String CANAL_AUTO_SCAN                      = ROOT + "." + "auto.scan";
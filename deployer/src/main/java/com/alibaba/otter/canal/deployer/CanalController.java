@@ -2,6 +2,10 @@ package com.alibaba.otter.canal.deployer;
 
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.I0Itec.zkclient.IZkStateListener;
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
@@ -23,13 +27,17 @@ import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitors;
 import com.alibaba.otter.canal.deployer.InstanceConfig.InstanceMode;
 import com.alibaba.otter.canal.deployer.monitor.InstanceAction;
 import com.alibaba.otter.canal.deployer.monitor.InstanceConfigMonitor;
+import com.alibaba.otter.canal.deployer.monitor.InstanceFilterChange;
 import com.alibaba.otter.canal.deployer.monitor.ManagerInstanceConfigMonitor;
 import com.alibaba.otter.canal.deployer.monitor.SpringInstanceConfigMonitor;
+import com.alibaba.otter.canal.instance.core.AbstractCanalInstance;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
 import com.alibaba.otter.canal.instance.manager.PlainCanalInstanceGenerator;
 import com.alibaba.otter.canal.instance.manager.plain.PlainCanalConfigClient;
 import com.alibaba.otter.canal.instance.spring.SpringCanalInstanceGenerator;
+import com.alibaba.otter.canal.meta.ZooKeeperMetaManager;
+import com.alibaba.otter.canal.parse.index.MetaLogPositionManager;
 import com.alibaba.otter.canal.server.CanalMQStarter;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.exception.CanalServerException;
@@ -68,6 +76,13 @@ public class CanalController {
     private CanalMQStarter                           canalMQStarter;
     private String                                   adminUser;
     private String                                   adminPasswd;
+    // 热备模式，非active的destination跟踪zk上的位点进行预热
+    private boolean                                  standby;
+    private long                                     standbyInterval;
+    private long                                     standbyDelay;
+    private ScheduledExecutorService                 standbyExecutor;
+    private Map<String, ScheduledFuture<?>>          standbyFutures;
+    private MetaLogPositionManager                   standbyPositionManager;
 
     public CanalController(){
         this(System.getProperties());
@@ -117,6 +132,12 @@ public class CanalController {
         this.adminPasswd = getProperty(properties, CanalConstants.CANAL_ADMIN_PASSWD);
         embededCanalServer.setUser(getProperty(properties, CanalConstants.CANAL_USER));
         embededCanalServer.setPasswd(getProperty(properties, CanalConstants.CANAL_PASSWD));
+        embededCanalServer.setAdaptiveBatchLatency(Long.valueOf(getProperty(properties,
+            CanalConstants.CANAL_GET_ADAPTIVE_LATENCY,
+            "0")));
+        embededCanalServer.setAdaptiveBatchMaxBytes(Long.valueOf(getProperty(properties,
+            CanalConstants.CANAL_GET_ADAPTIVE_MAXBYTES,
+            "0")));
 
         String canalWithoutNetty = getProperty(properties, CanalConstants.CANAL_WITHOUT_NETTY);
         if (canalWithoutNetty == null || "false".equals(canalWithoutNetty)) {
@@ -139,10 +160,29 @@ public class CanalController {
         }
         final String zkServers = getProperty(properties, CanalConstants.CANAL_ZKSERVERS);
         if (StringUtils.isNotEmpty(zkServers)) {
+            String sessionTimeout = getProperty(properties, CanalConstants.CANAL_ZK_SESSION_TIMEOUT);
+            if (StringUtils.isNotEmpty(sessionTimeout)) {
+                ZkClientx.setSessionTimeout(Integer.valueOf(sessionTimeout));
+            }
             zkclientx = ZkClientx.getZkClient(zkServers);
             // 初始化系统目录
             zkclientx.createPersistent(ZookeeperPathUtils.DESTINATION_ROOT_NODE, true);
             zkclientx.createPersistent(ZookeeperPathUtils.CANAL_CLUSTER_ROOT_NODE, true);
+
+            standby = BooleanUtils.toBoolean(getProperty(properties, CanalConstants.CANAL_ZK_STANDBY));
+            if (standby) {
+                standbyInterval = Long.valueOf(getProperty(properties,
+                    CanalConstants.CANAL_ZK_STANDBY_INTERVAL,
+                    "1000"));
+                standbyDelay = Long.valueOf(getProperty(properties, CanalConstants.CANAL_ZK_STANDBY_DELAY, "1000"));
+                standbyExecutor = Executors.newScheduledThreadPool(1);
+                standbyFutures = new MapMaker().makeMap();
+                // 直接读取zk上的cursor，不经过instance内部带缓存的metaManager
+                ZooKeeperMetaManager zooKeeperMetaManager = new ZooKeeperMetaManager();
+                zooKeeperMetaManager.setZkClientx(zkclientx);
+                standbyPositionManager = new MetaLogPositionManager(zooKeeperMetaManager);
+                standbyPositionManager.start();
+            }
         }
 
         final ServerRunningData serverData = new ServerRunningData(registerIp + ":" + port);
@@ -157,6 +197,7 @@ public class CanalController {
                     public void processActiveEnter() {
                         try {
                             MDC.put(CanalConstants.MDC_DESTINATION, String.valueOf(destination));
+                            stopWarmup(destination);
                             embededCanalServer.start(destination);
                             if (canalMQStarter != null) {
                                 canalMQStarter.startDestination(destination);
@@ -178,6 +219,28 @@ public class CanalController {
                         }
                     }
 
+                    public void processStandbyEnter() {
+                        try {
+                            MDC.put(CanalConstants.MDC_DESTINATION, String.valueOf(destination));
+                            startWarmup(destination);
+                        } finally {
+                            MDC.remove(CanalConstants.MDC_DESTINATION);
+                        }
+                    }
+
+                    public void processStandbyExit() {
+                        try {
+                            MDC.put(CanalConstants.MDC_DESTINATION, String.valueOf(destination));
+                            stopWarmup(destination);
+                            if (!embededCanalServer.isStart(destination)) {
+                                // 释放预热的instance
+                                embededCanalServer.stop(destination);
+                            }
+                        } finally {
+                            MDC.remove(CanalConstants.MDC_DESTINATION);
+                        }
+                    }
+
                     public void processStart() {
                         try {
                             if (zkclientx != null) {
@@ -222,6 +285,8 @@ public class CanalController {
                 if (zkclientx != null) {
                     runningMonitor.setZkClient(zkclientx);
                 }
+                runningMonitor.setStandby(standby);
+                runningMonitor.setStandbyDelay(standbyDelay);
                 // 触发创建一下cid节点
                 runningMonitor.init();
                 return runningMonitor;
@@ -274,6 +339,24 @@ public class CanalController {
                     logger.info("auto notify reload {} successful.", destination);
                 }
 
+                public boolean reloadFilter(String destination, InstanceFilterChange change) {
+                    if (!embededCanalServer.isStart(destination)) {
+                        return false;
+                    }
+
+                    CanalInstance canalInstance = embededCanalServer.getCanalInstances().get(destination);
+                    if (!(canalInstance instanceof AbstractCanalInstance)) {
+                        return false;
+                    }
+
+                    ((AbstractCanalInstance) canalInstance).filterChange(change.getFilter(),
+                        change.getBlackFilter(),
+                        change.getFieldFilter(),
+                        change.getFieldBlackFilter());
+                    logger.info("auto notify reload filter {} successful.", destination);
+                    return true;
+                }
+
                 @Override
                 public void release(String destination) {
                     // 此处的release，代表强制释放，主要针对HA机制释放运行，让给其他机器抢占
@@ -554,6 +637,11 @@ public class CanalController {
             }
         }
 
+        if (standbyExecutor != null) {
+            standbyExecutor.shutdownNow();
+            standbyPositionManager.stop();
+        }
+
         // 释放canal的工作节点
         releaseCid(ZookeeperPathUtils.getCanalClusterNode(registerIp + ":" + port));
         logger.info("## stop the canal server[{}({}):{}]", ip, registerIp, port);
@@ -595,6 +683,45 @@ public class CanalController {
         }
     }
 
+    /**
+     * 定时读取zk上最新的位点，预热非active的destination
+     */
+    private void startWarmup(final String destination) {
+        if (!standby) {
+            return;
+        }
+
+        ScheduledFuture<?> future = standbyExecutor.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    MDC.put(CanalConstants.MDC_DESTINATION, String.valueOf(destination));
+                    embededCanalServer.warmup(destination, standbyPositionManager.getLatestIndexBy(destination));
+                } catch (Throwable e) {
+                    logger.error(String.format("warmup destination[%s] failed", destination), e);
+                } finally {
+                    MDC.remove(CanalConstants.MDC_DESTINATION);
+                }
+            }
+        }, 0, standbyInterval, TimeUnit.MILLISECONDS);
+
+        ScheduledFuture<?> old = standbyFutures.put(destination, future);
+        if (old != null) {
+            old.cancel(false);
+        }
+    }
+
+    private void stopWarmup(String destination) {
+        if (!standby) {
+            return;
+        }
+
+        ScheduledFuture<?> future = standbyFutures.remove(destination);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
     private void releaseCid(String path) {
         // logger.info("## release the canalId = {}", cid);
         // 初始化系统目录
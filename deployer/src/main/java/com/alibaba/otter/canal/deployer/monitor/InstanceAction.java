@@ -27,4 +27,9 @@ public interface InstanceAction {
      * 重载destination，可能需要stop,start操作，或者只是更新下内存配置
      */
     void reload(String destination);
+
+    /**
+     * 只有过滤规则变化时直接更新运行中的destination，返回false代表无法热更新，需要走reload
+     */
+    boolean reloadFilter(String destination, InstanceFilterChange change);
 }
@@ -0,0 +1,85 @@
+package com.alibaba.otter.canal.deployer.monitor;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * instance配置中只有过滤规则发生变化时的变更内容，可以直接更新运行中的instance，避免重启
+ *
+ * @version 1.0.0
+ */
+public class InstanceFilterChange {
+
+    public static final String FILTER_REGEX       = "canal.instance.filter.regex";
+    public static final String FILTER_BLACK_REGEX = "canal.instance.filter.black.regex";
+    public static final String FILTER_FIELD       = "canal.instance.filter.field";
+    public static final String FILTER_BLACK_FIELD = "canal.instance.filter.black.field";
+
+    private String             filter;                                                  // null代表未变化
+    private String             blackFilter;
+    private String             fieldFilter;
+    private String             fieldBlackFilter;
+
+    /**
+     * 对比新旧配置
+     *
+     * @return 只有过滤规则变化时返回对应的变更，存在其他配置变化时返回null
+     */
+    public static InstanceFilterChange diff(Properties oldProperties, Properties newProperties) {
+        if (oldProperties == null || newProperties == null) {
+            return null;
+        }
+
+        Set<String> keys = new HashSet<String>(oldProperties.stringPropertyNames());
+        keys.addAll(newProperties.stringPropertyNames());
+        InstanceFilterChange change = new InstanceFilterChange();
+        boolean changed = false;
+        for (String key : keys) {
+            String oldValue = StringUtils.trimToEmpty(oldProperties.getProperty(key));
+            String newValue = StringUtils.trimToEmpty(newProperties.getProperty(key));
+            if (oldValue.equals(newValue)) {
+                continue;
+            }
+
+            if (FILTER_REGEX.equals(key)) {
+                change.filter = newValue;
+            } else if (FILTER_BLACK_REGEX.equals(key)) {
+                change.blackFilter = newValue;
+            } else if (FILTER_FIELD.equals(key)) {
+                change.fieldFilter = newValue;
+            } else if (FILTER_BLACK_FIELD.equals(key)) {
+                change.fieldBlackFilter = newValue;
+            } else {
+                return null;
+            }
+            changed = true;
+        }
+
+        return changed ? change : null;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public String getBlackFilter() {
+        return blackFilter;
+    }
+
+    public String getFieldFilter() {
+        return fieldFilter;
+    }
+
+    public String getFieldBlackFilter() {
+        return fieldBlackFilter;
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceFilterChange [filter=" + filter + ", blackFilter=" + blackFilter + ", fieldFilter="
+               + fieldFilter + ", fieldBlackFilter=" + fieldBlackFilter + "]";
+    }
+}
@@ -2,8 +2,8 @@ package com.alibaba.otter.canal.deployer.monitor;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -18,11 +18,18 @@ import com.alibaba.otter.canal.instance.manager.plain.PlainCanalConfigClient;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
 import com.google.common.collect.MigrateMap;
 
 /**
  * 基于manager配置的实现
  *
+ * <pre>
+ * 1. 每次scan之后向admin发起长轮询watch，admin端instance配置变化时立即返回并触发scan，watch超时后同样做一次兜底scan
+ * 2. admin不支持watch或者请求失败时，退化为按scanIntervalInSecond定时扫描
+ * 3. 只有过滤规则变化时直接热更新运行中的instance，不做重启
+ * </pre>
+ *
  * @author agapple 2019年8月26日 下午10:00:20
  * @since 1.1.4
  */
@@ -38,28 +45,38 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
                                                                      return new PlainCanal();
                                                                  }
                                                              });
-    private ScheduledExecutorService    executor             = Executors.newScheduledThreadPool(1,
-                                                                 new NamedThreadFactory("canal-instance-scan"));
+    // 长轮询的最长等待时间，单位秒
+    private long                        watchTimeoutInSecond = 30;
+    private ExecutorService             executor             = Executors.newSingleThreadExecutor(new NamedThreadFactory("canal-instance-scan"));
 
     private volatile boolean            isFirst              = true;
     private PlainCanalConfigClient      configClient;
 
     public void start() {
         super.start();
-        executor.scheduleWithFixedDelay(new Runnable() {
+        executor.submit(new Runnable() {
 
             public void run() {
-                try {
-                    scan();
-                    if (isFirst) {
-                        isFirst = false;
+                long version = -1;
+                while (isStart() && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        scan();
+                        if (isFirst) {
+                            isFirst = false;
+                        }
+                    } catch (Throwable e) {
+                        logger.error("scan failed", e);
+                    }
+
+                    try {
+                        version = watch(version);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
                     }
-                } catch (Throwable e) {
-                    logger.error("scan failed", e);
                 }
             }
 
-        }, 0, scanIntervalInSecond, TimeUnit.SECONDS);
+        });
     }
 
     public void stop() {
@@ -80,12 +97,28 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
         actions.remove(destination);
     }
 
+    /**
+     * 等待admin端的instance配置变化
+     *
+     * @return admin端最新的配置版本号
+     */
+    private long watch(long version) throws InterruptedException {
+        try {
+            return configClient.watchInstances(version, TimeUnit.SECONDS.toMillis(watchTimeoutInSecond));
+        } catch (Throwable e) {
+            logger.debug("watch instances failed, fallback to period scan", e);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(scanIntervalInSecond));
+            return -1;
+        }
+    }
+
     private void scan() {
         String instances = configClient.findInstances(null);
         final List<String> is = Lists.newArrayList(StringUtils.split(instances, ','));
         List<String> start = Lists.newArrayList();
         List<String> stop = Lists.newArrayList();
         List<String> restart = Lists.newArrayList();
+        Map<String, InstanceFilterChange> filterChanges = Maps.newHashMap();
         for (String instance : is) {
             if (!configs.containsKey(instance)) {
                 PlainCanal newPlainCanal = configClient.findInstance(instance, null);
@@ -100,6 +133,11 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
                     // 配置有变化
                     restart.add(instance);
                     configs.put(instance, newPlainCanal);
+                    InstanceFilterChange change = InstanceFilterChange.diff(plainCanal.getProperties(),
+                        newPlainCanal.getProperties());
+                    if (change != null) {
+                        filterChanges.put(instance, change);
+                    }
                 }
             }
         }
@@ -115,7 +153,7 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
         });
 
         restart.forEach(instance -> {
-            notifyReload(instance);
+            notifyReload(instance, filterChanges.get(instance));
         });
 
         start.forEach(instance -> {
@@ -147,10 +185,13 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
         }
     }
 
-    private void notifyReload(String destination) {
+    private void notifyReload(String destination, InstanceFilterChange change) {
         InstanceAction action = actions.get(destination);
         if (action != null) {
             try {
+                if (change != null && action.reloadFilter(destination, change)) {
+                    return;
+                }
                 action.reload(destination);
             } catch (Throwable e) {
                 logger.error(String.format("scan reload found[%s] but reload failed", destination), e);
@@ -178,6 +219,10 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
         this.scanIntervalInSecond = scanIntervalInSecond;
     }
 
+    public void setWatchTimeoutInSecond(long watchTimeoutInSecond) {
+        this.watchTimeoutInSecond = watchTimeoutInSecond;
+    }
+
     public void setConfigClient(PlainCanalConfigClient configClient) {
         this.configClient = configClient;
     }
@@ -2,16 +2,26 @@ package com.alibaba.otter.canal.deployer.monitor;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
+
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +38,12 @@ import com.google.common.collect.MigrateMap;
 /**
  * 监听基于spring配置的instance变化
  * 
+ * <pre>
+ * 1. 基于WatchService监听conf目录及instance目录的文件事件，变化后立即scan，scanIntervalInSecond作为兜底的扫描周期
+ * 2. WatchService不可用时退化为按scanIntervalInSecond定时扫描
+ * 3. 只有过滤规则变化时直接热更新运行中的instance，不做重启
+ * </pre>
+ * 
  * @author jianghang 2013-2-6 下午06:23:55
  * @version 1.0.1
  */
@@ -45,8 +61,10 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
                                                                           return new InstanceConfigFiles(destination);
                                                                       }
                                                                   });
-    private ScheduledExecutorService         executor             = Executors.newScheduledThreadPool(1,
-                                                                      new NamedThreadFactory("canal-instance-scan"));
+    private ExecutorService                  executor             = Executors.newSingleThreadExecutor(new NamedThreadFactory("canal-instance-scan"));
+    // 文件事件触发后等待的合并时间，避免编辑器多次写入触发多次reload
+    private long                             debounceInMills      = 200;
+    private WatchService                     watchService;
 
     private volatile boolean                 isFirst              = true;
 
@@ -58,25 +76,43 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
         super.start();
         Assert.notNull(rootConf, "root conf dir is null!");
 
-        executor.scheduleWithFixedDelay(new Runnable() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (Throwable e) {
+            logger.warn("WatchService is not available, fallback to period scan", e);
+            watchService = null;
+        }
+
+        executor.submit(new Runnable() {
 
             public void run() {
-                try {
-                    scan();
-                    if (isFirst) {
-                        isFirst = false;
+                while (isStart() && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        scan();
+                        if (isFirst) {
+                            isFirst = false;
+                        }
+                    } catch (Throwable e) {
+                        logger.error("scan failed", e);
+                    }
+
+                    try {
+                        waitForChange();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Throwable e) {
+                        logger.error("watch failed", e);
                     }
-                } catch (Throwable e) {
-                    logger.error("scan failed", e);
                 }
             }
 
-        }, 0, scanIntervalInSecond, TimeUnit.SECONDS);
+        });
     }
 
     public void stop() {
         super.stop();
         executor.shutdownNow();
+        IOUtils.closeQuietly(watchService);
         actions.clear();
         lastFiles.clear();
     }
@@ -97,12 +133,48 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
         this.rootConf = rootConf;
     }
 
+    /**
+     * 等待文件变化，最长等待一个scanIntervalInSecond周期
+     */
+    private void waitForChange() throws InterruptedException {
+        if (watchService == null) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(scanIntervalInSecond));
+            return;
+        }
+
+        WatchKey key = watchService.poll(scanIntervalInSecond, TimeUnit.SECONDS);
+        while (key != null) {
+            // 清理掉积压的事件，合并一段时间内的多次变化
+            key.pollEvents();
+            key.reset();
+            key = watchService.poll(debounceInMills, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void watch(File dir) {
+        if (watchService == null) {
+            return;
+        }
+
+        try {
+            // 重复注册返回同一个key，目录删除后key自动失效
+            dir.toPath().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (Throwable e) {
+            logger.warn("watch dir " + dir.getPath() + " failed, fallback to period scan", e);
+        }
+    }
+
     private void scan() {
         File rootdir = new File(rootConf);
         if (!rootdir.exists()) {
             return;
         }
 
+        watch(rootdir);
+
         File[] instanceDirs = rootdir.listFiles(new FileFilter() {
 
             public boolean accept(File pathname) {
@@ -118,6 +190,7 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
         for (File instanceDir : instanceDirs) {
             String destination = instanceDir.getName();
             currentInstanceNames.add(destination);
+            watch(instanceDir);
             File[] instanceConfigs = instanceDir.listFiles(new FilenameFilter() {
 
                 public boolean accept(File dir, String name) {
@@ -145,7 +218,7 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
                     boolean hasChanged = judgeFileChanged(instanceConfigs, lastFile.getInstanceFiles());
                     // 通知变化
                     if (hasChanged) {
-                        notifyReload(destination);
+                        notifyReload(destination, lastFile, instanceConfigs);
                     }
 
                     if (hasChanged || CollectionUtils.isEmpty(lastFile.getInstanceFiles())) {
@@ -157,6 +230,11 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
 
                         lastFile.setInstanceFiles(newFileInfo);
                     }
+
+                    if (lastFile.getProperties() == null) {
+                        // 由CanalController直接启动的instance没有经过notifyStart，首次扫描时补充记录配置内容，作为过滤规则热更新的对比基准
+                        recordProperties(destination, lastFile, instanceConfigs);
+                    }
                 }
             }
 
@@ -186,6 +264,7 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
                 newFileInfo.add(new FileInfo(instanceConfig.getName(), instanceConfig.lastModified()));
             }
             lastFile.setInstanceFiles(newFileInfo);
+            lastFile.setProperties(loadProperties(instanceConfigs));
         } catch (Throwable e) {
             logger.error(String.format("scan add found[%s] but start failed", destination), e);
         }
@@ -204,17 +283,44 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
         }
     }
 
-    private void notifyReload(String destination) {
+    private void notifyReload(String destination, InstanceConfigFiles lastFile, File[] instanceConfigs) {
         InstanceAction action = actions.get(destination);
         if (action != null) {
             try {
-                action.reload(destination);
+                Properties properties = loadProperties(instanceConfigs);
+                InstanceFilterChange change = InstanceFilterChange.diff(lastFile.getProperties(), properties);
+                if (change == null || !action.reloadFilter(destination, change)) {
+                    action.reload(destination);
+                }
+                lastFile.setProperties(properties);
             } catch (Throwable e) {
                 logger.error(String.format("scan reload found[%s] but reload failed", destination), e);
             }
         }
     }
 
+    private void recordProperties(String destination, InstanceConfigFiles lastFile, File[] instanceConfigs) {
+        try {
+            lastFile.setProperties(loadProperties(instanceConfigs));
+        } catch (Throwable e) {
+            // 没有对比基准时，配置变化会走完整的reload
+            logger.warn(String.format("scan found[%s] but load instance properties failed", destination), e);
+        }
+    }
+
+    private Properties loadProperties(File[] instanceConfigs) throws IOException {
+        Properties properties = new Properties();
+        for (File instanceConfig : instanceConfigs) {
+            InputStream input = new FileInputStream(instanceConfig);
+            try {
+                properties.load(input);
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+        return properties;
+    }
+
     private boolean judgeFileChanged(File[] instanceConfigs, List<FileInfo> fileInfos) {
         boolean hasChanged = false;
         for (File instanceConfig : instanceConfigs) {
@@ -239,6 +345,10 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
         this.scanIntervalInSecond = scanIntervalInSecond;
     }
 
+    public void setDebounceInMills(long debounceInMills) {
+        this.debounceInMills = debounceInMills;
+    }
+
     public static class InstanceConfigFiles {
 
         private String         destination;                              // instance
@@ -247,6 +357,7 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
                                                                           // xml
         private FileInfo       rootFile;                                 // canal.properties
         private List<FileInfo> instanceFiles = new ArrayList<FileInfo>(); // instance对应的配置
+        private Properties     properties;                               // 最近一次加载的instance配置内容
 
         public InstanceConfigFiles(String destination){
             this.destination = destination;
@@ -284,6 +395,14 @@ public class SpringInstanceConfigMonitor extends AbstractCanalLifeCycle implemen
             this.instanceFiles = instanceFiles;
         }
 
+        public Properties getProperties() {
+            return properties;
+        }
+
+        public void setProperties(Properties properties) {
+            this.properties = properties;
+        }
+
     }
 
     public static class FileInfo {
@@ -0,0 +1,71 @@
+package com.alibaba.otter.canal.deployer.monitor;
+
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InstanceFilterChangeTest {
+
+    @Test
+    public void testFilterChange() {
+        Properties oldProperties = properties();
+        Properties newProperties = properties();
+        newProperties.setProperty(InstanceFilterChange.FILTER_REGEX, "test\\..*");
+        newProperties.setProperty(InstanceFilterChange.FILTER_FIELD, " test.user:id/name ");
+
+        InstanceFilterChange change = InstanceFilterChange.diff(oldProperties, newProperties);
+        Assert.assertNotNull(change);
+        Assert.assertEquals("test\\..*", change.getFilter());
+        Assert.assertEquals("test.user:id/name", change.getFieldFilter());
+        // 未变化的规则为null
+        Assert.assertNull(change.getBlackFilter());
+        Assert.assertNull(change.getFieldBlackFilter());
+    }
+
+    @Test
+    public void testFilterRemoved() {
+        Properties oldProperties = properties();
+        Properties newProperties = properties();
+        newProperties.remove(InstanceFilterChange.FILTER_BLACK_REGEX);
+
+        // 删除的规则变为空串, 和未变化区分开
+        InstanceFilterChange change = InstanceFilterChange.diff(oldProperties, newProperties);
+        Assert.assertNotNull(change);
+        Assert.assertEquals("", change.getBlackFilter());
+        Assert.assertNull(change.getFilter());
+    }
+
+    @Test
+    public void testOtherChange() {
+        Properties oldProperties = properties();
+        Properties newProperties = properties();
+        newProperties.setProperty(InstanceFilterChange.FILTER_REGEX, "test\\..*");
+        newProperties.setProperty("canal.instance.master.address", "127.0.0.1:3307");
+
+        // 存在过滤规则以外的变化, 需要重启instance
+        Assert.assertNull(InstanceFilterChange.diff(oldProperties, newProperties));
+
+        newProperties = properties();
+        newProperties.setProperty("canal.instance.tsdb.enable", "false");
+        Assert.assertNull(InstanceFilterChange.diff(oldProperties, newProperties));
+    }
+
+    @Test
+    public void testNoChange() {
+        Properties newProperties = properties();
+        // 只有首尾空白的差异
+        newProperties.setProperty(InstanceFilterChange.FILTER_REGEX, ".*\\..* ");
+        Assert.assertNull(InstanceFilterChange.diff(properties(), newProperties));
+        Assert.assertNull(InstanceFilterChange.diff(null, properties()));
+        Assert.assertNull(InstanceFilterChange.diff(properties(), null));
+    }
+
+    private static Properties properties() {
+        Properties properties = new Properties();
+        properties.setProperty("canal.instance.master.address", "127.0.0.1:3306");
+        properties.setProperty(InstanceFilterChange.FILTER_REGEX, ".*\\..*");
+        properties.setProperty(InstanceFilterChange.FILTER_BLACK_REGEX, "mysql\\.slave_.*");
+        return properties;
+    }
+}
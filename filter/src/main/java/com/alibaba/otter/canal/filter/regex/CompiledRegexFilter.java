@@ -0,0 +1,260 @@
+package com.alibaba.otter.canal.filter.regex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.oro.text.regex.Perl5Matcher;
+
+import com.alibaba.otter.canal.filter.CanalEventFilter;
+import com.alibaba.otter.canal.filter.PatternUtils;
+import com.alibaba.otter.canal.filter.exception.CanalFilterException;
+
+/**
+ * 预编译的tableName正则匹配过滤算法, 与{@linkplain com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter}语义一致
+ *
+ * <pre>
+ * 1. 不含正则元字符的pattern, 放入hash set做精确匹配
+ * 2. xxx.* / .*xxx 形式的pattern, 放入前缀/后缀trie树匹配
+ * 3. .*xxx.* 形式的pattern, 做包含匹配
+ * 4. 其余pattern合并为一个正则表达式, 只编译一次
+ * </pre>
+ *
+ * 匹配结果会按照tableName做缓存, 避免重复计算
+ *
+ * @version 1.0.0
+ */
+public class CompiledRegexFilter implements CanalEventFilter<String> {
+
+    private static final String                  SPLIT          = ",";
+    private static final String                  PATTERN_SPLIT  = "|";
+    private static final String                  ANY            = ".*";
+    private static final String                  META_CHARS     = ".[]{}()*+?^$|\\";
+    private static final int                     MAX_CACHE_SIZE = 10000;
+    private static final Comparator<String>      COMPARATOR     = new StringComparator();
+
+    private final String                         pattern;
+    private final boolean                        defaultEmptyValue;
+    private boolean                              matchAll       = false;
+    private final Set<String>                    exacts         = new HashSet<String>();
+    private final Trie                           prefixes       = new Trie();
+    private final Trie                           suffixes       = new Trie();
+    private final List<String>                   contains       = new ArrayList<String>();
+    private String                               regex;
+    private final ConcurrentMap<String, Boolean> cache          = new ConcurrentHashMap<String, Boolean>();
+
+    public CompiledRegexFilter(String pattern){
+        this(pattern, true);
+    }
+
+    public CompiledRegexFilter(String pattern, boolean defaultEmptyValue){
+        this.defaultEmptyValue = defaultEmptyValue;
+        List<String> regexs = new ArrayList<String>();
+        List<String> patterns = new ArrayList<String>();
+        if (StringUtils.isNotEmpty(pattern)) {
+            for (String single : StringUtils.split(pattern, SPLIT)) {
+                patterns.add(single);
+                compile(single, regexs);
+            }
+        }
+
+        if (!regexs.isEmpty()) {
+            // 与AviaterRegexFilter保持一致, 从长到短排序并做头尾完全匹配
+            Collections.sort(regexs, COMPARATOR);
+            List<String> completions = new ArrayList<String>();
+            for (String single : regexs) {
+                completions.add("^" + single + "$");
+            }
+            this.regex = StringUtils.join(completions, PATTERN_SPLIT);
+            // 提前编译, 非法的正则尽早暴露
+            PatternUtils.getPattern(regex);
+        }
+
+        Collections.sort(patterns, COMPARATOR);
+        this.pattern = StringUtils.join(patterns, PATTERN_SPLIT);
+    }
+
+    public boolean filter(String filtered) throws CanalFilterException {
+        if (StringUtils.isEmpty(pattern)) {
+            return defaultEmptyValue;
+        }
+
+        if (StringUtils.isEmpty(filtered)) {
+            return defaultEmptyValue;
+        }
+
+        if (matchAll) {
+            return true;
+        }
+
+        Boolean result = cache.get(filtered);
+        if (result == null) {
+            result = match(filtered.toLowerCase());
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                // 表名数量异常多时直接清空, 避免缓存无限增长
+                cache.clear();
+            }
+            cache.put(filtered, result);
+        }
+        return result;
+    }
+
+    private boolean match(String target) {
+        if (exacts.contains(target)) {
+            return true;
+        }
+
+        if (prefixes.matchPrefix(target) || suffixes.matchSuffix(target)) {
+            return true;
+        }
+
+        for (String content : contains) {
+            if (target.contains(content)) {
+                return true;
+            }
+        }
+
+        if (regex != null) {
+            Perl5Matcher matcher = new Perl5Matcher();
+            return matcher.matches(target, PatternUtils.getPattern(regex));
+        }
+        return false;
+    }
+
+    private void compile(String single, List<String> regexs) {
+        if (ANY.equals(single)) {
+            matchAll = true;
+            return;
+        }
+
+        String literal = toLiteral(single);
+        if (literal != null) {
+            exacts.add(literal);
+            return;
+        }
+
+        boolean startAny = single.startsWith(ANY);
+        boolean endAny = single.endsWith(ANY) && single.length() > ANY.length();
+        String middle = single.substring(startAny ? ANY.length() : 0,
+            endAny ? single.length() - ANY.length() : single.length());
+        literal = (startAny || endAny) ? toLiteral(middle) : null;
+        if (literal == null) {
+            regexs.add(single);
+        } else if (startAny && endAny) {
+            contains.add(literal);
+        } else if (startAny) {
+            suffixes.add(new StringBuilder(literal).reverse().toString());
+        } else {
+            prefixes.add(literal);
+        }
+    }
+
+    /**
+     * 将不含正则元字符的pattern转化为小写字面量, 否则返回null
+     */
+    private static String toLiteral(String single) {
+        StringBuilder builder = new StringBuilder(single.length());
+        for (int i = 0; i < single.length(); i++) {
+            char c = single.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= single.length()) {
+                    return null;
+                }
+
+                char next = single.charAt(++i);
+                if (Character.isLetterOrDigit(next)) {
+                    // \d \w 之类的字符类
+                    return null;
+                }
+                builder.append(next);
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * 按照pattern长度从长到短排序
+     */
+    private static class StringComparator implements Comparator<String> {
+
+        @Override
+        public int compare(String str1, String str2) {
+            return str2.length() - str1.length();
+        }
+    }
+
+    /**
+     * 前缀/后缀匹配的trie树
+     */
+    private static class Trie {
+
+        private final Node root = new Node();
+
+        private void add(String word) {
+            Node node = root;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.end = true;
+        }
+
+        private boolean matchPrefix(String target) {
+            Node node = root;
+            for (int i = 0; i < target.length() && !node.children.isEmpty(); i++) {
+                node = node.children.get(target.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+
+                if (node.end) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchSuffix(String target) {
+            Node node = root;
+            for (int i = target.length() - 1; i >= 0 && !node.children.isEmpty(); i--) {
+                node = node.children.get(target.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+
+                if (node.end) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<Character, Node>(4);
+        private boolean                    end      = false;
+    }
+}
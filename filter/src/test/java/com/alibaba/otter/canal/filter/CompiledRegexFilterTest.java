@@ -0,0 +1,46 @@
+package com.alibaba.otter.canal.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.filter.regex.CompiledRegexFilter;
+
+public class CompiledRegexFilterTest {
+
+    private static final String[] PATTERNS = { "", ".*", ".*\\..*", "s1\\..*,s2\\..*", "s1\\..*,s2.t1",
+            "foooo,f.*t", "canal\\.test1,canal\\.test2", ".*\\.t1", "s1\\.t.*,.*\\.log_.*",
+            "otter2.otter_stability1|otter1.otter_stability1|retl.retl_mark", "S1\\.T\\d+", "mysql\\.slave_.*" };
+
+    private static final String[] TARGETS  = { "", "s1.t1", "s1.t2", "s12.t1", "s2.t1", "S1.S2", "s3.t2",
+            "fooooot", "foooo", "canal.test1", "canal.test3", "canalxtest1", "a.t1", "a.t10", "db.log_2020",
+            "otter1.otter_stability1", "retl.retl_mark", "s1.t12", "mysql.slave_master_info", "mysql.user" };
+
+    @Test
+    public void testSameAsAviater() {
+        for (String pattern : PATTERNS) {
+            for (boolean defaultEmptyValue : new boolean[] { true, false }) {
+                AviaterRegexFilter aviater = new AviaterRegexFilter(pattern, defaultEmptyValue);
+                CompiledRegexFilter compiled = new CompiledRegexFilter(pattern, defaultEmptyValue);
+                for (String target : TARGETS) {
+                    // 两次调用, 覆盖缓存命中的场景
+                    Assert.assertEquals(pattern + " -> " + target, aviater.filter(target), compiled.filter(target));
+                    Assert.assertEquals(pattern + " -> " + target, aviater.filter(target), compiled.filter(target));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompile() {
+        CompiledRegexFilter filter = new CompiledRegexFilter("s1\\.t1,s2\\..*,.*\\.log,.*tmp.*,s3\\.t[0-9]");
+        Assert.assertTrue(filter.filter("S1.T1"));
+        Assert.assertTrue(filter.filter("s2.any"));
+        Assert.assertTrue(filter.filter("s9.log"));
+        Assert.assertTrue(filter.filter("s9.t_tmp_1"));
+        Assert.assertTrue(filter.filter("s3.t5"));
+        Assert.assertFalse(filter.filter("s3.t55"));
+        Assert.assertFalse(filter.filter("s1.t11"));
+        Assert.assertFalse(filter.filter("s9.logs"));
+    }
+}
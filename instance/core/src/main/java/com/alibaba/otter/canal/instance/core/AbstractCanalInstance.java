@@ -1,5 +1,6 @@
 package com.alibaba.otter.canal.instance.core;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -8,7 +9,7 @@ import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
 import com.alibaba.otter.canal.common.alarm.CanalAlarmHandler;
-import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.filter.regex.CompiledRegexFilter;
 import com.alibaba.otter.canal.meta.CanalMetaManager;
 import com.alibaba.otter.canal.parse.CanalEventParser;
 import com.alibaba.otter.canal.parse.ha.CanalHAController;
@@ -46,7 +47,7 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
     public boolean subscribeChange(ClientIdentity identity) {
         if (StringUtils.isNotEmpty(identity.getFilter())) {
             logger.info("subscribe filter change to " + identity.getFilter());
-            AviaterRegexFilter aviaterFilter = new AviaterRegexFilter(identity.getFilter());
+            CompiledRegexFilter regexFilter = new CompiledRegexFilter(identity.getFilter());
 
             boolean isGroup = (eventParser instanceof GroupEventParser);
             if (isGroup) {
@@ -54,12 +55,12 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
                 List<CanalEventParser> eventParsers = ((GroupEventParser) eventParser).getEventParsers();
                 for (CanalEventParser singleEventParser : eventParsers) {// 需要遍历启动
                     if(singleEventParser instanceof AbstractEventParser) {
-                        ((AbstractEventParser) singleEventParser).setEventFilter(aviaterFilter);
+                        ((AbstractEventParser) singleEventParser).setEventFilter(regexFilter);
                     }
                 }
             } else {
                 if(eventParser instanceof AbstractEventParser) {
-                    ((AbstractEventParser) eventParser).setEventFilter(aviaterFilter);
+                    ((AbstractEventParser) eventParser).setEventFilter(regexFilter);
                 }
             }
 
@@ -72,6 +73,48 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
         return true;
     }
 
+    /**
+     * instance配置的过滤规则发生变化，直接更新运行中的parser，参数为null代表对应的规则未变化
+     */
+    public void filterChange(String filter, String blackFilter, String fieldFilter, String fieldBlackFilter) {
+        // 客户端订阅时指定了filter，以客户端的为准
+        boolean subscribeFilter = false;
+        for (ClientIdentity clientIdentity : metaManager.listAllSubscribeInfo(destination)) {
+            if (StringUtils.isNotEmpty(clientIdentity.getFilter())) {
+                subscribeFilter = true;
+            }
+        }
+
+        List<CanalEventParser> eventParsers;
+        if (eventParser instanceof GroupEventParser) {
+            eventParsers = ((GroupEventParser) eventParser).getEventParsers();
+        } else {
+            eventParsers = Arrays.asList(eventParser);
+        }
+
+        for (CanalEventParser singleEventParser : eventParsers) {
+            if (!(singleEventParser instanceof AbstractEventParser)) {
+                continue;
+            }
+
+            AbstractEventParser parser = (AbstractEventParser) singleEventParser;
+            if (filter != null && !subscribeFilter) {
+                parser.setEventFilter(new CompiledRegexFilter(StringUtils.isEmpty(filter) ? ".*\\..*" : filter));
+            }
+            if (blackFilter != null) {
+                parser.setEventBlackFilter(new CompiledRegexFilter(blackFilter, false));
+            }
+            if (fieldFilter != null) {
+                parser.setFieldFilter(fieldFilter);
+            }
+            if (fieldBlackFilter != null) {
+                parser.setFieldBlackFilter(fieldBlackFilter);
+            }
+        }
+        logger.info("filter change for {} , filter={}, blackFilter={}, fieldFilter={}, fieldBlackFilter={}",
+            new Object[] { destination, filter, blackFilter, fieldFilter, fieldBlackFilter });
+    }
+
     @Override
     public void start() {
         super.start();
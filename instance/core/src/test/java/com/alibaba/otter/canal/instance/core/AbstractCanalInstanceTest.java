@@ -0,0 +1,106 @@
+package com.alibaba.otter.canal.instance.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.filter.CanalEventFilter;
+import com.alibaba.otter.canal.meta.MemoryMetaManager;
+import com.alibaba.otter.canal.parse.inbound.group.GroupEventParser;
+import com.alibaba.otter.canal.parse.inbound.mysql.MysqlEventParser;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+
+public class AbstractCanalInstanceTest {
+
+    private static final String   DESTINATION = "example";
+
+    private AbstractCanalInstance instance;
+    private MemoryMetaManager     metaManager;
+    private RecordingEventParser  eventParser;
+
+    @Before
+    public void setUp() {
+        metaManager = new MemoryMetaManager();
+        metaManager.start();
+        eventParser = new RecordingEventParser();
+
+        instance = new AbstractCanalInstance();
+        instance.destination = DESTINATION;
+        instance.metaManager = metaManager;
+        instance.eventParser = eventParser;
+    }
+
+    @After
+    public void tearDown() {
+        metaManager.stop();
+    }
+
+    @Test
+    public void testFilterChange() {
+        instance.filterChange("test\\..*", null, "test.user:id/name", null);
+
+        Assert.assertTrue(eventParser.eventFilter.filter("test.user"));
+        Assert.assertFalse(eventParser.eventFilter.filter("other.user"));
+        Assert.assertEquals("test.user:id/name", eventParser.getFieldFilter());
+        // null代表对应的规则未变化
+        Assert.assertNull(eventParser.eventBlackFilter);
+        Assert.assertNull(eventParser.getFieldBlackFilter());
+
+        instance.filterChange(null, "test\\.log_.*", null, "test.user:password");
+        Assert.assertTrue(eventParser.eventBlackFilter.filter("test.log_1"));
+        Assert.assertFalse(eventParser.eventBlackFilter.filter("test.user"));
+        Assert.assertEquals("test.user:id/name", eventParser.getFieldFilter());
+        Assert.assertEquals("test.user:password", eventParser.getFieldBlackFilter());
+    }
+
+    @Test
+    public void testEmptyFilter() {
+        // 清空白名单后订阅全部表, 清空黑名单后不过滤任何表
+        instance.filterChange("", "", null, null);
+        Assert.assertTrue(eventParser.eventFilter.filter("test.user"));
+        Assert.assertFalse(eventParser.eventBlackFilter.filter("test.user"));
+    }
+
+    @Test
+    public void testSubscribeFilter() {
+        // 客户端订阅时指定了filter，白名单以客户端的为准
+        metaManager.subscribe(new ClientIdentity(DESTINATION, (short) 1001, "test\\.user"));
+        instance.filterChange("other\\..*", "test\\.log_.*", null, null);
+
+        Assert.assertNull(eventParser.eventFilter);
+        Assert.assertTrue(eventParser.eventBlackFilter.filter("test.log_1"));
+    }
+
+    @Test
+    public void testGroupFilterChange() {
+        RecordingEventParser other = new RecordingEventParser();
+        GroupEventParser groupEventParser = new GroupEventParser();
+        groupEventParser.addEventParser(eventParser);
+        groupEventParser.addEventParser(other);
+        instance.eventParser = groupEventParser;
+
+        instance.filterChange("test\\..*", null, null, null);
+        Assert.assertTrue(eventParser.eventFilter.filter("test.user"));
+        Assert.assertTrue(other.eventFilter.filter("test.user"));
+        Assert.assertFalse(other.eventFilter.filter("other.user"));
+    }
+
+    private static class RecordingEventParser extends MysqlEventParser {
+
+        private CanalEventFilter eventFilter;
+        private CanalEventFilter eventBlackFilter;
+
+        @Override
+        public void setEventFilter(CanalEventFilter eventFilter) {
+            super.setEventFilter(eventFilter);
+            this.eventFilter = eventFilter;
+        }
+
+        @Override
+        public void setEventBlackFilter(CanalEventFilter eventBlackFilter) {
+            super.setEventBlackFilter(eventBlackFilter);
+            this.eventBlackFilter = eventBlackFilter;
+        }
+    }
+}
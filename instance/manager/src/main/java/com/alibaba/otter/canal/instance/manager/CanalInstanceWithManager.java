@@ -22,7 +22,7 @@ import com.alibaba.otter.canal.common.alarm.CanalAlarmHandler;
 import com.alibaba.otter.canal.common.alarm.LogAlarmHandler;
 import com.alibaba.otter.canal.common.utils.JsonUtils;
 import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
-import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.filter.regex.CompiledRegexFilter;
 import com.alibaba.otter.canal.instance.core.AbstractCanalInstance;
 import com.alibaba.otter.canal.instance.manager.model.Canal;
 import com.alibaba.otter.canal.instance.manager.model.CanalParameter;
@@ -343,6 +343,15 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             if (parameters.getTsdbSnapshotExpire() != null) {
                 mysqlEventParser.setTsdbSnapshotExpire(parameters.getTsdbSnapshotExpire());
             }
+            if (parameters.getTsdbSnapshotDdlThreshold() != null) {
+                mysqlEventParser.setTsdbSnapshotDdlThreshold(parameters.getTsdbSnapshotDdlThreshold());
+            }
+            if (parameters.getTsdbSnapshotCompress() != null) {
+                mysqlEventParser.setTsdbSnapshotCompress(parameters.getTsdbSnapshotCompress());
+            }
+            if (parameters.getTsdbSnapshotDelta() != null) {
+                mysqlEventParser.setTsdbSnapshotDelta(parameters.getTsdbSnapshotDelta());
+            }
             boolean tsdbEnable = BooleanUtils.toBoolean(parameters.getTsdbEnable());
             if (tsdbEnable) {
                 mysqlEventParser.setTableMetaTSDBFactory(new DefaultTableMetaTSDBFactory() {
@@ -406,14 +415,14 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             abstractEventParser.setEventSink(getEventSink());
 
             if (StringUtils.isNotEmpty(filter)) {
-                AviaterRegexFilter aviaterFilter = new AviaterRegexFilter(filter);
-                abstractEventParser.setEventFilter(aviaterFilter);
+                CompiledRegexFilter regexFilter = new CompiledRegexFilter(filter);
+                abstractEventParser.setEventFilter(regexFilter);
             }
 
             // 设置黑名单
             if (StringUtils.isNotEmpty(parameters.getBlackFilter())) {
-                AviaterRegexFilter aviaterFilter = new AviaterRegexFilter(parameters.getBlackFilter());
-                abstractEventParser.setEventBlackFilter(aviaterFilter);
+                CompiledRegexFilter regexFilter = new CompiledRegexFilter(parameters.getBlackFilter());
+                abstractEventParser.setEventBlackFilter(regexFilter);
             }
         }
         if (eventParser instanceof MysqlEventParser) {
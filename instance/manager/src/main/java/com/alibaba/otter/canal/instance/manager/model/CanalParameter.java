@@ -100,6 +100,9 @@ public class CanalParameter implements Serializable {
     private String                   tsdbJdbcPassword;
     private Integer                  tsdbSnapshotInterval               = 24;
     private Integer                  tsdbSnapshotExpire                 = 360;
+    private Integer                  tsdbSnapshotDdlThreshold           = 200;
+    private Boolean                  tsdbSnapshotCompress               = Boolean.FALSE;
+    private Boolean                  tsdbSnapshotDelta                  = Boolean.FALSE;
     private String                   rdsAccesskey;
     private String                   rdsSecretkey;
     private String                   rdsInstanceId;
@@ -988,6 +991,30 @@ public class CanalParameter implements Serializable {
         this.tsdbSnapshotExpire = tsdbSnapshotExpire;
     }
 
+    public Integer getTsdbSnapshotDdlThreshold() {
+        return tsdbSnapshotDdlThreshold;
+    }
+
+    public void setTsdbSnapshotDdlThreshold(Integer tsdbSnapshotDdlThreshold) {
+        this.tsdbSnapshotDdlThreshold = tsdbSnapshotDdlThreshold;
+    }
+
+    public Boolean getTsdbSnapshotCompress() {
+        return tsdbSnapshotCompress;
+    }
+
+    public void setTsdbSnapshotCompress(Boolean tsdbSnapshotCompress) {
+        this.tsdbSnapshotCompress = tsdbSnapshotCompress;
+    }
+
+    public Boolean getTsdbSnapshotDelta() {
+        return tsdbSnapshotDelta;
+    }
+
+    public void setTsdbSnapshotDelta(Boolean tsdbSnapshotDelta) {
+        this.tsdbSnapshotDelta = tsdbSnapshotDelta;
+    }
+
     public Boolean getParallel() {
         return parallel;
     }
@@ -103,6 +103,22 @@ public class PlainCanalConfigClient extends AbstractCanalLifeCycle implements Ca
         }
     }
 
+    /**
+     * 长轮询等待instance配置变化，返回admin端当前的配置版本号，版本号变化后需要重新scan
+     */
+    public long watchInstances(long version, long timeout) {
+        String url = configURL + "/api/v1/config/instances_watch?version=" + version + "&timeout=" + timeout;
+        String response = httpHelper.get(url, buildHeads(), (int) timeout + REQUEST_TIMEOUT);
+        ResponseModel<Long> resp = JSONObject.parseObject(response, new TypeReference<ResponseModel<Long>>() {
+        });
+
+        if (!HttpHelper.REST_STATE_OK.equals(resp.code) || resp.data == null) {
+            throw new CanalException("requestGet for canal instances watch error: " + resp.message);
+        }
+
+        return resp.data;
+    }
+
     private PlainCanal queryConfig(String url) {
         try {
             ResponseModel<CanalConfig> config = doQuery(url);
@@ -113,10 +129,7 @@ public class PlainCanalConfigClient extends AbstractCanalLifeCycle implements Ca
     }
 
     private ResponseModel<CanalConfig> doQuery(String url) {
-        Map<String, String> heads = new HashMap<>();
-        heads.put("user", user);
-        heads.put("passwd", passwd);
-        String response = httpHelper.get(url, heads, REQUEST_TIMEOUT);
+        String response = httpHelper.get(url, buildHeads(), REQUEST_TIMEOUT);
         ResponseModel<CanalConfig> resp = JSONObject.parseObject(response,
             new TypeReference<ResponseModel<CanalConfig>>() {
             });
@@ -128,6 +141,13 @@ public class PlainCanalConfigClient extends AbstractCanalLifeCycle implements Ca
         return resp;
     }
 
+    private Map<String, String> buildHeads() {
+        Map<String, String> heads = new HashMap<>();
+        heads.put("user", user);
+        heads.put("passwd", passwd);
+        return heads;
+    }
+
     private PlainCanal processData(CanalConfig config) throws IOException, NoSuchAlgorithmException {
         Properties properties = new Properties();
         String md5 = null;
@@ -1,14 +1,17 @@
 package com.alibaba.otter.canal.meta;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +31,8 @@ import com.google.common.collect.MigrateMap;
  * 几个优化：
  * 1. 去除batch数据刷新到zk中，切换时batch数据可忽略，重新从头开始获取
  * 2. cursor的更新，启用定时刷新，合并多次请求。如果最近没有变化则不更新
+ * 3. 所有client的cursor合并为一次zookeeper multi操作写入，ack次数超过flushSize时提前异步刷新
+ * 4. 主备切换时，重复消费的数据最多为period时间内或者flushSize次ack的数据
  * </pre>
  * 
  * @author jianghang 2012-9-11 下午02:41:15
@@ -42,7 +47,11 @@ public class PeriodMixedMetaManager extends MemoryMetaManager implements CanalMe
     private final Position           nullCursor = new Position() {
                                                 };
     private long                     period     = 1000;                                                 // 单位ms
+    private int                      flushSize  = 1024;                                                 // 累计多少次cursor更新后提前刷新
     private Set<ClientIdentity>      updateCursorTasks;
+    private AtomicInteger            pendingUpdates;
+    private AtomicBoolean            flushing;
+    private Runnable                 flushTask;
 
     public void start() {
         super.start();
@@ -85,34 +94,42 @@ public class PeriodMixedMetaManager extends MemoryMetaManager implements CanalMe
         });
 
         updateCursorTasks = Collections.synchronizedSet(new HashSet<ClientIdentity>());
+        pendingUpdates = new AtomicInteger(0);
+        flushing = new AtomicBoolean(false);
+        flushTask = new Runnable() {
+
+            public void run() {
+                try {
+                    flush();
+                } finally {
+                    flushing.set(false);
+                }
+            }
+        };
 
         // 启动定时工作任务
         executor.scheduleAtFixedRate(new Runnable() {
 
             public void run() {
-                List<ClientIdentity> tasks = new ArrayList<ClientIdentity>(updateCursorTasks);
-                for (ClientIdentity clientIdentity : tasks) {
-                    try {
-                        // 定时将内存中的最新值刷到zookeeper中，多次变更只刷一次
-                        zooKeeperMetaManager.updateCursor(clientIdentity, getCursor(clientIdentity));
-                        updateCursorTasks.remove(clientIdentity);
-                    } catch (Throwable e) {
-                        // ignore
-                        logger.error("period update" + clientIdentity.toString() + " curosr failed!", e);
-                    }
-                }
+                flush();
             }
         }, period, period, TimeUnit.MILLISECONDS);
     }
 
     public void stop() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(period, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭时不再刷新cursor，切换后其他节点可能已经写入了更新的cursor，避免被覆盖
         super.stop();
 
         if (zooKeeperMetaManager.isStart()) {
             zooKeeperMetaManager.stop();
         }
 
-        executor.shutdownNow();
         destinations.clear();
         batches.clear();
     }
@@ -144,6 +161,15 @@ public class PeriodMixedMetaManager extends MemoryMetaManager implements CanalMe
     public void updateCursor(ClientIdentity clientIdentity, Position position) throws CanalMetaManagerException {
         super.updateCursor(clientIdentity, position);
         updateCursorTasks.add(clientIdentity);// 添加到任务队列中进行触发
+        if (flushSize > 0 && pendingUpdates.incrementAndGet() >= flushSize && flushing.compareAndSet(false, true)) {
+            // 更新过于频繁，不等定时任务，提前触发一次异步刷新
+            try {
+                executor.submit(flushTask);
+            } catch (RejectedExecutionException e) {
+                // 已经关闭，忽略关闭之后的ack
+                flushing.set(false);
+            }
+        }
     }
 
     public Position getCursor(ClientIdentity clientIdentity) throws CanalMetaManagerException {
@@ -155,6 +181,37 @@ public class PeriodMixedMetaManager extends MemoryMetaManager implements CanalMe
         }
     }
 
+    /**
+     * 将内存中的最新cursor刷到zookeeper中，多次变更只刷一次，在executor单线程中执行
+     */
+    private void flush() {
+        Set<ClientIdentity> tasks;
+        synchronized (updateCursorTasks) {
+            tasks = new HashSet<ClientIdentity>(updateCursorTasks);
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        // 先移除再读取，读取之后新的变更会重新加入任务
+        pendingUpdates.set(0);
+        updateCursorTasks.removeAll(tasks);
+        Map<ClientIdentity, Position> positions = new LinkedHashMap<ClientIdentity, Position>();
+        for (ClientIdentity clientIdentity : tasks) {
+            Position position = getCursor(clientIdentity);
+            if (position != null) {
+                positions.put(clientIdentity, position);
+            }
+        }
+
+        try {
+            zooKeeperMetaManager.updateCursors(positions);
+        } catch (Throwable e) {
+            updateCursorTasks.addAll(tasks);
+            logger.error("period update " + tasks + " curosr failed!", e);
+        }
+    }
+
     // =============== setter / getter ================
 
     public void setZooKeeperMetaManager(ZooKeeperMetaManager zooKeeperMetaManager) {
@@ -165,4 +222,8 @@ public class PeriodMixedMetaManager extends MemoryMetaManager implements CanalMe
         this.period = period;
     }
 
+    public void setFlushSize(int flushSize) {
+        this.flushSize = flushSize;
+    }
+
 }
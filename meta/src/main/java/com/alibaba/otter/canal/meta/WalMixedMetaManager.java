@@ -0,0 +1,354 @@
+package com.alibaba.otter.canal.meta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.util.Assert;
+
+import com.alibaba.otter.canal.common.utils.JsonUtils;
+import com.alibaba.otter.canal.meta.FileMixedMetaManager.FileMetaClientIdentityData;
+import com.alibaba.otter.canal.meta.FileMixedMetaManager.FileMetaInstanceData;
+import com.alibaba.otter.canal.meta.exception.CanalMetaManagerException;
+import com.alibaba.otter.canal.meta.wal.LogPositionCodec;
+import com.alibaba.otter.canal.meta.wal.WriteAheadLog;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MigrateMap;
+
+/**
+ * 基于write-ahead-log的metaManager实现
+ *
+ * <pre>
+ * 策略：
+ * 1. 先写内存，然后定时将变更过的cursor以二进制记录追加到wal中，不再整体覆盖写文件
+ * 2. 刷新间隔可以设置的很短(默认100ms)，可选每次刷新后fsync
+ * 3. wal超过compactSize后生成snapshot，启动时自动导入{@linkplain FileMixedMetaManager}的meta.dat
+ * 4. 导入后meta.dat重命名为meta.dat.migrated，降级后不会读取到过期的cursor
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class WalMixedMetaManager extends MemoryMetaManager implements CanalMetaManager {
+
+    private static final Logger        logger            = LoggerFactory.getLogger(WalMixedMetaManager.class);
+    private static final Charset       charset           = Charset.forName("UTF-8");
+    private static final String        CLIENT_PREFIX     = "client.";
+    private static final String        CURSOR_PREFIX     = "cursor.";
+    private File                       dataDir;
+    private String                     dataFileName      = "meta";
+    private String                     legacyFileName    = "meta.dat";
+    private String                     migratedSuffix    = ".migrated";
+    private Map<String, WriteAheadLog> wals;
+    private ScheduledExecutorService   executor;
+    @SuppressWarnings("serial")
+    private final Position             nullCursor        = new Position() {
+                                                         };
+    private long                       period            = 100;                                            // 单位ms
+    private boolean                    fsync             = false;                                          // 每次刷新后是否fsync
+    private long                       compactSize       = 4 * 1024 * 1024;                                // wal超过该大小后生成snapshot
+    private long                       logPeriod         = 1000;                                           // cursor记录日志的间隔
+    private long                       lastLogTime       = 0;
+    private Set<ClientIdentity>        updateCursorTasks;
+    private Set<ClientIdentity>        logCursorTasks;
+
+    public void start() {
+        super.start();
+        Assert.notNull(dataDir);
+        if (!dataDir.exists()) {
+            try {
+                FileUtils.forceMkdir(dataDir);
+            } catch (IOException e) {
+                throw new CanalMetaManagerException(e);
+            }
+        }
+
+        if (!dataDir.canRead() || !dataDir.canWrite()) {
+            throw new CanalMetaManagerException("dir[" + dataDir.getPath() + "] can not read/write");
+        }
+
+        wals = MigrateMap.makeComputingMap(new Function<String, WriteAheadLog>() {
+
+            public WriteAheadLog apply(String destination) {
+                return openWal(destination);
+            }
+        });
+
+        executor = Executors.newScheduledThreadPool(1);
+        destinations = MigrateMap.makeComputingMap(new Function<String, List<ClientIdentity>>() {
+
+            public List<ClientIdentity> apply(String destination) {
+                return loadClientIdentity(destination);
+            }
+        });
+
+        cursors = MigrateMap.makeComputingMap(new Function<ClientIdentity, Position>() {
+
+            public Position apply(ClientIdentity clientIdentity) {
+                Position position = loadCursor(clientIdentity);
+                if (position == null) {
+                    return nullCursor; // 返回一个空对象标识，避免出现异常
+                } else {
+                    return position;
+                }
+            }
+        });
+
+        updateCursorTasks = Collections.synchronizedSet(new HashSet<ClientIdentity>());
+        logCursorTasks = new HashSet<ClientIdentity>();
+
+        // 启动定时工作任务
+        executor.scheduleAtFixedRate(new Runnable() {
+
+            public void run() {
+                try {
+                    flush();
+                } catch (Throwable e) {
+                    // ignore
+                    logger.error("period flush wal failed!", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(period, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();// 刷新数据，需要在super.stop()清理内存中的cursor之前
+        super.stop();
+
+        for (WriteAheadLog wal : wals.values()) {
+            wal.close();
+        }
+        wals.clear();
+        destinations.clear();
+        batches.clear();
+    }
+
+    public void subscribe(final ClientIdentity clientIdentity) throws CanalMetaManagerException {
+        super.subscribe(clientIdentity);
+
+        // 订阅信息频率发生比较低，直接写入wal，随下一次定时任务刷新
+        WriteAheadLog wal = wals.get(clientIdentity.getDestination());
+        wal.put(CLIENT_PREFIX + clientIdentity.getClientId(), encodeFilter(clientIdentity.getFilter()));
+    }
+
+    public void unsubscribe(final ClientIdentity clientIdentity) throws CanalMetaManagerException {
+        super.unsubscribe(clientIdentity);
+
+        updateCursorTasks.remove(clientIdentity);
+        WriteAheadLog wal = wals.get(clientIdentity.getDestination());
+        wal.remove(CLIENT_PREFIX + clientIdentity.getClientId());
+        wal.remove(CURSOR_PREFIX + clientIdentity.getClientId());
+    }
+
+    public void updateCursor(ClientIdentity clientIdentity, Position position) throws CanalMetaManagerException {
+        updateCursorTasks.add(clientIdentity);// 添加到任务队列中进行触发
+        super.updateCursor(clientIdentity, position);
+    }
+
+    public Position getCursor(ClientIdentity clientIdentity) throws CanalMetaManagerException {
+        Position position = super.getCursor(clientIdentity);
+        if (position == nullCursor) {
+            return null;
+        } else {
+            return position;
+        }
+    }
+
+    // ============================ helper method ======================
+
+    /**
+     * 将变更过的cursor写入wal并group commit，在executor单线程中执行
+     */
+    private void flush() {
+        List<ClientIdentity> tasks;
+        synchronized (updateCursorTasks) {
+            tasks = new ArrayList<ClientIdentity>(updateCursorTasks);
+            updateCursorTasks.clear();
+        }
+
+        for (ClientIdentity clientIdentity : tasks) {
+            Position position = getCursor(clientIdentity);
+            if (position != null) {
+                wals.get(clientIdentity.getDestination()).put(CURSOR_PREFIX + clientIdentity.getClientId(),
+                    LogPositionCodec.encode((LogPosition) position));
+            }
+        }
+
+        for (Map.Entry<String, WriteAheadLog> entry : wals.entrySet()) {
+            try {
+                entry.getValue().flush();
+            } catch (Throwable e) {
+                logger.error("flush wal for destination:" + entry.getKey() + " failed!", e);
+            }
+        }
+
+        logCursors(tasks);
+    }
+
+    /**
+     * 刷新很频繁，cursor的历史版本按照logPeriod记录到日志中
+     */
+    private void logCursors(List<ClientIdentity> tasks) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+
+        logCursorTasks.addAll(tasks);
+        long now = System.currentTimeMillis();
+        if (now - lastLogTime < logPeriod) {
+            return;
+        }
+
+        lastLogTime = now;
+        for (ClientIdentity clientIdentity : logCursorTasks) {
+            LogPosition cursor = (LogPosition) getCursor(clientIdentity);
+            if (cursor == null) {
+                continue;
+            }
+
+            MDC.put("destination", String.valueOf(clientIdentity.getDestination()));
+            logger.info("clientId:{} cursor:[{},{},{},{},{}] address[{}]", new Object[] { clientIdentity.getClientId(),
+                    cursor.getPostion().getJournalName(), cursor.getPostion().getPosition(),
+                    cursor.getPostion().getTimestamp(), cursor.getPostion().getServerId(),
+                    cursor.getPostion().getGtid(), cursor.getIdentity().getSourceAddress().toString() });
+        }
+        logCursorTasks.clear();
+    }
+
+    private WriteAheadLog openWal(String destination) {
+        File destinationMetaDir = new File(dataDir, destination);
+        WriteAheadLog wal = new WriteAheadLog(destinationMetaDir, dataFileName, fsync, compactSize);
+        Map<String, byte[]> data = wal.open();
+        File legacyFile = new File(destinationMetaDir, legacyFileName);
+        if (data.isEmpty() && legacyFile.exists()) {
+            // 从FileMixedMetaManager的json文件迁移
+            importLegacyFile(wal, legacyFile);
+            wal.flush();
+            // 导入成功后才重命名，保证失败时可以重新导入
+            File migratedFile = new File(destinationMetaDir, legacyFileName + migratedSuffix);
+            FileUtils.deleteQuietly(migratedFile);
+            if (!legacyFile.renameTo(migratedFile)) {
+                throw new CanalMetaManagerException("rename " + legacyFile.getPath() + " to "
+                                                    + migratedFile.getPath() + " failed");
+            }
+        }
+        return wal;
+    }
+
+    private void importLegacyFile(WriteAheadLog wal, File legacyFile) {
+        FileMetaInstanceData data;
+        try {
+            String json = FileUtils.readFileToString(legacyFile, charset.name());
+            data = JsonUtils.unmarshalFromString(json, FileMetaInstanceData.class);
+        } catch (IOException e) {
+            throw new CanalMetaManagerException(e);
+        }
+
+        if (data == null || data.getClientDatas() == null) {
+            return;
+        }
+
+        for (FileMetaClientIdentityData clientData : data.getClientDatas()) {
+            ClientIdentity clientIdentity = clientData.getClientIdentity();
+            if (clientIdentity == null) {
+                continue;
+            }
+
+            wal.put(CLIENT_PREFIX + clientIdentity.getClientId(), encodeFilter(clientIdentity.getFilter()));
+            if (clientData.getCursor() != null) {
+                wal.put(CURSOR_PREFIX + clientIdentity.getClientId(),
+                    LogPositionCodec.encode((LogPosition) clientData.getCursor()));
+            }
+        }
+        logger.warn("import legacy meta file {}", legacyFile.getPath());
+    }
+
+    private List<ClientIdentity> loadClientIdentity(String destination) {
+        List<ClientIdentity> result = Lists.newArrayList();
+        Map<String, byte[]> data = wals.get(destination).entries();
+        for (Map.Entry<String, byte[]> entry : data.entrySet()) {
+            if (entry.getKey().startsWith(CLIENT_PREFIX)) {
+                short clientId = Short.valueOf(StringUtils.substringAfter(entry.getKey(), CLIENT_PREFIX));
+                result.add(new ClientIdentity(destination, clientId, decodeFilter(entry.getValue())));
+            }
+        }
+
+        return result;
+    }
+
+    private Position loadCursor(ClientIdentity clientIdentity) {
+        byte[] bytes = wals.get(clientIdentity.getDestination()).get(CURSOR_PREFIX + clientIdentity.getClientId());
+        if (bytes == null) {
+            return null;
+        }
+
+        return LogPositionCodec.decode(bytes);
+    }
+
+    private static byte[] encodeFilter(String filter) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream dataOut = new DataOutputStream(out);
+            LogPositionCodec.writeString(dataOut, filter);
+            dataOut.flush();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new CanalMetaManagerException(e);
+        }
+    }
+
+    private static String decodeFilter(byte[] bytes) {
+        try {
+            return LogPositionCodec.readString(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new CanalMetaManagerException(e);
+        }
+    }
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = new File(dataDir);
+    }
+
+    public void setDataDirByFile(File dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    public void setCompactSize(long compactSize) {
+        this.compactSize = compactSize;
+    }
+}
@@ -9,6 +9,7 @@ import java.util.Map;
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
 import org.I0Itec.zkclient.exception.ZkNodeExistsException;
 import org.apache.commons.lang.StringUtils;
+import org.apache.zookeeper.Op;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
@@ -163,6 +164,33 @@ public class ZooKeeperMetaManager extends AbstractCanalLifeCycle implements Cana
         }
     }
 
+    /**
+     * 批量更新cursor, 合并为一次zookeeper的multi操作
+     */
+    public void updateCursors(Map<ClientIdentity, Position> positions) throws CanalMetaManagerException {
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        List<Op> ops = new ArrayList<Op>(positions.size());
+        for (Map.Entry<ClientIdentity, Position> entry : positions.entrySet()) {
+            ClientIdentity clientIdentity = entry.getKey();
+            String path = ZookeeperPathUtils.getCursorPath(clientIdentity.getDestination(),
+                clientIdentity.getClientId());
+            byte[] data = JsonUtils.marshalToByte(entry.getValue(), SerializerFeature.WriteClassName);
+            ops.add(Op.setData(path, data, -1));
+        }
+
+        try {
+            zkClientx.multi(ops);
+        } catch (ZkNoNodeException e) {
+            // 存在第一次写入的cursor节点，multi整体失败，退化为逐个更新并重建节点
+            for (Map.Entry<ClientIdentity, Position> entry : positions.entrySet()) {
+                updateCursor(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     public Long addBatch(ClientIdentity clientIdentity, PositionRange positionRange) throws CanalMetaManagerException {
         String path = ZookeeperPathUtils.getBatchMarkPath(clientIdentity.getDestination(),
             clientIdentity.getClientId());
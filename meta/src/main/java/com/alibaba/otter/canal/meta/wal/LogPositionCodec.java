@@ -0,0 +1,133 @@
+package com.alibaba.otter.canal.meta.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+
+import com.alibaba.otter.canal.meta.exception.CanalMetaManagerException;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+
+/**
+ * {@linkplain LogPosition}的二进制编码, 相比json更紧凑, 用于wal记录
+ *
+ * @version 1.0.0
+ */
+public class LogPositionCodec {
+
+    public static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final byte   VERSION = 1;
+
+    public static byte[] encode(LogPosition position) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+            DataOutputStream dataOut = new DataOutputStream(out);
+            dataOut.writeByte(VERSION);
+            write(dataOut, position);
+            dataOut.flush();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new CanalMetaManagerException(e);
+        }
+    }
+
+    public static LogPosition decode(byte[] bytes) {
+        try {
+            DataInputStream dataIn = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte version = dataIn.readByte();
+            if (version != VERSION) {
+                throw new CanalMetaManagerException("unsupported log position version " + version);
+            }
+            return read(dataIn);
+        } catch (IOException e) {
+            throw new CanalMetaManagerException(e);
+        }
+    }
+
+    public static void write(DataOutputStream out, LogPosition position) throws IOException {
+        out.writeBoolean(position != null);
+        if (position == null) {
+            return;
+        }
+
+        LogIdentity identity = position.getIdentity();
+        out.writeBoolean(identity != null);
+        if (identity != null) {
+            InetSocketAddress address = identity.getSourceAddress();
+            out.writeBoolean(address != null);
+            if (address != null) {
+                out.writeUTF(address.getHostString());
+                out.writeInt(address.getPort());
+            }
+            writeLong(out, identity.getSlaveId());
+        }
+
+        EntryPosition entry = position.getPostion();
+        out.writeBoolean(entry != null);
+        if (entry != null) {
+            out.writeBoolean(entry.isIncluded());
+            writeString(out, entry.getJournalName());
+            writeLong(out, entry.getPosition());
+            writeLong(out, entry.getTimestamp());
+            writeLong(out, entry.getServerId());
+            writeString(out, entry.getGtid());
+        }
+    }
+
+    public static LogPosition read(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        LogPosition position = new LogPosition();
+        if (in.readBoolean()) {
+            LogIdentity identity = new LogIdentity();
+            if (in.readBoolean()) {
+                String host = in.readUTF();
+                int port = in.readInt();
+                identity.setSourceAddress(new InetSocketAddress(host, port));
+            }
+            identity.setSlaveId(readLong(in));
+            position.setIdentity(identity);
+        }
+
+        if (in.readBoolean()) {
+            EntryPosition entry = new EntryPosition();
+            entry.setIncluded(in.readBoolean());
+            entry.setJournalName(readString(in));
+            entry.setPosition(readLong(in));
+            entry.setTimestamp(readLong(in));
+            entry.setServerId(readLong(in));
+            entry.setGtid(readString(in));
+            position.setPostion(entry);
+        }
+        return position;
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+}
@@ -0,0 +1,349 @@
+package com.alibaba.otter.canal.meta.wal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.meta.exception.CanalMetaManagerException;
+
+/**
+ * 基于write-ahead-log的key/value存储, 用于meta/位点的持久化
+ *
+ * <pre>
+ * 1. 每次变更以二进制记录追加到wal文件: [length:int][crc32:int][type:byte][key:utf][value:bytes]
+ * 2. 变更先写内存, 由调用方定时触发flush, 同一个key的多次变更合并为一条记录批量写入(group commit), 可选每次flush后fsync
+ * 3. wal文件超过compactSize后, 将当前全量数据写入snapshot, 并切换到新的wal文件
+ * 4. 启动时先加载snapshot, 再按顺序回放不早于snapshot的wal文件, 遇到不完整的记录时截断
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class WriteAheadLog {
+
+    private static final Logger       logger          = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final int          SNAPSHOT_MAGIC  = 0x43574c53;                                  // CWLS
+    private static final byte         TYPE_PUT        = 1;
+    private static final byte         TYPE_REMOVE     = 2;
+    private static final int          HEADER_SIZE     = 8;                                           // length + crc32
+    private static final String       WAL_SUFFIX      = ".wal";
+    private static final String       SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final File                dir;
+    private final String              name;
+    private final boolean             fsync;
+    private final long                compactSize;
+    private final Object              flushLock       = new Object();
+    private Map<String, byte[]>       data            = new LinkedHashMap<String, byte[]>();        // 最新的全量数据
+    private Map<String, byte[]>       pending         = new LinkedHashMap<String, byte[]>();        // 未刷新的变更, null代表删除
+    private long                      generation;
+    private FileChannel               channel;
+    private long                      validSize;                                                    // wal中完整记录的结束位置
+
+    public WriteAheadLog(File dir, String name, boolean fsync, long compactSize){
+        this.dir = dir;
+        this.name = name;
+        this.fsync = fsync;
+        this.compactSize = compactSize;
+    }
+
+    /**
+     * 恢复数据并打开wal文件
+     *
+     * @return 恢复后的全量数据
+     */
+    public synchronized Map<String, byte[]> open() {
+        try {
+            FileUtils.forceMkdir(dir);
+            generation = 0;
+            data.clear();
+            pending.clear();
+
+            File snapshotFile = new File(dir, name + SNAPSHOT_SUFFIX);
+            if (snapshotFile.exists()) {
+                ByteBuffer buffer = ByteBuffer.wrap(FileUtils.readFileToByteArray(snapshotFile));
+                if (buffer.remaining() < 12 || buffer.getInt() != SNAPSHOT_MAGIC) {
+                    throw new CanalMetaManagerException("corrupted snapshot file " + snapshotFile.getPath());
+                }
+                generation = buffer.getLong();
+                if (replay(buffer) != buffer.limit()) {
+                    throw new CanalMetaManagerException("corrupted snapshot file " + snapshotFile.getPath());
+                }
+            }
+
+            List<Long> generations = listGenerations();
+            for (Long gen : generations) {
+                File walFile = walFile(gen);
+                if (gen < generation) {
+                    // 已经合并到snapshot中的历史wal
+                    walFile.delete();
+                    continue;
+                }
+
+                byte[] bytes = FileUtils.readFileToByteArray(walFile);
+                int valid = replay(ByteBuffer.wrap(bytes));
+                if (valid != bytes.length) {
+                    logger.warn("truncate wal file {} from {} to {}", new Object[] { walFile.getPath(), bytes.length,
+                            valid });
+                    truncate(walFile, valid);
+                }
+                generation = gen;
+            }
+
+            channel = new RandomAccessFile(walFile(generation), "rw").getChannel();
+            validSize = channel.size();
+            channel.position(validSize);
+            return new LinkedHashMap<String, byte[]>(data);
+        } catch (IOException e) {
+            throw new CanalMetaManagerException(e);
+        }
+    }
+
+    /**
+     * 当前的全量数据
+     */
+    public synchronized Map<String, byte[]> entries() {
+        return new LinkedHashMap<String, byte[]>(data);
+    }
+
+    public synchronized byte[] get(String key) {
+        return data.get(key);
+    }
+
+    public synchronized void put(String key, byte[] value) {
+        data.put(key, value);
+        pending.put(key, value);
+    }
+
+    public synchronized void remove(String key) {
+        data.remove(key);
+        pending.put(key, null);
+    }
+
+    /**
+     * 将内存中的变更批量写入wal
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, byte[]> batch;
+            synchronized (this) {
+                if (pending.isEmpty() || channel == null) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<String, byte[]>();
+            }
+
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+                    writeRecord(out, entry.getKey(), entry.getValue());
+                }
+                if (channel.size() != validSize) {
+                    // 上一次失败的写入没有截断成功
+                    channel.truncate(validSize);
+                    channel.position(validSize);
+                }
+                write(channel, ByteBuffer.wrap(out.toByteArray()));
+                if (fsync) {
+                    channel.force(false);
+                }
+                validSize = channel.position();
+            } catch (IOException e) {
+                // 截断写了一半的记录, 否则回放到这里时会把后续追加的记录一起截断
+                try {
+                    channel.truncate(validSize);
+                    channel.position(validSize);
+                } catch (IOException ex) {
+                    logger.error("truncate wal to " + validSize + " failed, retry on next flush", ex);
+                }
+                // 写入失败, 将变更放回去等待下一次flush, 已有的新变更优先
+                synchronized (this) {
+                    batch.putAll(pending);
+                    pending = batch;
+                }
+                throw new CanalMetaManagerException(e);
+            }
+
+            try {
+                if (validSize >= compactSize) {
+                    compact();
+                }
+            } catch (IOException e) {
+                // 变更已经写入wal, 不需要放回
+                throw new CanalMetaManagerException(e);
+            }
+        }
+    }
+
+    /**
+     * 将一批记录写入wal文件
+     */
+    protected void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public void close() {
+        synchronized (flushLock) {
+            try {
+                flush();
+            } finally {
+                IOUtils.closeQuietly(channel);
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * 将全量数据写入snapshot, 并切换到新的wal文件
+     */
+    private void compact() throws IOException {
+        Map<String, byte[]> copy;
+        synchronized (this) {
+            copy = new LinkedHashMap<String, byte[]>(data);
+        }
+
+        long nextGeneration = generation + 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(SNAPSHOT_MAGIC);
+        dataOut.writeLong(nextGeneration);
+        for (Map.Entry<String, byte[]> entry : copy.entrySet()) {
+            writeRecord(out, entry.getKey(), entry.getValue());
+        }
+
+        File tmpFile = new File(dir, name + SNAPSHOT_SUFFIX + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmpFile);
+        try {
+            fos.write(out.toByteArray());
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+
+        File snapshotFile = new File(dir, name + SNAPSHOT_SUFFIX);
+        if (!tmpFile.renameTo(snapshotFile)) {
+            // windows下renameTo无法覆盖已有文件
+            snapshotFile.delete();
+            if (!tmpFile.renameTo(snapshotFile)) {
+                throw new IOException("rename " + tmpFile.getPath() + " to " + snapshotFile.getPath() + " failed");
+            }
+        }
+
+        File oldWalFile = walFile(generation);
+        channel.close();
+        generation = nextGeneration;
+        channel = new RandomAccessFile(walFile(generation), "rw").getChannel();
+        validSize = 0;
+        oldWalFile.delete();
+    }
+
+    /**
+     * 回放记录到内存
+     *
+     * @return 有效数据的结束位置
+     */
+    private int replay(ByteBuffer buffer) {
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return start;
+            }
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(buffer.array(), buffer.position(), length);
+            if ((int) crc32.getValue() != crc) {
+                return start;
+            }
+
+            byte type = buffer.get();
+            int keyLength = buffer.getShort() & 0xffff;
+            String key = new String(buffer.array(), buffer.position(), keyLength, LogPositionCodec.CHARSET);
+            buffer.position(buffer.position() + keyLength);
+            int valueLength = length - 3 - keyLength;
+            if (type == TYPE_PUT) {
+                byte[] value = new byte[valueLength];
+                buffer.get(value);
+                data.put(key, value);
+            } else {
+                buffer.position(buffer.position() + valueLength);
+                data.remove(key);
+            }
+        }
+        return buffer.position();
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(LogPositionCodec.CHARSET);
+        int valueLength = value == null ? 0 : value.length;
+        ByteBuffer body = ByteBuffer.allocate(3 + keyBytes.length + valueLength);
+        body.put(value == null ? TYPE_REMOVE : TYPE_PUT);
+        body.putShort((short) keyBytes.length);
+        body.put(keyBytes);
+        if (value != null) {
+            body.put(value);
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(body.array());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(body.capacity());
+        header.putInt((int) crc32.getValue());
+        out.write(header.array());
+        out.write(body.array());
+    }
+
+    private List<Long> listGenerations() {
+        List<Long> generations = new ArrayList<Long>();
+        String[] names = dir.list();
+        if (names == null) {
+            return generations;
+        }
+
+        String prefix = name + ".";
+        for (String fileName : names) {
+            if (fileName.startsWith(prefix) && fileName.endsWith(WAL_SUFFIX)) {
+                String gen = fileName.substring(prefix.length(), fileName.length() - WAL_SUFFIX.length());
+                try {
+                    generations.add(Long.valueOf(gen));
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private File walFile(long gen) {
+        return new File(dir, name + "." + gen + WAL_SUFFIX);
+    }
+
+    private static void truncate(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -91,4 +91,48 @@ public class PeriodMixedMetaManagerTest extends AbstractMetaManagerTest {
         Assert.assertEquals(position, lastPosition);
         metaManager.stop();
     }
+
+    @Test
+    public void testCursorFlushSize() {
+        PeriodMixedMetaManager metaManager = new PeriodMixedMetaManager();
+
+        ZooKeeperMetaManager zooKeeperMetaManager = new ZooKeeperMetaManager();
+        zooKeeperMetaManager.setZkClientx(zkclientx);
+
+        metaManager.setZooKeeperMetaManager(zooKeeperMetaManager);
+        metaManager.setPeriod(60 * 1000L);
+        metaManager.setFlushSize(1);
+        metaManager.start();
+        Position lastPosition = doCursorTest(metaManager);
+
+        sleep(1000L);
+        // 定时任务未触发，依靠flushSize提前刷新到zk
+        Position position = zooKeeperMetaManager.getCursor(clientIdentity);
+        Assert.assertEquals(position, lastPosition);
+        metaManager.stop();
+    }
+
+    @Test
+    public void testUpdateCursorAfterStop() {
+        PeriodMixedMetaManager metaManager = new PeriodMixedMetaManager();
+
+        ZooKeeperMetaManager zooKeeperMetaManager = new ZooKeeperMetaManager();
+        zooKeeperMetaManager.setZkClientx(zkclientx);
+
+        metaManager.setZooKeeperMetaManager(zooKeeperMetaManager);
+        metaManager.setPeriod(60 * 1000L);
+        metaManager.setFlushSize(1);
+        metaManager.start();
+        Position lastPosition = doCursorTest(metaManager);
+        sleep(1000L);
+        metaManager.stop();
+
+        // 关闭之后的ack不会抛出异常, 也不会写入zk
+        metaManager.updateCursor(clientIdentity, new Position() {
+        });
+        ZooKeeperMetaManager zooKeeperMetaManager2 = new ZooKeeperMetaManager();
+        zooKeeperMetaManager2.setZkClientx(zkclientx);
+        Position position = zooKeeperMetaManager2.getCursor(clientIdentity);
+        Assert.assertEquals(position, lastPosition);
+    }
 }
@@ -0,0 +1,78 @@
+package com.alibaba.otter.canal.meta;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.utils.JsonUtils;
+import com.alibaba.otter.canal.meta.FileMixedMetaManager.FileMetaClientIdentityData;
+import com.alibaba.otter.canal.meta.FileMixedMetaManager.FileMetaInstanceData;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+
+public class WalMixedMetaManagerTest extends AbstractMetaManagerTest {
+
+    private static final String tmp     = System.getProperty("java.io.tmpdir", "/tmp");
+    private static final File   dataDir = new File(tmp, "canal-wal");
+
+    @Before
+    public void setUp() {
+        try {
+            FileUtils.deleteDirectory(dataDir);
+        } catch (IOException e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCursorFlushOnStop() {
+        WalMixedMetaManager metaManager = new WalMixedMetaManager();
+        metaManager.setDataDirByFile(dataDir);
+        // 定时任务不会触发，cursor只能依赖stop时的刷新
+        metaManager.setPeriod(60 * 1000);
+        metaManager.start();
+
+        Position lastPosition = doCursorTest(metaManager);
+        metaManager.stop();
+
+        WalMixedMetaManager metaManager2 = new WalMixedMetaManager();
+        metaManager2.setDataDirByFile(dataDir);
+        metaManager2.setPeriod(60 * 1000);
+        metaManager2.start();
+
+        Position position = metaManager2.getCursor(clientIdentity);
+        Assert.assertEquals(lastPosition, position);
+        metaManager2.stop();
+    }
+
+    @Test
+    public void testImportLegacyFile() throws IOException {
+        MemoryMetaManager memoryMetaManager = new MemoryMetaManager();
+        memoryMetaManager.start();
+        LogPosition lastPosition = (LogPosition) doCursorTest(memoryMetaManager);
+        memoryMetaManager.stop();
+
+        // FileMixedMetaManager的json文件
+        FileMetaClientIdentityData clientData = new FileMetaClientIdentityData();
+        clientData.setClientIdentity(clientIdentity);
+        clientData.setCursor(lastPosition);
+        FileMetaInstanceData data = new FileMetaInstanceData(destination, Arrays.asList(clientData));
+        File legacyFile = new File(new File(dataDir, destination), "meta.dat");
+        FileUtils.writeStringToFile(legacyFile, JsonUtils.marshalToString(data));
+
+        WalMixedMetaManager metaManager = new WalMixedMetaManager();
+        metaManager.setDataDirByFile(dataDir);
+        metaManager.start();
+        Assert.assertEquals(lastPosition, metaManager.getCursor(clientIdentity));
+        Assert.assertEquals(1, metaManager.listAllSubscribeInfo(destination).size());
+        // 导入后重命名，降级后不会读取到过期的cursor
+        Assert.assertFalse(legacyFile.exists());
+        Assert.assertTrue(new File(legacyFile.getPath() + ".migrated").exists());
+        metaManager.stop();
+    }
+}
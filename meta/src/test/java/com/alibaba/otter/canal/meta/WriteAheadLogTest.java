@@ -0,0 +1,151 @@
+package com.alibaba.otter.canal.meta;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.meta.exception.CanalMetaManagerException;
+import com.alibaba.otter.canal.meta.wal.LogPositionCodec;
+import com.alibaba.otter.canal.meta.wal.WriteAheadLog;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+
+public class WriteAheadLogTest {
+
+    private static final String tmp     = System.getProperty("java.io.tmpdir", "/tmp");
+    private static final File   dataDir = new File(tmp, "canal_wal");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(dataDir);
+    }
+
+    @Test
+    public void testRecover() {
+        WriteAheadLog wal = new WriteAheadLog(dataDir, "meta", false, 1024 * 1024);
+        Assert.assertTrue(wal.open().isEmpty());
+        for (int i = 0; i < 100; i++) {
+            wal.put("cursor.1", LogPositionCodec.encode(buildPosition(i)));
+            wal.put("cursor.2", LogPositionCodec.encode(buildPosition(i * 2)));
+            wal.flush();
+        }
+        wal.remove("cursor.2");
+        wal.close();
+
+        WriteAheadLog wal2 = new WriteAheadLog(dataDir, "meta", false, 1024 * 1024);
+        Map<String, byte[]> data = wal2.open();
+        Assert.assertEquals(1, data.size());
+        Assert.assertEquals(buildPosition(99), LogPositionCodec.decode(data.get("cursor.1")));
+        wal2.close();
+    }
+
+    @Test
+    public void testCompact() {
+        WriteAheadLog wal = new WriteAheadLog(dataDir, "meta", true, 1024);
+        wal.open();
+        for (int i = 0; i < 100; i++) {
+            wal.put("cursor." + (i % 3), LogPositionCodec.encode(buildPosition(i)));
+            wal.flush();
+        }
+        wal.close();
+
+        // 只保留snapshot和最新的wal
+        Assert.assertEquals(2, dataDir.list().length);
+        WriteAheadLog wal2 = new WriteAheadLog(dataDir, "meta", false, 1024);
+        Map<String, byte[]> data = wal2.open();
+        Assert.assertEquals(3, data.size());
+        Assert.assertEquals(buildPosition(99), LogPositionCodec.decode(data.get("cursor.0")));
+        Assert.assertEquals(buildPosition(97), LogPositionCodec.decode(data.get("cursor.1")));
+        Assert.assertEquals(buildPosition(98), LogPositionCodec.decode(data.get("cursor.2")));
+        wal2.close();
+    }
+
+    @Test
+    public void testTruncatedTail() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dataDir, "meta", false, 1024 * 1024);
+        wal.open();
+        wal.put("cursor.1", LogPositionCodec.encode(buildPosition(1)));
+        wal.flush();
+        wal.put("cursor.1", LogPositionCodec.encode(buildPosition(2)));
+        wal.close();
+
+        // 模拟最后一条记录写了一半
+        File walFile = new File(dataDir, "meta.0.wal");
+        RandomAccessFile raf = new RandomAccessFile(walFile, "rw");
+        try {
+            raf.setLength(raf.length() - 5);
+        } finally {
+            raf.close();
+        }
+
+        WriteAheadLog wal2 = new WriteAheadLog(dataDir, "meta", false, 1024 * 1024);
+        Map<String, byte[]> data = wal2.open();
+        Assert.assertEquals(buildPosition(1), LogPositionCodec.decode(data.get("cursor.1")));
+        wal2.put("cursor.1", LogPositionCodec.encode(buildPosition(3)));
+        wal2.close();
+
+        WriteAheadLog wal3 = new WriteAheadLog(dataDir, "meta", false, 1024 * 1024);
+        Assert.assertEquals(buildPosition(3), LogPositionCodec.decode(wal3.open().get("cursor.1")));
+        wal3.close();
+    }
+
+    @Test
+    public void testFailedWrite() {
+        WriteAheadLog wal = new WriteAheadLog(dataDir, "meta", false, 1024 * 1024) {
+
+            private boolean failed = false;
+
+            protected void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+                if (!failed) {
+                    // 模拟写了一半后失败
+                    failed = true;
+                    buffer.limit(buffer.limit() / 2);
+                    super.write(channel, buffer);
+                    throw new IOException("disk full");
+                }
+                super.write(channel, buffer);
+            }
+        };
+        wal.open();
+        wal.put("cursor.1", LogPositionCodec.encode(buildPosition(1)));
+        try {
+            wal.flush();
+            Assert.fail();
+        } catch (CanalMetaManagerException e) {
+            // expected
+        }
+
+        // 失败的变更放回后和新的变更一起写入
+        wal.put("cursor.2", LogPositionCodec.encode(buildPosition(2)));
+        wal.flush();
+        wal.put("cursor.3", LogPositionCodec.encode(buildPosition(3)));
+        wal.close();
+
+        WriteAheadLog wal2 = new WriteAheadLog(dataDir, "meta", false, 1024 * 1024);
+        Map<String, byte[]> data = wal2.open();
+        Assert.assertEquals(3, data.size());
+        Assert.assertEquals(buildPosition(1), LogPositionCodec.decode(data.get("cursor.1")));
+        Assert.assertEquals(buildPosition(2), LogPositionCodec.decode(data.get("cursor.2")));
+        Assert.assertEquals(buildPosition(3), LogPositionCodec.decode(data.get("cursor.3")));
+        wal2.close();
+    }
+
+    private LogPosition buildPosition(int number) {
+        LogPosition position = new LogPosition();
+        position.setIdentity(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L));
+        EntryPosition entry = new EntryPosition("mysql-bin.000001", 106L + number, 1000L + number, 1L);
+        entry.setGtid(number % 2 == 0 ? null : "uuid:1-" + number);
+        position.setPostion(entry);
+        return position;
+    }
+}
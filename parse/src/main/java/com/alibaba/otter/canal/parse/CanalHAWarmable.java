@@ -0,0 +1,21 @@
+package com.alibaba.otter.canal.parse;
+
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+/**
+ * 支持热备的数据复制控制器，非active状态时预先准备好链接和表结构，切换为active时只需要定位位点
+ *
+ * @version 1.0.0
+ */
+public interface CanalHAWarmable {
+
+    /**
+     * 预热到指定位点，可重复调用跟踪最新的位点
+     */
+    public void warmup(EntryPosition position);
+
+    /**
+     * 释放预热的资源
+     */
+    public void releaseWarmup();
+}
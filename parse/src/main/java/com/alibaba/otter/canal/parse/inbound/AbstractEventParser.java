@@ -19,6 +19,8 @@ import org.slf4j.MDC;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
 import com.alibaba.otter.canal.common.alarm.CanalAlarmHandler;
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
+import com.alibaba.otter.canal.common.utils.TraceSampler;
 import com.alibaba.otter.canal.filter.CanalEventFilter;
 import com.alibaba.otter.canal.parse.CanalEventParser;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
@@ -70,6 +72,12 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     protected AtomicLong                             consumedEventCount         = new AtomicLong();
     protected long                                   parsingInterval            = -1;
     protected long                                   processingInterval         = -1;
+    // 链路各阶段的耗时分布
+    protected final LatencyHistogram                 receiveLatency             = new LatencyHistogram();                  // binlog执行到接收的延迟
+    protected final LatencyHistogram                 simpleParseLatency         = new LatencyHistogram();
+    protected final LatencyHistogram                 dmlParseLatency            = new LatencyHistogram();
+    protected final LatencyHistogram                 sinkLatency                = new LatencyHistogram();
+    protected int                                    traceSampleRate            = 0;                                       // 事务链路采样比例，0代表关闭
 
     // 认证信息
     protected volatile AuthenticationInfo            runningInfo;
@@ -214,7 +222,9 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
 
                             public boolean sink(EVENT event) {
                                 try {
+                                    long receiveNanos = System.nanoTime();
                                     CanalEntry.Entry entry = parseAndProfilingIfNecessary(event, false);
+                                    long parsedNanos = System.nanoTime();
 
                                     if (!running) {
                                         return false;
@@ -223,6 +233,11 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
                                     if (entry != null) {
                                         exception = null; // 有正常数据流过，清空exception
                                         transactionBuffer.add(entry);
+                                        long sinkNanos = System.nanoTime();
+                                        profilingReceive(entry.getHeader().getExecuteTime(), receiveNanos, sinkNanos);
+                                        simpleParseLatency.observe(parsedNanos - receiveNanos);
+                                        sinkLatency.observe(sinkNanos - parsedNanos);
+                                        traceIfNecessary(entry, receiveNanos, parsedNanos, parsedNanos, sinkNanos);
                                         // 记录一下对应的positions
                                         this.lastPosition = buildLastPosition(entry);
                                         // 记录一下最后一次有数据的时间
@@ -425,6 +440,41 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         return event;
     }
 
+    /**
+     * 记录binlog执行时间到接收的延迟，接收时间基于当前时间反推，避免每条数据多取一次系统时间
+     */
+    public void profilingReceive(long executeTime, long receiveNanos, long nowNanos) {
+        if (executeTime > 0) {
+            long receiveTime = System.currentTimeMillis() - (nowNanos - receiveNanos) / (1000 * 1000L);
+            receiveLatency.observeMillis(receiveTime - executeTime);
+        }
+    }
+
+    /**
+     * 按事务尾采样输出解析链路各阶段的耗时
+     */
+    public void traceIfNecessary(CanalEntry.Entry entry, long receiveNanos, long simpleParsedNanos,
+                                 long dmlParsedNanos, long sinkNanos) {
+        if (traceSampleRate <= 0 || entry.getEntryType() != EntryType.TRANSACTIONEND) {
+            return;
+        }
+
+        Header header = entry.getHeader();
+        if (!TraceSampler.isSampled(header.getLogfileName(), header.getLogfileOffset(), traceSampleRate)) {
+            return;
+        }
+
+        long delay = header.getExecuteTime() > 0 ? System.currentTimeMillis() - header.getExecuteTime() : -1;
+        TraceSampler.logger.info(String.format("parse trace %s %s:%d delay=%dms simple=%.3fms dml=%.3fms sink=%.3fms",
+            destination,
+            header.getLogfileName(),
+            header.getLogfileOffset(),
+            delay,
+            (simpleParsedNanos - receiveNanos) / 1000000d,
+            (dmlParsedNanos - simpleParsedNanos) / 1000000d,
+            (sinkNanos - dmlParsedNanos) / 1000000d));
+    }
+
     public Boolean getProfilingEnabled() {
         return profilingEnabled.get();
     }
@@ -590,6 +640,26 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         return processingInterval;
     }
 
+    public LatencyHistogram getReceiveLatency() {
+        return receiveLatency;
+    }
+
+    public LatencyHistogram getSimpleParseLatency() {
+        return simpleParseLatency;
+    }
+
+    public LatencyHistogram getDmlParseLatency() {
+        return dmlParseLatency;
+    }
+
+    public LatencyHistogram getSinkLatency() {
+        return sinkLatency;
+    }
+
+    public void setTraceSampleRate(int traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
     public void setEventSink(CanalEventSink<List<CanalEntry.Entry>> eventSink) {
         this.eventSink = eventSink;
     }
@@ -3,8 +3,10 @@ package com.alibaba.otter.canal.parse.inbound.mysql;
 import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.alibaba.otter.canal.common.utils.TopKCounter;
 import com.alibaba.otter.canal.filter.CanalEventFilter;
 import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.filter.regex.CompiledRegexFilter;
 import com.alibaba.otter.canal.parse.CanalEventParser;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.parse.inbound.AbstractEventParser;
@@ -25,6 +27,9 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
     protected boolean              enableTsdb                = false;
     protected int                  tsdbSnapshotInterval      = 24;
     protected int                  tsdbSnapshotExpire        = 360;
+    protected int                  tsdbSnapshotDdlThreshold  = 200;
+    protected boolean              tsdbSnapshotCompress      = false;
+    protected boolean              tsdbSnapshotDelta         = false;
     protected String               tsdbSpringXml;
     protected TableMetaTSDB        tableMetaTSDB;
 
@@ -40,15 +45,18 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
     // instance received binlog bytes
     protected final AtomicLong     receivedBinlogBytes       = new AtomicLong(0L);
     private final AtomicLong       eventsPublishBlockingTime = new AtomicLong(0L);
+    // 按表统计的top-k解析数据量，0代表关闭
+    protected int                  tableStatTopK             = 0;
+    protected volatile TopKCounter tableStat;
 
     protected BinlogParser buildParser() {
         LogEventConvert convert = new LogEventConvert();
-        if (eventFilter != null && eventFilter instanceof AviaterRegexFilter) {
-            convert.setNameFilter((AviaterRegexFilter) eventFilter);
+        if (isNameFilter(eventFilter)) {
+            convert.setNameFilter(eventFilter);
         }
 
-        if (eventBlackFilter != null && eventBlackFilter instanceof AviaterRegexFilter) {
-            convert.setNameBlackFilter((AviaterRegexFilter) eventBlackFilter);
+        if (isNameFilter(eventBlackFilter)) {
+            convert.setNameBlackFilter(eventBlackFilter);
         }
         
         convert.setFieldFilterMap(getFieldFilterMap());
@@ -61,16 +69,24 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         convert.setFilterRows(filterRows);
         convert.setFilterTableError(filterTableError);
         convert.setUseDruidDdlFilter(useDruidDdlFilter);
+        convert.setTableStat(getTableStat());
         return convert;
     }
 
+    /**
+     * 是否为基于tableName的过滤器
+     */
+    private boolean isNameFilter(CanalEventFilter filter) {
+        return filter instanceof AviaterRegexFilter || filter instanceof CompiledRegexFilter;
+    }
+
     public void setEventFilter(CanalEventFilter eventFilter) {
         super.setEventFilter(eventFilter);
 
         // 触发一下filter变更
-        if (eventFilter != null && eventFilter instanceof AviaterRegexFilter) {
+        if (isNameFilter(eventFilter)) {
             if (binlogParser instanceof LogEventConvert) {
-                ((LogEventConvert) binlogParser).setNameFilter((AviaterRegexFilter) eventFilter);
+                ((LogEventConvert) binlogParser).setNameFilter(eventFilter);
             }
 
             if (tableMetaTSDB != null && tableMetaTSDB instanceof DatabaseTableMeta) {
@@ -83,9 +99,9 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         super.setEventBlackFilter(eventBlackFilter);
 
         // 触发一下filter变更
-        if (eventBlackFilter != null && eventBlackFilter instanceof AviaterRegexFilter) {
+        if (isNameFilter(eventBlackFilter)) {
             if (binlogParser instanceof LogEventConvert) {
-                ((LogEventConvert) binlogParser).setNameBlackFilter((AviaterRegexFilter) eventBlackFilter);
+                ((LogEventConvert) binlogParser).setNameBlackFilter(eventBlackFilter);
             }
 
             if (tableMetaTSDB != null && tableMetaTSDB instanceof DatabaseTableMeta) {
@@ -141,6 +157,12 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
     }
 
     public void start() throws CanalParseException {
+        buildTableMetaTSDB();
+
+        super.start();
+    }
+
+    protected void buildTableMetaTSDB() {
         if (enableTsdb) {
             if (tableMetaTSDB == null) {
                 synchronized (CanalEventParser.class) {
@@ -155,8 +177,6 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
                 }
             }
         }
-
-        super.start();
     }
 
     public void stop() throws CanalParseException {
@@ -175,6 +195,7 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
             transactionBuffer,
             destination);
         mysqlMultiStageCoprocessor.setEventsPublishBlockingTime(eventsPublishBlockingTime);
+        mysqlMultiStageCoprocessor.setEventParser(this);
         return mysqlMultiStageCoprocessor;
     }
 
@@ -252,6 +273,24 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         return this.receivedBinlogBytes;
     }
 
+    /**
+     * 按表统计的解析数据量，未开启时返回null
+     */
+    public TopKCounter getTableStat() {
+        if (tableStat == null && tableStatTopK > 0) {
+            synchronized (this) {
+                if (tableStat == null) {
+                    tableStat = new TopKCounter(tableStatTopK);
+                }
+            }
+        }
+        return tableStat;
+    }
+
+    public void setTableStatTopK(int tableStatTopK) {
+        this.tableStatTopK = tableStatTopK;
+    }
+
     public int getTsdbSnapshotInterval() {
         return tsdbSnapshotInterval;
     }
@@ -268,4 +307,28 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         this.tsdbSnapshotExpire = tsdbSnapshotExpire;
     }
 
+    public int getTsdbSnapshotDdlThreshold() {
+        return tsdbSnapshotDdlThreshold;
+    }
+
+    public void setTsdbSnapshotDdlThreshold(int tsdbSnapshotDdlThreshold) {
+        this.tsdbSnapshotDdlThreshold = tsdbSnapshotDdlThreshold;
+    }
+
+    public boolean isTsdbSnapshotCompress() {
+        return tsdbSnapshotCompress;
+    }
+
+    public void setTsdbSnapshotCompress(boolean tsdbSnapshotCompress) {
+        this.tsdbSnapshotCompress = tsdbSnapshotCompress;
+    }
+
+    public boolean isTsdbSnapshotDelta() {
+        return tsdbSnapshotDelta;
+    }
+
+    public void setTsdbSnapshotDelta(boolean tsdbSnapshotDelta) {
+        this.tsdbSnapshotDelta = tsdbSnapshotDelta;
+    }
+
 }
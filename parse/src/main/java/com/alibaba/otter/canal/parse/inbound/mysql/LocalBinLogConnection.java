@@ -16,11 +16,14 @@ import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
 import com.alibaba.otter.canal.parse.inbound.mysql.local.BinLogFileQueue;
+import com.alibaba.otter.canal.parse.inbound.mysql.local.ParallelLogDecoder;
 import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
 import com.taobao.tddl.dbsync.binlog.LogContext;
 import com.taobao.tddl.dbsync.binlog.LogDecoder;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogFetcher;
 import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.MmapFileLogFetcher;
 import com.taobao.tddl.dbsync.binlog.event.QueryLogEvent;
 
 /**
@@ -30,14 +33,18 @@ import com.taobao.tddl.dbsync.binlog.event.QueryLogEvent;
  */
 public class LocalBinLogConnection implements ErosaConnection {
 
-    private static final Logger logger     = LoggerFactory.getLogger(LocalBinLogConnection.class);
-    private BinLogFileQueue     binlogs    = null;
+    private static final Logger logger             = LoggerFactory.getLogger(LocalBinLogConnection.class);
+    private BinLogFileQueue     binlogs            = null;
     private boolean             needWait;
     private String              directory;
-    private int                 bufferSize = 16 * 1024;
-    private boolean             running    = false;
+    private int                 bufferSize         = 16 * 1024;
+    private boolean             running            = false;
     private long                serverId;
     private FileParserListener  parserListener;
+    private boolean             parallelDecode     = false;                                        // 是否开启并行解码
+    private int                 parallelThreadSize = Runtime.getRuntime().availableProcessors();
+    private int                 parallelChunkSize  = 1024;                                         // 并行解码每批的event数
+    private boolean             useMmap            = false;                                        // 是否基于mmap读取binlog文件
 
     public LocalBinLogConnection(){
     }
@@ -79,13 +86,18 @@ public class LocalBinLogConnection implements ErosaConnection {
     }
 
     public void dump(String binlogfilename, Long binlogPosition, SinkFunction func) throws IOException {
+        if (parallelDecode) {
+            parallelDump(binlogfilename, binlogPosition, func);
+            return;
+        }
+
         File current = new File(directory, binlogfilename);
 
-        FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
+        LogFetcher fetcher = buildFetcher();
         LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
         LogContext context = new LogContext();
         try {
-            fetcher.open(current, binlogPosition);
+            openFetcher(fetcher, current, binlogPosition);
             context.setLogPosition(new LogPosition(binlogfilename, binlogPosition));
             while (running) {
                 boolean needContinue = true;
@@ -121,7 +133,7 @@ public class LocalBinLogConnection implements ErosaConnection {
                     }
 
                     current = nextFile;
-                    fetcher.open(current);
+                    openFetcher(fetcher, current, 0L);
                     context.setLogPosition(new LogPosition(nextFile.getName()));
                 } else {
                     break;// 跳出
@@ -130,9 +142,7 @@ public class LocalBinLogConnection implements ErosaConnection {
         } catch (InterruptedException e) {
             logger.warn("LocalBinLogConnection dump interrupted");
         } finally {
-            if (fetcher != null) {
-                fetcher.close();
-            }
+            releaseFetcher(fetcher);
         }
     }
 
@@ -220,17 +230,28 @@ public class LocalBinLogConnection implements ErosaConnection {
     }
 
     @Override
-    public void dump(String binlogfilename, Long binlogPosition, MultiStageCoprocessor coprocessor) throws IOException {
+    public void dump(String binlogfilename, Long binlogPosition, final MultiStageCoprocessor coprocessor)
+                                                                                                     throws IOException {
         File current = new File(directory, binlogfilename);
         if (!current.exists()) {
             throw new CanalParseException("binlog:" + binlogfilename + " is not found");
         }
 
-        FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
+        if (parallelDecode) {
+            parallelDump(binlogfilename, binlogPosition, new SinkFunction<LogEvent>() {
+
+                public boolean sink(LogEvent event) {
+                    return coprocessor.publish(event);
+                }
+            });
+            return;
+        }
+
+        LogFetcher fetcher = buildFetcher();
         LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
         LogContext context = new LogContext();
         try {
-            fetcher.open(current, binlogPosition);
+            openFetcher(fetcher, current, binlogPosition);
             context.setLogPosition(new LogPosition(binlogfilename, binlogPosition));
             while (running) {
                 boolean needContinue = true;
@@ -265,7 +286,7 @@ public class LocalBinLogConnection implements ErosaConnection {
                     }
 
                     current = nextFile;
-                    fetcher.open(current);
+                    openFetcher(fetcher, current, 0L);
                     binlogfilename = nextFile.getName();
                 } else {
                     break;// 跳出
@@ -274,9 +295,91 @@ public class LocalBinLogConnection implements ErosaConnection {
         } catch (InterruptedException e) {
             logger.warn("LocalBinLogConnection dump interrupted");
         } finally {
-            if (fetcher != null) {
-                fetcher.close();
+            releaseFetcher(fetcher);
+        }
+    }
+
+    /**
+     * 按照event边界切分binlog文件, 多线程并行解码后按顺序投递
+     */
+    private void parallelDump(String binlogfilename, Long binlogPosition, SinkFunction<LogEvent> func)
+                                                                                                   throws IOException {
+        File current = new File(directory, binlogfilename);
+
+        LogFetcher fetcher = buildFetcher();
+        ParallelLogDecoder decoder = new ParallelLogDecoder(new File(directory).getName(),
+            parallelThreadSize,
+            parallelChunkSize,
+            serverId);
+        try {
+            openFetcher(fetcher, current, binlogPosition);
+            decoder.open(binlogfilename);
+            while (running) {
+                boolean needContinue = true;
+                while (fetcher.fetch()) {
+                    if (!decoder.offer(fetcher, func)) {
+                        needContinue = false;
+                        break;
+                    }
+                }
+
+                // 当前文件的event全部投递后, 才能认为文件解析完成
+                needContinue = needContinue && decoder.flush(func);
+                fetcher.close(); // 关闭上一个文件
+                if (needContinue) {// 读取下一个
+                    parserFinish(current.getName());
+                    File nextFile;
+                    if (needWait) {
+                        nextFile = binlogs.waitForNextFile(current);
+                    } else {
+                        nextFile = binlogs.getNextFile(current);
+                    }
+
+                    if (nextFile == null) {
+                        break;
+                    }
+
+                    current = nextFile;
+                    openFetcher(fetcher, current, 0L);
+                    decoder.open(nextFile.getName());
+                } else {
+                    break;// 跳出
+                }
             }
+        } catch (InterruptedException e) {
+            logger.warn("LocalBinLogConnection dump interrupted");
+        } finally {
+            decoder.stop();
+            releaseFetcher(fetcher);
+        }
+    }
+
+    private LogFetcher buildFetcher() {
+        if (useMmap) {
+            return new MmapFileLogFetcher(bufferSize);
+        } else {
+            return new FileLogFetcher(bufferSize);
+        }
+    }
+
+    private void releaseFetcher(LogFetcher fetcher) throws IOException {
+        if (fetcher instanceof MmapFileLogFetcher) {
+            // 连接结束时释放预读的映射
+            ((MmapFileLogFetcher) fetcher).release();
+        } else if (fetcher != null) {
+            fetcher.close();
+        }
+    }
+
+    private void openFetcher(LogFetcher fetcher, File file, long position) throws IOException {
+        if (fetcher instanceof MmapFileLogFetcher) {
+            ((MmapFileLogFetcher) fetcher).open(file, position);
+            if (binlogs != null) {
+                // 提前映射下一个文件
+                ((MmapFileLogFetcher) fetcher).prefetch(binlogs.getNextFile(file));
+            }
+        } else {
+            ((FileLogFetcher) fetcher).open(file, position);
         }
     }
 
@@ -376,6 +479,10 @@ public class LocalBinLogConnection implements ErosaConnection {
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setParallelDecode(this.parallelDecode);
+        connection.setParallelThreadSize(this.parallelThreadSize);
+        connection.setParallelChunkSize(this.parallelChunkSize);
+        connection.setUseMmap(this.useMmap);
         return connection;
     }
 
@@ -416,6 +523,38 @@ public class LocalBinLogConnection implements ErosaConnection {
         this.serverId = serverId;
     }
 
+    public boolean isParallelDecode() {
+        return parallelDecode;
+    }
+
+    public void setParallelDecode(boolean parallelDecode) {
+        this.parallelDecode = parallelDecode;
+    }
+
+    public int getParallelThreadSize() {
+        return parallelThreadSize;
+    }
+
+    public void setParallelThreadSize(int parallelThreadSize) {
+        this.parallelThreadSize = parallelThreadSize;
+    }
+
+    public int getParallelChunkSize() {
+        return parallelChunkSize;
+    }
+
+    public void setParallelChunkSize(int parallelChunkSize) {
+        this.parallelChunkSize = parallelChunkSize;
+    }
+
+    public boolean isUseMmap() {
+        return useMmap;
+    }
+
+    public void setUseMmap(boolean useMmap) {
+        this.useMmap = useMmap;
+    }
+
     public void setParserListener(FileParserListener parserListener) {
         this.parserListener = parserListener;
     }
@@ -10,6 +10,7 @@ import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.TableMetaCache;
 import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DatabaseTableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.LocalTableMeta;
 import com.alibaba.otter.canal.parse.index.CanalLogPositionManager;
 import com.alibaba.otter.canal.parse.support.AuthenticationInfo;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
@@ -30,8 +31,10 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
     protected TableMetaCache     tableMetaCache;        // 对应meta
 
     protected String             directory;
-    protected boolean            needWait   = false;
-    protected int                bufferSize = 16 * 1024;
+    protected boolean            needWait       = false;
+    protected int                bufferSize     = 16 * 1024;
+    protected boolean            parallelDecode = false; // 本地文件无需按网络顺序读取, 可以并行解码
+    protected boolean            useMmap        = false; // 基于mmap读取binlog文件
 
     public LocalBinlogEventParser(){
         // this.runningInfo = new AuthenticationInfo();
@@ -57,7 +60,16 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
             ((DatabaseTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
             ((DatabaseTableMeta) tableMetaTSDB).setSnapshotInterval(tsdbSnapshotInterval);
             ((DatabaseTableMeta) tableMetaTSDB).setSnapshotExpire(tsdbSnapshotExpire);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotDdlThreshold(tsdbSnapshotDdlThreshold);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotCompress(tsdbSnapshotCompress);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotDelta(tsdbSnapshotDelta);
             ((DatabaseTableMeta) tableMetaTSDB).init(destination);
+        } else if (tableMetaTSDB != null && tableMetaTSDB instanceof LocalTableMeta) {
+            ((LocalTableMeta) tableMetaTSDB).setConnection(metaConnection);
+            ((LocalTableMeta) tableMetaTSDB).setFilter(eventFilter);
+            ((LocalTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
+            ((LocalTableMeta) tableMetaTSDB).setSnapshotDdlThreshold(tsdbSnapshotDdlThreshold);
+            ((LocalTableMeta) tableMetaTSDB).init(destination);
         }
 
         tableMetaCache = new TableMetaCache(metaConnection, tableMetaTSDB);
@@ -108,6 +120,9 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setParallelDecode(this.parallelDecode);
+        connection.setParallelThreadSize(this.parallelThreadSize);
+        connection.setUseMmap(this.useMmap);
 
         return connection;
     }
@@ -187,4 +202,20 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
     public void setNeedWait(boolean needWait) {
         this.needWait = needWait;
     }
+
+    public boolean isParallelDecode() {
+        return parallelDecode;
+    }
+
+    public void setParallelDecode(boolean parallelDecode) {
+        this.parallelDecode = parallelDecode;
+    }
+
+    public boolean isUseMmap() {
+        return useMmap;
+    }
+
+    public void setUseMmap(boolean useMmap) {
+        this.useMmap = useMmap;
+    }
 }
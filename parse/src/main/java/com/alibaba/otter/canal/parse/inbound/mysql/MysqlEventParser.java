@@ -1,13 +1,16 @@
 package com.alibaba.otter.canal.parse.inbound.mysql;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.springframework.util.CollectionUtils;
@@ -15,10 +18,12 @@ import org.springframework.util.CollectionUtils;
 import com.alibaba.otter.canal.common.utils.JsonUtils;
 import com.alibaba.otter.canal.parse.CanalEventParser;
 import com.alibaba.otter.canal.parse.CanalHASwitchable;
+import com.alibaba.otter.canal.parse.CanalHAWarmable;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.FieldPacket;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.parse.ha.CanalHAController;
+import com.alibaba.otter.canal.parse.index.BinlogTimestampIndex;
 import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.HeartBeatCallback;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
@@ -27,10 +32,12 @@ import com.alibaba.otter.canal.parse.inbound.mysql.MysqlConnection.BinlogImage;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.TableMetaCache;
 import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DatabaseTableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.LocalTableMeta;
 import com.alibaba.otter.canal.parse.support.AuthenticationInfo;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
 import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.sink.exception.CanalSinkException;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
 
 /**
@@ -44,7 +51,8 @@ import com.taobao.tddl.dbsync.binlog.LogEvent;
  * @author jianghang 2012-6-21 下午04:06:32
  * @version 1.0.0
  */
-public class MysqlEventParser extends AbstractMysqlEventParser implements CanalEventParser, CanalHASwitchable {
+public class MysqlEventParser extends AbstractMysqlEventParser implements CanalEventParser, CanalHASwitchable,
+                                   CanalHAWarmable {
 
     private CanalHAController    haController                      = null;
 
@@ -71,6 +79,14 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
     private int                  dumpErrorCountThreshold           = 2;        // binlogDump失败异常计数阀值
     private boolean              rdsOssMode                        = false;
 
+    private String               timestampIndexDir;                            // binlog时间索引存储目录, 为空只保存在内存
+    private int                  timestampIndexIntervalInSeconds   = 60;       // binlog时间索引采样间隔
+    private BinlogTimestampIndex timestampIndex;
+
+    // 热备状态下预先准备好的meta链接和表结构
+    private MysqlConnection      warmConnection;
+    private EntryPosition        warmPosition;
+
     protected ErosaConnection buildErosaConnection() {
         return buildMysqlConnection(this.runningInfo);
     }
@@ -81,11 +97,17 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         }
 
         if (binlogParser != null && binlogParser instanceof LogEventConvert) {
-            metaConnection = (MysqlConnection) connection.fork();
-            try {
-                metaConnection.connect();
-            } catch (IOException e) {
-                throw new CanalParseException(e);
+            synchronized (this) {
+                metaConnection = warmConnection;
+                warmConnection = null;
+            }
+            if (metaConnection == null || !metaConnection.isConnected()) {
+                metaConnection = (MysqlConnection) connection.fork();
+                try {
+                    metaConnection.connect();
+                } catch (IOException e) {
+                    throw new CanalParseException(e);
+                }
             }
 
             if (supportBinlogFormats != null && supportBinlogFormats.length > 0) {
@@ -118,15 +140,7 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
                 }
             }
 
-            if (tableMetaTSDB != null && tableMetaTSDB instanceof DatabaseTableMeta) {
-                ((DatabaseTableMeta) tableMetaTSDB).setConnection(metaConnection);
-                ((DatabaseTableMeta) tableMetaTSDB).setFilter(eventFilter);
-                ((DatabaseTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
-                ((DatabaseTableMeta) tableMetaTSDB).setSnapshotInterval(tsdbSnapshotInterval);
-                ((DatabaseTableMeta) tableMetaTSDB).setSnapshotExpire(tsdbSnapshotExpire);
-                ((DatabaseTableMeta) tableMetaTSDB).init(destination);
-            }
-
+            initTableMetaTSDB(metaConnection);
             tableMetaCache = new TableMetaCache(metaConnection, tableMetaTSDB);
             ((LogEventConvert) binlogParser).setTableMetaCache(tableMetaCache);
         }
@@ -153,15 +167,24 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         }
     }
 
-    public void start() throws CanalParseException {
+    public synchronized void start() throws CanalParseException {
         if (runningInfo == null) { // 第一次链接主库
             runningInfo = masterInfo;
         }
 
+        if (timestampIndexIntervalInSeconds > 0 && timestampIndex == null) {
+            File indexDir = StringUtils.isEmpty(timestampIndexDir) ? null : new File(timestampIndexDir);
+            timestampIndex = new BinlogTimestampIndex(indexDir,
+                destination,
+                timestampIndexIntervalInSeconds * 1000L,
+                100000);
+        }
+
         super.start();
     }
 
     public void stop() throws CanalParseException {
+        releaseWarmConnection();
         if (metaConnection != null) {
             try {
                 metaConnection.disconnect();
@@ -176,6 +199,132 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         }
 
         super.stop();
+
+        if (timestampIndex != null) {
+            timestampIndex.close();
+            timestampIndex = null;
+        }
+    }
+
+    /**
+     * 热备时预先建立meta链接并将表结构回滚到指定位点，之后随位点推进只回放新增的DDL
+     */
+    public synchronized void warmup(EntryPosition position) {
+        if (isStart() || position == null) {
+            return;
+        }
+
+        if (runningInfo == null) {
+            runningInfo = masterInfo;
+        }
+
+        try {
+            if (warmConnection == null) {
+                MysqlConnection connection = buildMysqlConnection(runningInfo);
+                connection.connect();
+                warmConnection = connection;
+                warmPosition = null;
+            } else {
+                // 保持链接活跃，避免被mysql的wait_timeout断开
+                warmConnection.query("select 1");
+            }
+        } catch (IOException e) {
+            releaseWarmConnection();
+            throw new CanalParseException(e);
+        }
+
+        buildTableMetaTSDB();
+        if (tableMetaTSDB == null || position.getTimestamp() == null || position.getTimestamp() <= 0) {
+            return;
+        }
+
+        if (warmPosition != null && warmPosition.equals(position)) {
+            return;
+        }
+
+        boolean result = false;
+        EntryPosition lastWarmPosition = warmPosition;
+        warmPosition = null;
+        // 热备时只读取tsdb，snapshot由active节点负责写入
+        tableMetaTSDB.setStandby(true);
+        initTableMetaTSDB(warmConnection);
+        if (lastWarmPosition != null && lastWarmPosition.getTimestamp() <= position.getTimestamp()) {
+            result = tableMetaTSDB.rollforward(lastWarmPosition, position);
+        }
+
+        if (!result) {
+            result = super.processTableMeta(position);
+        }
+
+        if (result) {
+            warmPosition = position;
+        }
+    }
+
+    public synchronized void releaseWarmup() {
+        if (isStart()) {
+            // 已经切换为active，预热的资源已被使用
+            return;
+        }
+
+        releaseWarmConnection();
+        if (enableTsdb && tableMetaTSDB != null) {
+            tableMetaTSDBFactory.destory(destination);
+            tableMetaTSDB = null;
+        }
+    }
+
+    protected boolean processTableMeta(EntryPosition position) {
+        EntryPosition lastWarmPosition;
+        synchronized (this) {
+            lastWarmPosition = warmPosition;
+            warmPosition = null;
+        }
+
+        if (tableMetaTSDB != null) {
+            // 切换为active，恢复snapshot的写入
+            tableMetaTSDB.setStandby(false);
+        }
+
+        if (lastWarmPosition != null && tableMetaTSDB != null) {
+            if (lastWarmPosition.equals(position)) {
+                logger.warn("table meta is already warmed up to position:{}", position);
+                return true;
+            }
+
+            if (position.getTimestamp() != null && lastWarmPosition.getTimestamp() <= position.getTimestamp()
+                && tableMetaTSDB.rollforward(lastWarmPosition, position)) {
+                logger.warn("table meta is rolled forward from warmed position:{} to {}", lastWarmPosition, position);
+                return true;
+            }
+        }
+
+        return super.processTableMeta(position);
+    }
+
+    @Override
+    protected boolean consumeTheEventAndProfilingIfNecessary(List<CanalEntry.Entry> entrys)
+                                                                                           throws CanalSinkException,
+                                                                                           InterruptedException {
+        boolean result = super.consumeTheEventAndProfilingIfNecessary(entrys);
+        BinlogTimestampIndex index = timestampIndex;
+        if (result && index != null) {
+            // 记录事务结束位点作为时间索引的采样点
+            for (int i = entrys.size() - 1; i >= 0; i--) {
+                CanalEntry.Entry entry = entrys.get(i);
+                if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND) {
+                    CanalEntry.Header header = entry.getHeader();
+                    EntryPosition position = new EntryPosition(header.getLogfileName(),
+                        header.getLogfileOffset(),
+                        header.getExecuteTime(),
+                        header.getServerId());
+                    position.setGtid(header.getGtid());
+                    index.record(position);
+                    break;
+                }
+            }
+        }
+        return result;
     }
 
     protected TimerTask buildHeartBeatTimeTask(ErosaConnection connection) {
@@ -310,6 +459,39 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
 
     // =================== helper method =================
 
+    private void initTableMetaTSDB(MysqlConnection metaConnection) {
+        if (tableMetaTSDB != null && tableMetaTSDB instanceof DatabaseTableMeta) {
+            ((DatabaseTableMeta) tableMetaTSDB).setConnection(metaConnection);
+            ((DatabaseTableMeta) tableMetaTSDB).setFilter(eventFilter);
+            ((DatabaseTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotInterval(tsdbSnapshotInterval);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotExpire(tsdbSnapshotExpire);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotDdlThreshold(tsdbSnapshotDdlThreshold);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotCompress(tsdbSnapshotCompress);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotDelta(tsdbSnapshotDelta);
+            ((DatabaseTableMeta) tableMetaTSDB).init(destination);
+        } else if (tableMetaTSDB != null && tableMetaTSDB instanceof LocalTableMeta) {
+            ((LocalTableMeta) tableMetaTSDB).setConnection(metaConnection);
+            ((LocalTableMeta) tableMetaTSDB).setFilter(eventFilter);
+            ((LocalTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
+            ((LocalTableMeta) tableMetaTSDB).setSnapshotDdlThreshold(tsdbSnapshotDdlThreshold);
+            ((LocalTableMeta) tableMetaTSDB).init(destination);
+        }
+    }
+
+    private synchronized void releaseWarmConnection() {
+        warmPosition = null;
+        if (warmConnection != null) {
+            try {
+                warmConnection.disconnect();
+            } catch (IOException e) {
+                logger.error("ERROR # disconnect warm connection for address:{}", warmConnection.getConnector()
+                    .getAddress(), e);
+            }
+            warmConnection = null;
+        }
+    }
+
     private MysqlConnection buildMysqlConnection(AuthenticationInfo runningInfo) {
         MysqlConnection connection = new MysqlConnection(runningInfo.getAddress(),
             runningInfo.getUsername(),
@@ -577,7 +759,7 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         String maxBinlogFileName = endPosition.getJournalName();
         String minBinlogFileName = startPosition.getJournalName();
         logger.info("show master status to set search end condition:{} ", endPosition);
-        String startSearchBinlogFile = endPosition.getJournalName();
+        String startSearchBinlogFile = locateBinlogFile(mysqlConnection, startTimestamp, endPosition);
         boolean shouldBreak = false;
         while (running && !shouldBreak) {
             try {
@@ -632,6 +814,90 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         return null;
     }
 
+    /**
+     * 根据时间索引及binlog文件头的时间, 二分查找第一个事件早于startTimestamp的最后一个binlog文件.
+     * 定位失败时返回最新的binlog文件, 由调用方逐个往前查找
+     */
+    private String locateBinlogFile(MysqlConnection mysqlConnection, Long startTimestamp, EntryPosition endPosition) {
+        try {
+            List<String> binlogFiles = findBinlogFiles(mysqlConnection);
+            if (binlogFiles.isEmpty()) {
+                return endPosition.getJournalName();
+            }
+            int low = 0;
+            int high = binlogFiles.size() - 1;
+            BinlogTimestampIndex index = timestampIndex;
+            if (index != null) {
+                // 采样点只对同一个数据库有效
+                Long serverId = findServerId(mysqlConnection);
+                EntryPosition floor = index.floor(startTimestamp);
+                if (floor != null && serverId.equals(floor.getServerId())) {
+                    low = Math.max(binlogFiles.indexOf(floor.getJournalName()), 0);
+                }
+                EntryPosition ceiling = index.ceiling(startTimestamp);
+                if (ceiling != null && serverId.equals(ceiling.getServerId())) {
+                    int i = binlogFiles.indexOf(ceiling.getJournalName());
+                    if (i >= low) {
+                        high = i;
+                    }
+                }
+            }
+
+            while (running && low < high) {
+                int mid = (low + high + 1) >>> 1;
+                Long firstTimestamp = findFirstEventTimestamp(mysqlConnection, binlogFiles.get(mid), endPosition);
+                // 读取失败时偏向较新的文件, 之后仍会逐个往前查找
+                if (firstTimestamp == null || firstTimestamp < startTimestamp) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            logger.info("locate binlog file:{} for timestamp:{}", binlogFiles.get(low), startTimestamp);
+            return binlogFiles.get(low);
+        } catch (Exception e) {
+            logger.warn("locate binlog file by timestamp failed, search from the last binlog file", e);
+            return endPosition.getJournalName();
+        }
+    }
+
+    /**
+     * 查询当前所有的binlog文件, 按从旧到新排列
+     */
+    private List<String> findBinlogFiles(MysqlConnection mysqlConnection) throws IOException {
+        ResultSetPacket packet = mysqlConnection.query("show binary logs");
+        int columns = packet.getFieldDescriptors().size();
+        List<String> fields = packet.getFieldValues();
+        List<String> binlogFiles = new ArrayList<String>();
+        for (int i = 0; columns > 0 && i < fields.size(); i += columns) {
+            binlogFiles.add(fields.get(i));
+        }
+        return binlogFiles;
+    }
+
+    /**
+     * 读取binlog文件第一个事件的时间
+     */
+    private Long findFirstEventTimestamp(MysqlConnection mysqlConnection, String binlogFile, EntryPosition endPosition) {
+        final AtomicLong firstTimestamp = new AtomicLong(-1L);
+        try {
+            mysqlConnection.reconnect();
+            mysqlConnection.seek(binlogFile, 4L, endPosition.getGtid(), new SinkFunction<LogEvent>() {
+
+                public boolean sink(LogEvent event) {
+                    if (event.getWhen() > 0) {
+                        firstTimestamp.set(event.getWhen() * 1000);
+                        return false;
+                    }
+                    return running;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("read first event of binlog file:" + binlogFile + " failed", e);
+        }
+        return firstTimestamp.get() < 0 ? null : firstTimestamp.get();
+    }
+
     /**
      * 查询当前db的serverId信息
      */
@@ -926,6 +1192,18 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         this.dumpErrorCountThreshold = dumpErrorCountThreshold;
     }
 
+    public void setTimestampIndexDir(String timestampIndexDir) {
+        this.timestampIndexDir = timestampIndexDir;
+    }
+
+    public void setTimestampIndexIntervalInSeconds(int timestampIndexIntervalInSeconds) {
+        this.timestampIndexIntervalInSeconds = timestampIndexIntervalInSeconds;
+    }
+
+    public BinlogTimestampIndex getTimestampIndex() {
+        return timestampIndex;
+    }
+
     public boolean isRdsOssMode() {
         return rdsOssMode;
     }
@@ -10,6 +10,7 @@ import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
 import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.alibaba.otter.canal.parse.inbound.AbstractEventParser;
 import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.EventTransactionBuffer;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
@@ -46,6 +47,8 @@ import com.taobao.tddl.dbsync.binlog.event.WriteRowsLogEvent;
  * 2. 事件基本解析 (单线程，事件类型、DDL解析构造TableMeta、维护位点信息)
  * 3. 事件深度解析 (多线程, DML事件数据的完整解析)
  * 4. 投递到store (单线程)
+ * 
+ * 每条数据记录各阶段的完成时间，投递后汇总到parser的耗时分布中
  * </pre>
  * 
  * @author agapple 2018年7月3日 下午4:54:17
@@ -71,6 +74,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     private BatchEventProcessor<MessageEvent> simpleParserStage;
     private BatchEventProcessor<MessageEvent> sinkStoreStage;
     private LogContext                        logContext;
+    private AbstractEventParser               eventParser;
 
     public MysqlMultiStageCoprocessor(int ringBufferSize, int parserThreadCount, LogEventConvert logEventConvert,
                                       EventTransactionBuffer transactionBuffer, String destination){
@@ -209,6 +213,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 } else {
                     data.setEvent(event);
                 }
+                data.setReceiveNanos(System.nanoTime());
                 disruptorMsgBuffer.publish(next);
                 if (fullTimes > 0) {
                     eventsPublishBlockingTime.addAndGet(System.nanoTime() - blockingStart);
@@ -296,6 +301,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 // 记录一下DML的表结构
                 event.setNeedDmlParse(needDmlParse);
                 event.setTable(tableMeta);
+                event.setSimpleParsedNanos(System.nanoTime());
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
@@ -331,6 +337,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                     }
 
                     event.setEntry(entry);
+                    event.setDmlParsedNanos(System.nanoTime());
                 }
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
@@ -364,18 +371,43 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                         logEvent.getHeader().getLogPos());
                 }
 
+                if (eventParser != null) {
+                    profiling(event, logEvent);
+                }
+
                 // clear for gc
                 event.setBuffer(null);
                 event.setEvent(null);
                 event.setTable(null);
                 event.setEntry(null);
                 event.setNeedDmlParse(false);
+                event.setDmlParsedNanos(0L);
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
             }
         }
 
+        private void profiling(MessageEvent event, LogEvent logEvent) {
+            long sinkNanos = System.nanoTime();
+            long simpleParsedNanos = event.getSimpleParsedNanos();
+            // 不需要DML解析的数据，DML阶段耗时为0
+            long dmlParsedNanos = event.isNeedDmlParse() ? event.getDmlParsedNanos() : simpleParsedNanos;
+            eventParser.profilingReceive(logEvent.getWhen() * 1000, event.getReceiveNanos(), sinkNanos);
+            eventParser.getSimpleParseLatency().observe(simpleParsedNanos - event.getReceiveNanos());
+            if (event.isNeedDmlParse()) {
+                eventParser.getDmlParseLatency().observe(dmlParsedNanos - simpleParsedNanos);
+            }
+            eventParser.getSinkLatency().observe(sinkNanos - dmlParsedNanos);
+            if (event.getEntry() != null) {
+                eventParser.traceIfNecessary(event.getEntry(),
+                    event.getReceiveNanos(),
+                    simpleParsedNanos,
+                    dmlParsedNanos,
+                    sinkNanos);
+            }
+        }
+
         @Override
         public void onStart() {
 
@@ -394,6 +426,9 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         private boolean          needDmlParse = false;
         private TableMeta        table;
         private LogEvent         event;
+        private long             receiveNanos;
+        private long             simpleParsedNanos;
+        private long             dmlParsedNanos;
 
         public LogBuffer getBuffer() {
             return buffer;
@@ -435,6 +470,30 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
             this.table = table;
         }
 
+        public long getReceiveNanos() {
+            return receiveNanos;
+        }
+
+        public void setReceiveNanos(long receiveNanos) {
+            this.receiveNanos = receiveNanos;
+        }
+
+        public long getSimpleParsedNanos() {
+            return simpleParsedNanos;
+        }
+
+        public void setSimpleParsedNanos(long simpleParsedNanos) {
+            this.simpleParsedNanos = simpleParsedNanos;
+        }
+
+        public long getDmlParsedNanos() {
+            return dmlParsedNanos;
+        }
+
+        public void setDmlParsedNanos(long dmlParsedNanos) {
+            this.dmlParsedNanos = dmlParsedNanos;
+        }
+
     }
 
     class SimpleFatalExceptionHandler implements ExceptionHandler {
@@ -477,6 +536,10 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.eventsPublishBlockingTime = eventsPublishBlockingTime;
     }
 
+    public void setEventParser(AbstractEventParser eventParser) {
+        this.eventParser = eventParser;
+    }
+
     public void setGtidSet(GTIDSet gtidSet) {
         this.gtidSet = gtidSet;
     }
@@ -11,6 +11,9 @@ import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -18,7 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
-import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.common.utils.TopKCounter;
+import com.alibaba.otter.canal.filter.CanalEventFilter;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.taobao.tddl.dbsync.binlog.exception.TableIdNotFoundException;
 import com.alibaba.otter.canal.parse.inbound.BinlogParser;
@@ -86,8 +90,8 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     public static final String          COMMIT              = "COMMIT";
     public static final Logger          logger              = LoggerFactory.getLogger(LogEventConvert.class);
 
-    private volatile AviaterRegexFilter nameFilter;                                                          // 运行时引用可能会有变化，比如规则发生变化时
-    private volatile AviaterRegexFilter nameBlackFilter;
+    private volatile CanalEventFilter<String> nameFilter;                                                     // 运行时引用可能会有变化，比如规则发生变化时
+    private volatile CanalEventFilter<String> nameBlackFilter;
     private Map<String, List<String>> 	fieldFilterMap 		= new HashMap<String, List<String>>();
     private Map<String, List<String>> 	fieldBlackFilterMap = new HashMap<String, List<String>>();
 
@@ -101,6 +105,12 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     // 新增rows过滤，用于仅订阅除rows以外的数据
     private boolean                     filterRows          = false;
     private boolean                     useDruidDdlFilter   = true;
+    // 按binlog table id缓存解析好的表结构、字段处理方式及过滤结果, 表结构版本变化后失效
+    private ConcurrentMap<Long, TableIdEntry> tableIdCache      = new ConcurrentHashMap<Long, TableIdEntry>();
+    // 过滤条件的版本, 热更新过滤条件后递增, 旧版本的缓存视为未命中
+    private final AtomicLong            filterGeneration    = new AtomicLong();
+    // 按表统计解析的rows/bytes/耗时，为null代表关闭
+    private TopKCounter                 tableStat;
 
     public LogEventConvert(){
 
@@ -153,6 +163,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
     public void reset() {
         // do nothing
+        tableIdCache.clear();
         if (tableMetaCache != null) {
             tableMetaCache.clearTableMeta();
         }
@@ -443,15 +454,32 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             throw new TableIdNotFoundException("not found tableId:" + event.getTableId());
         }
 
+        // 先读取版本再读取过滤条件, 过滤条件并发更新时缓存的结果会被视为过期
+        long generation = filterGeneration.get();
+        TableIdEntry cached = tableIdCache.get(event.getTableId());
+        if (cached != null && cached.version == tableMetaCache.getVersion() && cached.generation == generation
+            && StringUtils.equals(cached.dbName, table.getDbName())
+            && StringUtils.equals(cached.tableName, table.getTableName())) {
+            return cached.tableMeta;
+        }
+
         boolean isHeartBeat = isAliSQLHeartBeat(table.getDbName(), table.getTableName());
         boolean isRDSHeartBeat = tableMetaCache.isOnRDS() && isRDSHeartBeat(table.getDbName(), table.getTableName());
 
         String fullname = table.getDbName() + "." + table.getTableName();
         // check name filter
         if (nameFilter != null && !nameFilter.filter(fullname)) {
+            tableIdCache.put(event.getTableId(), new TableIdEntry(table,
+                tableMetaCache.getVersion(),
+                generation,
+                null));
             return null;
         }
         if (nameBlackFilter != null && nameBlackFilter.filter(fullname)) {
+            tableIdCache.put(event.getTableId(), new TableIdEntry(table,
+                tableMetaCache.getVersion(),
+                generation,
+                null));
             return null;
         }
 
@@ -484,9 +512,66 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             }
         }
 
+        if (tableMeta != null) {
+            tableIdCache.put(event.getTableId(),
+                buildTableIdEntry(table, tableMetaCache.getVersion(), generation, tableMeta));
+        }
         return tableMeta;
     }
 
+    private TableIdEntry buildTableIdEntry(TableMapLogEvent table, long version, long generation, TableMeta tableMeta) {
+        TableIdEntry entry = new TableIdEntry(table, version, generation, tableMeta);
+        entry.fieldList = fieldFilterMap.get(tableMeta.getFullName().toUpperCase());
+        entry.blackFieldList = fieldBlackFilterMap.get(tableMeta.getFullName().toUpperCase());
+        List<FieldMeta> fields = tableMeta.getFields();
+        int size = fields.size();
+        entry.binary = new boolean[size];
+        entry.singleBit = new boolean[size];
+        entry.text = new boolean[size];
+        entry.needField = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            FieldMeta fieldMeta = fields.get(i);
+            if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "BINARY")) {
+                entry.binary[i] = true;
+            } else if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "TINYINT(1)")) {
+                entry.singleBit[i] = true;
+            }
+            entry.text[i] = isText(fieldMeta.getColumnType());
+            entry.needField[i] = needField(entry.fieldList, entry.blackFieldList, fieldMeta.getColumnName());
+        }
+
+        // 存在字段过滤时, 预编译出需要解析的列, 其余列在解码时直接跳过
+        if (entry.fieldList != null || entry.blackFieldList != null) {
+            BitSet projection = new BitSet(size);
+            for (int i = 0; i < size; i++) {
+                if (entry.needField[i]) {
+                    projection.set(i);
+                }
+            }
+            if (projection.cardinality() < size) {
+                entry.projection = projection;
+            }
+        }
+
+        // mysql8.0的列元数据只需要校验一次
+        ColumnInfo[] columnInfo = table.getColumnInfo();
+        boolean checked = columnInfo.length <= size;
+        if (checked && table.isExistOptionalMetaData() && tableMetaCache.isOnTSDB()) {
+            for (int i = 0; i < columnInfo.length && checked; i++) {
+                checked = checkColumnInfo(fields.get(i), columnInfo[i]);
+            }
+        }
+        entry.columnChecked = checked;
+        return entry;
+    }
+
+    private boolean checkColumnInfo(FieldMeta fieldMeta, ColumnInfo info) {
+        boolean check = StringUtils.equalsIgnoreCase(fieldMeta.getColumnName(), info.name);
+        check &= (fieldMeta.isUnsigned() == info.unsigned);
+        check &= (fieldMeta.isNullable() == info.nullable);
+        return check;
+    }
+
     public Entry parseRowsEvent(RowsLogEvent event) {
         return parseRowsEvent(event, null);
     }
@@ -495,6 +580,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         if (filterRows) {
             return null;
         }
+        long startNanos = (tableStat != null) ? System.nanoTime() : 0L;
         try {
             if (tableMeta == null) { // 如果没有外部指定
                 tableMeta = parseRowsEventForTableMeta(event);
@@ -566,6 +652,12 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 return null;
             } else {
                 Entry entry = createEntry(header, EntryType.ROWDATA, rowChange.toByteString());
+                if (tableStat != null) {
+                    tableStat.add(table.getDbName() + "." + table.getTableName(),
+                        rowsCount,
+                        event.getHeader().getEventLen(),
+                        System.nanoTime() - startNanos);
+                }
                 return entry;
             }
         } catch (Exception e) {
@@ -591,13 +683,23 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         //获取字段过滤条件
         List<String> fieldList = null;
         List<String> blackFieldList = null;
-        
-        if (tableMeta != null) {
+        // 预先计算好的字段处理方式, 表结构不一致时为null
+        long generation = filterGeneration.get();
+        TableIdEntry entry = tableMeta != null ? tableIdCache.get(event.getTableId()) : null;
+        if (entry != null && (entry.tableMeta != tableMeta || entry.generation != generation)) {
+            entry = null;
+        }
+
+        if (entry != null) {
+            fieldList = entry.fieldList;
+            blackFieldList = entry.blackFieldList;
+        } else if (tableMeta != null) {
         	fieldList = fieldFilterMap.get(tableMeta.getFullName().toUpperCase());
         	blackFieldList = fieldBlackFilterMap.get(tableMeta.getFullName().toUpperCase());
         }
         
         if (tableMeta != null && columnInfo.length > tableMeta.getFields().size()) {
+            entry = null;
             if (tableMetaCache.isOnRDS()) {
                 // 特殊处理下RDS的场景
                 List<FieldMeta> primaryKeys = tableMeta.getPrimaryFields();
@@ -679,12 +781,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 fieldMeta = tableMeta.getFields().get(i);
             }
 
-            if (fieldMeta != null && existOptionalMetaData && tableMetaCache.isOnTSDB()) {
+            if (fieldMeta != null && existOptionalMetaData && tableMetaCache.isOnTSDB()
+                && (entry == null || !entry.columnChecked)) {
                 // check column info
-                boolean check = StringUtils.equalsIgnoreCase(fieldMeta.getColumnName(), info.name);
-                check &= (fieldMeta.isUnsigned() == info.unsigned);
-                check &= (fieldMeta.isNullable() == info.nullable);
-
+                boolean check = checkColumnInfo(fieldMeta, info);
                 if (!check) {
                     throw new CanalParseException("MySQL8.0 unmatch column metadata & pls submit issue , table : "
                                                   + tableMeta.getFullName() + ", db fieldMeta : "
@@ -694,6 +794,12 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 }
             }
 
+            if (fieldMeta != null && entry != null && entry.projection != null && !entry.projection.get(i)) {
+                // 被过滤的列不做解码, 直接跳过对应的字节
+                buffer.skipValue(info.type, info.meta);
+                continue;
+            }
+
             Column.Builder columnBuilder = Column.newBuilder();
             if (fieldMeta != null) {
                 columnBuilder.setName(fieldMeta.getColumnName());
@@ -713,7 +819,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             // https://github.com/alibaba/canal/issues/66，特殊处理binary/varbinary，不能做编码处理
             boolean isBinary = false;
             boolean isSingleBit = false;
-            if (fieldMeta != null) {
+            if (fieldMeta != null && entry != null) {
+                isBinary = entry.binary[i];
+                isSingleBit = entry.singleBit[i];
+            } else if (fieldMeta != null) {
                 if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "VARBINARY")) {
                     isBinary = true;
                 } else if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "BINARY")) {
@@ -809,7 +918,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         // https://github.com/AlibabaTech/canal/issues/18
                         // mysql binlog中blob/text都处理为blob类型，需要反查table
                         // meta，按编码解析text
-                        if (fieldMeta != null && isText(fieldMeta.getColumnType())) {
+                        if (fieldMeta != null && (entry != null ? entry.text[i] : isText(fieldMeta.getColumnType()))) {
                             columnBuilder.setValue(new String((byte[]) value, charset));
                             javaType = Types.CLOB;
                         } else {
@@ -835,7 +944,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                                      && isUpdate(rowDataBuilder.getBeforeColumnsList(),
                                          columnBuilder.getIsNull() ? null : columnBuilder.getValue(),
                                          i));
-            if (needField(fieldList, blackFieldList, columnBuilder.getName())) {
+            boolean need = (fieldMeta != null && entry != null) ? entry.needField[i] : needField(fieldList,
+                blackFieldList,
+                columnBuilder.getName());
+            if (need) {
             	if (isAfter) {
                     rowDataBuilder.addAfterColumns(columnBuilder.build());
                 } else {
@@ -1018,13 +1130,15 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         this.charset = charset;
     }
 
-    public void setNameFilter(AviaterRegexFilter nameFilter) {
+    public void setNameFilter(CanalEventFilter<String> nameFilter) {
         this.nameFilter = nameFilter;
+        filterGeneration.incrementAndGet();
         logger.warn("--> init table filter : " + nameFilter.toString());
     }
 
-    public void setNameBlackFilter(AviaterRegexFilter nameBlackFilter) {
+    public void setNameBlackFilter(CanalEventFilter<String> nameBlackFilter) {
         this.nameBlackFilter = nameBlackFilter;
+        filterGeneration.incrementAndGet();
         logger.warn("--> init table black filter : " + nameBlackFilter.toString());
     }
     
@@ -1034,6 +1148,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     	} else {
     		this.fieldFilterMap = new HashMap<String, List<String>>();
     	}
+		filterGeneration.incrementAndGet();
 		
 		
 		for (Map.Entry<String, List<String>> entry : this.fieldFilterMap.entrySet()) {
@@ -1047,6 +1162,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     	} else {
     		this.fieldBlackFilterMap = new HashMap<String, List<String>>();
     	}
+		filterGeneration.incrementAndGet();
 		
 		for (Map.Entry<String, List<String>> entry : this.fieldBlackFilterMap.entrySet()) {
 			logger.warn("--> init field black filter : " + entry.getKey() + "->" + entry.getValue());
@@ -1055,6 +1171,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
     public void setTableMetaCache(TableMetaCache tableMetaCache) {
         this.tableMetaCache = tableMetaCache;
+        tableIdCache.clear();
     }
 
     public void setFilterQueryDcl(boolean filterQueryDcl) {
@@ -1080,4 +1197,36 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     public void setUseDruidDdlFilter(boolean useDruidDdlFilter) {
         this.useDruidDdlFilter = useDruidDdlFilter;
     }
+
+    public void setTableStat(TopKCounter tableStat) {
+        this.tableStat = tableStat;
+    }
+
+    /**
+     * 按table id缓存的表结构, 以及按字段下标预先计算好的处理方式
+     */
+    private static class TableIdEntry {
+
+        private final String    dbName;
+        private final String    tableName;
+        private final long      version;        // 对应的表结构版本
+        private final long      generation;     // 对应的过滤条件版本
+        private final TableMeta tableMeta;      // 为null代表被过滤
+        private List<String>    fieldList;
+        private List<String>    blackFieldList;
+        private boolean[]       binary;
+        private boolean[]       singleBit;
+        private boolean[]       text;
+        private boolean[]       needField;
+        private BitSet          projection;     // 需要解析的列, 为null代表全部解析
+        private boolean         columnChecked;  // mysql8.0列元数据已校验
+
+        private TableIdEntry(TableMapLogEvent table, long version, long generation, TableMeta tableMeta){
+            this.dbName = table.getDbName();
+            this.tableName = table.getTableName();
+            this.version = version;
+            this.generation = generation;
+            this.tableMeta = tableMeta;
+        }
+    }
 }
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -44,6 +45,7 @@ public class TableMetaCache {
     private TableMetaTSDB                   tableMetaTSDB;
     // 第一层tableId,第二层schema.table,解决tableId重复，对应多张表
     private LoadingCache<String, TableMeta> tableMetaDB;
+    private AtomicLong                      version        = new AtomicLong(0);                                       // 表结构版本, 表结构可能变化时递增
 
     public TableMetaCache(MysqlConnection con, TableMetaTSDB tableMetaTSDB){
         this.connection = con;
@@ -150,6 +152,7 @@ public class TableMetaCache {
     public TableMeta getTableMeta(String schema, String table, boolean useCache) {
         if (!useCache) {
             tableMetaDB.invalidate(getFullName(schema, table));
+            version.incrementAndGet();
         }
 
         return tableMetaDB.getUnchecked(getFullName(schema, table));
@@ -181,6 +184,7 @@ public class TableMetaCache {
                     }
                     // 强制覆盖掉内存值
                     tableMetaTSDB.apply(position, schema, createDDL, "first");
+                    version.incrementAndGet();
                     tableMeta = tableMetaTSDB.find(schema, table);
                 } catch (IOException e) {
                     throw new CanalParseException("fetch failed by table meta:" + fullName, e);
@@ -190,6 +194,7 @@ public class TableMetaCache {
         } else {
             if (!useCache) {
                 tableMetaDB.invalidate(getFullName(schema, table));
+                version.incrementAndGet();
             }
 
             return tableMetaDB.getUnchecked(getFullName(schema, table));
@@ -202,6 +207,7 @@ public class TableMetaCache {
         } else {
             tableMetaDB.invalidate(getFullName(schema, table));
         }
+        version.incrementAndGet();
     }
 
     public void clearTableMetaWithSchemaName(String schema) {
@@ -215,6 +221,7 @@ public class TableMetaCache {
                 }
             }
         }
+        version.incrementAndGet();
     }
 
     public void clearTableMeta() {
@@ -223,6 +230,7 @@ public class TableMetaCache {
         } else {
             tableMetaDB.invalidateAll();
         }
+        version.incrementAndGet();
     }
 
     /**
@@ -234,11 +242,15 @@ public class TableMetaCache {
      * @return
      */
     public boolean apply(EntryPosition position, String schema, String ddl, String extra) {
-        if (tableMetaTSDB != null) {
-            return tableMetaTSDB.apply(position, schema, ddl, extra);
-        } else {
-            // ignore
-            return true;
+        try {
+            if (tableMetaTSDB != null) {
+                return tableMetaTSDB.apply(position, schema, ddl, extra);
+            } else {
+                // ignore
+                return true;
+            }
+        } finally {
+            version.incrementAndGet();
         }
     }
 
@@ -255,6 +267,13 @@ public class TableMetaCache {
     }
 
 
+    /**
+     * 表结构版本, DDL及清理缓存时递增, 用于判断基于表结构的本地缓存是否失效
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     public boolean isOnTSDB() {
         return isOnTSDB;
     }
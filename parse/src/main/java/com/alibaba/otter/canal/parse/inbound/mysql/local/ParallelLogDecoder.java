@@ -0,0 +1,225 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.local;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.alibaba.otter.canal.parse.exception.ServerIdNotMatchException;
+import com.alibaba.otter.canal.parse.inbound.SinkFunction;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.GtidLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.TableMapLogEvent;
+
+/**
+ * 本地binlog文件的并行解码
+ *
+ * <pre>
+ * 1. 读取线程只按照event边界切分, 并解析format description/table map/gtid等上下文event
+ * 2. 按照事务边界(或者超过上限)将event切分为chunk, 每个chunk带上当前的上下文快照, 提交到线程池并行解码
+ * 3. 读取线程按照提交顺序等待chunk解码完成, 并顺序投递给下游
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class ParallelLogDecoder {
+
+    private final ExecutorService                    executor;
+    private final int                                chunkSize;
+    private final int                                maxPendingChunks;
+    private final long                               serverId;
+    private final LogDecoder                         scanDecoder;
+    private final LinkedList<Future<List<LogEvent>>> pending = new LinkedList<Future<List<LogEvent>>>();
+    private final Map<Long, TableMapLogEvent>        tables  = new HashMap<Long, TableMapLogEvent>();
+    private LogContext                               scanContext;
+    private Chunk                                    current;
+
+    public ParallelLogDecoder(String name, int threadSize, int chunkSize, long serverId){
+        this.executor = Executors.newFixedThreadPool(threadSize, new NamedThreadFactory("LocalBinlogDecoder-" + name));
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = threadSize * 2;
+        this.serverId = serverId;
+        // 读取线程只解析上下文相关的event, 其余只解析header
+        this.scanDecoder = new LogDecoder();
+        this.scanDecoder.handle(LogEvent.FORMAT_DESCRIPTION_EVENT);
+        this.scanDecoder.handle(LogEvent.TABLE_MAP_EVENT);
+        this.scanDecoder.handle(LogEvent.GTID_LOG_EVENT);
+        this.scanDecoder.handle(LogEvent.ANONYMOUS_GTID_LOG_EVENT);
+    }
+
+    /**
+     * 切换到新的binlog文件
+     */
+    public void open(String fileName) {
+        scanContext = new LogContext();
+        scanContext.setLogPosition(new LogPosition(fileName));
+        tables.clear();
+        current = null;
+    }
+
+    /**
+     * 从fetcher中切分出一个event, 返回false代表下游要求停止
+     */
+    public boolean offer(LogBuffer fetcher, SinkFunction<LogEvent> sink) throws IOException {
+        LogBuffer raw = null;
+        final int limit = fetcher.limit();
+        if (limit >= FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN) {
+            long eventLen = fetcher.getUint32(LogEvent.EVENT_LEN_OFFSET);
+            if (limit >= eventLen) {
+                raw = fetcher.duplicate(0, (int) eventLen);
+            }
+        }
+
+        LogEvent event = scanDecoder.decode(fetcher, scanContext);
+        if (event == null) {
+            return true;
+        }
+
+        if (serverId != 0 && event.getServerId() != serverId) {
+            throw new ServerIdNotMatchException("unexpected serverId " + serverId + " in binlog file !");
+        }
+
+        int type = event.getHeader().getType();
+        if ((type == LogEvent.GTID_LOG_EVENT || type == LogEvent.ANONYMOUS_GTID_LOG_EVENT) && current != null
+            && current.raws.size() >= chunkSize) {
+            // 新事务开始, 在事务边界切分
+            if (!submit(sink)) {
+                return false;
+            }
+        }
+
+        if (current == null) {
+            current = new Chunk(scanContext, tables);
+        }
+        current.raws.add(raw);
+
+        if (type == LogEvent.TABLE_MAP_EVENT) {
+            TableMapLogEvent mapEvent = (TableMapLogEvent) event;
+            tables.put(mapEvent.getTableId(), mapEvent);
+        }
+
+        int size = current.raws.size();
+        if ((type == LogEvent.XID_EVENT && size >= chunkSize) || size >= chunkSize * 4) {
+            // 事务结束或者超大事务, 提交解码
+            return submit(sink);
+        }
+        return true;
+    }
+
+    /**
+     * 提交剩余的event, 并等待全部解码投递完成
+     */
+    public boolean flush(SinkFunction<LogEvent> sink) throws IOException {
+        if (!submit(sink)) {
+            return false;
+        }
+
+        while (!pending.isEmpty()) {
+            if (!publish(pending.poll(), sink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void stop() {
+        for (Future<List<LogEvent>> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private boolean submit(SinkFunction<LogEvent> sink) throws IOException {
+        if (current != null) {
+            pending.add(executor.submit(current));
+            current = null;
+        }
+
+        while (pending.size() > maxPendingChunks) {
+            if (!publish(pending.poll(), sink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean publish(Future<List<LogEvent>> future, SinkFunction<LogEvent> sink) throws IOException {
+        List<LogEvent> events;
+        try {
+            events = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CanalParseException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                // 比如TableIdNotFoundException, 需要保留原始异常类型
+                throw (RuntimeException) cause;
+            }
+            throw new CanalParseException(cause);
+        }
+
+        for (LogEvent event : events) {
+            if (!sink.sink(event)) {
+                stop();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一批连续的event, 以及切分时刻的解码上下文
+     */
+    private static class Chunk implements Callable<List<LogEvent>> {
+
+        private final FormatDescriptionLogEvent   formatDescription;
+        private final GtidLogEvent                gtidLogEvent;
+        private final String                      fileName;
+        private final Map<Long, TableMapLogEvent> tables;
+        private final List<LogBuffer>             raws = new ArrayList<LogBuffer>();
+
+        private Chunk(LogContext context, Map<Long, TableMapLogEvent> tables){
+            this.formatDescription = context.getFormatDescription();
+            this.gtidLogEvent = context.getGtidLogEvent();
+            this.fileName = context.getLogPosition().getFileName();
+            this.tables = new HashMap<Long, TableMapLogEvent>(tables);
+        }
+
+        public List<LogEvent> call() throws Exception {
+            LogContext context = new LogContext(formatDescription);
+            context.setLogPosition(new LogPosition(fileName));
+            context.setGtidLogEvent(gtidLogEvent);
+            for (TableMapLogEvent mapEvent : tables.values()) {
+                context.putTable(mapEvent);
+            }
+
+            LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+            List<LogEvent> events = new ArrayList<LogEvent>(raws.size());
+            for (LogBuffer raw : raws) {
+                LogEvent event = decoder.decode(raw, context);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+    }
+}
@@ -9,11 +9,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.LockSupport;
@@ -25,6 +32,7 @@ import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
@@ -45,32 +53,57 @@ import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.parse.inbound.mysql.rds.data.BinlogFile;
 
 /**
+ * rds binlog备份文件的下载队列
+ *
+ * <pre>
+ * 1. 多个下载线程并发下载, 下载完成的文件按照binlog顺序重命名为正式文件, 保证解析线程按顺序看到文件
+ * 2. 下载中的文件以"实例id.tmp"结尾, 重启后基于http range请求从同一实例已下载的位置续传
+ * 3. tar包直接从http流中解压, 不落地临时的tar文件
+ * 4. 预下载的文件数量根据下载耗时和解析耗时动态调整, 上限为batchFileSize
+ * </pre>
+ *
  * @author chengjin.lyf on 2018/8/7 下午3:10
  * @since 1.0.25
  */
 public class BinlogDownloadQueue {
 
-    private static final Logger             logger        = LoggerFactory.getLogger(BinlogDownloadQueue.class);
-    private static final int                TIMEOUT       = 10000;
-
-    private LinkedBlockingQueue<BinlogFile> downloadQueue = new LinkedBlockingQueue<BinlogFile>();
-    private LinkedBlockingQueue<Runnable>   taskQueue     = new LinkedBlockingQueue<Runnable>();
-    private LinkedList<BinlogFile>          binlogList;
-    private final int                       batchFileSize;
-    private Thread                          downloadThread;
-    public boolean                          running       = true;
-    private final String                    destDir;
-    private String                          hostId;
-    private int                             currentSize;
-    private String                          lastDownload;
+    private static final Logger               logger             = LoggerFactory.getLogger(BinlogDownloadQueue.class);
+    private static final int                  TIMEOUT            = 10000;
+    private static final int                  BUFFER_SIZE        = 64 * 1024;
+    private static final String               TMP_SUFFIX         = ".tmp";
+
+    private LinkedBlockingQueue<DownloadTask> downloadQueue      = new LinkedBlockingQueue<DownloadTask>();
+    private LinkedBlockingQueue<Runnable>     taskQueue          = new LinkedBlockingQueue<Runnable>();
+    private LinkedList<DownloadTask>          inflightTasks      = new LinkedList<DownloadTask>();         // 按照binlog顺序排列的下载任务
+    private Map<String, Long>                 publishTimes       = new ConcurrentHashMap<String, Long>();  // 文件可被解析的时间
+    private LinkedList<BinlogFile>            binlogList;
+    private final int                         batchFileSize;                                               // 最多预下载的文件数
+    private final int                         downloadThreadSize;
+    private Thread[]                          downloadThreads;
+    public volatile boolean                   running            = true;
+    private final String                      destDir;
+    private CloseableHttpClient               httpClient;
+    private String                            hostId;
+    private int                               currentSize;
+    private String                            lastDownload;
+    private volatile long                     downloadCostMillis = 0;                                      // 单个文件的下载耗时
+    private volatile long                     parseCostMillis    = 0;                                      // 单个文件的解析耗时
+    private long                              lastConsumeTime    = 0;
 
     public BinlogDownloadQueue(List<BinlogFile> downloadQueue, int batchFileSize, String destDir) throws IOException{
+        this(downloadQueue, batchFileSize, 1, destDir);
+    }
+
+    public BinlogDownloadQueue(List<BinlogFile> downloadQueue, int batchFileSize, int downloadThreadSize,
+                               String destDir) throws IOException{
         this.binlogList = new LinkedList(downloadQueue);
         this.batchFileSize = batchFileSize;
+        this.downloadThreadSize = Math.max(1, downloadThreadSize);
         this.destDir = destDir;
         this.currentSize = 0;
         prepareBinlogList();
-        cleanDir();
+        cleanDir(partialFileNames());
+        this.httpClient = buildHttpClient();
     }
 
     private void prepareBinlogList() {
@@ -87,19 +120,48 @@ public class BinlogDownloadQueue {
         });
     }
 
+    private Set<String> partialFileNames() {
+        Set<String> names = new HashSet<String>();
+        for (BinlogFile binlog : this.binlogList) {
+            names.add(partialFileName(binlog));
+        }
+        return names;
+    }
+
     public void cleanDir() throws IOException {
+        cleanDir(Collections.<String> emptySet());
+    }
+
+    /**
+     * 清理下载目录, 保留可以续传的文件
+     */
+    private void cleanDir(Set<String> keepFileNames) throws IOException {
         File destDirFile = new File(destDir);
         FileUtils.forceMkdir(destDirFile);
-        FileUtils.cleanDirectory(destDirFile);
+        File[] files = destDirFile.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isFile() && keepFileNames.contains(file.getName()) && file.length() > 0) {
+                logger.info("keep partial binlog file " + file.getName() + " , size : " + file.length());
+                continue;
+            }
+            FileUtils.forceDelete(file);
+        }
     }
 
     public void silenceDownload() {
-        if (downloadThread != null) {
+        if (downloadThreads != null) {
             return;
         }
-        downloadThread = new Thread(new DownloadThread(), "download-" + destDir);
-        downloadThread.setDaemon(true);
-        downloadThread.start();
+        downloadThreads = new Thread[downloadThreadSize];
+        for (int i = 0; i < downloadThreadSize; i++) {
+            downloadThreads[i] = new Thread(new DownloadThread(), "download-" + i + "-" + destDir);
+            downloadThreads[i].setDaemon(true);
+            downloadThreads[i].start();
+        }
     }
 
     public BinlogFile tryOne() throws Throwable {
@@ -107,7 +169,16 @@ public class BinlogDownloadQueue {
         if (binlogFile == null) {
             throw new CanalParseException("download binlog is null");
         }
-        download(binlogFile);
+        DownloadTask task = new DownloadTask(binlogFile);
+        synchronized (inflightTasks) {
+            inflightTasks.add(task);
+        }
+        try {
+            download(task);
+            complete(task);
+        } finally {
+            task.finished.countDown();
+        }
         hostId = binlogFile.getHostInstanceID();
         this.currentSize++;
         return binlogFile;
@@ -115,6 +186,26 @@ public class BinlogDownloadQueue {
 
     public void notifyNotMatch() {
         this.currentSize--;
+        // 丢弃其他实例的下载任务
+        List<DownloadTask> pendingTasks = new ArrayList<DownloadTask>();
+        downloadQueue.drainTo(pendingTasks);
+        List<DownloadTask> droppedTasks;
+        synchronized (inflightTasks) {
+            droppedTasks = new ArrayList<DownloadTask>(inflightTasks);
+            inflightTasks.clear();
+        }
+        droppedTasks.removeAll(pendingTasks);
+        for (DownloadTask task : droppedTasks) {
+            task.cancel();
+        }
+        // 等待正在下载的任务结束, 之后才能清理和复用下载目录
+        try {
+            for (DownloadTask task : droppedTasks) {
+                task.finished.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         filter(hostId);
     }
 
@@ -139,7 +230,8 @@ public class BinlogDownloadQueue {
     }
 
     public void prepare() throws InterruptedException {
-        for (int i = this.currentSize; i < batchFileSize && !binlogList.isEmpty(); i++) {
+        int window = downloadWindow();
+        for (int i = this.currentSize; i < window && !binlogList.isEmpty(); i++) {
             BinlogFile binlogFile = null;
             while (!binlogList.isEmpty()) {
                 binlogFile = binlogList.poll();
@@ -151,14 +243,51 @@ public class BinlogDownloadQueue {
             if (binlogFile == null) {
                 break;
             }
-            this.downloadQueue.put(binlogFile);
+            DownloadTask task = new DownloadTask(binlogFile);
+            synchronized (inflightTasks) {
+                inflightTasks.add(task);
+            }
+            this.downloadQueue.put(task);
             this.lastDownload = "mysql-bin." + binlogFile.getFileName();
             this.currentSize++;
         }
     }
 
     public void downOne() {
+        downOne(null);
+    }
+
+    /**
+     * 解析完一个文件, 记录解析耗时
+     */
+    public void downOne(String fileName) {
         this.currentSize--;
+        long now = System.currentTimeMillis();
+        Long publishTime = fileName != null ? publishTimes.remove(fileName) : null;
+        // 只统计文件可用之后的解析时间, 不包含等待下载的时间
+        long start = Math.max(lastConsumeTime, publishTime != null ? publishTime : 0L);
+        if (start > 0) {
+            parseCostMillis = ewma(parseCostMillis, now - start);
+        }
+        lastConsumeTime = now;
+    }
+
+    /**
+     * 需要预下载的文件数, 保证下载中的文件足够覆盖下载耗时内的解析量
+     */
+    private int downloadWindow() {
+        long downloadCost = downloadCostMillis;
+        long parseCost = parseCostMillis;
+        if (downloadCost <= 0 || parseCost <= 0) {
+            return batchFileSize;
+        }
+
+        long window = (downloadCost + parseCost - 1) / parseCost + 1;
+        return (int) Math.max(1, Math.min(batchFileSize, window));
+    }
+
+    private static long ewma(long avg, long sample) {
+        return avg <= 0 ? sample : (avg * 3 + sample) / 4;
     }
 
     public void release() {
@@ -166,26 +295,28 @@ public class BinlogDownloadQueue {
         this.currentSize = 0;
         binlogList.clear();
         downloadQueue.clear();
+        synchronized (inflightTasks) {
+            inflightTasks.clear();
+        }
         try {
-            downloadThread.interrupt();
-            downloadThread.join();// 等待其结束
+            if (downloadThreads != null) {
+                for (Thread downloadThread : downloadThreads) {
+                    downloadThread.interrupt();
+                }
+                for (Thread downloadThread : downloadThreads) {
+                    downloadThread.join();// 等待其结束
+                }
+            }
         } catch (InterruptedException e) {
             // ignore
         } finally {
-            downloadThread = null;
+            downloadThreads = null;
+            IOUtils.closeQuietly(httpClient);
         }
     }
 
-    private void download(BinlogFile binlogFile) throws Throwable {
-        String downloadLink = binlogFile.getDownloadLink();
-        String fileName = binlogFile.getFileName();
-
-        downloadLink = downloadLink.trim();
-        CloseableHttpClient httpClient = null;
-        if (downloadLink.startsWith("https")) {
-            HttpClientBuilder builder = HttpClientBuilder.create();
-            builder.setMaxConnPerRoute(50);
-            builder.setMaxConnTotal(100);
+    private CloseableHttpClient buildHttpClient() throws IOException {
+        try {
             // 创建支持忽略证书的https
             final SSLContext sslContext = new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
 
@@ -195,17 +326,19 @@ public class BinlogDownloadQueue {
                 }
             }).build();
 
-            httpClient = HttpClientBuilder.create()
-                .setSSLContext(sslContext)
-                .setConnectionManager(new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory> create()
-                    .register("http", PlainConnectionSocketFactory.INSTANCE)
-                    .register("https", new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE))
-                    .build()))
-                .build();
-        } else {
-            httpClient = HttpClientBuilder.create().setMaxConnPerRoute(50).setMaxConnTotal(100).build();
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory> create()
+                .register("http", PlainConnectionSocketFactory.INSTANCE)
+                .register("https", new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE))
+                .build());
+            connectionManager.setDefaultMaxPerRoute(50);
+            connectionManager.setMaxTotal(100);
+            return HttpClientBuilder.create().setSSLContext(sslContext).setConnectionManager(connectionManager).build();
+        } catch (Exception e) {
+            throw new IOException(e);
         }
+    }
 
+    private HttpGet request(DownloadTask task, String downloadLink, long offset) {
         HttpGet httpGet = new HttpGet(downloadLink);
         RequestConfig requestConfig = RequestConfig.custom()
             .setConnectTimeout(TIMEOUT)
@@ -213,131 +346,214 @@ public class BinlogDownloadQueue {
             .setSocketTimeout(TIMEOUT)
             .build();
         httpGet.setConfig(requestConfig);
-        HttpResponse response = httpClient.execute(httpGet);
-        int statusCode = response.getStatusLine().getStatusCode();
-        if (statusCode != HttpResponseStatus.OK.code()) {
-            throw new RuntimeException("download failed , url:" + downloadLink + " , statusCode:" + statusCode);
+        if (offset > 0) {
+            httpGet.setHeader("Range", "bytes=" + offset + "-");
+        }
+        task.request = httpGet;
+        if (task.cancelled) {
+            // 任务已经被丢弃, 不再发起请求
+            httpGet.abort();
         }
-        saveFile(new File(destDir), "mysql-bin." + fileName, response);
+        return httpGet;
     }
 
-    private static void saveFile(File parentFile, String fileName, HttpResponse response) throws IOException {
-        InputStream is = response.getEntity().getContent();
-        long totalSize = Long.parseLong(response.getFirstHeader("Content-Length").getValue());
-        if (response.getFirstHeader("Content-Disposition") != null) {
-            fileName = response.getFirstHeader("Content-Disposition").getValue();
-            fileName = StringUtils.substringAfter(fileName, "filename=");
-        }
-        boolean isTar = StringUtils.endsWith(fileName, ".tar");
+    private void download(DownloadTask task) throws Throwable {
+        BinlogFile binlogFile = task.binlogFile;
+        String downloadLink = binlogFile.getDownloadLink().trim();
+        File parentFile = new File(destDir);
         FileUtils.forceMkdir(parentFile);
-        FileOutputStream fos = null;
+        File partFile = new File(parentFile, partialFileName(binlogFile));
+
+        long offset = partFile.isFile() ? partFile.length() : 0L;
+        HttpGet httpGet = request(task, downloadLink, offset);
         try {
+            HttpResponse response = httpClient.execute(httpGet);
+            int statusCode = response.getStatusLine().getStatusCode();
+            String fileName = responseFileName(response, "mysql-bin." + binlogFile.getFileName());
+            boolean isTar = StringUtils.endsWith(fileName, ".tar");
+            if (offset > 0 && (statusCode == HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE.code() || isTar)) {
+                // 服务端不认可已下载的部分, 或者是tar包无法从中间解压, 重新完整下载
+                httpGet.abort();
+                partFile.delete();
+                offset = 0;
+                httpGet = request(task, downloadLink, offset);
+                response = httpClient.execute(httpGet);
+                statusCode = response.getStatusLine().getStatusCode();
+                fileName = responseFileName(response, fileName);
+                isTar = StringUtils.endsWith(fileName, ".tar");
+            }
+
+            if (statusCode != HttpResponseStatus.OK.code()
+                && !(offset > 0 && statusCode == HttpResponseStatus.PARTIAL_CONTENT.code())) {
+                throw new RuntimeException("download failed , url:" + downloadLink + " , statusCode:" + statusCode);
+            }
+
+            InputStream is = response.getEntity().getContent();
             if (isTar) {
-                TarArchiveInputStream tais = new TarArchiveInputStream(is);
-                TarArchiveEntry tarArchiveEntry = null;
-                while ((tarArchiveEntry = tais.getNextTarEntry()) != null) {
-                    String name = tarArchiveEntry.getName();
-                    File tarFile = new File(parentFile, name + ".tmp");
-                    logger.info("start to download file " + tarFile.getName());
-                    if (tarFile.exists()) {
-                        tarFile.delete();
-                    }
-                    BufferedOutputStream bos = null;
-                    try {
-                        bos = new BufferedOutputStream(new FileOutputStream(tarFile));
-                        int read = -1;
-                        byte[] buffer = new byte[1024];
-                        while ((read = tais.read(buffer)) != -1) {
-                            bos.write(buffer, 0, read);
-                        }
-                        logger.info("download file " + tarFile.getName() + " end!");
-                        tarFile.renameTo(new File(parentFile, name));
-                    } finally {
-                        IOUtils.closeQuietly(bos);
-                    }
-                }
-                tais.close();
+                extractTar(parentFile, is, task);
             } else {
-                File file = new File(parentFile, fileName + ".tmp");
-                if (file.exists()) {
-                    file.delete();
-                }
+                // 服务端忽略range请求时, 从头开始下载
+                boolean append = statusCode == HttpResponseStatus.PARTIAL_CONTENT.code();
+                long totalSize = response.getEntity().getContentLength();
+                saveFile(partFile, is, append ? offset : 0L, totalSize);
+                task.renames.put(partFile, new File(parentFile, fileName));
+            }
+        } finally {
+            httpGet.releaseConnection();
+        }
+    }
+
+    static String partialFileName(BinlogFile binlogFile) {
+        return tmpFileName("mysql-bin." + binlogFile.getFileName(), binlogFile.getHostInstanceID());
+    }
+
+    /**
+     * 临时文件带上实例id, 避免切换实例后续传了其他实例的数据
+     */
+    private static String tmpFileName(String fileName, String hostInstanceId) {
+        return fileName + "." + StringUtils.defaultString(hostInstanceId) + TMP_SUFFIX;
+    }
+
+    private static String responseFileName(HttpResponse response, String defaultName) {
+        Header disposition = response.getFirstHeader("Content-Disposition");
+        if (disposition != null) {
+            return StringUtils.substringAfter(disposition.getValue(), "filename=");
+        }
+        return defaultName;
+    }
 
-                if (!file.isFile()) {
-                    file.createNewFile();
+    private static void extractTar(File parentFile, InputStream is, DownloadTask task) throws IOException {
+        TarArchiveInputStream tais = new TarArchiveInputStream(is);
+        try {
+            TarArchiveEntry tarArchiveEntry = null;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while ((tarArchiveEntry = tais.getNextTarEntry()) != null) {
+                String name = tarArchiveEntry.getName();
+                File tarFile = new File(parentFile, tmpFileName(name, task.binlogFile.getHostInstanceID()));
+                logger.info("start to download file " + tarFile.getName());
+                if (tarFile.exists()) {
+                    tarFile.delete();
                 }
+                BufferedOutputStream bos = null;
                 try {
-                    fos = new FileOutputStream(file);
-                    byte[] buffer = new byte[1024];
-                    int len;
-                    long copySize = 0;
-                    long nextPrintProgress = 0;
-                    logger.info("start to download file " + file.getName());
-                    while ((len = is.read(buffer)) != -1) {
-                        fos.write(buffer, 0, len);
-                        copySize += len;
-                        long progress = copySize * 100 / totalSize;
-                        if (progress >= nextPrintProgress) {
-                            logger.info("download " + file.getName() + " progress : " + progress
-                                        + "% , download size : " + copySize + ", total size : " + totalSize);
-                            nextPrintProgress += 10;
-                        }
+                    bos = new BufferedOutputStream(new FileOutputStream(tarFile), BUFFER_SIZE);
+                    int read = -1;
+                    while ((read = tais.read(buffer)) != -1) {
+                        bos.write(buffer, 0, read);
                     }
-                    logger.info("download file " + file.getName() + " end!");
-                    fos.flush();
+                    bos.flush();
+                    logger.info("download file " + tarFile.getName() + " end!");
+                    task.renames.put(tarFile, new File(parentFile, name));
                 } finally {
-                    IOUtils.closeQuietly(fos);
+                    IOUtils.closeQuietly(bos);
                 }
-                file.renameTo(new File(parentFile, fileName));
             }
+        } finally {
+            IOUtils.closeQuietly(tais);
+        }
+    }
+
+    private static void saveFile(File file, InputStream is, long offset, long contentLength) throws IOException {
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(file, offset > 0);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            long copySize = offset;
+            long totalSize = contentLength >= 0 ? offset + contentLength : -1;
+            long nextPrintProgress = 0;
+            if (offset > 0) {
+                logger.info("resume to download file " + file.getName() + " from " + offset);
+            } else {
+                logger.info("start to download file " + file.getName());
+            }
+            while ((len = is.read(buffer)) != -1) {
+                fos.write(buffer, 0, len);
+                copySize += len;
+                if (totalSize > 0) {
+                    long progress = copySize * 100 / totalSize;
+                    if (progress >= nextPrintProgress) {
+                        logger.info("download " + file.getName() + " progress : " + progress
+                                    + "% , download size : " + copySize + ", total size : " + totalSize);
+                        nextPrintProgress = progress - progress % 10 + 10;
+                    }
+                }
+            }
+            logger.info("download file " + file.getName() + " end!");
+            fos.flush();
         } finally {
             IOUtils.closeQuietly(fos);
         }
     }
 
+    /**
+     * 下载完成后, 按照binlog顺序发布已完成的文件
+     */
+    private void complete(DownloadTask task) {
+        synchronized (inflightTasks) {
+            task.done = true;
+            if (!inflightTasks.contains(task)) {
+                // 已经被丢弃的任务, 临时文件留给后续的cleanDir处理
+                return;
+            }
+
+            while (!inflightTasks.isEmpty() && inflightTasks.peek().done) {
+                DownloadTask head = inflightTasks.poll();
+                for (Map.Entry<File, File> entry : head.renames.entrySet()) {
+                    entry.getKey().renameTo(entry.getValue());
+                    publishTimes.put(entry.getValue().getName(), System.currentTimeMillis());
+                }
+            }
+        }
+    }
+
     public void execute(Runnable runnable) throws InterruptedException {
         taskQueue.put(runnable);
     }
 
+    /**
+     * 单个binlog文件的下载任务
+     */
+    private static class DownloadTask {
+
+        private final BinlogFile      binlogFile;
+        private final Map<File, File> renames   = new LinkedHashMap<File, File>(); // 临时文件 -> 正式文件
+        private final CountDownLatch  finished  = new CountDownLatch(1);           // 下载线程不再处理该任务
+        private boolean               done      = false;
+        private volatile boolean      cancelled = false;
+        private volatile HttpGet      request;
+
+        private DownloadTask(BinlogFile binlogFile){
+            this.binlogFile = binlogFile;
+        }
+
+        private void cancel() {
+            cancelled = true;
+            HttpGet httpGet = request;
+            if (httpGet != null) {
+                // 中断正在进行的下载
+                httpGet.abort();
+            }
+        }
+    }
+
     private class DownloadThread implements Runnable {
 
         @Override
         public void run() {
             while (running) {
-                BinlogFile binlogFile = null;
+                DownloadTask task = null;
                 try {
-                    binlogFile = downloadQueue.poll(5000, TimeUnit.MILLISECONDS);
-                    if (binlogFile != null) {
-                        int retry = 1;
-                        while (true) {
-                            try {
-                                download(binlogFile);
-                                break;
-                            } catch (Throwable e) {
-                                if (retry % 10 == 0) {
-                                    retry = retry + 1;
-                                    try {
-                                        logger.warn("download failed + " + binlogFile.toString() + "], retry : "
-                                                    + retry, e);
-                                        // File errorFile = new File(destDir,
-                                        // "error.txt");
-                                        // FileWriter writer = new
-                                        // FileWriter(errorFile);
-                                        // writer.write(ExceptionUtils.getFullStackTrace(e));
-                                        // writer.flush();
-                                        // IOUtils.closeQuietly(writer);
-                                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100 * retry));
-                                    } catch (Throwable e1) {
-                                        logger.error("write error failed", e1);
-                                    }
-                                } else {
-                                    retry = retry + 1;
-                                }
-                            }
+                    task = downloadQueue.poll(1000, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        try {
+                            process(task);
+                        } finally {
+                            task.finished.countDown();
                         }
                     }
 
-                    Runnable runnable = taskQueue.poll(5000, TimeUnit.MILLISECONDS);
+                    Runnable runnable = taskQueue.poll();
                     if (runnable != null) {
                         runnable.run();
                     }
@@ -347,5 +563,32 @@ public class BinlogDownloadQueue {
             }
 
         }
+
+        private void process(DownloadTask task) {
+            long start = System.currentTimeMillis();
+            int retry = 1;
+            while (running && !task.cancelled) {
+                try {
+                    download(task);
+                    break;
+                } catch (Throwable e) {
+                    if (retry % 10 == 0) {
+                        retry = retry + 1;
+                        try {
+                            logger.warn("download failed + " + task.binlogFile.toString() + "], retry : " + retry, e);
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100 * retry));
+                        } catch (Throwable e1) {
+                            logger.error("write error failed", e1);
+                        }
+                    } else {
+                        retry = retry + 1;
+                    }
+                }
+            }
+            if (running && !task.cancelled) {
+                downloadCostMillis = ewma(downloadCostMillis, System.currentTimeMillis() - start);
+                complete(task);
+            }
+        }
     }
 }
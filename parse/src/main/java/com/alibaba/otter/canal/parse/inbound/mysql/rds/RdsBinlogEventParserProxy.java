@@ -28,6 +28,9 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
     private String                    instanceId;                                             // rds实例id
     private String                    directory;                                              // binlog目录
     private int                       batchFileSize             = 4;                          // 最多下载的binlog文件数量
+    private int                       downloadThreadSize        = 2;                          // 并发下载的线程数
+    private boolean                   parallelDecode            = false;                      // 下载的binlog是否并行解码
+    private boolean                   useMmap                   = false;                      // 下载的binlog是否基于mmap读取
 
     private RdsLocalBinlogEventParser rdsLocalBinlogEventParser = null;
     private ExecutorService           executorService           = Executors.newSingleThreadExecutor(new ThreadFactory() {
@@ -79,6 +82,9 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setParallel(this.parallel);
             rdsLocalBinlogEventParser.setParallelBufferSize(this.parallelBufferSize);
             rdsLocalBinlogEventParser.setParallelThreadSize(this.parallelThreadSize);
+            rdsLocalBinlogEventParser.setDownloadThreadSize(downloadThreadSize);
+            rdsLocalBinlogEventParser.setParallelDecode(this.parallelDecode);
+            rdsLocalBinlogEventParser.setUseMmap(this.useMmap);
             rdsLocalBinlogEventParser.setFinishListener(new RdsLocalBinlogEventParser.ParseFinishListener() {
 
                 @Override
@@ -174,4 +180,16 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
         this.batchFileSize = batchFileSize;
     }
 
+    public void setDownloadThreadSize(int downloadThreadSize) {
+        this.downloadThreadSize = downloadThreadSize;
+    }
+
+    public void setParallelDecode(boolean parallelDecode) {
+        this.parallelDecode = parallelDecode;
+    }
+
+    public void setUseMmap(boolean useMmap) {
+        this.useMmap = useMmap;
+    }
+
 }
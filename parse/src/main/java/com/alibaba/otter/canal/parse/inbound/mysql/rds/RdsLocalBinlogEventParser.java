@@ -37,6 +37,7 @@ public class RdsLocalBinlogEventParser extends LocalBinlogEventParser implements
     private BinlogDownloadQueue binlogDownloadQueue;
     private ParseFinishListener finishListener;
     private int                 batchFileSize;
+    private int                 downloadThreadSize = 1;
 
     public RdsLocalBinlogEventParser(){
     }
@@ -73,7 +74,7 @@ public class RdsLocalBinlogEventParser extends LocalBinlogEventParser implements
                 throw new CanalParseException("start timestamp : " + startTimeInMill + " binlog files is empty");
             }
 
-            binlogDownloadQueue = new BinlogDownloadQueue(binlogFiles, batchFileSize, directory);
+            binlogDownloadQueue = new BinlogDownloadQueue(binlogFiles, batchFileSize, downloadThreadSize, directory);
             binlogDownloadQueue.silenceDownload();
             needWait = true;
             // try to download one file,use to test server id
@@ -165,7 +166,7 @@ public class RdsLocalBinlogEventParser extends LocalBinlogEventParser implements
     @Override
     public void onFinish(String fileName) {
         try {
-            binlogDownloadQueue.downOne();
+            binlogDownloadQueue.downOne(fileName);
             File needDeleteFile = new File(directory + File.separator + fileName);
             if (needDeleteFile.exists()) {
                 needDeleteFile.delete();
@@ -225,4 +226,8 @@ public class RdsLocalBinlogEventParser extends LocalBinlogEventParser implements
     public void setBatchFileSize(int batchFileSize) {
         this.batchFileSize = batchFileSize;
     }
+
+    public void setDownloadThreadSize(int downloadThreadSize) {
+        this.downloadThreadSize = downloadThreadSize;
+    }
 }
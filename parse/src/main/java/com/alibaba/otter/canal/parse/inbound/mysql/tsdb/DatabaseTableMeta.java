@@ -1,8 +1,14 @@
 package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
@@ -14,8 +20,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -24,6 +33,7 @@ import org.slf4j.MDC;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
 import com.alibaba.fastsql.sql.repository.Schema;
 import com.alibaba.otter.canal.filter.CanalEventFilter;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
@@ -43,6 +53,19 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
 /**
  * 基于db远程管理 see internal class: CanalTableMeta , ConsoleTableMetaTSDB
  *
+ * <pre>
+ * snapshot分为两种:
+ * 1. 全量snapshot, 记录所有表的建表语句
+ * 2. 增量snapshot, 只记录上一次全量snapshot之后变更过的表, extra中记录对应的全量snapshot时间, 开启snapshotDelta后变更表较少时优先生成增量snapshot
+ * 除了按snapshotInterval定时生成外, 距上次snapshot累计的DDL超过snapshotDdlThreshold时也会提前生成, 控制rollback时需要回放的DDL数量
+ *
+ * snapshot数据的格式:
+ * 1. 默认为明文json, extra中没有format标记
+ * 2. 开启snapshotCompress后使用gzip压缩, extra中记录format=gzip, 1.1.5之前的版本无法读取
+ * 3. 降级前需要关闭snapshotCompress和snapshotDelta并重启一次, rollback使用了压缩或者增量的snapshot时会立即重新生成一份明文的全量snapshot
+ * 4. 读取时遇到无法识别的format(更高版本写入), 跳过该snapshot继续往前找
+ * </pre>
+ *
  * @author agapple 2017年7月27日 下午10:47:55
  * @since 3.2.5
  */
@@ -52,6 +75,10 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private static Logger                   logger              = LoggerFactory.getLogger(DatabaseTableMeta.class);
     private static Pattern                  pattern             = Pattern.compile("Duplicate entry '.*' for key '*'");
     private static Pattern                  h2Pattern           = Pattern.compile("Unique index or primary key violation");
+    private static final Charset            UTF_8               = Charset.forName("UTF-8");
+    private static final String             COMPRESS_PREFIX     = "gz:";
+    private static final String             SNAPSHOT_TYPE_DELTA = "delta";
+    private static final String             SNAPSHOT_FORMAT_GZIP = "gzip";
     private static ScheduledExecutorService scheduler           = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
 
                                                                     @Override
@@ -77,7 +104,18 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private MetaSnapshotDAO                 metaSnapshotDAO;
     private int                             snapshotInterval    = 24;
     private int                             snapshotExpire      = 360;
+    private int                             snapshotDdlThreshold = 200;
     private ScheduledFuture<?>              scheduleSnapshotFuture;
+    private AtomicBoolean                   snapshotPending     = new AtomicBoolean(false);
+    private Map<List<String>, Long>         changedTables       = new HashMap<List<String>, Long>();                  // 上次全量snapshot之后变更过的表 -> DDL序号
+    private long                            ddlSequence;
+    private long                            fullSnapshotSequence = -1L;                                                 // 需要全量snapshot的DDL序号
+    private Long                            baseSnapshotTimestamp;                                                      // 最近一次全量snapshot的binlog时间
+    private int                             ddlCountSinceSnapshot;
+    private volatile boolean                standby;                                                                    // 热备模式, 不写入snapshot
+    private boolean                         snapshotCompress    = false;                                                // snapshot数据是否使用gzip压缩
+    private boolean                         snapshotDelta       = false;                                                // 是否生成增量snapshot, 1.1.5之前的版本无法读取
+    private boolean                         snapshotRewrite;                                                            // rollback使用了旧版本无法读取的snapshot, 需要重新生成明文的全量snapshot
 
     public DatabaseTableMeta(){
 
@@ -95,22 +133,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
 
                     @Override
                     public void run() {
-                        boolean applyResult = false;
-                        try {
-                            MDC.put("destination", destination);
-                            applyResult = applySnapshotToDB(lastPosition, false);
-                        } catch (Throwable e) {
-                            logger.error("scheudle applySnapshotToDB faield", e);
-                        }
-
-                        try {
-                            MDC.put("destination", destination);
-                            if (applyResult) {
-                                snapshotExpire((int) TimeUnit.HOURS.toSeconds(snapshotExpire));
-                            }
-                        } catch (Throwable e) {
-                            logger.error("scheudle snapshotExpire faield", e);
-                        }
+                        scheduleSnapshot();
                     }
                 }, snapshotInterval, snapshotInterval, TimeUnit.HOURS);
             }
@@ -118,6 +141,57 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         return true;
     }
 
+    private void scheduleSnapshot() {
+        if (standby) {
+            // 热备节点不写入snapshot, 由active节点负责
+            return;
+        }
+
+        boolean applyResult = false;
+        try {
+            MDC.put("destination", destination);
+            applyResult = applySnapshotToDB(lastPosition, false);
+        } catch (Throwable e) {
+            logger.error("scheudle applySnapshotToDB faield", e);
+        }
+
+        try {
+            MDC.put("destination", destination);
+            if (applyResult) {
+                snapshotExpire((int) TimeUnit.HOURS.toSeconds(snapshotExpire));
+            }
+        } catch (Throwable e) {
+            logger.error("scheudle snapshotExpire faield", e);
+        }
+    }
+
+    /**
+     * 距上次snapshot累计的DDL过多时提前生成snapshot, 避免rollback时回放大量DDL
+     */
+    private void triggerSnapshotIfNecessary() {
+        if (standby) {
+            return;
+        }
+
+        if (!snapshotRewrite && (snapshotDdlThreshold <= 0 || ddlCountSinceSnapshot < snapshotDdlThreshold)) {
+            return;
+        }
+
+        if (snapshotPending.compareAndSet(false, true)) {
+            scheduler.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        scheduleSnapshot();
+                    } finally {
+                        snapshotPending.set(false);
+                    }
+                }
+            });
+        }
+    }
+
     @Override
     public void destory() {
         if (memoryTableMeta != null) {
@@ -156,8 +230,12 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             if (memoryTableMeta.apply(position, schema, ddl, extra)) {
                 this.lastPosition = position;
                 this.hasNewDdl = true;
+                List<DdlResult> ddlResults = DruidDdlParser.parse(ddl, schema);
+                markChanged(ddlResults);
                 // 同步每次变更给远程做历史记录
-                return applyHistoryToDB(position, schema, ddl, extra);
+                boolean result = applyHistoryToDB(position, schema, ddl, extra, ddlResults);
+                triggerSnapshotIfNecessary();
+                return result;
             } else {
                 throw new RuntimeException("apply to memory is failed");
             }
@@ -168,26 +246,132 @@ public class DatabaseTableMeta implements TableMetaTSDB {
 
     @Override
     public boolean rollback(EntryPosition position) {
-        // 每次rollback需要重新构建一次memory data
-        this.memoryTableMeta = new MemoryTableMeta();
         boolean flag = false;
-        EntryPosition snapshotPosition = buildMemFromSnapshot(position);
-        if (snapshotPosition != null) {
-            applyHistoryOnMemory(snapshotPosition, position);
-            flag = true;
-        }
+        lock.writeLock().lock();
+        try {
+            // 每次rollback需要重新构建一次memory data
+            this.memoryTableMeta = new MemoryTableMeta();
+            this.changedTables.clear();
+            this.fullSnapshotSequence = ddlSequence;
+            this.baseSnapshotTimestamp = null;
+            this.ddlCountSinceSnapshot = 0;
+            this.snapshotRewrite = false;
+            EntryPosition snapshotPosition = buildMemFromSnapshot(position);
+            if (snapshotPosition != null) {
+                applyHistoryOnMemory(snapshotPosition, position);
+                if ((ddlCountSinceSnapshot > 0 || snapshotRewrite) && !standby) {
+                    // 回放过DDL或者需要重写snapshot, 内存结构对应rollback的位点
+                    this.lastPosition = position;
+                    this.hasNewDdl = true;
+                }
+                flag = true;
+            }
 
-        if (!flag) {
-            // 如果没有任何数据，则为初始化状态，全量dump一份关注的表
-            if (dumpTableMeta(connection, filter)) {
-                // 记录一下snapshot结果,方便快速恢复
-                flag = applySnapshotToDB(INIT_POSITION, true);
+            if (!flag) {
+                // 如果没有任何数据，则为初始化状态，全量dump一份关注的表
+                if (dumpTableMeta(connection, filter, blackFilter, memoryTableMeta)) {
+                    if (standby) {
+                        // 热备节点不记录snapshot, 由active节点负责
+                        flag = true;
+                    } else {
+                        // 记录一下snapshot结果,方便快速恢复
+                        flag = applySnapshotToDB(INIT_POSITION, true);
+                    }
+                }
             }
+        } finally {
+            lock.writeLock().unlock();
         }
 
+        triggerSnapshotIfNecessary();
         return flag;
     }
 
+    /**
+     * 在当前内存结构(对应from位点)的基础上回放(from, position]之间的DDL，用于热备时跟踪位点，避免每次都从snapshot重建
+     *
+     * @return false代表无法判断DDL与from位点的先后关系，需要走完整的rollback
+     */
+    @Override
+    public boolean rollforward(EntryPosition from, EntryPosition position) {
+        lock.writeLock().lock();
+        try {
+            List<MetaHistoryDO> metaHistoryDOList = metaHistoryDAO.findByTimestamp(destination,
+                from.getTimestamp(),
+                position.getTimestamp());
+            if (metaHistoryDOList == null) {
+                return true;
+            }
+
+            for (MetaHistoryDO metaHistoryDO : metaHistoryDOList) {
+                String binlogMasterId = metaHistoryDO.getBinlogMasterId();
+                EntryPosition historyPosition = new EntryPosition(metaHistoryDO.getBinlogFile(),
+                    metaHistoryDO.getBinlogOffest() == null ? 0L : metaHistoryDO.getBinlogOffest(),
+                    metaHistoryDO.getBinlogTimestamp() == null ? 0L : metaHistoryDO.getBinlogTimestamp(),
+                    Long.valueOf(binlogMasterId == null ? "-2" : binlogMasterId));
+
+                if (historyPosition.getTimestamp() > position.getTimestamp()) {
+                    continue;
+                } else if (ObjectUtils.equals(position.getServerId(), historyPosition.getServerId())
+                           && historyPosition.compareTo(position) > 0) {
+                    continue;
+                }
+
+                if (historyPosition.getTimestamp().equals(from.getTimestamp())) {
+                    if (!ObjectUtils.equals(from.getServerId(), historyPosition.getServerId())) {
+                        return false;
+                    } else if (historyPosition.compareTo(from) <= 0) {
+                        // 已经回放过
+                        continue;
+                    }
+                }
+
+                if (!memoryTableMeta.apply(historyPosition,
+                    metaHistoryDO.getUseSchema(),
+                    metaHistoryDO.getSqlText(),
+                    null)) {
+                    return false;
+                }
+                markChanged(DruidDdlParser.parse(metaHistoryDO.getSqlText(), metaHistoryDO.getUseSchema()));
+                if (!standby) {
+                    this.lastPosition = position;
+                    this.hasNewDdl = true;
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            throw new CanalParseException("apply failed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 记录DDL影响的表, 用于生成增量snapshot
+     */
+    private void markChanged(List<DdlResult> ddlResults) {
+        ddlSequence++;
+        ddlCountSinceSnapshot++;
+        for (DdlResult ddlResult : ddlResults) {
+            for (DdlResult result = ddlResult; result != null; result = result.getRenameTableResult()) {
+                if (StringUtils.isEmpty(result.getSchemaName()) || StringUtils.isEmpty(result.getTableName())) {
+                    // 库级别或者无法识别的DDL, 下一次生成全量snapshot
+                    fullSnapshotSequence = ddlSequence;
+                    continue;
+                }
+                changedTables.put(Arrays.asList(result.getSchemaName(), result.getTableName()), ddlSequence);
+                if (StringUtils.isNotEmpty(result.getOriTableName())) {
+                    if (StringUtils.isEmpty(result.getOriSchemaName())) {
+                        fullSnapshotSequence = ddlSequence;
+                    } else {
+                        changedTables.put(Arrays.asList(result.getOriSchemaName(), result.getOriTableName()),
+                            ddlSequence);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public Map<String, String> snapshot() {
         return memoryTableMeta.snapshot();
@@ -196,7 +380,8 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     /**
      * 初始化的时候dump一下表结构
      */
-    private boolean dumpTableMeta(MysqlConnection connection, final CanalEventFilter filter) {
+    static boolean dumpTableMeta(MysqlConnection connection, CanalEventFilter filter, CanalEventFilter blackFilter,
+                                 MemoryTableMeta memoryTableMeta) {
         try {
             ResultSetPacket packet = connection.query("show databases");
             List<String> schemas = new ArrayList<String>();
@@ -244,7 +429,8 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         }
     }
 
-    private boolean applyHistoryToDB(EntryPosition position, String schema, String ddl, String extra) {
+    private boolean applyHistoryToDB(EntryPosition position, String schema, String ddl, String extra,
+                                     List<DdlResult> ddlResults) {
         Map<String, String> content = new HashMap<String, String>();
         content.put("destination", destination);
         content.put("binlogFile", position.getJournalName());
@@ -256,7 +442,6 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             throw new RuntimeException("apply failed caused by content is empty in applyHistoryToDB");
         }
         // 待补充
-        List<DdlResult> ddlResults = DruidDdlParser.parse(ddl, schema);
         if (ddlResults.size() > 0) {
             DdlResult ddlResult = ddlResults.get(0);
             content.put("sqlSchema", ddlResult.getSchemaName());
@@ -291,21 +476,51 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private boolean applySnapshotToDB(EntryPosition position, boolean init) {
         // 获取一份快照
         Map<String, String> schemaDdls = null;
-        lock.readLock().lock();
+        Map<String, Map<String, String>> tableDdls = null; // 增量snapshot, schema -> table -> ddl, 表被删除时ddl为空
+        Long baseTimestamp = null;
+        long sequence;
+        // 会修改hasNewDdl等状态, 需要写锁
+        lock.writeLock().lock();
         try {
             if (!init && !hasNewDdl) {
                 // 如果是持续构建,则识别一下是否有DDL变更过,如果没有就忽略了
                 return false;
             }
             this.hasNewDdl = false;
-            schemaDdls = memoryTableMeta.snapshot();
+            this.ddlCountSinceSnapshot = 0;
+            if (!init && lastPosition != null) {
+                // 保证位点和内存结构一致
+                position = lastPosition;
+            }
+            sequence = ddlSequence;
+            if (snapshotDelta && !init && fullSnapshotSequence < 0 && baseSnapshotTimestamp != null
+                && position.getTimestamp() > baseSnapshotTimestamp
+                && changedTables.size() * 2 < memoryTableMeta.tableCount()) {
+                baseTimestamp = baseSnapshotTimestamp;
+                tableDdls = new HashMap<String, Map<String, String>>();
+                for (List<String> key : changedTables.keySet()) {
+                    String ddl = memoryTableMeta.snapshot(key.get(0), key.get(1));
+                    Map<String, String> tables = tableDdls.get(key.get(0));
+                    if (tables == null) {
+                        tables = new HashMap<String, String>();
+                        tableDdls.put(key.get(0), tables);
+                    }
+                    tables.put(key.get(1), ddl == null ? "" : ddl);
+                }
+            } else {
+                schemaDdls = memoryTableMeta.snapshot();
+            }
         } finally {
-            lock.readLock().unlock();
+            lock.writeLock().unlock();
         }
 
         MemoryTableMeta tmpMemoryTableMeta = new MemoryTableMeta();
-        for (Map.Entry<String, String> entry : schemaDdls.entrySet()) {
-            tmpMemoryTableMeta.apply(position, entry.getKey(), entry.getValue(), null);
+        if (tableDdls != null) {
+            applyTableDdls(tmpMemoryTableMeta, position, tableDdls);
+        } else {
+            for (Map.Entry<String, String> entry : schemaDdls.entrySet()) {
+                tmpMemoryTableMeta.apply(position, entry.getKey(), entry.getValue(), null);
+            }
         }
 
         // 基于临时内存对象进行对比
@@ -332,7 +547,23 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             content.put("binlogOffest", String.valueOf(position.getPosition()));
             content.put("binlogMasterId", String.valueOf(position.getServerId()));
             content.put("binlogTimestamp", String.valueOf(position.getTimestamp()));
-            content.put("data", JSON.toJSONString(schemaDdls));
+            JSONObject extra = new JSONObject();
+            String data;
+            if (tableDdls != null) {
+                extra.put("type", SNAPSHOT_TYPE_DELTA);
+                extra.put("base", baseTimestamp);
+                data = JSON.toJSONString(tableDdls);
+            } else {
+                data = JSON.toJSONString(schemaDdls);
+            }
+            if (snapshotCompress) {
+                extra.put("format", SNAPSHOT_FORMAT_GZIP);
+                data = encodeSnapshotData(data);
+            }
+            content.put("data", data);
+            if (!extra.isEmpty()) {
+                content.put("extra", extra.toJSONString());
+            }
             if (content.isEmpty()) {
                 throw new RuntimeException("apply failed caused by content is empty in applySnapshotToDB");
             }
@@ -349,6 +580,26 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                     throw new CanalParseException("apply failed caused by : " + e.getMessage(), e);
                 }
             }
+
+            if (tableDdls == null) {
+                lock.writeLock().lock();
+                try {
+                    // 全量snapshot之后, 只需要保留snapshot之后新变更的表
+                    this.baseSnapshotTimestamp = position.getTimestamp();
+                    Iterator<Long> iterator = changedTables.values().iterator();
+                    while (iterator.hasNext()) {
+                        if (iterator.next() <= sequence) {
+                            iterator.remove();
+                        }
+                    }
+                    if (fullSnapshotSequence <= sequence) {
+                        this.fullSnapshotSequence = -1L;
+                    }
+                    this.snapshotRewrite = false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
             return true;
         } else {
             logger.error("compare failed , check log");
@@ -356,6 +607,104 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         return false;
     }
 
+    /**
+     * 按表应用增量snapshot, 先删除再重建
+     */
+    static void applyTableDdls(MemoryTableMeta memoryTableMeta, EntryPosition position,
+                               Map<String, Map<String, String>> tableDdls) {
+        for (Map.Entry<String, Map<String, String>> schema : tableDdls.entrySet()) {
+            for (Map.Entry<String, String> table : schema.getValue().entrySet()) {
+                memoryTableMeta.apply(position, schema.getKey(), "DROP TABLE IF EXISTS `" + table.getKey() + "`", null);
+                if (StringUtils.isNotEmpty(table.getValue())) {
+                    memoryTableMeta.apply(position, schema.getKey(), table.getValue(), null);
+                }
+            }
+        }
+    }
+
+    /**
+     * snapshot数据使用gzip压缩后base64编码存储
+     */
+    static String encodeSnapshotData(String data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length() / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(data.getBytes(UTF_8));
+        } catch (IOException e) {
+            throw new CanalParseException(e);
+        }
+        return COMPRESS_PREFIX + Base64.getEncoder().encodeToString(output.toByteArray());
+    }
+
+    static String decodeSnapshotData(String data) {
+        if (data == null || !data.startsWith(COMPRESS_PREFIX)) {
+            // 兼容未压缩的snapshot
+            return data;
+        }
+        byte[] bytes = Base64.getDecoder().decode(data.substring(COMPRESS_PREFIX.length()));
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return IOUtils.toString(input, UTF_8.name());
+        } catch (IOException e) {
+            throw new CanalParseException(e);
+        }
+    }
+
+    /**
+     * 按extra中的format标记读取snapshot数据
+     *
+     * @return 无法识别的format返回null
+     */
+    static String readSnapshotData(MetaSnapshotDO snapshotDO) {
+        String format = parseExtra(snapshotDO).getString("format");
+        if (format == null) {
+            // 没有format标记的为明文json, 兼容没有标记但带有gz:前缀的数据
+            return decodeSnapshotData(snapshotDO.getData());
+        } else if (SNAPSHOT_FORMAT_GZIP.equals(format)) {
+            String data = snapshotDO.getData();
+            if (data == null || !data.startsWith(COMPRESS_PREFIX)) {
+                throw new CanalParseException("snapshot of " + snapshotDO.getBinlogTimestamp()
+                                              + " is marked as gzip but data is not compressed");
+            }
+            return decodeSnapshotData(data);
+        } else {
+            return null;
+        }
+    }
+
+    static boolean isReadable(MetaSnapshotDO snapshotDO) {
+        String format = parseExtra(snapshotDO).getString("format");
+        return format == null || SNAPSHOT_FORMAT_GZIP.equals(format);
+    }
+
+    static boolean isCompressed(MetaSnapshotDO snapshotDO) {
+        return SNAPSHOT_FORMAT_GZIP.equals(parseExtra(snapshotDO).getString("format"))
+               || (snapshotDO.getData() != null && snapshotDO.getData().startsWith(COMPRESS_PREFIX));
+    }
+
+    /**
+     * @return 增量snapshot对应的全量snapshot时间, 全量snapshot返回null
+     */
+    private static Long getDeltaBase(MetaSnapshotDO snapshotDO) {
+        JSONObject extra = parseExtra(snapshotDO);
+        if (SNAPSHOT_TYPE_DELTA.equals(extra.getString("type"))) {
+            return extra.getLong("base");
+        }
+        return null;
+    }
+
+    private static JSONObject parseExtra(MetaSnapshotDO snapshotDO) {
+        if (StringUtils.isNotEmpty(snapshotDO.getExtra())) {
+            try {
+                JSONObject extra = JSON.parseObject(snapshotDO.getExtra());
+                if (extra != null) {
+                    return extra;
+                }
+            } catch (Throwable e) {
+                logger.warn("unknown snapshot extra : " + snapshotDO.getExtra());
+            }
+        }
+        return new JSONObject();
+    }
+
     private boolean compareTableMetaDbAndMemory(MysqlConnection connection, MemoryTableMeta memoryTableMeta,
                                                 final String schema, final String table) {
         TableMeta tableMetaFromMem = memoryTableMeta.find(schema, table);
@@ -401,6 +750,29 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private EntryPosition buildMemFromSnapshot(EntryPosition position) {
         try {
             MetaSnapshotDO snapshotDO = metaSnapshotDAO.findByTimestamp(destination, position.getTimestamp());
+            MetaSnapshotDO baseSnapshotDO = null;
+            while (snapshotDO != null) {
+                if (!isReadable(snapshotDO)) {
+                    // 更高版本写入的snapshot, 继续往前找
+                    logger.warn("unknown format of snapshot " + snapshotDO.getBinlogTimestamp() + ", skip it");
+                    snapshotDO = metaSnapshotDAO.findByTimestamp(destination, snapshotDO.getBinlogTimestamp());
+                    continue;
+                }
+                Long base = getDeltaBase(snapshotDO);
+                if (base == null) {
+                    break;
+                }
+                // 增量snapshot需要基于对应的全量snapshot
+                baseSnapshotDO = metaSnapshotDAO.findByTimestamp(destination, base + 1);
+                if (baseSnapshotDO != null && isReadable(baseSnapshotDO) && getDeltaBase(baseSnapshotDO) == null
+                    && base.equals(baseSnapshotDO.getBinlogTimestamp())) {
+                    break;
+                }
+                // 全量snapshot已过期, 继续往前找
+                logger.warn("base snapshot of " + snapshotDO.getBinlogTimestamp() + " is not found, skip it");
+                baseSnapshotDO = null;
+                snapshotDO = metaSnapshotDAO.findByTimestamp(destination, snapshotDO.getBinlogTimestamp());
+            }
             if (snapshotDO == null) {
                 return null;
             }
@@ -414,7 +786,8 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 binlogTimestamp == null ? 0l : binlogTimestamp,
                 Long.valueOf(binlogMasterId == null ? "-2" : binlogMasterId));
             // data存储为Map<String,String>，每个分库一套建表
-            String sqlData = snapshotDO.getData();
+            MetaSnapshotDO fullSnapshotDO = baseSnapshotDO != null ? baseSnapshotDO : snapshotDO;
+            String sqlData = readSnapshotData(fullSnapshotDO);
             JSONObject jsonObj = JSON.parseObject(sqlData);
             for (Map.Entry entry : jsonObj.entrySet()) {
                 // 记录到内存
@@ -426,6 +799,23 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 }
             }
 
+            if (baseSnapshotDO != null) {
+                // 增量snapshot存储为Map<String,Map<String,String>>，每个表一个建表
+                Map<String, Map<String, String>> tableDdls = JSON.parseObject(readSnapshotData(snapshotDO),
+                    new TypeReference<Map<String, Map<String, String>>>() {
+                    });
+                applyTableDdls(memoryTableMeta, snapshotPosition, tableDdls);
+                for (Map.Entry<String, Map<String, String>> schema : tableDdls.entrySet()) {
+                    for (String table : schema.getValue().keySet()) {
+                        changedTables.put(Arrays.asList(schema.getKey(), table), ddlSequence);
+                    }
+                }
+            }
+            this.baseSnapshotTimestamp = fullSnapshotDO.getBinlogTimestamp();
+            // 关闭压缩或者增量snapshot后, 使用了对应snapshot需要尽快重新生成一份明文的全量snapshot, 保证可以降级
+            this.snapshotRewrite = (!snapshotCompress && (isCompressed(snapshotDO) || isCompressed(fullSnapshotDO)))
+                                   || (!snapshotDelta && baseSnapshotDO != null);
+            this.fullSnapshotSequence = snapshotRewrite ? ddlSequence : -1L;
             return snapshotPosition;
         } catch (Throwable e) {
             throw new CanalParseException("apply failed caused by : " + e.getMessage(), e);
@@ -465,6 +855,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 if (!memoryTableMeta.apply(snapshotPosition, useSchema, sqlData, null)) {
                     return false;
                 }
+                markChanged(DruidDdlParser.parse(sqlData, useSchema));
 
             }
 
@@ -626,6 +1017,12 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     }
 
     private int snapshotExpire(int expireTimestamp) {
+        Long base = baseSnapshotTimestamp;
+        if (base != null && base > 0) {
+            // 保留当前增量snapshot依赖的全量snapshot
+            long baseExpire = (System.currentTimeMillis() - base) / 1000 + 1;
+            expireTimestamp = (int) Math.min(Integer.MAX_VALUE, Math.max(expireTimestamp, baseExpire));
+        }
         return metaSnapshotDAO.deleteByTimestamp(destination, expireTimestamp);
     }
 
@@ -681,6 +1078,35 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         this.snapshotExpire = snapshotExpire;
     }
 
+    public int getSnapshotDdlThreshold() {
+        return snapshotDdlThreshold;
+    }
+
+    public void setSnapshotDdlThreshold(int snapshotDdlThreshold) {
+        this.snapshotDdlThreshold = snapshotDdlThreshold;
+    }
+
+    public boolean isSnapshotCompress() {
+        return snapshotCompress;
+    }
+
+    public void setSnapshotCompress(boolean snapshotCompress) {
+        this.snapshotCompress = snapshotCompress;
+    }
+
+    public boolean isSnapshotDelta() {
+        return snapshotDelta;
+    }
+
+    public void setSnapshotDelta(boolean snapshotDelta) {
+        this.snapshotDelta = snapshotDelta;
+    }
+
+    @Override
+    public void setStandby(boolean standby) {
+        this.standby = standby;
+    }
+
     public MysqlConnection getConnection() {
         return connection;
     }
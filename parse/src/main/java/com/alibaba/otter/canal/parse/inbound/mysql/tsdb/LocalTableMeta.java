@@ -0,0 +1,563 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.otter.canal.filter.CanalEventFilter;
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.MysqlConnection;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+/**
+ * 基于本地文件的表结构时间序列存储
+ *
+ * <pre>
+ * 1. DDL和snapshot按顺序追加写入同一个日志文件, 每行一条json记录, 不依赖外部数据库
+ * 2. 内存中只保留每条记录的位点及其在文件中的偏移, rollback时按位点找到最近的snapshot, 再读取之后的DDL回放
+ * 3. 距上次snapshot累计的DDL超过snapshotDdlThreshold时写入新的snapshot, snapshot数量超过maxSnapshots时截掉较早的日志
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class LocalTableMeta implements TableMetaTSDB {
+
+    private static final Logger      logger               = LoggerFactory.getLogger(LocalTableMeta.class);
+    private static final Charset     UTF_8                = Charset.forName("UTF-8");
+    private static final String      LOG_FILE             = "table_meta.log";
+    private static final String      TYPE_DDL             = "ddl";
+    private static final String      TYPE_SNAPSHOT        = "snapshot";
+
+    private ReadWriteLock            lock                 = new ReentrantReadWriteLock();
+    private AtomicBoolean            initialized          = new AtomicBoolean(false);
+    private String                   destination;
+    private MemoryTableMeta          memoryTableMeta;
+    private volatile MysqlConnection connection;                                                   // 查询meta信息的链接
+    private CanalEventFilter         filter;
+    private CanalEventFilter         blackFilter;
+    private String                   dataDir;
+    private int                      snapshotDdlThreshold = 200;
+    private int                      maxSnapshots         = 5;
+    private volatile boolean         standby;                                                      // 热备模式, 不写入snapshot
+
+    private File                     logFile;
+    private OutputStream             output;
+    private long                     logLength;
+    private long                     sequence;
+    private List<Record>             records              = new ArrayList<Record>();             // 按写入顺序排列的索引
+    private Set<String>              positions            = new HashSet<String>();               // 日志中DDL记录的位点, 用于去重, 随compact清理
+    private int                      snapshotCount;
+    private int                      ddlCountSinceSnapshot;
+
+    public LocalTableMeta(){
+
+    }
+
+    @Override
+    public boolean init(String destination) {
+        if (initialized.compareAndSet(false, true)) {
+            this.destination = destination;
+            this.memoryTableMeta = new MemoryTableMeta();
+            if (StringUtils.isEmpty(dataDir)) {
+                throw new CanalParseException("dataDir is required for local table meta of " + destination);
+            }
+            File dir = new File(dataDir);
+            try {
+                FileUtils.forceMkdir(dir);
+                this.logFile = new File(dir, LOG_FILE);
+                load();
+                this.output = new BufferedOutputStream(new FileOutputStream(logFile, true));
+            } catch (IOException e) {
+                throw new CanalParseException("init local table meta failed : " + logFile, e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void destory() {
+        lock.writeLock().lock();
+        try {
+            if (memoryTableMeta != null) {
+                memoryTableMeta.destory();
+            }
+            // 之后的apply会重新打开
+            IOUtils.closeQuietly(output);
+            output = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (connection != null) {
+            try {
+                connection.disconnect();
+            } catch (IOException e) {
+                logger.error("ERROR # disconnect meta connection for address:{}", connection.getConnector()
+                    .getAddress(), e);
+            }
+        }
+    }
+
+    @Override
+    public TableMeta find(String schema, String table) {
+        lock.readLock().lock();
+        try {
+            return memoryTableMeta.find(schema, table);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean apply(EntryPosition position, String schema, String ddl, String extra) {
+        lock.writeLock().lock();
+        try {
+            if (!memoryTableMeta.apply(position, schema, ddl, extra)) {
+                throw new RuntimeException("apply to memory is failed");
+            }
+
+            // 写入日志成功后才会记录位点, 失败的DDL重试时不会被当成重复
+            if (positions.contains(positionKey(position))) {
+                // 忽略掉重复的位点
+                logger.warn("dup apply for sql : " + ddl);
+                return true;
+            }
+
+            JSONObject record = newRecord(TYPE_DDL, position);
+            record.put("schema", schema);
+            record.put("ddl", ddl);
+            record.put("extra", extra);
+            append(record, position);
+            ddlCountSinceSnapshot++;
+            if (snapshotDdlThreshold > 0 && ddlCountSinceSnapshot >= snapshotDdlThreshold) {
+                applySnapshot(position);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new CanalParseException("apply history to local file failed caused by : " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean rollback(EntryPosition position) {
+        lock.writeLock().lock();
+        try {
+            // 每次rollback需要重新构建一次memory data
+            this.memoryTableMeta = new MemoryTableMeta();
+            this.ddlCountSinceSnapshot = 0;
+            Record snapshot = findSnapshot(position.getTimestamp());
+            if (snapshot != null) {
+                JSONObject data = JSON.parseObject(DatabaseTableMeta.decodeSnapshotData(read(snapshot).getString("data")));
+                for (Map.Entry<String, Object> entry : data.entrySet()) {
+                    if (!memoryTableMeta.apply(snapshot.position, entry.getKey(), ObjectUtils.toString(entry.getValue()), null)) {
+                        return false;
+                    }
+                }
+                applyHistoryOnMemory(snapshot, position);
+                if (!standby && snapshotDdlThreshold > 0 && ddlCountSinceSnapshot >= snapshotDdlThreshold) {
+                    // 回放的DDL过多, 以rollback位点记录一份snapshot
+                    applySnapshot(position);
+                }
+                return true;
+            }
+
+            // 如果没有任何数据，则为初始化状态，全量dump一份关注的表
+            if (DatabaseTableMeta.dumpTableMeta(connection, filter, blackFilter, memoryTableMeta)) {
+                if (!standby) {
+                    // 记录一下snapshot结果,方便快速恢复
+                    applySnapshot(DatabaseTableMeta.INIT_POSITION);
+                }
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new CanalParseException("rollback from local file failed caused by : " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在当前内存结构(对应from位点)的基础上回放(from, position]之间的DDL，用于热备时跟踪位点，避免每次都从snapshot重建
+     *
+     * @return false代表无法判断DDL与from位点的先后关系，需要走完整的rollback
+     */
+    @Override
+    public boolean rollforward(EntryPosition from, EntryPosition position) {
+        lock.writeLock().lock();
+        try {
+            List<Record> histories = new ArrayList<Record>();
+            for (Record record : records) {
+                EntryPosition historyPosition = record.position;
+                if (record.snapshot || historyPosition.getTimestamp() < from.getTimestamp()) {
+                    continue;
+                } else if (historyPosition.getTimestamp().equals(from.getTimestamp())) {
+                    if (!ObjectUtils.equals(from.getServerId(), historyPosition.getServerId())) {
+                        return false;
+                    } else if (historyPosition.compareTo(from) <= 0) {
+                        // 已经回放过
+                        continue;
+                    }
+                }
+                histories.add(record);
+            }
+            return applyHistoryOnMemory(histories, position);
+        } catch (IOException e) {
+            throw new CanalParseException("rollforward from local file failed caused by : " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, String> snapshot() {
+        lock.readLock().lock();
+        try {
+            return memoryTableMeta.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void applyHistoryOnMemory(Record snapshot, EntryPosition rollbackPosition) throws IOException {
+        // snapshot可能是rollback到较早位点时写入的, 不能按写入顺序过滤, 需要对比binlog位点
+        EntryPosition snapshotPosition = snapshot.position;
+        List<Record> histories = new ArrayList<Record>();
+        for (Record record : records) {
+            if (record.snapshot || record.position.getTimestamp() < snapshotPosition.getTimestamp()) {
+                continue;
+            } else if (record.position.getTimestamp().equals(snapshotPosition.getTimestamp())
+                       && ObjectUtils.equals(record.position.getServerId(), snapshotPosition.getServerId())
+                       && record.position.compareTo(snapshotPosition) <= 0) {
+                // 同一秒内已经包含在snapshot中的DDL
+                continue;
+            }
+            histories.add(record);
+        }
+        applyHistoryOnMemory(histories, rollbackPosition);
+    }
+
+    /**
+     * 按时间顺序回放不晚于position的DDL
+     *
+     * @return false代表有DDL回放失败
+     */
+    private boolean applyHistoryOnMemory(List<Record> histories, EntryPosition position) throws IOException {
+        // 和基于db的实现保持一致, 按时间排序回放
+        Collections.sort(histories, new Comparator<Record>() {
+
+            @Override
+            public int compare(Record o1, Record o2) {
+                int result = o1.position.getTimestamp().compareTo(o2.position.getTimestamp());
+                return result != 0 ? result : Long.compare(o1.sequence, o2.sequence);
+            }
+        });
+
+        boolean result = true;
+        RandomAccessFile file = new RandomAccessFile(logFile, "r");
+        try {
+            for (Record history : histories) {
+                EntryPosition historyPosition = history.position;
+                // 如果是同一秒内,对比一下history的位点，如果比期望的位点要大，忽略之
+                if (historyPosition.getTimestamp() > position.getTimestamp()) {
+                    continue;
+                } else if (ObjectUtils.equals(position.getServerId(), historyPosition.getServerId())
+                           && historyPosition.compareTo(position) > 0) {
+                    continue;
+                }
+
+                JSONObject record = read(file, history);
+                result &= memoryTableMeta.apply(historyPosition,
+                    record.getString("schema"),
+                    record.getString("ddl"),
+                    null);
+                ddlCountSinceSnapshot++;
+            }
+        } finally {
+            file.close();
+        }
+        return result;
+    }
+
+    /**
+     * 查找早于timestamp的最近一份snapshot
+     */
+    private Record findSnapshot(Long timestamp) {
+        Record result = null;
+        for (Record record : records) {
+            if (record.snapshot && record.position.getTimestamp() < timestamp) {
+                if (result == null || record.position.getTimestamp() >= result.position.getTimestamp()) {
+                    result = record;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void applySnapshot(EntryPosition position) throws IOException {
+        JSONObject record = newRecord(TYPE_SNAPSHOT, position);
+        record.put("data", DatabaseTableMeta.encodeSnapshotData(JSON.toJSONString(memoryTableMeta.snapshot())));
+        append(record, position);
+        ddlCountSinceSnapshot = 0;
+        if (maxSnapshots > 0 && snapshotCount > maxSnapshots * 2) {
+            compact();
+        }
+    }
+
+    private JSONObject newRecord(String type, EntryPosition position) {
+        JSONObject record = new JSONObject();
+        record.put("type", type);
+        record.put("binlogFile", position.getJournalName());
+        record.put("binlogOffest", position.getPosition());
+        record.put("binlogMasterId", position.getServerId());
+        record.put("binlogTimestamp", position.getTimestamp());
+        return record;
+    }
+
+    private void append(JSONObject record, EntryPosition position) throws IOException {
+        if (output == null) {
+            output = new BufferedOutputStream(new FileOutputStream(logFile, true));
+        }
+        byte[] bytes = record.toJSONString().getBytes(UTF_8);
+        output.write(bytes);
+        output.write('\n');
+        // 只刷到操作系统, 不做fsync
+        output.flush();
+        index(record.getString("type"), position, logLength, bytes.length);
+        logLength += bytes.length + 1;
+    }
+
+    private void index(String type, EntryPosition position, long offset, int length) {
+        Record record = new Record();
+        record.snapshot = TYPE_SNAPSHOT.equals(type);
+        record.position = position;
+        record.offset = offset;
+        record.length = length;
+        record.sequence = sequence++;
+        records.add(record);
+        if (record.snapshot) {
+            snapshotCount++;
+        } else {
+            positions.add(positionKey(position));
+        }
+    }
+
+    private JSONObject read(Record record) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(logFile, "r");
+        try {
+            return read(file, record);
+        } finally {
+            file.close();
+        }
+    }
+
+    private JSONObject read(RandomAccessFile file, Record record) throws IOException {
+        byte[] bytes = new byte[record.length];
+        file.seek(record.offset);
+        file.readFully(bytes);
+        return JSON.parseObject(new String(bytes, UTF_8));
+    }
+
+    /**
+     * 加载日志文件重建索引, 末尾不完整的记录会被截掉
+     */
+    private void load() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+
+        long offset = 0;
+        InputStream input = new BufferedInputStream(new FileInputStream(logFile));
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+            int b;
+            while ((b = input.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                byte[] bytes = line.toByteArray();
+                line.reset();
+                JSONObject record;
+                try {
+                    record = JSON.parseObject(new String(bytes, UTF_8));
+                } catch (Throwable e) {
+                    logger.warn("skip broken table meta record at {} of {}", offset, logFile.getPath());
+                    break;
+                }
+                index(record.getString("type"), toPosition(record), offset, bytes.length);
+                offset += bytes.length + 1;
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+
+        if (offset < logFile.length()) {
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(offset);
+            } finally {
+                file.close();
+            }
+        }
+        logLength = offset;
+        logger.info("load {} table meta records of {} from {}", records.size(), destination, logFile.getPath());
+    }
+
+    /**
+     * 只保留最近maxSnapshots份snapshot及其之后的DDL
+     */
+    private void compact() throws IOException {
+        Record first = null;
+        int count = 0;
+        for (int i = records.size() - 1; i >= 0; i--) {
+            if (records.get(i).snapshot && ++count == maxSnapshots) {
+                first = records.get(i);
+                break;
+            }
+        }
+        if (first == null || first.offset == 0) {
+            return;
+        }
+
+        File tmp = new File(logFile.getPath() + ".tmp");
+        RandomAccessFile source = new RandomAccessFile(logFile, "r");
+        OutputStream target = new BufferedOutputStream(new FileOutputStream(tmp));
+        try {
+            source.seek(first.offset);
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = source.read(buffer)) != -1) {
+                target.write(buffer, 0, n);
+            }
+        } finally {
+            IOUtils.closeQuietly(target);
+            source.close();
+        }
+
+        IOUtils.closeQuietly(output);
+        if (!tmp.renameTo(logFile)) {
+            FileUtils.copyFile(tmp, logFile);
+            FileUtils.deleteQuietly(tmp);
+        }
+        output = new BufferedOutputStream(new FileOutputStream(logFile, true));
+
+        // 被截掉的DDL不再参与去重
+        List<Record> remains = new ArrayList<Record>(records.subList(records.indexOf(first), records.size()));
+        records.clear();
+        positions.clear();
+        snapshotCount = 0;
+        for (Record record : remains) {
+            record.offset -= first.offset;
+            records.add(record);
+            if (record.snapshot) {
+                snapshotCount++;
+            } else {
+                positions.add(positionKey(record.position));
+            }
+        }
+        logLength -= first.offset;
+        logger.info("compact table meta log of {} , remain {} records", destination, records.size());
+    }
+
+    private static EntryPosition toPosition(JSONObject record) {
+        Long binlogOffest = record.getLong("binlogOffest");
+        Long binlogMasterId = record.getLong("binlogMasterId");
+        Long binlogTimestamp = record.getLong("binlogTimestamp");
+        return new EntryPosition(record.getString("binlogFile"),
+            binlogOffest == null ? 0L : binlogOffest,
+            binlogTimestamp == null ? 0L : binlogTimestamp,
+            binlogMasterId == null ? -2L : binlogMasterId);
+    }
+
+    private static String positionKey(EntryPosition position) {
+        return position.getJournalName() + ":" + position.getPosition() + ":" + position.getServerId();
+    }
+
+    public void setConnection(MysqlConnection connection) {
+        this.connection = connection;
+    }
+
+    public MysqlConnection getConnection() {
+        return connection;
+    }
+
+    public void setFilter(CanalEventFilter filter) {
+        this.filter = filter;
+    }
+
+    public void setBlackFilter(CanalEventFilter blackFilter) {
+        this.blackFilter = blackFilter;
+    }
+
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public int getSnapshotDdlThreshold() {
+        return snapshotDdlThreshold;
+    }
+
+    public void setSnapshotDdlThreshold(int snapshotDdlThreshold) {
+        this.snapshotDdlThreshold = snapshotDdlThreshold;
+    }
+
+    public int getMaxSnapshots() {
+        return maxSnapshots;
+    }
+
+    public void setMaxSnapshots(int maxSnapshots) {
+        this.maxSnapshots = maxSnapshots;
+    }
+
+    @Override
+    public void setStandby(boolean standby) {
+        this.standby = standby;
+    }
+
+    /**
+     * 日志记录的索引
+     */
+    private static class Record {
+
+        private boolean       snapshot;
+        private EntryPosition position;
+        private long          offset;  // 在文件中的偏移
+        private int           length;
+        private long          sequence; // 写入顺序
+    }
+}
@@ -157,6 +157,40 @@ public class MemoryTableMeta implements TableMetaTSDB {
         return schemaDdls;
     }
 
+    /**
+     * 单表的建表语句, 用于增量snapshot
+     *
+     * @return 表不存在时返回null
+     */
+    public String snapshot(String schema, String table) {
+        synchronized (this) {
+            Schema schemaRep = repository.findSchema(schema);
+            if (schemaRep == null) {
+                return null;
+            }
+            SchemaObject data = schemaRep.findTable(table);
+            if (data == null || data.getStatement() == null) {
+                return null;
+            }
+            StringBuffer ddl = new StringBuffer(1024);
+            data.getStatement().output(ddl);
+            return ddl.toString();
+        }
+    }
+
+    /**
+     * 当前维护的表数量
+     */
+    public int tableCount() {
+        int count = 0;
+        synchronized (this) {
+            for (Schema schema : repository.getSchemas()) {
+                count += schema.showTables().size();
+            }
+        }
+        return count;
+    }
+
     private TableMeta parse(SQLCreateTableStatement statement) {
         int size = statement.getTableElementList().size();
         if (size > 0) {
@@ -43,4 +43,19 @@ public interface TableMetaTSDB {
      */
     public Map<String/* schema */, String> snapshot();
 
+    /**
+     * 在当前表结构(对应from位点)的基础上回放(from, position]之间的DDL，用于热备时跟踪位点
+     *
+     * @return false代表无法增量回放，需要走完整的rollback
+     */
+    public default boolean rollforward(EntryPosition from, EntryPosition position) {
+        return false;
+    }
+
+    /**
+     * 设置热备模式，热备时只读取历史DDL和snapshot重建表结构，不写入snapshot，避免和active节点冲突
+     */
+    public default void setStandby(boolean standby) {
+    }
+
 }
@@ -40,7 +40,7 @@ public class MetaSnapshotDAO extends MetaBaseDAO {
      */
     public Integer deleteByTimestamp(String destination, int interval) {
         HashMap params = Maps.newHashMapWithExpectedSize(2);
-        long timestamp = System.currentTimeMillis() - interval * 1000;
+        long timestamp = System.currentTimeMillis() - interval * 1000L;
         params.put("timestamp", timestamp);
         params.put("destination", destination);
         return getSqlMapClientTemplate().delete("meta_snapshot.deleteByTimestamp", params);
@@ -0,0 +1,214 @@
+package com.alibaba.otter.canal.parse.index;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.utils.JsonUtils;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+/**
+ * binlog时间索引, 用于按时间戳快速定位binlog位点
+ *
+ * <pre>
+ * 1. 解析过程中按binlog时间间隔采样记录事务边界的位点(file, position, timestamp, gtid)
+ * 2. 按时间查找时, 根据稀疏的采样点确定目标时间所在的binlog文件范围, 避免从最新的binlog逐个往前扫描
+ * 3. 采样点以追加方式写入文件, 超过容量时保留较新的一半并重写
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class BinlogTimestampIndex {
+
+    private static final Logger                    logger         = LoggerFactory.getLogger(BinlogTimestampIndex.class);
+    private static final Charset                   charset        = Charset.forName("UTF-8");
+    private static final String                    INDEX_FILE     = "binlog_timestamp.idx";
+
+    private final long                             intervalMillis;                                                       // 采样间隔
+    private final int                              maxCheckpoints;                                                       // 最大采样点数
+    private final File                             dataFile;                                                             // 持久化文件, 为空时只保存在内存
+
+    private final NavigableMap<Long, EntryPosition> checkpoints   = new TreeMap<Long, EntryPosition>();
+    private long                                   lastTimestamp  = -1L;
+    private String                                 lastJournal;
+    private Writer                                 writer;
+
+    public BinlogTimestampIndex(File dataDir, String destination, long intervalMillis, int maxCheckpoints){
+        this.intervalMillis = intervalMillis;
+        this.maxCheckpoints = maxCheckpoints;
+        if (dataDir != null) {
+            File dir = StringUtils.isEmpty(destination) ? dataDir : new File(dataDir, destination);
+            if (!dir.exists()) {
+                try {
+                    FileUtils.forceMkdir(dir);
+                } catch (IOException e) {
+                    throw new IllegalStateException("create binlog timestamp index dir error: " + dir, e);
+                }
+            }
+            this.dataFile = new File(dir, INDEX_FILE);
+            load();
+        } else {
+            this.dataFile = null;
+        }
+    }
+
+    /**
+     * 记录一个事务边界位点, 按采样间隔过滤; binlog文件切换后的第一个位点总是记录
+     */
+    public synchronized void record(EntryPosition position) {
+        if (position == null || position.getTimestamp() == null || position.getJournalName() == null) {
+            return;
+        }
+        long timestamp = position.getTimestamp();
+        boolean newJournal = !StringUtils.equals(lastJournal, position.getJournalName());
+        if (!newJournal && timestamp < lastTimestamp + intervalMillis) {
+            return;
+        }
+        lastTimestamp = timestamp;
+        lastJournal = position.getJournalName();
+        put(position);
+        append(position);
+        if (checkpoints.size() > maxCheckpoints) {
+            compact();
+        }
+    }
+
+    /**
+     * 查找时间早于timestamp的最近一个采样点
+     */
+    public synchronized EntryPosition floor(long timestamp) {
+        Map.Entry<Long, EntryPosition> entry = checkpoints.lowerEntry(timestamp);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * 查找时间不早于timestamp的最早一个采样点
+     */
+    public synchronized EntryPosition ceiling(long timestamp) {
+        Map.Entry<Long, EntryPosition> entry = checkpoints.ceilingEntry(timestamp);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * binlog被清理或者切换了数据库, 丢弃已有采样点
+     */
+    public synchronized void clear() {
+        checkpoints.clear();
+        lastTimestamp = -1L;
+        lastJournal = null;
+        closeWriter();
+        if (dataFile != null) {
+            FileUtils.deleteQuietly(dataFile);
+        }
+    }
+
+    public synchronized int size() {
+        return checkpoints.size();
+    }
+
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    private void put(EntryPosition position) {
+        // 同一时间只保留最早的位点, 保证floor结果早于目标时间
+        if (!checkpoints.containsKey(position.getTimestamp())) {
+            checkpoints.put(position.getTimestamp(), position);
+        }
+    }
+
+    private void load() {
+        if (!dataFile.exists()) {
+            return;
+        }
+        try {
+            for (String line : FileUtils.readLines(dataFile, charset.name())) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                try {
+                    put(JsonUtils.unmarshalFromString(line, EntryPosition.class));
+                } catch (Exception e) {
+                    // 最后一行可能因为宕机只写了一半
+                    logger.warn("skip broken binlog timestamp index line: {}", line);
+                }
+            }
+            if (!checkpoints.isEmpty()) {
+                EntryPosition last = checkpoints.lastEntry().getValue();
+                lastTimestamp = last.getTimestamp();
+                lastJournal = last.getJournalName();
+            }
+            logger.info("load {} binlog timestamp checkpoints from {}", checkpoints.size(), dataFile.getPath());
+        } catch (IOException e) {
+            logger.warn("load binlog timestamp index error, ignore it: " + dataFile.getPath(), e);
+        }
+    }
+
+    private void append(EntryPosition position) {
+        if (dataFile == null) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(dataFile, true), charset));
+            }
+            writer.write(JsonUtils.marshalToString(position));
+            writer.write('\n');
+            // 采样点很稀疏, 每次直接刷盘
+            writer.flush();
+        } catch (IOException e) {
+            logger.warn("append binlog timestamp index error: " + dataFile.getPath(), e);
+            closeWriter();
+        }
+    }
+
+    private void compact() {
+        List<Long> keys = new ArrayList<Long>(checkpoints.keySet());
+        for (Long key : keys.subList(0, keys.size() - maxCheckpoints / 2)) {
+            checkpoints.remove(key);
+        }
+        if (dataFile == null) {
+            return;
+        }
+        closeWriter();
+        File tmp = new File(dataFile.getPath() + ".tmp");
+        StringBuilder content = new StringBuilder();
+        for (EntryPosition position : checkpoints.values()) {
+            content.append(JsonUtils.marshalToString(position)).append('\n');
+        }
+        try {
+            FileUtils.writeStringToFile(tmp, content.toString(), charset.name());
+            if (!tmp.renameTo(dataFile)) {
+                FileUtils.copyFile(tmp, dataFile);
+                FileUtils.deleteQuietly(tmp);
+            }
+        } catch (IOException e) {
+            logger.warn("compact binlog timestamp index error: " + dataFile.getPath(), e);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            writer = null;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.concurrent.TimeUnit;
 import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
 import com.alibaba.otter.canal.protocol.position.Position;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
 import com.alibaba.otter.canal.store.CanalStoreException;
 import com.alibaba.otter.canal.store.model.Event;
 import com.alibaba.otter.canal.store.model.Events;
@@ -52,6 +53,15 @@ public class DummyEventStore implements CanalEventStore<Event> {
         return null;
     }
 
+    public void addAvailableListener(Position start, int batchSize, CanalEventStoreListener listener)
+                                                                                            throws CanalStoreException {
+
+    }
+
+    public boolean removeAvailableListener(CanalEventStoreListener listener) throws CanalStoreException {
+        return false;
+    }
+
     public boolean isStart() {
         return false;
     }
@@ -0,0 +1,69 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.SinkFunction;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+
+public class ParallelLogDecoderTest {
+
+    @Test
+    public void testSameAsSerial() throws IOException {
+        File file = new File(getClass().getClassLoader().getResource("binlog/mysql-bin.000001").getFile());
+        List<LogEvent> expected = new ArrayList<LogEvent>();
+        FileLogFetcher fetcher = new FileLogFetcher(16 * 1024);
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition(file.getName()));
+        try {
+            fetcher.open(file, 4L);
+            while (fetcher.fetch()) {
+                LogEvent event = decoder.decode(fetcher, context);
+                if (event != null) {
+                    expected.add(event);
+                }
+            }
+        } finally {
+            fetcher.close();
+        }
+
+        final List<LogEvent> actual = new ArrayList<LogEvent>();
+        ParallelLogDecoder parallelDecoder = new ParallelLogDecoder("test", 4, 2, 0);
+        fetcher = new FileLogFetcher(16 * 1024);
+        try {
+            fetcher.open(file, 4L);
+            parallelDecoder.open(file.getName());
+            SinkFunction<LogEvent> sink = new SinkFunction<LogEvent>() {
+
+                public boolean sink(LogEvent event) {
+                    actual.add(event);
+                    return true;
+                }
+            };
+            while (fetcher.fetch()) {
+                Assert.assertTrue(parallelDecoder.offer(fetcher, sink));
+            }
+            Assert.assertTrue(parallelDecoder.flush(sink));
+        } finally {
+            parallelDecoder.stop();
+            fetcher.close();
+        }
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+            Assert.assertEquals(expected.get(i).getLogPos(), actual.get(i).getLogPos());
+            Assert.assertEquals(file.getName(), actual.get(i).getHeader().getLogFileName());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.rds;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.mysql.rds.data.BinlogFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class BinlogDownloadQueueTest {
+
+    private HttpServer          server;
+    private File                dir;
+    private Map<String, byte[]> contents = new ConcurrentHashMap<String, byte[]>();
+    private List<String>        ranges   = Collections.synchronizedList(new ArrayList<String>());
+    private CountDownLatch      started  = new CountDownLatch(1);
+    private CountDownLatch      blocked  = new CountDownLatch(1);
+    private volatile String     blockPath;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("rds").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                byte[] content = contents.get(path);
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                int offset = 0;
+                if (range != null) {
+                    ranges.add(path + ":" + range);
+                    offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                }
+                exchange.sendResponseHeaders(range != null ? 206 : 200, content.length - offset);
+                OutputStream os = exchange.getResponseBody();
+                try {
+                    if (path.equals(blockPath)) {
+                        // 只返回一半的数据, 模拟下载中的文件
+                        os.write(content, offset, (content.length - offset) / 2);
+                        os.flush();
+                        started.countDown();
+                        blocked.await(10, TimeUnit.SECONDS);
+                        return;
+                    }
+                    os.write(content, offset, content.length - offset);
+                } catch (Exception e) {
+                    // client aborted
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        blocked.countDown();
+        server.stop(0);
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void testResumeWithRange() throws Throwable {
+        BinlogFile binlogFile = binlogFile("A", "000001");
+        // 同一实例下载了一部分的文件, 需要续传
+        File partFile = new File(dir, "mysql-bin.000001.A.tmp");
+        FileUtils.writeByteArrayToFile(partFile, Arrays.copyOf(contents.get("/A/mysql-bin.000001"), 100));
+        // 其他实例的同名文件, 不能被续传
+        File otherFile = new File(dir, "mysql-bin.000001.B.tmp");
+        FileUtils.writeByteArrayToFile(otherFile, new byte[100]);
+
+        BinlogDownloadQueue queue = new BinlogDownloadQueue(Arrays.asList(binlogFile), 2, dir.getPath());
+        try {
+            Assert.assertEquals("mysql-bin.000001.A.tmp", BinlogDownloadQueue.partialFileName(binlogFile));
+            Assert.assertTrue(partFile.exists());
+            Assert.assertFalse(otherFile.exists());
+
+            queue.tryOne();
+            Assert.assertEquals(Arrays.asList("/A/mysql-bin.000001:bytes=100-"), ranges);
+            Assert.assertArrayEquals(contents.get("/A/mysql-bin.000001"),
+                FileUtils.readFileToByteArray(new File(dir, "mysql-bin.000001")));
+            Assert.assertFalse(partFile.exists());
+        } finally {
+            queue.release();
+        }
+    }
+
+    @Test
+    public void testHostSwitch() throws Throwable {
+        List<BinlogFile> binlogFiles = Arrays.asList(binlogFile("A", "000001"),
+            binlogFile("A", "000002"),
+            binlogFile("B", "000003"));
+        blockPath = "/A/mysql-bin.000002";
+
+        BinlogDownloadQueue queue = new BinlogDownloadQueue(binlogFiles, 2, 1, dir.getPath());
+        try {
+            queue.silenceDownload();
+            queue.tryOne();
+            queue.prepare();
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // 丢弃实例A正在下载的文件, 返回时下载线程已经不再写入
+            queue.notifyNotMatch();
+            File partFile = new File(dir, "mysql-bin.000002.A.tmp");
+            long size = partFile.length();
+            blocked.countDown();
+            Thread.sleep(200);
+            Assert.assertEquals(size, partFile.length());
+            Assert.assertFalse(new File(dir, "mysql-bin.000002").exists());
+
+            queue.cleanDir();
+            BinlogFile binlogFile = queue.tryOne();
+            Assert.assertEquals("B", binlogFile.getHostInstanceID());
+            Assert.assertEquals(Arrays.asList("mysql-bin.000003"), Arrays.asList(dir.list()));
+            Assert.assertArrayEquals(contents.get("/B/mysql-bin.000003"),
+                FileUtils.readFileToByteArray(new File(dir, "mysql-bin.000003")));
+        } finally {
+            queue.release();
+        }
+    }
+
+    private BinlogFile binlogFile(String hostInstanceId, String fileName) {
+        String path = "/" + hostInstanceId + "/mysql-bin." + fileName;
+        byte[] content = new byte[64 * 1024 * 4];
+        Arrays.fill(content, (byte) (hostInstanceId.charAt(0) + fileName.charAt(fileName.length() - 1)));
+        contents.put(path, content);
+
+        BinlogFile binlogFile = new BinlogFile();
+        binlogFile.setHostInstanceID(hostInstanceId);
+        binlogFile.setDownloadLink("http://127.0.0.1:" + server.getAddress().getPort() + path + "?expires=0");
+        return binlogFile;
+    }
+}
@@ -0,0 +1,112 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DatabaseTableMetaSnapshotTest.MemoryHistoryDAO;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DatabaseTableMetaSnapshotTest.MemorySnapshotDAO;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.dao.MetaHistoryDO;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.dao.MetaSnapshotDO;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+public class DatabaseTableMetaRollforwardTest {
+
+    private MemorySnapshotDAO snapshots;
+    private MemoryHistoryDAO  histories;
+
+    @Before
+    public void setUp() {
+        snapshots = new MemorySnapshotDAO();
+        histories = new MemoryHistoryDAO();
+        MetaSnapshotDO snapshotDO = new MetaSnapshotDO();
+        snapshotDO.setDestination("test");
+        snapshotDO.setBinlogFile("mysql-bin.000001");
+        snapshotDO.setBinlogOffest(4L);
+        snapshotDO.setBinlogMasterId("1");
+        snapshotDO.setBinlogTimestamp(1000L);
+        snapshotDO.setData("{\"test\":\"create table a (id int primary key);\"}");
+        snapshots.insert(snapshotDO);
+    }
+
+    @Test
+    public void testRollforwardSameTimestamp() {
+        histories.insert(history("alter table a add column b int", 100L, 2000L, "1"));
+        histories.insert(history("alter table a add column c int", 300L, 2000L, "1"));
+
+        DatabaseTableMeta tableMeta = tableMeta(true);
+        EntryPosition from = position(200L, 2000L, 1L);
+        Assert.assertTrue(tableMeta.rollback(from));
+        Assert.assertNotNull(tableMeta.find("test", "a").getFieldMetaByName("b"));
+        Assert.assertNull(tableMeta.find("test", "a").getFieldMetaByName("c"));
+
+        // 与from同一秒的DDL, 只回放from之后的部分
+        Assert.assertTrue(tableMeta.rollforward(from, position(500L, 3000L, 1L)));
+        Assert.assertEquals(3, tableMeta.find("test", "a").getFields().size());
+        Assert.assertNotNull(tableMeta.find("test", "a").getFieldMetaByName("c"));
+    }
+
+    @Test
+    public void testRollforwardWithOtherServerId() {
+        histories.insert(history("alter table a add column b int", 100L, 2000L, "1"));
+        histories.insert(history("alter table a add column c int", 300L, 2000L, "2"));
+
+        DatabaseTableMeta tableMeta = tableMeta(true);
+        EntryPosition from = position(200L, 2000L, 1L);
+        Assert.assertTrue(tableMeta.rollback(from));
+
+        // 同一秒内其他serverId的DDL无法判断先后, 需要走完整的rollback
+        Assert.assertFalse(tableMeta.rollforward(from, position(500L, 3000L, 1L)));
+    }
+
+    @Test
+    public void testTakeoverFromWarmedPosition() {
+        histories.insert(history("alter table a add column b int", 100L, 2000L, "1"));
+        histories.insert(history("create table d (id int primary key)", 100L, 2500L, "1"));
+        histories.insert(history("alter table a add column c int", 300L, 3000L, "1"));
+
+        // standby节点预热到warm位点, 切换为active后从warm位点回放到启动位点
+        EntryPosition warm = position(200L, 2000L, 1L);
+        EntryPosition start = position(500L, 3000L, 1L);
+        DatabaseTableMeta tableMeta = tableMeta(true);
+        Assert.assertTrue(tableMeta.rollback(warm));
+        Assert.assertNull(tableMeta.find("test", "d"));
+        tableMeta.setStandby(false);
+        Assert.assertTrue(tableMeta.rollforward(warm, start));
+
+        DatabaseTableMeta expected = tableMeta(true);
+        Assert.assertTrue(expected.rollback(start));
+        for (String table : new String[] { "a", "d" }) {
+            TableMeta expectedMeta = expected.find("test", table);
+            Assert.assertNotNull(expectedMeta);
+            Assert.assertEquals(String.valueOf(expectedMeta), String.valueOf(tableMeta.find("test", table)));
+        }
+    }
+
+    private DatabaseTableMeta tableMeta(boolean standby) {
+        DatabaseTableMeta tableMeta = new DatabaseTableMeta();
+        tableMeta.setMetaSnapshotDAO(snapshots);
+        tableMeta.setMetaHistoryDAO(histories);
+        tableMeta.setSnapshotInterval(0);
+        tableMeta.setStandby(standby);
+        tableMeta.init("test");
+        return tableMeta;
+    }
+
+    private static EntryPosition position(long offset, long timestamp, long serverId) {
+        return new EntryPosition("mysql-bin.000001", offset, timestamp, serverId);
+    }
+
+    private static MetaHistoryDO history(String ddl, Long offset, Long timestamp, String serverId) {
+        MetaHistoryDO historyDO = new MetaHistoryDO();
+        historyDO.setDestination("test");
+        historyDO.setBinlogFile("mysql-bin.000001");
+        historyDO.setBinlogOffest(offset);
+        historyDO.setBinlogMasterId(serverId);
+        historyDO.setBinlogTimestamp(timestamp);
+        historyDO.setUseSchema("test");
+        historyDO.setSqlText(ddl);
+        return historyDO;
+    }
+}
@@ -0,0 +1,217 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.dao.MetaHistoryDAO;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.dao.MetaHistoryDO;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.dao.MetaSnapshotDAO;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.dao.MetaSnapshotDO;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+public class DatabaseTableMetaSnapshotTest {
+
+    @Test
+    public void testEncodeSnapshotData() {
+        String data = "{\"test\":\"CREATE TABLE `a` (\\n\\t`id` int(11) NOT NULL\\n); \\n\"}";
+        String encoded = DatabaseTableMeta.encodeSnapshotData(data);
+        Assert.assertTrue(encoded.startsWith("gz:"));
+        Assert.assertEquals(data, DatabaseTableMeta.decodeSnapshotData(encoded));
+        // 兼容未压缩的snapshot
+        Assert.assertEquals(data, DatabaseTableMeta.decodeSnapshotData(data));
+    }
+
+    @Test
+    public void testReadSnapshotData() {
+        String data = "{\"test\":\"CREATE TABLE `a` (\\n\\t`id` int(11) NOT NULL\\n); \\n\"}";
+        // 明文snapshot没有format标记
+        MetaSnapshotDO plain = snapshot(data, null);
+        Assert.assertTrue(DatabaseTableMeta.isReadable(plain));
+        Assert.assertFalse(DatabaseTableMeta.isCompressed(plain));
+        Assert.assertEquals(data, DatabaseTableMeta.readSnapshotData(plain));
+
+        MetaSnapshotDO compressed = snapshot(DatabaseTableMeta.encodeSnapshotData(data),
+            "{\"type\":\"delta\",\"base\":1000,\"format\":\"gzip\"}");
+        Assert.assertTrue(DatabaseTableMeta.isReadable(compressed));
+        Assert.assertTrue(DatabaseTableMeta.isCompressed(compressed));
+        Assert.assertEquals(data, DatabaseTableMeta.readSnapshotData(compressed));
+
+        // 没有format标记但带有压缩前缀
+        MetaSnapshotDO unmarked = snapshot(DatabaseTableMeta.encodeSnapshotData(data), null);
+        Assert.assertTrue(DatabaseTableMeta.isCompressed(unmarked));
+        Assert.assertEquals(data, DatabaseTableMeta.readSnapshotData(unmarked));
+
+        // 更高版本写入的未知格式
+        MetaSnapshotDO unknown = snapshot("xxx", "{\"format\":\"zstd\"}");
+        Assert.assertFalse(DatabaseTableMeta.isReadable(unknown));
+        Assert.assertNull(DatabaseTableMeta.readSnapshotData(unknown));
+    }
+
+    @Test
+    public void testApplyTableDdls() {
+        EntryPosition position = new EntryPosition("mysql-bin.000001", 4L, 1000L, 1L);
+        MemoryTableMeta full = new MemoryTableMeta();
+        full.apply(position, "test", "create table a (id int primary key, name varchar(32))", null);
+        full.apply(position, "test", "create table b (id int primary key)", null);
+        full.apply(position, "test", "create table c (id int primary key)", null);
+        Assert.assertEquals(3, full.tableCount());
+
+        MemoryTableMeta current = new MemoryTableMeta();
+        for (Map.Entry<String, String> entry : full.snapshot().entrySet()) {
+            current.apply(position, entry.getKey(), entry.getValue(), null);
+        }
+        current.apply(position, "test", "alter table a add column age int", null);
+        current.apply(position, "test", "drop table b", null);
+
+        Map<String, String> tables = new HashMap<String, String>();
+        tables.put("a", current.snapshot("test", "a"));
+        tables.put("b", "");
+        Map<String, Map<String, String>> tableDdls = new HashMap<String, Map<String, String>>();
+        tableDdls.put("test", tables);
+        Assert.assertNull(current.snapshot("test", "b"));
+
+        // 全量snapshot + 增量snapshot
+        DatabaseTableMeta.applyTableDdls(full, position, tableDdls);
+        Assert.assertEquals(2, full.tableCount());
+        Assert.assertNotNull(full.find("test", "a").getFieldMetaByName("age"));
+        Assert.assertNull(full.find("test", "b"));
+        Assert.assertNotNull(full.find("test", "c"));
+    }
+
+    @Test
+    public void testRollbackWithDeltaSnapshot() {
+        String full = "{\"test\":\"create table a (id int primary key, name varchar(32)); "
+                      + "create table b (id int primary key); create table c (id int primary key); "
+                      + "create table d (id int primary key);\"}";
+        String full2 = "{\"test\":\"create table a (id int primary key, name varchar(32), age int); "
+                       + "create table c (id int primary key); create table d (id int primary key);\"}";
+        String delta = "{\"test\":{\"a\":\"create table a (id int primary key, name varchar(32), age int)\",\"b\":\"\"}}";
+
+        MemorySnapshotDAO deltaSnapshots = new MemorySnapshotDAO();
+        deltaSnapshots.insert(snapshot(full, 1000L, null));
+        deltaSnapshots.insert(snapshot(delta, 2000L, "{\"type\":\"delta\",\"base\":1000}"));
+        MemorySnapshotDAO fullSnapshots = new MemorySnapshotDAO();
+        fullSnapshots.insert(snapshot(full, 1000L, null));
+        fullSnapshots.insert(snapshot(full2, 2000L, null));
+
+        MemoryHistoryDAO history = new MemoryHistoryDAO();
+        history.insert(history("alter table a add column age int", 1500L));
+        history.insert(history("drop table b", 1500L));
+        history.insert(history("create table e (id int primary key)", 2500L));
+
+        EntryPosition position = new EntryPosition("mysql-bin.000001", 5000L, 3000L, 1L);
+        DatabaseTableMeta fromDelta = tableMeta(deltaSnapshots, history);
+        DatabaseTableMeta fromFull = tableMeta(fullSnapshots, history);
+        Assert.assertTrue(fromDelta.rollback(position));
+        Assert.assertTrue(fromFull.rollback(position));
+
+        for (String table : new String[] { "a", "b", "c", "d", "e" }) {
+            TableMeta expected = fromFull.find("test", table);
+            TableMeta actual = fromDelta.find("test", table);
+            Assert.assertEquals(String.valueOf(expected), String.valueOf(actual));
+        }
+        Assert.assertNotNull(fromDelta.find("test", "a").getFieldMetaByName("age"));
+        Assert.assertNull(fromDelta.find("test", "b"));
+        Assert.assertNotNull(fromDelta.find("test", "e"));
+    }
+
+    private static DatabaseTableMeta tableMeta(MetaSnapshotDAO metaSnapshotDAO, MetaHistoryDAO metaHistoryDAO) {
+        DatabaseTableMeta tableMeta = new DatabaseTableMeta();
+        tableMeta.setMetaSnapshotDAO(metaSnapshotDAO);
+        tableMeta.setMetaHistoryDAO(metaHistoryDAO);
+        tableMeta.setSnapshotInterval(0);
+        // 不写入snapshot, 避免访问数据库
+        tableMeta.setStandby(true);
+        tableMeta.init("test");
+        return tableMeta;
+    }
+
+    private static MetaSnapshotDO snapshot(String data, Long timestamp, String extra) {
+        MetaSnapshotDO snapshotDO = snapshot(data, extra);
+        snapshotDO.setDestination("test");
+        snapshotDO.setBinlogFile("mysql-bin.000001");
+        snapshotDO.setBinlogOffest(4L);
+        snapshotDO.setBinlogMasterId("1");
+        snapshotDO.setBinlogTimestamp(timestamp);
+        return snapshotDO;
+    }
+
+    private static MetaHistoryDO history(String ddl, Long timestamp) {
+        MetaHistoryDO historyDO = new MetaHistoryDO();
+        historyDO.setDestination("test");
+        historyDO.setBinlogFile("mysql-bin.000001");
+        historyDO.setBinlogOffest(timestamp);
+        historyDO.setBinlogMasterId("1");
+        historyDO.setBinlogTimestamp(timestamp);
+        historyDO.setUseSchema("test");
+        historyDO.setSqlText(ddl);
+        return historyDO;
+    }
+
+    private static MetaSnapshotDO snapshot(String data, String extra) {
+        MetaSnapshotDO snapshotDO = new MetaSnapshotDO();
+        snapshotDO.setBinlogTimestamp(1000L);
+        snapshotDO.setData(data);
+        snapshotDO.setExtra(extra);
+        return snapshotDO;
+    }
+
+    /**
+     * 按binlog时间查找的内存snapshot存储
+     */
+    @SuppressWarnings("deprecation")
+    static class MemorySnapshotDAO extends MetaSnapshotDAO {
+
+        private final List<MetaSnapshotDO> snapshots = new ArrayList<MetaSnapshotDO>();
+
+        @Override
+        public Long insert(MetaSnapshotDO snapshotDO) {
+            snapshots.add(snapshotDO);
+            return (long) snapshots.size();
+        }
+
+        @Override
+        public MetaSnapshotDO findByTimestamp(String destination, Long timestamp) {
+            MetaSnapshotDO result = null;
+            for (MetaSnapshotDO snapshotDO : snapshots) {
+                if (snapshotDO.getBinlogTimestamp() < timestamp
+                    && (result == null || snapshotDO.getBinlogTimestamp() >= result.getBinlogTimestamp())) {
+                    result = snapshotDO;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 按binlog时间查找的内存DDL历史存储
+     */
+    @SuppressWarnings("deprecation")
+    static class MemoryHistoryDAO extends MetaHistoryDAO {
+
+        private final List<MetaHistoryDO> histories = new ArrayList<MetaHistoryDO>();
+
+        @Override
+        public Long insert(MetaHistoryDO metaDO) {
+            histories.add(metaDO);
+            return (long) histories.size();
+        }
+
+        @Override
+        public List<MetaHistoryDO> findByTimestamp(String destination, Long snapshotTimestamp, Long timestamp) {
+            List<MetaHistoryDO> result = new ArrayList<MetaHistoryDO>();
+            for (MetaHistoryDO historyDO : histories) {
+                if (historyDO.getBinlogTimestamp() >= snapshotTimestamp && historyDO.getBinlogTimestamp() <= timestamp) {
+                    result.add(historyDO);
+                }
+            }
+            return result;
+        }
+    }
+}
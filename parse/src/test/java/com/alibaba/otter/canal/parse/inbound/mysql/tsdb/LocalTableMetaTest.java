@@ -0,0 +1,138 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+public class LocalTableMetaTest {
+
+    private static final String tmp     = System.getProperty("java.io.tmpdir", "/tmp");
+    private static final File   dataDir = new File(tmp, "canal_local_tsdb");
+
+    @Before
+    public void setUp() {
+        try {
+            FileUtils.deleteDirectory(dataDir);
+        } catch (IOException e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testApplyAndRollback() {
+        LocalTableMeta tableMeta = build();
+        tableMeta.apply(position(100L, 1000L), "test", "create table a (id int primary key)", null);
+        // 达到阈值, 生成snapshot
+        tableMeta.apply(position(200L, 2000L), "test", "create table b (id int primary key)", null);
+        tableMeta.apply(position(300L, 3000L), "test", "alter table a add column name varchar(32)", null);
+        // 重复的位点只应用到内存
+        tableMeta.apply(position(300L, 3000L), "test", "alter table a add column name varchar(32)", null);
+        tableMeta.destory();
+
+        LocalTableMeta reload = build();
+        Assert.assertTrue(reload.rollback(position(400L, 4000L)));
+        TableMeta a = reload.find("test", "a");
+        Assert.assertEquals(2, a.getFields().size());
+        Assert.assertNotNull(reload.find("test", "b"));
+
+        Assert.assertTrue(reload.rollback(position(250L, 2500L)));
+        Assert.assertEquals(1, reload.find("test", "a").getFields().size());
+        reload.destory();
+    }
+
+    @Test
+    public void testRollbackSnapshotBeforeLaterDdl() {
+        LocalTableMeta tableMeta = build(3);
+        tableMeta.apply(position(100L, 1000L), "test", "create table a (id int primary key)", null);
+        tableMeta.apply(position(200L, 2000L), "test", "create table b (id int primary key)", null);
+        tableMeta.apply(position(300L, 3000L), "test", "create table c (id int primary key)", null);
+        tableMeta.apply(position(400L, 4000L), "test", "alter table a add column name varchar(32)", null);
+        tableMeta.apply(position(500L, 5000L), "test", "alter table a add column age int", null);
+        tableMeta.destory();
+
+        LocalTableMeta reload = build(1);
+        // 回放了一个DDL, 以450的位点写入snapshot, 在文件中位于500的DDL之后
+        Assert.assertTrue(reload.rollback(position(450L, 4500L)));
+        Assert.assertEquals(2, reload.find("test", "a").getFields().size());
+        Assert.assertTrue(reload.rollback(position(550L, 5500L)));
+        Assert.assertEquals(3, reload.find("test", "a").getFields().size());
+
+        // destory之后继续apply
+        reload.destory();
+        reload.apply(position(600L, 6000L), "test", "create table d (id int primary key)", null);
+        Assert.assertTrue(reload.rollback(position(700L, 7000L)));
+        Assert.assertNotNull(reload.find("test", "d"));
+        reload.destory();
+    }
+
+    @Test
+    public void testRollforward() {
+        LocalTableMeta tableMeta = build(1);
+        tableMeta.apply(position(100L, 1000L), "test", "create table a (id int primary key)", null);
+        tableMeta.setSnapshotDdlThreshold(100);
+        tableMeta.apply(position(200L, 2000L), "test", "create table b (id int primary key)", null);
+        tableMeta.apply(position(300L, 3000L), "test", "alter table a add column name varchar(32)", null);
+        tableMeta.destory();
+
+        LocalTableMeta standby = build(100);
+        standby.setStandby(true);
+        Assert.assertTrue(standby.rollback(position(250L, 2500L)));
+        Assert.assertNotNull(standby.find("test", "b"));
+        Assert.assertEquals(1, standby.find("test", "a").getFields().size());
+        // 只回放(250, 350]之间的DDL
+        Assert.assertTrue(standby.rollforward(position(250L, 2500L), position(350L, 3500L)));
+        Assert.assertEquals(2, standby.find("test", "a").getFields().size());
+
+        // 同一秒内不同serverId的DDL无法判断先后，需要走rollback
+        EntryPosition from = new EntryPosition("mysql-bin.000001", 300L, 3000L, 2L);
+        Assert.assertFalse(standby.rollforward(from, position(400L, 4000L)));
+        standby.destory();
+    }
+
+    @Test
+    public void testStandby() {
+        LocalTableMeta tableMeta = build(1);
+        tableMeta.apply(position(100L, 1000L), "test", "create table a (id int primary key)", null);
+        tableMeta.setSnapshotDdlThreshold(100);
+        tableMeta.apply(position(200L, 2000L), "test", "create table b (id int primary key)", null);
+        tableMeta.apply(position(300L, 3000L), "test", "create table c (id int primary key)", null);
+        tableMeta.destory();
+
+        File logFile = new File(dataDir, "table_meta.log");
+        long length = logFile.length();
+        LocalTableMeta standby = build(1);
+        standby.setStandby(true);
+        // 回放的DDL超过阈值, 热备时也不写入snapshot
+        Assert.assertTrue(standby.rollback(position(400L, 4000L)));
+        Assert.assertNotNull(standby.find("test", "c"));
+        Assert.assertEquals(length, logFile.length());
+
+        standby.setStandby(false);
+        Assert.assertTrue(standby.rollback(position(400L, 4000L)));
+        Assert.assertTrue(logFile.length() > length);
+        standby.destory();
+    }
+
+    private LocalTableMeta build() {
+        return build(2);
+    }
+
+    private LocalTableMeta build(int snapshotDdlThreshold) {
+        LocalTableMeta tableMeta = new LocalTableMeta();
+        tableMeta.setDataDir(dataDir.getPath());
+        tableMeta.setSnapshotDdlThreshold(snapshotDdlThreshold);
+        tableMeta.init("example");
+        return tableMeta;
+    }
+
+    private EntryPosition position(Long position, Long timestamp) {
+        return new EntryPosition("mysql-bin.000001", position, timestamp, 1L);
+    }
+}
@@ -0,0 +1,69 @@
+package com.alibaba.otter.canal.parse.index;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+public class BinlogTimestampIndexTest {
+
+    private static final String tmp         = System.getProperty("java.io.tmpdir", "/tmp");
+    private static final File   dataDir     = new File(tmp, "canal_binlog_index");
+    private static final String destination = "example";
+
+    @Before
+    public void setUp() {
+        try {
+            FileUtils.deleteDirectory(dataDir);
+        } catch (IOException e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRecordAndFind() {
+        BinlogTimestampIndex index = new BinlogTimestampIndex(dataDir, destination, 1000L, 100);
+        index.record(position("mysql-bin.000001", 120L, 10000L));
+        index.record(position("mysql-bin.000001", 500L, 10500L)); // 采样间隔内, 忽略
+        index.record(position("mysql-bin.000001", 900L, 11000L));
+        index.record(position("mysql-bin.000002", 4L, 11200L)); // 新文件, 总是记录
+        index.record(position("mysql-bin.000002", 800L, 13000L));
+        Assert.assertEquals(4, index.size());
+
+        Assert.assertNull(index.floor(10000L));
+        Assert.assertEquals("mysql-bin.000001", index.floor(11100L).getJournalName());
+        Assert.assertEquals("mysql-bin.000002", index.ceiling(11100L).getJournalName());
+        Assert.assertNull(index.ceiling(13001L));
+        index.close();
+
+        // 重新加载
+        BinlogTimestampIndex reload = new BinlogTimestampIndex(dataDir, destination, 1000L, 100);
+        Assert.assertEquals(4, reload.size());
+        Assert.assertEquals(Long.valueOf(800L), reload.floor(20000L).getPosition());
+        reload.close();
+    }
+
+    @Test
+    public void testCompact() {
+        BinlogTimestampIndex index = new BinlogTimestampIndex(dataDir, destination, 1L, 10);
+        for (int i = 0; i < 11; i++) {
+            index.record(position("mysql-bin.000001", 4L + i, 1000L * i));
+        }
+        Assert.assertEquals(5, index.size());
+        Assert.assertNull(index.floor(6000L));
+        index.close();
+
+        BinlogTimestampIndex reload = new BinlogTimestampIndex(dataDir, destination, 1L, 10);
+        Assert.assertEquals(5, reload.size());
+        reload.close();
+    }
+
+    private EntryPosition position(String journalName, Long position, Long timestamp) {
+        return new EntryPosition(journalName, position, timestamp, 1L);
+    }
+}
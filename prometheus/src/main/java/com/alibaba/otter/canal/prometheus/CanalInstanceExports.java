@@ -24,6 +24,8 @@ public class CanalInstanceExports {
     private final Collector          metaCollector;
     private final Collector          sinkCollector;
     private final Collector          parserCollector;
+    private final Collector          latencyCollector;
+    private final Collector          tableCollector;
 
     private CanalInstanceExports() {
         this.storeCollector = StoreCollector.instance();
@@ -31,6 +33,8 @@ public class CanalInstanceExports {
         this.metaCollector = MetaCollector.instance();
         this.sinkCollector = SinkCollector.instance();
         this.parserCollector = ParserCollector.instance();
+        this.latencyCollector = LatencyCollector.instance();
+        this.tableCollector = TableCollector.instance();
     }
 
     private static class SingletonHolder {
@@ -47,6 +51,8 @@ public class CanalInstanceExports {
         metaCollector.register();
         sinkCollector.register();
         parserCollector.register();
+        latencyCollector.register();
+        tableCollector.register();
     }
 
     public void terminate() {
@@ -55,6 +61,8 @@ public class CanalInstanceExports {
         CollectorRegistry.defaultRegistry.unregister(metaCollector);
         CollectorRegistry.defaultRegistry.unregister(sinkCollector);
         CollectorRegistry.defaultRegistry.unregister(parserCollector);
+        CollectorRegistry.defaultRegistry.unregister(latencyCollector);
+        CollectorRegistry.defaultRegistry.unregister(tableCollector);
     }
 
     void register(CanalInstance instance) {
@@ -63,6 +71,8 @@ public class CanalInstanceExports {
         requiredInstanceRegistry(metaCollector).register(instance);
         requiredInstanceRegistry(sinkCollector).register(instance);
         requiredInstanceRegistry(parserCollector).register(instance);
+        requiredInstanceRegistry(latencyCollector).register(instance);
+        requiredInstanceRegistry(tableCollector).register(instance);
         logger.info("Successfully register metrics for instance {}.", instance.getDestination());
     }
 
@@ -72,6 +82,8 @@ public class CanalInstanceExports {
         requiredInstanceRegistry(metaCollector).unregister(instance);
         requiredInstanceRegistry(sinkCollector).unregister(instance);
         requiredInstanceRegistry(parserCollector).unregister(instance);
+        requiredInstanceRegistry(latencyCollector).unregister(instance);
+        requiredInstanceRegistry(tableCollector).unregister(instance);
         logger.info("Successfully unregister metrics for instance {}.", instance.getDestination());
     }
 
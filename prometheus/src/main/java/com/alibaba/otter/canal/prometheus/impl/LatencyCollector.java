@@ -0,0 +1,154 @@
+package com.alibaba.otter.canal.prometheus.impl;
+
+import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.parse.CanalEventParser;
+import com.alibaba.otter.canal.parse.inbound.AbstractEventParser;
+import com.alibaba.otter.canal.parse.inbound.group.GroupEventParser;
+import com.alibaba.otter.canal.prometheus.InstanceRegistry;
+import com.alibaba.otter.canal.sink.CanalEventSink;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+
+import io.prometheus.client.Collector;
+
+/**
+ * 链路各阶段的耗时分布
+ *
+ * <pre>
+ * parser阶段: receive(binlog执行到接收) / simple_parse / dml_parse / sink(投递到store完成)
+ * store阶段: put(写入store，包含store满时的等待) / get(在store中等待被get) / ack(get之后到ack)
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class LatencyCollector extends Collector implements InstanceRegistry {
+
+    private static final Logger                               logger              = LoggerFactory.getLogger(LatencyCollector.class);
+    private static final String                               PARSER_LATENCY      = "canal_instance_parser_stage_latency";
+    private static final String                               STORE_LATENCY       = "canal_instance_store_stage_latency";
+    private static final String                               PARSER_LATENCY_HELP = "Parser stage latency of canal instance in milliseconds";
+    private static final String                               STORE_LATENCY_HELP  = "Store stage latency of canal instance in milliseconds";
+    private static final String                               PARSER_LABEL        = "parser";
+    private static final String                               STAGE_LABEL         = "stage";
+    private final List<String>                                parserLabels        = Arrays.asList(DEST, PARSER_LABEL, STAGE_LABEL);
+    private final List<String>                                storeLabels         = Arrays.asList(DEST, STAGE_LABEL);
+    private final ConcurrentMap<String, LatencyMetricsHolder> instances           = new ConcurrentHashMap<>();
+
+    private LatencyCollector() {}
+
+    private static class SingletonHolder {
+        private static final LatencyCollector SINGLETON = new LatencyCollector();
+    }
+
+    public static LatencyCollector instance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples.Sample> parserSamples = new ArrayList<>();
+        List<MetricFamilySamples.Sample> storeSamples = new ArrayList<>();
+        for (LatencyMetricsHolder holder : instances.values()) {
+            for (int i = 0; i < holder.parsers.size(); i++) {
+                AbstractEventParser parser = holder.parsers.get(i);
+                // 和ParserCollector保持一致，单个parser的编号为0，group模式从1开始
+                String id = holder.group ? Integer.toString(i + 1) : "0";
+                addHistogram(parserSamples, PARSER_LATENCY, parserLabels,
+                        Arrays.asList(holder.destination, id, "receive"), parser.getReceiveLatency());
+                addHistogram(parserSamples, PARSER_LATENCY, parserLabels,
+                        Arrays.asList(holder.destination, id, "simple_parse"), parser.getSimpleParseLatency());
+                addHistogram(parserSamples, PARSER_LATENCY, parserLabels,
+                        Arrays.asList(holder.destination, id, "dml_parse"), parser.getDmlParseLatency());
+                addHistogram(parserSamples, PARSER_LATENCY, parserLabels,
+                        Arrays.asList(holder.destination, id, "sink"), parser.getSinkLatency());
+            }
+            addHistogram(storeSamples, STORE_LATENCY, storeLabels,
+                    Arrays.asList(holder.destination, "put"), holder.putLatency);
+            addHistogram(storeSamples, STORE_LATENCY, storeLabels,
+                    Arrays.asList(holder.destination, "get"), holder.getLatency);
+            addHistogram(storeSamples, STORE_LATENCY, storeLabels,
+                    Arrays.asList(holder.destination, "ack"), holder.ackLatency);
+        }
+        List<MetricFamilySamples> mfs = new ArrayList<>();
+        mfs.add(new MetricFamilySamples(PARSER_LATENCY, Type.HISTOGRAM, PARSER_LATENCY_HELP, parserSamples));
+        mfs.add(new MetricFamilySamples(STORE_LATENCY, Type.HISTOGRAM, STORE_LATENCY_HELP, storeSamples));
+        return mfs;
+    }
+
+    private void addHistogram(List<MetricFamilySamples.Sample> samples, String name, List<String> labels,
+                              List<String> labelValues, LatencyHistogram histogram) {
+        if (histogram == null) {
+            return;
+        }
+        double[] buckets = histogram.getBuckets();
+        long[] counts = histogram.getCumulativeCounts();
+        List<String> bucketLabels = new ArrayList<>(labels);
+        bucketLabels.add("le");
+        for (int i = 0; i < counts.length; i++) {
+            List<String> bucketLabelValues = new ArrayList<>(labelValues);
+            bucketLabelValues.add(i < buckets.length ? doubleToGoString(buckets[i]) : "+Inf");
+            samples.add(new MetricFamilySamples.Sample(name + "_bucket", bucketLabels, bucketLabelValues, counts[i]));
+        }
+        samples.add(new MetricFamilySamples.Sample(name + "_count", labels, labelValues, counts[counts.length - 1]));
+        samples.add(new MetricFamilySamples.Sample(name + "_sum", labels, labelValues, histogram.getSumInMillis()));
+    }
+
+    @Override
+    public void register(CanalInstance instance) {
+        final String destination = instance.getDestination();
+        LatencyMetricsHolder holder = new LatencyMetricsHolder();
+        holder.destination = destination;
+        CanalEventParser parser = instance.getEventParser();
+        if (parser instanceof GroupEventParser) {
+            holder.group = true;
+            for (CanalEventParser single : ((GroupEventParser) parser).getEventParsers()) {
+                if (single instanceof AbstractEventParser) {
+                    holder.parsers.add((AbstractEventParser) single);
+                }
+            }
+        } else if (parser instanceof AbstractEventParser) {
+            holder.parsers.add((AbstractEventParser) parser);
+        }
+        CanalEventSink sink = instance.getEventSink();
+        if (sink instanceof EntryEventSink) {
+            holder.putLatency = ((EntryEventSink) sink).getPutLatency();
+        }
+        CanalEventStore store = instance.getEventStore();
+        if (store instanceof MemoryEventStoreWithBuffer) {
+            holder.getLatency = ((MemoryEventStoreWithBuffer) store).getGetLatency();
+            holder.ackLatency = ((MemoryEventStoreWithBuffer) store).getAckLatency();
+        }
+        LatencyMetricsHolder old = instances.put(destination, holder);
+        if (old != null) {
+            logger.warn("Remove stale LatencyCollector for instance {}.", destination);
+        }
+    }
+
+    @Override
+    public void unregister(CanalInstance instance) {
+        final String destination = instance.getDestination();
+        instances.remove(destination);
+    }
+
+    private class LatencyMetricsHolder {
+        private String                          destination;
+        private boolean                         group;
+        private final List<AbstractEventParser> parsers = new ArrayList<>();
+        private LatencyHistogram                putLatency;
+        private LatencyHistogram                getLatency;
+        private LatencyHistogram                ackLatency;
+    }
+}
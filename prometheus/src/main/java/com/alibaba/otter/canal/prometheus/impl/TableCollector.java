@@ -0,0 +1,130 @@
+package com.alibaba.otter.canal.prometheus.impl;
+
+import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.utils.TopKCounter;
+import com.alibaba.otter.canal.common.utils.TopKCounter.Item;
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.parse.CanalEventParser;
+import com.alibaba.otter.canal.parse.inbound.group.GroupEventParser;
+import com.alibaba.otter.canal.parse.inbound.mysql.AbstractMysqlEventParser;
+import com.alibaba.otter.canal.prometheus.InstanceRegistry;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * 按schema.table统计的解析数据量，只导出每个parser中bytes最大的top-k张表
+ *
+ * <pre>
+ * 表被淘汰后再次进入top-k时计数会重新开始，对于counter来说等同于一次重置
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class TableCollector extends Collector implements InstanceRegistry {
+
+    private static final Logger                             logger            = LoggerFactory.getLogger(TableCollector.class);
+    private static final double                             NANO_PER_MILLI    = 1000 * 1000d;
+    private static final String                             TABLE_ROWS        = "canal_instance_table_rows";
+    private static final String                             TABLE_BYTES       = "canal_instance_table_bytes";
+    private static final String                             TABLE_BYTES_ERROR = "canal_instance_table_bytes_error";
+    private static final String                             TABLE_PARSE_TIME  = "canal_instance_table_parse_time";
+    private static final String                             TABLE_ROWS_HELP   = "Parsed rows of top-k tables";
+    private static final String                             TABLE_BYTES_HELP  = "Parsed binlog bytes of top-k tables";
+    private static final String                             TABLE_ERROR_HELP  = "Max overestimation of parsed binlog bytes of top-k tables";
+    private static final String                             TABLE_TIME_HELP   = "Parse time of top-k tables in milliseconds";
+    private static final String                             PARSER_LABEL      = "parser";
+    private static final String                             TABLE_LABEL       = "table";
+    private final List<String>                              tableLabels       = Arrays.asList(DEST, PARSER_LABEL, TABLE_LABEL);
+    private final ConcurrentMap<String, TableMetricsHolder> instances         = new ConcurrentHashMap<>();
+
+    private TableCollector() {}
+
+    private static class SingletonHolder {
+        private static final TableCollector SINGLETON = new TableCollector();
+    }
+
+    public static TableCollector instance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        CounterMetricFamily rows = new CounterMetricFamily(TABLE_ROWS, TABLE_ROWS_HELP, tableLabels);
+        CounterMetricFamily bytes = new CounterMetricFamily(TABLE_BYTES, TABLE_BYTES_HELP, tableLabels);
+        GaugeMetricFamily error = new GaugeMetricFamily(TABLE_BYTES_ERROR, TABLE_ERROR_HELP, tableLabels);
+        CounterMetricFamily parseTime = new CounterMetricFamily(TABLE_PARSE_TIME, TABLE_TIME_HELP, tableLabels);
+        for (TableMetricsHolder holder : instances.values()) {
+            for (int i = 0; i < holder.tableStats.size(); i++) {
+                String id = holder.parserIds.get(i);
+                for (Item item : holder.tableStats.get(i).snapshot()) {
+                    List<String> labelValues = Arrays.asList(holder.destination, id, item.getKey());
+                    rows.addMetric(labelValues, item.getRows());
+                    bytes.addMetric(labelValues, item.getBytes());
+                    error.addMetric(labelValues, item.getError());
+                    parseTime.addMetric(labelValues, item.getNanos() / NANO_PER_MILLI);
+                }
+            }
+        }
+        List<MetricFamilySamples> mfs = new ArrayList<>();
+        mfs.add(rows);
+        mfs.add(bytes);
+        mfs.add(error);
+        mfs.add(parseTime);
+        return mfs;
+    }
+
+    @Override
+    public void register(CanalInstance instance) {
+        final String destination = instance.getDestination();
+        TableMetricsHolder holder = new TableMetricsHolder();
+        holder.destination = destination;
+        CanalEventParser parser = instance.getEventParser();
+        // 和ParserCollector保持一致，单个parser的编号为0，group模式从1开始
+        if (parser instanceof GroupEventParser) {
+            List<CanalEventParser> parsers = ((GroupEventParser) parser).getEventParsers();
+            for (int i = 0; i < parsers.size(); i++) {
+                addTableStat(holder, parsers.get(i), Integer.toString(i + 1));
+            }
+        } else {
+            addTableStat(holder, parser, "0");
+        }
+        TableMetricsHolder old = instances.put(destination, holder);
+        if (old != null) {
+            logger.warn("Remove stale TableCollector for instance {}.", destination);
+        }
+    }
+
+    private void addTableStat(TableMetricsHolder holder, CanalEventParser parser, String id) {
+        if (parser instanceof AbstractMysqlEventParser) {
+            TopKCounter tableStat = ((AbstractMysqlEventParser) parser).getTableStat();
+            if (tableStat != null) {
+                holder.parserIds.add(id);
+                holder.tableStats.add(tableStat);
+            }
+        }
+    }
+
+    @Override
+    public void unregister(CanalInstance instance) {
+        final String destination = instance.getDestination();
+        instances.remove(destination);
+    }
+
+    private class TableMetricsHolder {
+        private String                  destination;
+        private final List<String>      parserIds  = new ArrayList<>();
+        private final List<TopKCounter> tableStats = new ArrayList<>();
+    }
+}
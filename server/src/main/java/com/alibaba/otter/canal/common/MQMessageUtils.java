@@ -10,7 +10,7 @@ import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 
-import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
+import com.alibaba.otter.canal.filter.regex.CompiledRegexFilter;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
 import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
@@ -63,7 +63,7 @@ public class MQMessageUtils {
                                                                                          if (!isWildCard(pkHashConfig)) {
                                                                                              data.simpleName = pkHashConfig;
                                                                                          } else {
-                                                                                             data.regexFilter = new AviaterRegexFilter(pkHashConfig);
+                                                                                             data.regexFilter = new CompiledRegexFilter(pkHashConfig);
                                                                                          }
                                                                                          datas.add(data);
                                                                                      }
@@ -90,9 +90,9 @@ public class MQMessageUtils {
                                                                                              data.simpleName = dynamicTopic;
                                                                                          } else {
                                                                                              if (dynamicTopic.contains("\\.")) {
-                                                                                                 data.tableRegexFilter = new AviaterRegexFilter(dynamicTopic);
+                                                                                                 data.tableRegexFilter = new CompiledRegexFilter(dynamicTopic);
                                                                                              } else {
-                                                                                                 data.schemaRegexFilter = new AviaterRegexFilter(dynamicTopic);
+                                                                                                 data.schemaRegexFilter = new CompiledRegexFilter(dynamicTopic);
                                                                                              }
                                                                                          }
                                                                                          datas.add(data);
@@ -598,9 +598,9 @@ public class MQMessageUtils {
 
     public static class PartitionData {
 
-        public String             simpleName;
-        public AviaterRegexFilter regexFilter;
-        public HashMode           hashMode = new HashMode();
+        public String              simpleName;
+        public CompiledRegexFilter regexFilter;
+        public HashMode            hashMode = new HashMode();
     }
 
     public static class HashMode {
@@ -612,8 +612,8 @@ public class MQMessageUtils {
 
     public static class DynamicTopicData {
 
-        public String             simpleName;
-        public AviaterRegexFilter schemaRegexFilter;
-        public AviaterRegexFilter tableRegexFilter;
+        public String              simpleName;
+        public CompiledRegexFilter schemaRegexFilter;
+        public CompiledRegexFilter tableRegexFilter;
     }
 }
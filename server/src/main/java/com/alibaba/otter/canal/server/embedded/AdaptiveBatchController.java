@@ -0,0 +1,145 @@
+package com.alibaba.otter.canal.server.embedded;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+
+/**
+ * 单个client的自适应batchSize控制，替代客户端固定的batchSize
+ *
+ * <pre>
+ * 1. 客户端声明目标延迟(一个batch从get到ack的耗时)和单批最大字节数，客户端传入的batchSize作为上限
+ * 2. 每次ack时根据该批次的get->ack耗时调整：超过目标延迟按比例缩小(每次最多减半)，低于目标一半且store中仍有积压则翻倍
+ * 3. store中的积压不足一个batch时，最多等待(目标延迟 - 平均处理耗时)/2凑批，避免低流量时频繁返回小批次
+ *
+ * batchSize的单位与store的BatchMode保持一致，ITEMSIZE为event个数，MEMSIZE为bufferMemUnit的个数
+ * </pre>
+ *
+ * @version 1.0.0
+ */
+public class AdaptiveBatchController {
+
+    private static final double   EWMA_WEIGHT        = 0.2;
+    private final long            targetLatencyNanos;
+    private final long            maxBytes;
+    private final Map<Long, Long> inflightBatchs     = new ConcurrentHashMap<Long, Long>(); // batchId -> get时间
+    private int                   batchSize          = 0;                                  // 0代表还未初始化
+    private int                   maxBatchSize       = Integer.MAX_VALUE;
+    private double                avgEventBytes      = 0;
+    private double                avgTurnaround      = 0;                                  // get->ack的平均耗时(ns)
+
+    public AdaptiveBatchController(long targetLatencyMs, long maxBytes){
+        if (targetLatencyMs <= 0) {
+            throw new IllegalArgumentException("targetLatencyMs should be positive");
+        }
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 计算本次get使用的batchSize，客户端的batchSize和maxBytes换算出来的大小为上限
+     */
+    public synchronized int nextBatchSize(int clientBatchSize, BatchMode batchMode, int bufferMemUnit) {
+        int limit = Math.max(clientBatchSize, 1);
+        if (maxBytes > 0) {
+            long bytesLimit = -1;
+            if (batchMode.isMemSize()) {
+                bytesLimit = maxBytes / bufferMemUnit;
+            } else if (avgEventBytes > 0) {
+                bytesLimit = (long) (maxBytes / avgEventBytes);
+            }
+
+            if (bytesLimit >= 0) {
+                limit = (int) Math.max(Math.min(limit, bytesLimit), 1);
+            }
+        }
+
+        maxBatchSize = limit;
+        if (batchSize <= 0 || batchSize > limit) {
+            batchSize = limit;
+        }
+        return batchSize;
+    }
+
+    /**
+     * store中积压不足一个batch时，返回凑批可等待的时间(ms)，0代表直接返回
+     *
+     * @param backlog store中还未被get的数据量，单位与batchSize一致，小于0代表未知
+     */
+    public synchronized long lingerMillis(long backlog) {
+        if (backlog < 0 || backlog >= batchSize) {
+            return 0;
+        }
+
+        long linger = (long) (targetLatencyNanos - avgTurnaround) / 2;
+        return linger > 0 ? TimeUnit.NANOSECONDS.toMillis(linger) : 0;
+    }
+
+    public synchronized void onGet(long batchId, List<Event> events) {
+        inflightBatchs.put(batchId, System.nanoTime());
+        if (events.isEmpty()) {
+            return;
+        }
+
+        long bytes = 0;
+        for (Event event : events) {
+            bytes += event.getRawLength();
+        }
+
+        double eventBytes = (double) bytes / events.size();
+        avgEventBytes = avgEventBytes == 0 ? eventBytes : ewma(avgEventBytes, eventBytes);
+    }
+
+    /**
+     * 根据ack的耗时和当前积压调整下一次的batchSize
+     *
+     * @param backlog store中还未被get的数据量，单位与batchSize一致，小于0代表未知
+     */
+    public synchronized void onAck(long batchId, long backlog) {
+        Long getNanos = inflightBatchs.remove(batchId);
+        if (getNanos == null || batchSize <= 0) {
+            return;
+        }
+
+        long turnaround = System.nanoTime() - getNanos;
+        avgTurnaround = avgTurnaround == 0 ? turnaround : ewma(avgTurnaround, turnaround);
+        if (turnaround > targetLatencyNanos) {
+            double ratio = Math.max((double) targetLatencyNanos / turnaround, 0.5);
+            batchSize = Math.max((int) (batchSize * ratio), 1);
+        } else if (turnaround < targetLatencyNanos / 2 && (backlog < 0 || backlog >= batchSize)) {
+            batchSize = (int) Math.min((long) batchSize * 2, maxBatchSize);
+        }
+    }
+
+    /**
+     * rollback后未ack的batch会重新get，清理掉对应的计时
+     */
+    public void onRollback(Long batchId) {
+        if (batchId == null) {
+            inflightBatchs.clear();
+        } else {
+            inflightBatchs.remove(batchId);
+        }
+    }
+
+    private double ewma(double avg, double value) {
+        return avg * (1 - EWMA_WEIGHT) + value * EWMA_WEIGHT;
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getTargetLatencyMs() {
+        return TimeUnit.NANOSECONDS.toMillis(targetLatencyNanos);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+}
@@ -7,6 +7,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -18,6 +21,7 @@ import org.springframework.util.CollectionUtils;
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
+import com.alibaba.otter.canal.parse.CanalHAWarmable;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.Message;
@@ -32,7 +36,9 @@ import com.alibaba.otter.canal.spi.CanalMetricsProvider;
 import com.alibaba.otter.canal.spi.CanalMetricsService;
 import com.alibaba.otter.canal.spi.NopCanalMetricsService;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
 import com.alibaba.otter.canal.store.model.Event;
 import com.alibaba.otter.canal.store.model.Events;
 import com.google.common.base.Function;
@@ -50,14 +56,18 @@ import com.google.protobuf.ByteString;
  */
 public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements CanalServer, CanalService {
 
-    private static final Logger        logger  = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
-    private Map<String, CanalInstance> canalInstances;
+    private static final Logger                                    logger                = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
+    private Map<String, CanalInstance>                             canalInstances;
     // private Map<ClientIdentity, Position> lastRollbackPostions;
-    private CanalInstanceGenerator     canalInstanceGenerator;
-    private int                        metricsPort;
-    private CanalMetricsService        metrics = NopCanalMetricsService.NOP;
-    private String                     user;
-    private String                     passwd;
+    private CanalInstanceGenerator                                 canalInstanceGenerator;
+    private int                                                    metricsPort;
+    private CanalMetricsService                                    metrics               = NopCanalMetricsService.NOP;
+    private String                                                 user;
+    private String                                                 passwd;
+    private ConcurrentMap<ClientIdentity, AdaptiveBatchController> adaptiveBatchs        = new ConcurrentHashMap<ClientIdentity, AdaptiveBatchController>();
+    // 默认的自适应batchSize目标延迟(ms)，0代表使用客户端固定的batchSize
+    private long                                                   adaptiveBatchLatency  = 0;
+    private long                                                   adaptiveBatchMaxBytes = 0;
 
     private static class SingletonHolder {
 
@@ -104,6 +114,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                     } finally {
                         MDC.remove("destination");
                     }
+                } else {
+                    releaseWarmup(instance);
                 }
             } catch (Exception e) {
                 logger.error(String.format("stop CanalInstance[%s] has an error", entry.getKey()), e);
@@ -163,10 +175,34 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 } finally {
                     MDC.remove("destination");
                 }
+            } else {
+                releaseWarmup(canalInstance);
+            }
+        }
+    }
+
+    /**
+     * 热备模式下预先构建instance并预热parser，切换为active时只需要定位位点
+     */
+    public void warmup(final String destination, LogPosition position) {
+        final CanalInstance canalInstance = canalInstances.get(destination);
+        if (!canalInstance.isStart() && position != null
+            && canalInstance.getEventParser() instanceof CanalHAWarmable) {
+            try {
+                MDC.put("destination", destination);
+                ((CanalHAWarmable) canalInstance.getEventParser()).warmup(position.getPostion());
+            } finally {
+                MDC.remove("destination");
             }
         }
     }
 
+    private void releaseWarmup(CanalInstance canalInstance) {
+        if (canalInstance.getEventParser() instanceof CanalHAWarmable) {
+            ((CanalHAWarmable) canalInstance.getEventParser()).releaseWarmup();
+        }
+    }
+
     public boolean isStart(String destination) {
         return canalInstances.containsKey(destination) && canalInstances.get(destination).isStart();
     }
@@ -207,6 +243,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     public void unsubscribe(ClientIdentity clientIdentity) throws CanalServerException {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         canalInstance.getMetaManager().unsubscribe(clientIdentity); // 执行一下meta订阅
+        adaptiveBatchs.remove(clientIdentity);
 
         logger.info("unsubscribe successfully, {}", clientIdentity);
     }
@@ -240,6 +277,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
      * b. 如果timeout不为null
      *    1. timeout为0，则采用get阻塞方式，获取数据，不设置超时，直到有足够的batchSize数据才返回
      *    2. timeout不为0，则采用get+timeout方式，获取数据，超时还没有batchSize足够的数据，有多少返回多少
+     * c. get会直接ack，没有get到ack之间的耗时可以参考，所以不使用自适应batchSize，按传入的batchSize获取
      * 
      * 注意： meta获取和数据的获取需要保证顺序性，优先拿到meta的，一定也会是优先拿到数据，所以需要加同步. (不能出现先拿到meta，拿到第二批数据，这样就会导致数据顺序性出现问题)
      * </pre>
@@ -327,6 +365,9 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
      * b. 如果timeout不为null
      *    1. timeout为0，则采用get阻塞方式，获取数据，不设置超时，直到有足够的batchSize数据才返回
      *    2. timeout不为0，则采用get+timeout方式，获取数据，超时还没有batchSize足够的数据，有多少返回多少
+     * c. 如果client开启了自适应batchSize(见{@link #setAdaptiveBatch})，传入的batchSize只作为上限，
+     *    timeout为null且store中的积压不足一个batch时，会在锁外短暂等待凑批，会阻塞调用线程，
+     *    netty的worker线程等共享线程上需要使用{@link #tryGetWithoutAck}
      * 
      * 注意： meta获取和数据的获取需要保证顺序性，优先拿到meta的，一定也会是优先拿到数据，所以需要加同步. (不能出现先拿到meta，拿到第二批数据，这样就会导致数据顺序性出现问题)
      * </pre>
@@ -334,11 +375,75 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     @Override
     public Message getWithoutAck(ClientIdentity clientIdentity, int batchSize, Long timeout, TimeUnit unit)
                                                                                                            throws CanalServerException {
+        return getWithoutAck(clientIdentity, batchSize, timeout, unit, true);
+    }
+
+    /**
+     * 即时获取数据，不会进行自适应batchSize的凑批等待，配合{@link #addAvailableListener}实现异步的get
+     */
+    public Message tryGetWithoutAck(ClientIdentity clientIdentity, int batchSize) throws CanalServerException {
+        return getWithoutAck(clientIdentity, batchSize, null, null, false);
+    }
+
+    /**
+     * 注册数据到达通知，client下一次getWithoutAck可获取的数据满足batchSize时回调一次，等待期间不占用线程
+     *
+     * <pre>
+     * 1. 回调在parser的put线程中执行，listener需要转到其他线程再调用{@link #tryGetWithoutAck}获取数据
+     * 2. 超时或者client断开时需要调用返回的store的removeAvailableListener，返回true代表还未回调过
+     * 3. instance重启后store会替换，必须在注册时的store上取消，旧的store停止时会回调所有未触发的listener
+     * </pre>
+     *
+     * @return 注册的store
+     */
+    public CanalEventStore addAvailableListener(ClientIdentity clientIdentity, int batchSize,
+                                                CanalEventStoreListener listener) throws CanalServerException {
+        checkStart(clientIdentity.getDestination());
+        checkSubscribe(clientIdentity);
+
+        CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
+        AdaptiveBatchController adaptiveBatch = getAdaptiveBatch(clientIdentity);
+        synchronized (canalInstance) {
+            CanalEventStore eventStore = canalInstance.getEventStore();
+            if (adaptiveBatch != null) {
+                batchSize = adaptiveBatch.nextBatchSize(batchSize, getBatchMode(eventStore), getBufferMemUnit(eventStore));
+            }
+
+            // 和getWithoutAck保持一致的起始位置
+            Position start = null;
+            PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
+            if (positionRanges != null) {
+                start = positionRanges.getStart();
+            } else {
+                start = canalInstance.getMetaManager().getCursor(clientIdentity);
+                if (start == null) {
+                    start = eventStore.getFirstPosition();
+                }
+            }
+
+            eventStore.addAvailableListener(start, batchSize, listener);
+            return eventStore;
+        }
+    }
+
+    private Message getWithoutAck(ClientIdentity clientIdentity, int batchSize, Long timeout, TimeUnit unit,
+                                  boolean linger) throws CanalServerException {
         checkStart(clientIdentity.getDestination());
         checkSubscribe(clientIdentity);
 
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
+        AdaptiveBatchController adaptiveBatch = getAdaptiveBatch(clientIdentity);
+        if (adaptiveBatch != null && timeout == null && linger) {
+            // 凑批等待放在锁外，避免阻塞同一个instance上其他client的get/ack/rollback
+            lingerForBatch(clientIdentity, canalInstance, adaptiveBatch, batchSize);
+        }
+
         synchronized (canalInstance) {
+            if (adaptiveBatch != null) {
+                CanalEventStore eventStore = canalInstance.getEventStore();
+                batchSize = adaptiveBatch.nextBatchSize(batchSize, getBatchMode(eventStore), getBufferMemUnit(eventStore));
+            }
+
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
 
@@ -364,6 +469,9 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             } else {
                 // 记录到流式信息
                 Long batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
+                if (adaptiveBatch != null) {
+                    adaptiveBatch.onGet(batchId, events.getEvents());
+                }
                 boolean raw = isRaw(canalInstance.getEventStore());
                 List entrys = null;
                 if (raw) {
@@ -460,6 +568,11 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
 
         // 可定时清理数据
         canalInstance.getEventStore().ack(positionRanges.getEnd(), positionRanges.getEndSeq());
+
+        AdaptiveBatchController adaptiveBatch = adaptiveBatchs.get(clientIdentity);
+        if (adaptiveBatch != null) {
+            adaptiveBatch.onAck(batchId, getBacklog(canalInstance.getEventStore()));
+        }
     }
 
     /**
@@ -480,6 +593,10 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             canalInstance.getMetaManager().clearAllBatchs(clientIdentity);
             // rollback eventStore中的状态信息
             canalInstance.getEventStore().rollback();
+            AdaptiveBatchController adaptiveBatch = adaptiveBatchs.get(clientIdentity);
+            if (adaptiveBatch != null) {
+                adaptiveBatch.onRollback(null);
+            }
             logger.info("rollback successfully, clientId:{}", new Object[] { clientIdentity.getClientId() });
         }
     }
@@ -512,6 +629,10 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             // TODO 后续rollback到指定的batchId位置
             canalInstance.getEventStore().rollback();// rollback
                                                      // eventStore中的状态信息
+            AdaptiveBatchController adaptiveBatch = adaptiveBatchs.get(clientIdentity);
+            if (adaptiveBatch != null) {
+                adaptiveBatch.onRollback(batchId);
+            }
             logger.info("rollback successfully, clientId:{} batchId:{} position:{}",
                 clientIdentity.getClientId(),
                 batchId,
@@ -523,6 +644,27 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         return Maps.newHashMap(canalInstances);
     }
 
+    /**
+     * 开启client的自适应batchSize，根据get到ack的耗时和store积压调整每次getWithoutAck的batchSize
+     *
+     * @param targetLatencyMs 一个batch从get到ack的目标耗时
+     * @param maxBytes 单个batch的最大字节数，小于等于0代表不限制
+     */
+    public void setAdaptiveBatch(ClientIdentity clientIdentity, long targetLatencyMs, long maxBytes) {
+        adaptiveBatchs.put(clientIdentity, new AdaptiveBatchController(targetLatencyMs, maxBytes));
+        logger.info("adaptive batch enabled, clientId:{} targetLatency:{}ms maxBytes:{}",
+            clientIdentity.getClientId(),
+            targetLatencyMs,
+            maxBytes);
+    }
+
+    /**
+     * 关闭client的自适应batchSize，如果配置了默认的adaptiveBatchLatency，下一次get时会按默认值重新开启
+     */
+    public void removeAdaptiveBatch(ClientIdentity clientIdentity) {
+        adaptiveBatchs.remove(clientIdentity);
+    }
+
     // ======================== helper method =======================
 
     /**
@@ -545,6 +687,78 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
     }
 
+    /**
+     * store中积压不足一个batch时，等待数据凑满一个batch或者超过linger时间，不持有instance的锁，也不消费数据
+     */
+    private void lingerForBatch(ClientIdentity clientIdentity, CanalInstance canalInstance,
+                                AdaptiveBatchController adaptiveBatch, int batchSize) {
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        adaptiveBatch.nextBatchSize(batchSize, getBatchMode(eventStore), getBufferMemUnit(eventStore));
+        long lingerMillis = adaptiveBatch.lingerMillis(getBacklog(eventStore));
+        if (lingerMillis <= 0) {
+            return;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        CanalEventStoreListener listener = new CanalEventStoreListener() {
+
+            public void onAvailable() {
+                latch.countDown();
+            }
+        };
+        CanalEventStore registered = addAvailableListener(clientIdentity, batchSize, listener);
+        try {
+            latch.await(lingerMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            registered.removeAvailableListener(listener);
+        }
+    }
+
+    private AdaptiveBatchController getAdaptiveBatch(ClientIdentity clientIdentity) {
+        AdaptiveBatchController adaptiveBatch = adaptiveBatchs.get(clientIdentity);
+        if (adaptiveBatch == null && adaptiveBatchLatency > 0) {
+            adaptiveBatchs.putIfAbsent(clientIdentity, new AdaptiveBatchController(adaptiveBatchLatency,
+                adaptiveBatchMaxBytes));
+            adaptiveBatch = adaptiveBatchs.get(clientIdentity);
+        }
+        return adaptiveBatch;
+    }
+
+    /**
+     * store中还未被get的数据量，单位与batchSize一致，-1代表未知
+     */
+    private long getBacklog(CanalEventStore eventStore) {
+        if (eventStore instanceof MemoryEventStoreWithBuffer) {
+            MemoryEventStoreWithBuffer memoryEventStore = (MemoryEventStoreWithBuffer) eventStore;
+            if (memoryEventStore.getBatchMode().isMemSize()) {
+                return (memoryEventStore.getPutMemSize().get() - memoryEventStore.getGetMemSize().get())
+                       / memoryEventStore.getBufferMemUnit();
+            } else {
+                return memoryEventStore.getPutSequence().get() - memoryEventStore.getGetSequence().get();
+            }
+        }
+
+        return -1;
+    }
+
+    private BatchMode getBatchMode(CanalEventStore eventStore) {
+        if (eventStore instanceof MemoryEventStoreWithBuffer) {
+            return ((MemoryEventStoreWithBuffer) eventStore).getBatchMode();
+        }
+
+        return BatchMode.ITEMSIZE;
+    }
+
+    private int getBufferMemUnit(CanalEventStore eventStore) {
+        if (eventStore instanceof MemoryEventStoreWithBuffer) {
+            return ((MemoryEventStoreWithBuffer) eventStore).getBufferMemUnit();
+        }
+
+        return 1024;
+    }
+
     private void checkSubscribe(ClientIdentity clientIdentity) {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         boolean hasSubscribe = canalInstance.getMetaManager().hasSubscribe(clientIdentity);
@@ -607,4 +821,12 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         this.passwd = passwd;
     }
 
+    public void setAdaptiveBatchLatency(long adaptiveBatchLatency) {
+        this.adaptiveBatchLatency = adaptiveBatchLatency;
+    }
+
+    public void setAdaptiveBatchMaxBytes(long adaptiveBatchMaxBytes) {
+        this.adaptiveBatchMaxBytes = adaptiveBatchMaxBytes;
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.alibaba.otter.canal.server.netty;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.apache.commons.lang.StringUtils;
@@ -14,6 +15,7 @@ import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.server.CanalServer;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.netty.handler.ClientAuthenticationHandler;
@@ -38,6 +40,7 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
                                                           // container, used to
                                                           // close sockets
                                                           // explicitly.
+    private ExecutorService         getExecutor   = null; // 挂起的get请求在数据到达/超时后的输出线程
 
     private static class SingletonHolder {
 
@@ -60,6 +63,9 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             embeddedServer.start();
         }
 
+        // 挂起的get不占用线程，只在数据到达后做一次tryGet和输出，线程数与连接数无关
+        this.getExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            new NamedThreadFactory("canal-server-get"));
         this.bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
             Executors.newCachedThreadPool()));
         /*
@@ -86,7 +92,7 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
                 pipelines.addLast(ClientAuthenticationHandler.class.getName(),
                     new ClientAuthenticationHandler(embeddedServer));
 
-                SessionHandler sessionHandler = new SessionHandler(embeddedServer);
+                SessionHandler sessionHandler = new SessionHandler(embeddedServer, getExecutor);
                 pipelines.addLast(SessionHandler.class.getName(), sessionHandler);
                 return pipelines;
             }
@@ -117,6 +123,10 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             this.bootstrap.releaseExternalResources();
         }
 
+        if (this.getExecutor != null) {
+            this.getExecutor.shutdownNow();
+        }
+
         if (embeddedServer.isStart()) {
             embeddedServer.stop();
         }
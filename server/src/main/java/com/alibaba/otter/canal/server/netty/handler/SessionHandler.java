@@ -1,16 +1,23 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -34,6 +41,8 @@ import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 import com.alibaba.otter.canal.server.netty.listener.ChannelFutureAggregator;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.WireFormat;
@@ -42,6 +51,8 @@ public class SessionHandler extends SimpleChannelHandler {
 
     private static final Logger     logger = LoggerFactory.getLogger(SessionHandler.class);
     private CanalServerWithEmbedded embeddedServer;
+    private Executor                executor;  // 异步get的输出线程池，为null时同步等待
+    private volatile ParkedGet      parkedGet; // 当前挂起的get请求
 
     public SessionHandler(){
     }
@@ -50,6 +61,11 @@ public class SessionHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
+    public SessionHandler(CanalServerWithEmbedded embeddedServer, Executor executor){
+        this.embeddedServer = embeddedServer;
+        this.executor = executor;
+    }
+
     @SuppressWarnings({ "deprecation" })
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
         logger.info("message receives in session handler...");
@@ -144,7 +160,11 @@ public class SessionHandler extends SimpleChannelHandler {
                         // }
                         // } else {
                         if (get.getTimeout() == -1) {// 是否是初始值
-                            message = embeddedServer.getWithoutAck(clientIdentity, get.getFetchSize());
+                            // 即时获取，不在worker线程上做自适应batchSize的凑批等待
+                            message = embeddedServer.tryGetWithoutAck(clientIdentity, get.getFetchSize());
+                        } else if (executor != null) {
+                            // 挂起get请求，数据满足fetchSize或者超时之后异步返回，等待期间不占用worker线程
+                            parkGet(ctx.getChannel(), get, clientIdentity, start);
                         } else {
                             TimeUnit unit = convertTimeUnit(get.getUnit());
                             message = embeddedServer.getWithoutAck(clientIdentity,
@@ -154,85 +174,8 @@ public class SessionHandler extends SimpleChannelHandler {
                         }
                         // }
 
-                        if (message.getId() != -1 && message.isRaw()) {
-                            List<ByteString> rowEntries = message.getRawEntries();
-                            // message size
-                            int messageSize = 0;
-                            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
-
-                            int dataSize = 0;
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                dataSize += com.google.protobuf.CodedOutputStream.computeBytesSizeNoTag(rowEntries.get(i));
-                            }
-                            messageSize += dataSize;
-                            messageSize += 1 * rowEntries.size();
-                            // packet size
-                            int size = 0;
-                            size += com.google.protobuf.CodedOutputStream.computeEnumSize(3,
-                                PacketType.MESSAGES.getNumber());
-                            size += com.google.protobuf.CodedOutputStream.computeTagSize(5)
-                                    + com.google.protobuf.CodedOutputStream.computeRawVarint32Size(messageSize)
-                                    + messageSize;
-                            // recyle bytes
-                            // ByteBuffer byteBuffer = (ByteBuffer)
-                            // ctx.getAttachment();
-                            // if (byteBuffer != null && size <=
-                            // byteBuffer.capacity()) {
-                            // byteBuffer.clear();
-                            // } else {
-                            // byteBuffer =
-                            // ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
-                            // ctx.setAttachment(byteBuffer);
-                            // }
-                            // CodedOutputStream output =
-                            // CodedOutputStream.newInstance(byteBuffer);
-                            byte[] body = new byte[size];
-                            CodedOutputStream output = CodedOutputStream.newInstance(body);
-                            output.writeEnum(3, PacketType.MESSAGES.getNumber());
-
-                            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
-                            output.writeRawVarint32(messageSize);
-                            // message
-                            output.writeInt64(1, message.getId());
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                output.writeBytes(2, rowEntries.get(i));
-                            }
-                            output.checkNoSpaceLeft();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));
-
-                            // output.flush();
-                            // byteBuffer.flip();
-                            // NettyUtils.write(ctx.getChannel(), byteBuffer,
-                            // null);
-                        } else {
-                            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
-                            packetBuilder.setType(PacketType.MESSAGES).setVersion(NettyUtils.VERSION);
-
-                            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
-                            messageBuilder.setBatchId(message.getId());
-                            if (message.getId() != -1) {
-                                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
-                                    messageBuilder.addAllMessages(message.getRawEntries());
-                                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
-                                    for (Entry entry : message.getEntries()) {
-                                        messageBuilder.addMessages(entry.toByteString());
-                                    }
-                                }
-                            }
-                            byte[] body = packetBuilder.setBody(messageBuilder.build().toByteString())
-                                .build()
-                                .toByteArray();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));// 输出数据
+                        if (message != null) {
+                            writeMessage(ctx.getChannel(), get, message, start);
                         }
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
@@ -347,6 +290,11 @@ public class SessionHandler extends SimpleChannelHandler {
     }
 
     public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        ParkedGet current = parkedGet;
+        if (current != null) {
+            current.cancel();
+        }
+
         // logger.info("remove binding subscription value object if any...");
         // ClientIdentity clientIdentity = (ClientIdentity) ctx.getAttachment();
         // // 如果唯一的订阅者都取消了订阅，直接关闭服务，针对内部版本模式下可以减少资源浪费
@@ -355,6 +303,105 @@ public class SessionHandler extends SimpleChannelHandler {
         // }
     }
 
+    /**
+     * 注册store的数据到达通知，数据满足fetchSize时回调，timeout大于0时超时后有多少返回多少，timeout为0时一直等待
+     */
+    private void parkGet(Channel channel, Get get, ClientIdentity clientIdentity, long start) {
+        ParkedGet current = new ParkedGet(channel, get, clientIdentity, start);
+        parkedGet = current;
+        current.eventStore = embeddedServer.addAvailableListener(clientIdentity, get.getFetchSize(), current);
+        if (get.getTimeout() > 0 && !current.done.get()) {
+            TimeUnit unit = convertTimeUnit(get.getUnit());
+            current.timeout = NettyUtils.hashedWheelTimer.newTimeout(current, get.getTimeout(), unit);
+        }
+    }
+
+    /**
+     * 输出get的结果
+     */
+    private void writeMessage(Channel channel, Get get, Message message, long start) throws IOException {
+        if (message.getId() != -1 && message.isRaw()) {
+            List<ByteString> rowEntries = message.getRawEntries();
+            // message size
+            int messageSize = 0;
+            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
+
+            int dataSize = 0;
+            for (int i = 0; i < rowEntries.size(); i++) {
+                dataSize += com.google.protobuf.CodedOutputStream.computeBytesSizeNoTag(rowEntries.get(i));
+            }
+            messageSize += dataSize;
+            messageSize += 1 * rowEntries.size();
+            // packet size
+            int size = 0;
+            size += com.google.protobuf.CodedOutputStream.computeEnumSize(3,
+                PacketType.MESSAGES.getNumber());
+            size += com.google.protobuf.CodedOutputStream.computeTagSize(5)
+                    + com.google.protobuf.CodedOutputStream.computeRawVarint32Size(messageSize)
+                    + messageSize;
+            // recyle bytes
+            // ByteBuffer byteBuffer = (ByteBuffer)
+            // ctx.getAttachment();
+            // if (byteBuffer != null && size <=
+            // byteBuffer.capacity()) {
+            // byteBuffer.clear();
+            // } else {
+            // byteBuffer =
+            // ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+            // ctx.setAttachment(byteBuffer);
+            // }
+            // CodedOutputStream output =
+            // CodedOutputStream.newInstance(byteBuffer);
+            byte[] body = new byte[size];
+            CodedOutputStream output = CodedOutputStream.newInstance(body);
+            output.writeEnum(3, PacketType.MESSAGES.getNumber());
+
+            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(messageSize);
+            // message
+            output.writeInt64(1, message.getId());
+            for (int i = 0; i < rowEntries.size(); i++) {
+                output.writeBytes(2, rowEntries.get(i));
+            }
+            output.checkNoSpaceLeft();
+            NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                get,
+                PacketType.GET,
+                body.length,
+                System.nanoTime() - start,
+                message.getId() == -1));
+
+            // output.flush();
+            // byteBuffer.flip();
+            // NettyUtils.write(channel, byteBuffer,
+            // null);
+        } else {
+            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
+            packetBuilder.setType(PacketType.MESSAGES).setVersion(NettyUtils.VERSION);
+
+            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
+            messageBuilder.setBatchId(message.getId());
+            if (message.getId() != -1) {
+                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
+                    messageBuilder.addAllMessages(message.getRawEntries());
+                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
+                    for (Entry entry : message.getEntries()) {
+                        messageBuilder.addMessages(entry.toByteString());
+                    }
+                }
+            }
+            byte[] body = packetBuilder.setBody(messageBuilder.build().toByteString())
+                .build()
+                .toByteArray();
+            NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                get,
+                PacketType.GET,
+                body.length,
+                System.nanoTime() - start,
+                message.getId() == -1));// 输出数据
+        }
+    }
+
     private void stopCanalInstanceIfNecessary(ClientIdentity clientIdentity) {
         List<ClientIdentity> clientIdentitys = embeddedServer.listAllSubscribe(clientIdentity.getDestination());
         if (clientIdentitys != null && clientIdentitys.size() == 1 && clientIdentitys.contains(clientIdentity)) {
@@ -390,4 +437,107 @@ public class SessionHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 挂起的get请求，数据到达通知/超时/连接关闭三者只有一个会生效
+     */
+    private class ParkedGet implements CanalEventStoreListener, TimerTask {
+
+        private final Channel            channel;
+        private final Get                get;
+        private final ClientIdentity     clientIdentity;
+        private final long               start;
+        private final AtomicBoolean      done = new AtomicBoolean(false);
+        private volatile Timeout         timeout;
+        private volatile CanalEventStore eventStore;                       // 注册时的store，instance重启后不能再通过destination查找
+
+        public ParkedGet(Channel channel, Get get, ClientIdentity clientIdentity, long start){
+            this.channel = channel;
+            this.get = get;
+            this.clientIdentity = clientIdentity;
+            this.start = start;
+        }
+
+        public void onAvailable() {
+            // put线程回调，只做线程切换
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+            complete();
+        }
+
+        public void run(Timeout expired) throws Exception {
+            // 超时，有多少返回多少. 取消失败也要返回，已经回调过的由done保证只返回一次
+            removeListener();
+            complete();
+        }
+
+        public void cancel() {
+            done.set(true);
+            removeListener();
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        private void removeListener() {
+            CanalEventStore current = eventStore;
+            if (current != null) {
+                try {
+                    current.removeAvailableListener(this);
+                } catch (Throwable e) {
+                    logger.warn("remove available listener failed for " + clientIdentity, e);
+                }
+            }
+        }
+
+        private void complete() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+
+            Runnable task = new Runnable() {
+
+                public void run() {
+                    if (parkedGet == ParkedGet.this) {
+                        parkedGet = null;
+                    }
+                    if (!channel.isConnected()) {
+                        return;
+                    }
+
+                    try {
+                        MDC.put("destination", clientIdentity.getDestination());
+                        Message message = embeddedServer.tryGetWithoutAck(clientIdentity, get.getFetchSize());
+                        writeMessage(channel, get, message, start);
+                    } catch (Throwable exception) {
+                        byte[] errorBytes = NettyUtils.errorPacket(400,
+                            MessageFormatter.format("something goes wrong with channel:{}, exception={}",
+                                channel,
+                                ExceptionUtils.getStackTrace(exception)).getMessage());
+                        NettyUtils.write(channel, errorBytes, new ChannelFutureAggregator(channel.getRemoteAddress()
+                            .toString(), null, PacketType.GET, errorBytes.length, System.nanoTime() - start, (short) 400));
+                    } finally {
+                        MDC.remove("destination");
+                    }
+                }
+            };
+
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // server正在关闭，连接也会随之关闭
+                logger.warn("discard parked get for {} , executor is shutdown", clientIdentity);
+                if (parkedGet == this) {
+                    parkedGet = null;
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,78 @@
+package com.alibaba.otter.canal.server.embedded;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+
+public class AdaptiveBatchControllerTest {
+
+    @Test
+    public void testShrinkAndGrow() throws InterruptedException {
+        AdaptiveBatchController controller = new AdaptiveBatchController(20, 0);
+        Assert.assertEquals(1000, controller.nextBatchSize(1000, BatchMode.ITEMSIZE, 1024));
+
+        // 超过目标延迟，最多减半
+        controller.onGet(1L, buildEvents(10, 100));
+        Thread.sleep(60);
+        controller.onAck(1L, 10000);
+        Assert.assertEquals(500, controller.nextBatchSize(1000, BatchMode.ITEMSIZE, 1024));
+
+        // 低于目标延迟但没有积压，保持不变
+        controller.onGet(2L, buildEvents(10, 100));
+        controller.onAck(2L, 10);
+        Assert.assertEquals(500, controller.nextBatchSize(1000, BatchMode.ITEMSIZE, 1024));
+
+        // 低于目标延迟且有积压，翻倍但不超过客户端的batchSize
+        controller.onGet(3L, buildEvents(10, 100));
+        controller.onAck(3L, 10000);
+        Assert.assertEquals(1000, controller.nextBatchSize(1000, BatchMode.ITEMSIZE, 1024));
+
+        // 重复ack忽略
+        controller.onAck(3L, 10000);
+        Assert.assertEquals(1000, controller.getBatchSize());
+    }
+
+    @Test
+    public void testMaxBytes() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 10 * 1024);
+        Assert.assertEquals(10, controller.nextBatchSize(1000, BatchMode.MEMSIZE, 1024));
+
+        controller = new AdaptiveBatchController(100, 10 * 1024);
+        // 还没有event大小的统计，使用客户端的batchSize
+        Assert.assertEquals(1000, controller.nextBatchSize(1000, BatchMode.ITEMSIZE, 1024));
+        // 非raw模式下按照6倍的event length预估大小
+        controller.onGet(1L, buildEvents(10, 100));
+        Assert.assertEquals(10 * 1024 / 600, controller.nextBatchSize(1000, BatchMode.ITEMSIZE, 1024));
+    }
+
+    @Test
+    public void testLinger() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 0);
+        controller.nextBatchSize(100, BatchMode.ITEMSIZE, 1024);
+        Assert.assertEquals(50, controller.lingerMillis(10));
+        Assert.assertEquals(0, controller.lingerMillis(100));
+        Assert.assertEquals(0, controller.lingerMillis(-1));
+    }
+
+    private List<Event> buildEvents(int size, long eventLength) {
+        List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < size; i++) {
+            Header.Builder headerBuilder = Header.newBuilder();
+            headerBuilder.setLogfileName("mysql-bin.000001");
+            headerBuilder.setLogfileOffset(4 + i * eventLength);
+            headerBuilder.setEventLength(eventLength);
+            Entry entry = Entry.newBuilder().setHeader(headerBuilder.build()).build();
+            events.add(new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry, false));
+        }
+        return events;
+    }
+}
@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
 import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
@@ -44,6 +45,7 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
     protected volatile long        lastEmptyTransactionTimestamp = 0L;
     protected AtomicLong           lastEmptyTransactionCount     = new AtomicLong(0L);
     protected AtomicLong           eventsSinkBlockingTime        = new AtomicLong(0L);
+    protected LatencyHistogram     putLatency                    = new LatencyHistogram();                       // 写入store的耗时，包含store满时的等待
     protected boolean              raw;
 
     public EntryEventSink(){
@@ -154,6 +156,7 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
     }
 
     protected boolean doSink(List<Event> events) {
+        long start = System.nanoTime();
         for (CanalEventDownStreamHandler<List<Event>> handler : getHandlers()) {
             events = handler.before(events);
         }
@@ -167,6 +170,7 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
                 for (CanalEventDownStreamHandler<List<Event>> handler : getHandlers()) {
                     events = handler.after(events);
                 }
+                putLatency.observe(System.nanoTime() - start);
                 return true;
             } else {
                 if (fullTimes == 0) {
@@ -227,4 +231,8 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         return eventsSinkBlockingTime;
     }
 
+    public LatencyHistogram getPutLatency() {
+        return putLatency;
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.alibaba.otter.canal.sink.entry.group;
 
+import java.util.PriorityQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +17,7 @@ import com.alibaba.otter.canal.store.model.Event;
  * 大致设计：
  *  1. 多个队列都提交一个timestamp，判断出最小的一个timestamp做为通过的条件，然后唤醒<=该最小时间的线程通过
  *  2. 只有当多个队列都提交了一个timestamp，缺少任何一个提交，都会阻塞其他队列通过。(解决当一个库启动过慢或者发生主备切换时出现延迟等问题)
+ *  3. 每个队列的线程在各自的condition上等待，按照timestamp维护等待线程的最小堆，只唤醒<=最小时间的线程，避免所有线程被同时唤醒
  * 
  * 存在一个假定，认为提交的timestamp是一个顺序递增，但是在两种case下会出现时间回退
  * a. 大事务时，事务头的时间会晚于事务当中数据的时间，相当于出现一个时间回退
@@ -28,11 +30,17 @@ import com.alibaba.otter.canal.store.model.Event;
  */
 public class TimelineBarrier implements GroupBarrier<Event> {
 
-    protected int                 groupSize;
-    protected ReentrantLock       lock           = new ReentrantLock();
-    protected Condition           condition      = lock.newCondition();
-    protected volatile long       threshold;
-    protected BlockingQueue<Long> lastTimestamps = new PriorityBlockingQueue<Long>(); // 当前通道最后一次single的时间戳
+    protected int                   groupSize;
+    protected ReentrantLock         lock           = new ReentrantLock();
+    protected volatile long         threshold;
+    protected BlockingQueue<Long>   lastTimestamps = new PriorityBlockingQueue<Long>(); // 当前通道最后一次single的时间戳
+    protected PriorityQueue<Waiter> waiters        = new PriorityQueue<Waiter>();       // 按照timestamp排序的阻塞线程
+    private ThreadLocal<Waiter>     waiter         = new ThreadLocal<Waiter>() {
+
+                                                       protected Waiter initialValue() {
+                                                           return new Waiter(lock.newCondition());
+                                                       }
+                                                   };
 
     public TimelineBarrier(int groupSize){
         this.groupSize = groupSize;
@@ -49,8 +57,15 @@ public class TimelineBarrier implements GroupBarrier<Event> {
         try {
             lock.lockInterruptibly();
             single(timestamp);
+            Waiter current = waiter.get();
+            current.timestamp = timestamp;
             while (isPermit(event, timestamp) == false) {
-                condition.await();
+                waiters.add(current);
+                try {
+                    current.condition.await();
+                } finally {
+                    waiters.remove(current);
+                }
             }
         } finally {
             lock.unlock();
@@ -68,8 +83,15 @@ public class TimelineBarrier implements GroupBarrier<Event> {
         try {
             lock.lockInterruptibly();
             single(timestamp);
+            Waiter current = waiter.get();
+            current.timestamp = timestamp;
             while (isPermit(event, timestamp) == false) {
-                condition.await(timeout, unit);
+                waiters.add(current);
+                try {
+                    current.condition.await(timeout, unit);
+                } finally {
+                    waiters.remove(current);
+                }
             }
         } finally {
             lock.unlock();
@@ -102,8 +124,12 @@ public class TimelineBarrier implements GroupBarrier<Event> {
      * 通知一下
      */
     protected void notify(long minTimestamp) {
-        // 通知阻塞的线程恢复, 这里采用single all操作，当group中的几个时间都相同时，一次性触发通过多个
-        condition.signalAll();
+        // 通知阻塞的线程恢复, 只唤醒timestamp<=minTimestamp的线程，当group中的几个时间都相同时，一次性触发通过多个
+        Waiter head = null;
+        while ((head = waiters.peek()) != null && head.timestamp <= minTimestamp) {
+            waiters.poll();
+            head.condition.signal();
+        }
     }
 
     /**
@@ -142,4 +168,21 @@ public class TimelineBarrier implements GroupBarrier<Event> {
         return event.getExecuteTime();
     }
 
+    /**
+     * 单个队列线程的等待状态
+     */
+    protected static class Waiter implements Comparable<Waiter> {
+
+        private final Condition condition;
+        private long            timestamp;
+
+        private Waiter(Condition condition){
+            this.condition = condition;
+        }
+
+        public int compareTo(Waiter o) {
+            return timestamp < o.timestamp ? -1 : (timestamp == o.timestamp ? 0 : 1);
+        }
+    }
+
 }
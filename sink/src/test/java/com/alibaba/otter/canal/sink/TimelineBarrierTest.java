@@ -0,0 +1,66 @@
+package com.alibaba.otter.canal.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.math.RandomUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.sink.entry.group.TimelineBarrier;
+import com.alibaba.otter.canal.store.model.Event;
+
+public class TimelineBarrierTest {
+
+    @Test
+    public void testMergeOrder() throws Exception {
+        final int groupSize = 8;
+        final TimelineBarrier barrier = new TimelineBarrier(groupSize);
+        final List<Long> passed = Collections.synchronizedList(new ArrayList<Long>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(groupSize);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < groupSize; i++) {
+            futures.add(executor.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        long timestamp = 0;
+                        for (int j = 0; j < 200; j++) {
+                            timestamp += RandomUtils.nextInt(10);
+                            Event event = buildEvent(timestamp);
+                            barrier.await(event);
+                            passed.add(timestamp);
+                            barrier.clear(event);
+                        }
+
+                        // 结束标记, 保证其他队列的数据都可以通过
+                        barrier.await(buildEvent(Long.MAX_VALUE));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdownNow();
+
+        Assert.assertEquals(groupSize * 200, passed.size());
+        for (int i = 1; i < passed.size(); i++) {
+            Assert.assertTrue(passed.get(i - 1) <= passed.get(i));
+        }
+    }
+
+    private static Event buildEvent(long timestamp) {
+        Event event = new Event();
+        event.setExecuteTime(timestamp);
+        return event;
+    }
+}
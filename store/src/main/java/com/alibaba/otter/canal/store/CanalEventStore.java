@@ -61,6 +61,21 @@ public interface CanalEventStore<T> extends CanalLifeCycle, CanalStoreScavenge {
      */
     Events<T> tryGet(Position start, int batchSize) throws CanalStoreException;
 
+    /**
+     * 注册数据到达通知，start之后可获取的数据满足batchSize(按BatchMode计算条数或者内存大小)时回调一次，注册时已满足则立即回调
+     * 
+     * @Since 1.1.5
+     */
+    void addAvailableListener(Position start, int batchSize, CanalEventStoreListener listener)
+                                                                                            throws CanalStoreException;
+
+    /**
+     * 取消数据到达通知，已经回调过或者不存在时返回false
+     * 
+     * @Since 1.1.5
+     */
+    boolean removeAvailableListener(CanalEventStoreListener listener) throws CanalStoreException;
+
     /**
      * 获取最后一条数据的position
      */
@@ -0,0 +1,16 @@
+package com.alibaba.otter.canal.store;
+
+/**
+ * store数据到达通知，配合{@linkplain CanalEventStore#addAvailableListener}实现异步的get
+ *
+ * @version 1.0.0
+ */
+public interface CanalEventStoreListener {
+
+    /**
+     * 可获取的数据满足注册时的batchSize，每次注册只会回调一次. 回调在put线程中执行，实现方不能阻塞
+     * <p>
+     * store清理(stop)时也会回调所有未触发的listener，此时不保证有数据
+     */
+    void onAvailable();
+}
@@ -2,6 +2,9 @@ package com.alibaba.otter.canal.store.memory;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -9,6 +12,8 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
+import com.alibaba.otter.canal.common.utils.TraceSampler;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
 import com.alibaba.otter.canal.protocol.position.LogPosition;
@@ -16,6 +21,7 @@ import com.alibaba.otter.canal.protocol.position.Position;
 import com.alibaba.otter.canal.protocol.position.PositionRange;
 import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
 import com.alibaba.otter.canal.store.CanalStoreException;
 import com.alibaba.otter.canal.store.CanalStoreScavenge;
 import com.alibaba.otter.canal.store.helper.CanalEventUtils;
@@ -63,11 +69,19 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private AtomicLong        getTableRows  = new AtomicLong(0);
     private AtomicLong        ackTableRows  = new AtomicLong(0);
 
+    // 链路耗时分布, get为数据在store中等待被get的时间，ack为get之后到ack的时间
+    private LatencyHistogram  getLatency    = new LatencyHistogram();
+    private LatencyHistogram  ackLatency    = new LatencyHistogram();
+    private int               sampleRate    = 0;                                         // 事务链路采样比例，0代表关闭
+
     // 阻塞put/get操作控制信号
     private ReentrantLock     lock          = new ReentrantLock();
     private Condition         notFull       = lock.newCondition();
     private Condition         notEmpty      = lock.newCondition();
 
+    // 异步get的数据到达通知，put/rollback之后检查
+    private ConcurrentMap<CanalEventStoreListener, AvailableCondition> availableListeners = new ConcurrentHashMap<CanalEventStoreListener, AvailableCondition>();
+
     private BatchMode         batchMode     = BatchMode.ITEMSIZE;                        // 默认为内存大小模式
     private boolean           ddlIsolation  = false;
     private boolean           raw           = true;                                      // 针对entry是否开启raw模式
@@ -119,6 +133,8 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         } finally {
             lock.unlock();
         }
+
+        notifyAvailableListeners();
     }
 
     public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
@@ -133,7 +149,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             for (;;) {
                 if (checkFreeSlotAt(putSequence.get() + data.size())) {
                     doPut(data);
-                    return true;
+                    break;
                 }
                 if (nanos <= 0) {
                     return false;
@@ -149,6 +165,9 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         } finally {
             lock.unlock();
         }
+
+        notifyAvailableListeners();
+        return true;
     }
 
     public boolean tryPut(List<Event> data) throws CanalStoreException {
@@ -163,11 +182,13 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                 return false;
             } else {
                 doPut(data);
-                return true;
             }
         } finally {
             lock.unlock();
         }
+
+        notifyAvailableListeners();
+        return true;
     }
 
     public void put(Event data) throws InterruptedException, CanalStoreException {
@@ -267,6 +288,38 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
+    public void addAvailableListener(Position start, int batchSize, CanalEventStoreListener listener)
+                                                                                            throws CanalStoreException {
+        AvailableCondition condition = new AvailableCondition((LogPosition) start, batchSize);
+        availableListeners.put(listener, condition);
+        // 先注册再检查，避免和put之间漏掉通知
+        if (checkUnGetSlotAt(condition.start, condition.batchSize) && availableListeners.remove(listener, condition)) {
+            listener.onAvailable();
+        }
+    }
+
+    public boolean removeAvailableListener(CanalEventStoreListener listener) throws CanalStoreException {
+        return availableListeners.remove(listener) != null;
+    }
+
+    /**
+     * 不持有lock的情况下回调，避免listener中再次get时和put线程出现锁竞争
+     */
+    private void notifyAvailableListeners() {
+        if (availableListeners.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<CanalEventStoreListener, AvailableCondition> entry : availableListeners.entrySet()) {
+            AvailableCondition condition = entry.getValue();
+            // remove成功的才回调，保证和removeAvailableListener之间只有一个生效
+            if (checkUnGetSlotAt(condition.start, condition.batchSize)
+                && availableListeners.remove(entry.getKey(), condition)) {
+                entry.getKey().onAvailable();
+            }
+        }
+    }
+
     private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
         LogPosition startPosition = (LogPosition) start;
 
@@ -438,6 +491,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             if (seqId > 0) {
                 maxSequence = seqId;
             }
+            long oldestGetNanos = Event.UNSET_NANOS;
             for (long next = sequence + 1; next <= maxSequence; next++) {
                 Event event = entries[getIndex(next)];
                 if (localExecTime == 0 && event.getExecuteTime() > 0) {
@@ -445,10 +499,19 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                 }
                 deltaRows += event.getRowsCount();
                 memsize += calculateSize(event);
+                if (oldestGetNanos == Event.UNSET_NANOS) {
+                    oldestGetNanos = event.getGetNanos();
+                }
                 if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
                     // 找到对应的position，更新ack seq
                     hasMatch = true;
 
+                    long now = System.nanoTime();
+                    if (sampleRate > 0) {
+                        // 需要在清理buffer之前输出
+                        trace(sequence + 1, next, now);
+                    }
+
                     if (batchMode.isMemSize()) {
                         ackMemSize.addAndGet(memsize);
                         // 尝试清空buffer中的内存，将ack之前的内存全部释放掉
@@ -469,6 +532,9 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                         if (localExecTime > 0) {
                             ackExecTime.lazySet(localExecTime);
                         }
+                        if (oldestGetNanos != Event.UNSET_NANOS) {
+                            ackLatency.observe(now - oldestGetNanos);
+                        }
                         return;
                     }
                 }
@@ -490,6 +556,8 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         } finally {
             lock.unlock();
         }
+
+        notifyAvailableListeners();
     }
 
     public void cleanAll() throws CanalStoreException {
@@ -510,6 +578,13 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         } finally {
             lock.unlock();
         }
+
+        // 唤醒所有等待方，避免store停止后一直挂起
+        for (CanalEventStoreListener listener : availableListeners.keySet()) {
+            if (availableListeners.remove(listener) != null) {
+                listener.onAvailable();
+            }
+        }
     }
 
     // =================== helper method =================
@@ -591,12 +666,18 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private void profiling(List<Event> events, OP op) {
         long localExecTime = 0L;
         int deltaRows = 0;
+        long now = System.nanoTime();
         if (events != null && !events.isEmpty()) {
             for (Event e : events) {
                 if (localExecTime == 0 && e.getExecuteTime() > 0) {
                     localExecTime = e.getExecuteTime();
                 }
                 deltaRows += e.getRowsCount();
+                if (op == OP.PUT) {
+                    e.setPutNanos(now);
+                } else if (op == OP.GET) {
+                    e.setGetNanos(now);
+                }
             }
         }
         switch (op) {
@@ -611,6 +692,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                 if (localExecTime > 0) {
                     getExecTime.lazySet(localExecTime);
                 }
+                if (events != null && !events.isEmpty() && events.get(0).getPutNanos() != Event.UNSET_NANOS) {
+                    // 批次中最早写入的数据，即该批次在store中的最长等待时间
+                    getLatency.observe(now - events.get(0).getPutNanos());
+                }
                 break;
             case ACK:
                 ackTableRows.addAndGet(deltaRows);
@@ -623,10 +708,41 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
+    /**
+     * 按事务尾采样输出store中各阶段的耗时
+     */
+    private void trace(long start, long end, long now) {
+        for (long next = start; next <= end; next++) {
+            Event event = entries[getIndex(next)];
+            if (event == null || event.getEntryType() != CanalEntry.EntryType.TRANSACTIONEND
+                || !TraceSampler.isSampled(event.getJournalName(), event.getPosition(), sampleRate)) {
+                continue;
+            }
+
+            TraceSampler.logger.info(String.format("store trace %s %s:%d get=%.3fms ack=%.3fms",
+                destination,
+                event.getJournalName(),
+                event.getPosition(),
+                (event.getGetNanos() - event.getPutNanos()) / 1000000d,
+                (now - event.getGetNanos()) / 1000000d));
+        }
+    }
+
     private enum OP {
         PUT, GET, ACK
     }
 
+    private static class AvailableCondition {
+
+        private final LogPosition start;
+        private final int         batchSize;
+
+        public AvailableCondition(LogPosition start, int batchSize){
+            this.start = start;
+            this.batchSize = batchSize;
+        }
+    }
+
     // ================ setter / getter ==================
     public int getBufferSize() {
         return this.bufferSize;
@@ -636,6 +752,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         this.bufferSize = bufferSize;
     }
 
+    public int getBufferMemUnit() {
+        return bufferMemUnit;
+    }
+
     public void setBufferMemUnit(int bufferMemUnit) {
         this.bufferMemUnit = bufferMemUnit;
     }
@@ -660,6 +780,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         return putSequence;
     }
 
+    public AtomicLong getGetSequence() {
+        return getSequence;
+    }
+
     public AtomicLong getAckSequence() {
         return ackSequence;
     }
@@ -668,6 +792,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         return putMemSize;
     }
 
+    public AtomicLong getGetMemSize() {
+        return getMemSize;
+    }
+
     public AtomicLong getAckMemSize() {
         return ackMemSize;
     }
@@ -700,4 +828,16 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         return ackTableRows;
     }
 
+    public LatencyHistogram getGetLatency() {
+        return getLatency;
+    }
+
+    public LatencyHistogram getAckLatency() {
+        return ackLatency;
+    }
+
+    public void setTraceSampleRate(int traceSampleRate) {
+        this.sampleRate = traceSampleRate;
+    }
+
 }
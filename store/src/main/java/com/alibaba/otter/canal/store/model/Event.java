@@ -20,6 +20,8 @@ import com.google.protobuf.ByteString;
 public class Event implements Serializable {
 
     private static final long serialVersionUID = 1333330351758762739L;
+    // putNanos/getNanos未设置时的取值，System.nanoTime()可能为0或负数，不能用0判断
+    public static final long  UNSET_NANOS      = Long.MIN_VALUE;
 
     private LogIdentity       logIdentity;                            // 记录数据产生的来源
     private ByteString        rawEntry;
@@ -37,6 +39,10 @@ public class Event implements Serializable {
     // ==== https://github.com/alibaba/canal/issues/1019
     private CanalEntry.Entry  entry;
 
+    // 写入store和被get的时间，单位纳秒，只用于统计链路耗时
+    private transient long    putNanos         = UNSET_NANOS;
+    private transient long    getNanos         = UNSET_NANOS;
+
     public Event(){
     }
 
@@ -172,6 +178,22 @@ public class Event implements Serializable {
         this.entry = entry;
     }
 
+    public long getPutNanos() {
+        return putNanos;
+    }
+
+    public void setPutNanos(long putNanos) {
+        this.putNanos = putNanos;
+    }
+
+    public long getGetNanos() {
+        return getNanos;
+    }
+
+    public void setGetNanos(long getNanos) {
+        this.getNanos = getNanos;
+    }
+
     public String toString() {
         return ToStringBuilder.reflectionToString(this, CanalToStringStyle.DEFAULT_STYLE);
     }
@@ -0,0 +1,112 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalEventStoreListener;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试异步get的数据到达通知
+ *
+ * @version 1.0.0
+ */
+public class MemoryEventStoreAvailableListenerTest extends MemoryEventStoreBase {
+
+    @Test
+    public void testItemSize() {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        CountListener listener = new CountListener();
+        Position first = eventStore.getFirstPosition();
+        eventStore.addAvailableListener(first, 3, listener);
+        eventStore.tryPut(buildEvent("1", 1L, 1L));
+        eventStore.tryPut(buildEvent("1", 1L, 2L));
+        Assert.assertEquals(0, listener.count.get());
+
+        eventStore.tryPut(buildEvent("1", 1L, 3L));
+        Assert.assertEquals(1, listener.count.get());
+        // 只回调一次
+        eventStore.tryPut(buildEvent("1", 1L, 4L));
+        Assert.assertEquals(1, listener.count.get());
+        Assert.assertFalse(eventStore.removeAvailableListener(listener));
+
+        // 注册时已经满足，立即回调
+        eventStore.addAvailableListener(first, 3, listener);
+        Assert.assertEquals(2, listener.count.get());
+
+        // get之后不满足，rollback之后重新满足
+        Events events = eventStore.tryGet(first, 4);
+        Assert.assertEquals(4, events.getEvents().size());
+        eventStore.addAvailableListener(first, 3, listener);
+        Assert.assertEquals(2, listener.count.get());
+        eventStore.rollback();
+        Assert.assertEquals(3, listener.count.get());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testMemSize() {
+        Event event = buildEvent("1", 1L, 1L);
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer(BatchMode.MEMSIZE);
+        eventStore.setBufferSize(16);
+        eventStore.setBufferMemUnit((int) event.getRawLength());
+        eventStore.start();
+
+        CountListener listener = new CountListener();
+        // 两个event的大小
+        eventStore.addAvailableListener(null, 2, listener);
+        eventStore.tryPut(event);
+        Assert.assertEquals(0, listener.count.get());
+        eventStore.tryPut(buildEvent("1", 1L, 2L));
+        Assert.assertEquals(1, listener.count.get());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testRemove() {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        CountListener listener = new CountListener();
+        eventStore.addAvailableListener(null, 1, listener);
+        Assert.assertTrue(eventStore.removeAvailableListener(listener));
+        eventStore.tryPut(buildEvent("1", 1L, 1L));
+        Assert.assertEquals(0, listener.count.get());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testStop() {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        CountListener listener = new CountListener();
+        eventStore.addAvailableListener(null, 10, listener);
+        eventStore.tryPut(buildEvent("1", 1L, 1L));
+        Assert.assertEquals(0, listener.count.get());
+        // stop时唤醒未触发的listener
+        eventStore.stop();
+        Assert.assertEquals(1, listener.count.get());
+        Assert.assertFalse(eventStore.removeAvailableListener(listener));
+    }
+
+    private static class CountListener implements CanalEventStoreListener {
+
+        private AtomicInteger count = new AtomicInteger(0);
+
+        public void onAvailable() {
+            count.incrementAndGet();
+        }
+    }
+}